@@ -21,10 +21,12 @@
 
 package org.apache.bookkeeper.bookie;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.RateLimiter;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 
 /**
@@ -64,16 +66,39 @@ public abstract class AbstractLogCompactor {
 
     /**
      * class Throttler.
+     *
+     * <p>The rate adapts to the load of the bookie: while the {@link BookieLoadMonitor} reports the bookie busy, the
+     * rate is halved periodically down to a fraction of the configured rate, and it grows back to the configured rate
+     * once the bookie is idle again.
+     *
+     * <p>A throttler can take its permits from another throttler, its budget, shared by several compactions so that
+     * they run within a global rate.
      */
     public static class Throttler {
+        // the rate is adjusted to the load of the bookie at most once per interval
+        static final long RATE_ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        // lowest rate while the bookie is busy, as a fraction of the configured rate
+        static final int MIN_RATE_DIVISOR = 16;
+        // rate increase per interval while the bookie is idle, as a fraction of the configured rate
+        static final int RATE_INCREASE_DIVISOR = 10;
+
         private final RateLimiter rateLimiter;
         private final boolean isThrottleByBytes;
         private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final double maxRate;
+        private final AtomicLong acquiredBytes = new AtomicLong(0);
+        private volatile BookieLoadMonitor loadMonitor = BookieLoadMonitor.IDLE;
+        private volatile Throttler budget = this;
+        private double rate;
+        private long lastRateAdjustNanos;
 
-        Throttler(ServerConfiguration conf) {
+        public Throttler(ServerConfiguration conf) {
             this.isThrottleByBytes  = conf.getIsThrottleByBytes();
-            this.rateLimiter = RateLimiter.create(this.isThrottleByBytes
-                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
+            this.maxRate = this.isThrottleByBytes
+                ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries();
+            this.rate = maxRate;
+            this.rateLimiter = RateLimiter.create(maxRate);
+            this.lastRateAdjustNanos = System.nanoTime();
         }
 
         // acquire. if bybytes: bytes of this entry; if byentries: 1.
@@ -87,7 +112,9 @@ public abstract class AbstractLogCompactor {
         public void acquire(int permits) throws IOException {
             long timeout = 100;
             long start = System.currentTimeMillis();
-            while (!tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
+            Throttler budget = this.budget;
+            budget.adjustRate(System.nanoTime());
+            while (!budget.tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
                 if (cancelled.get()) {
                     throw new IOException("Failed to get permits takes "
                             + (System.currentTimeMillis() - start)
@@ -98,12 +125,58 @@ public abstract class AbstractLogCompactor {
                 } catch (InterruptedException e) {
                     // ignore
                 }
+                budget.adjustRate(System.nanoTime());
             }
+            acquiredBytes.addAndGet(permits + Integer.BYTES);
         }
 
         public void cancelledAcquire() {
             cancelled.set(true);
         }
+
+        public void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+            this.loadMonitor = loadMonitor;
+        }
+
+        /**
+         * Take the permits from another throttler, rather than from the rate of this throttler.
+         *
+         * @param budget the throttler shared with other compactions
+         */
+        public void setBudget(Throttler budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * @return the total size of the entries which went through the throttler, including the size prefix
+         *         of each entry in the entry log
+         */
+        public long getAcquiredBytes() {
+            return acquiredBytes.get();
+        }
+
+        @VisibleForTesting
+        synchronized double getRate() {
+            return rate;
+        }
+
+        @VisibleForTesting
+        synchronized void adjustRate(long nowNanos) {
+            if (nowNanos - lastRateAdjustNanos < RATE_ADJUST_INTERVAL_NANOS) {
+                return;
+            }
+            lastRateAdjustNanos = nowNanos;
+            double newRate;
+            if (loadMonitor.isBusy()) {
+                newRate = Math.max(maxRate / MIN_RATE_DIVISOR, rate / 2);
+            } else {
+                newRate = Math.min(maxRate, rate + maxRate / RATE_INCREASE_DIVISOR);
+            }
+            if (newRate != rate) {
+                rate = newRate;
+                rateLimiter.setRate(newRate);
+            }
+        }
     }
 
 }
@@ -117,6 +117,8 @@ public interface BookKeeperServerStats {
     String JOURNAL_CREATION_LATENCY = "JOURNAL_CREATION_LATENCY";
     String JOURNAL_MEMORY_MAX = "JOURNAL_MEMORY_MAX";
     String JOURNAL_MEMORY_USED = "JOURNAL_MEMORY_USED";
+    String JOURNAL_GROUP_COMMIT_WAIT = "JOURNAL_GROUP_COMMIT_WAIT";
+    String JOURNAL_GROUP_COMMIT_BATCH_ENTRIES = "JOURNAL_GROUP_COMMIT_BATCH_ENTRIES";
 
     // Ledger Storage Stats
     String STORAGE_GET_OFFSET = "STORAGE_GET_OFFSET";
@@ -148,6 +150,7 @@ public interface BookKeeperServerStats {
     String ACTIVE_ENTRY_LOG_SPACE_BYTES = "ACTIVE_ENTRY_LOG_SPACE_BYTES";
     String ENTRY_LOG_SPACE_BYTES = "ENTRY_LOG_SPACE_BYTES";
     String RECLAIMED_COMPACTION_SPACE_BYTES = "RECLAIMED_COMPACTION_SPACE_BYTES";
+    String PROJECTED_COMPACTION_SPACE_BYTES = "PROJECTED_COMPACTION_SPACE_BYTES";
     String RECLAIMED_DELETION_SPACE_BYTES = "RECLAIMED_DELETION_SPACE_BYTES";
     String RECLAIM_FAILED_TO_DELETE = "RECLAIM_FAILED_TO_DELETE";
     String THREAD_RUNTIME = "THREAD_RUNTIME";
@@ -22,6 +22,7 @@ import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.util.PrimitiveIterator;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 
@@ -57,6 +58,35 @@ public interface Bookie {
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
             throws IOException, NoLedgerException, BookieException;
+
+    /**
+     * Read up to {@code maxCount} consecutive entries, starting from {@code firstEntryId}.
+     *
+     * <p>The entries are passed one by one to the consumer, which takes ownership of them, until it returns false.
+     * The consumer is expected to stop the read once the entries add up to {@code maxSize} bytes, which is only used
+     * to avoid reading ahead more entries than it will take. An exception is only thrown if the first entry cannot be
+     * read.
+     */
+    default void readEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize,
+                             Predicate<ByteBuf> consumer)
+            throws IOException, NoLedgerException, BookieException {
+        if (!consumer.test(readEntry(ledgerId, firstEntryId))) {
+            return;
+        }
+
+        for (int i = 1; i < maxCount; i++) {
+            ByteBuf entry;
+            try {
+                entry = readEntry(ledgerId, firstEntryId + i);
+            } catch (IOException | BookieException e) {
+                return;
+            }
+
+            if (!consumer.test(entry)) {
+                return;
+            }
+        }
+    }
     long readLastAddConfirmed(long ledgerId) throws IOException, BookieException;
     PrimitiveIterator.OfLong getListOfEntriesOfLedger(long ledgerId) throws IOException, NoLedgerException;
 
@@ -53,6 +53,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.apache.bookkeeper.bookie.BookieException.DiskPartitionDuplicationException;
@@ -1162,6 +1163,36 @@ public class BookieImpl implements Bookie {
         }
     }
 
+    @Override
+    public void readEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize,
+                            Predicate<ByteBuf> consumer) throws IOException, NoLedgerException, BookieException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading {} entries from {}@{}", maxCount, firstEntryId, ledgerId);
+            }
+            long[] startNanos = { requestNanos };
+            handle.readEntries(firstEntryId, maxCount, maxSize, entry -> {
+                int entrySize = entry.readableBytes();
+                bookieStats.getReadBytes().addCount(entrySize);
+                bookieStats.getReadEntryStats().registerSuccessfulEvent(MathUtils.elapsedNanos(startNanos[0]),
+                        TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerSuccessfulValue(entrySize);
+                startNanos[0] = MathUtils.nowInNano();
+                return consumer.test(entry);
+            });
+            success = true;
+        } finally {
+            if (!success) {
+                bookieStats.getReadEntryStats().registerFailedEvent(MathUtils.elapsedNanos(requestNanos),
+                        TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerFailedValue(0);
+            }
+        }
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
@@ -86,11 +86,20 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
     public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
             long unpersistedBytesBound) throws IOException {
+        this(fc, allocator.directBuffer(writeCapacity), readCapacity, unpersistedBytesBound);
+    }
+
+    /**
+     * Create a buffered channel writing through the provided buffer. The channel takes ownership of the
+     * buffer and releases it when closed.
+     */
+    protected BufferedChannel(FileChannel fc, ByteBuf writeBuffer, int readCapacity, long unpersistedBytesBound)
+            throws IOException {
         super(fc, readCapacity);
-        this.writeCapacity = writeCapacity;
+        this.writeCapacity = writeBuffer.capacity();
         this.position = fc.position();
         this.writeBufferStartPosition.set(position);
-        this.writeBuffer = allocator.directBuffer(writeCapacity);
+        this.writeBuffer = writeBuffer;
         this.unpersistedBytes = new AtomicLong(0);
         this.unpersistedBytesBound = unpersistedBytesBound;
         this.doRegularFlushes = unpersistedBytesBound > 0;
@@ -315,6 +315,16 @@ public class DefaultEntryLogger implements EntryLogger {
     public DefaultEntryLogger(ServerConfiguration conf,
                               LedgerDirsManager ledgerDirsManager, EntryLogListener listener, StatsLogger statsLogger,
                               ByteBufAllocator allocator) throws IOException {
+        this(conf, ledgerDirsManager, listener, statsLogger, allocator, 1);
+    }
+
+    /**
+     * Create an EntryLogger writing an active entry log for each of {@code numLogStreams} streams, unless entry logs
+     * per ledger are enabled.
+     */
+    public DefaultEntryLogger(ServerConfiguration conf,
+                              LedgerDirsManager ledgerDirsManager, EntryLogListener listener, StatsLogger statsLogger,
+                              ByteBufAllocator allocator, int numLogStreams) throws IOException {
         //We reserve 500 bytes as overhead for the protocol.  This is not 100% accurate
         // but the protocol varies so an exact value is difficult to determine
         this.maxSaneEntrySize = conf.getNettyMaxFrameSizeBytes() - 500;
@@ -354,6 +364,9 @@ public class DefaultEntryLogger implements EntryLogger {
         if (entryLogPerLedgerEnabled) {
             this.entryLogManager = new EntryLogManagerForEntryLogPerLedger(conf, ledgerDirsManager,
                     entryLoggerAllocator, listeners, recentlyCreatedEntryLogsStatus, statsLogger);
+        } else if (numLogStreams > 1) {
+            this.entryLogManager = new EntryLogManagerForLogStreams(conf, ledgerDirsManager, entryLoggerAllocator,
+                    listeners, recentlyCreatedEntryLogsStatus, numLogStreams);
         } else {
             this.entryLogManager = new EntryLogManagerForSingleEntryLog(conf, ledgerDirsManager, entryLoggerAllocator,
                     listeners, recentlyCreatedEntryLogsStatus);
@@ -617,6 +630,14 @@ public class DefaultEntryLogger implements EntryLogger {
         return entryLogManager.addEntry(ledger, entry, true);
     }
 
+    @Override
+    public long addEntry(long ledger, ByteBuf entry, int logStream) throws IOException {
+        if (entryLogManager instanceof EntryLogManagerForLogStreams) {
+            return ((EntryLogManagerForLogStreams) entryLogManager).addEntry(ledger, entry, logStream, true);
+        }
+        return addEntry(ledger, entry);
+    }
+
     private final FastThreadLocal<ByteBuf> sizeBuffer = new FastThreadLocal<ByteBuf>() {
         @Override
         protected ByteBuf initialValue() throws Exception {
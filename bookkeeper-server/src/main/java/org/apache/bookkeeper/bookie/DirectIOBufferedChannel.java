@@ -0,0 +1,235 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BufferedChannel} that writes to the file with O_DIRECT, bypassing the page cache.
+ *
+ * <p>The write buffer is page aligned and every flush writes whole blocks at an aligned offset. The last
+ * partial block is padded with zeros on disk and kept at the beginning of the write buffer, so that it is
+ * rewritten, completed with the following data, by the next flush. Since the data is already on the device
+ * when the flush returns, {@link #forceWrite(boolean)} only has to issue a single fsync, and it is skipped
+ * altogether when nothing was written since the previous one.
+ *
+ * <p>Reads and the pre-allocation of the file still go through the regular {@link FileChannel}.
+ */
+class DirectIOBufferedChannel extends BufferedChannel {
+    private static final Logger LOG = LoggerFactory.getLogger(DirectIOBufferedChannel.class);
+
+    // Some devices can live with 512 alignment, but others require 4096
+    static final int ALIGNMENT = 4096;
+
+    // The native library cannot show up later, so it is only tried once
+    private static volatile boolean nativeIOAvailable = true;
+    // Each journal directory can be on a different filesystem, and only those that refused O_DIRECT fall back
+    private static final Set<String> directIOUnsupportedDirs = ConcurrentHashMap.newKeySet();
+
+    private final NativeIO nativeIO;
+    private final int fd;
+    private final String filename;
+    private final long bufferAddress;
+
+    // Number of bytes at the beginning of the write buffer that are already on the device
+    private int writtenBytesInBuffer;
+    // The position up to which the data was written on the device
+    private volatile long writtenPosition;
+    // The position up to which the data was synced by the last force write
+    private volatile long syncedPosition = -1;
+    private boolean closed = false;
+
+    private DirectIOBufferedChannel(FileChannel fc, ByteBuf writeBuffer, NativeIO nativeIO, int fd,
+                                    String filename) throws IOException {
+        super(fc, writeBuffer, writeBuffer.capacity(), 0L);
+        this.nativeIO = nativeIO;
+        this.fd = fd;
+        this.filename = filename;
+        this.bufferAddress = writeBuffer.memoryAddress();
+
+        // Start from the beginning of the block containing the current position, and load the data that
+        // precedes it (eg: the journal header), since it will be rewritten with the first block
+        long blockStart = alignDown(position);
+        int existingBytes = (int) (position - blockStart);
+        ByteBuffer existing = writeBuffer.internalNioBuffer(0, existingBytes);
+        while (existing.hasRemaining()) {
+            if (fc.read(existing, blockStart + existing.position()) < 0) {
+                throw new IOException("Unexpected end of file while reading the last block of " + filename);
+            }
+        }
+        writeBuffer.writerIndex(existingBytes);
+        this.writtenBytesInBuffer = existingBytes;
+        this.writeBufferStartPosition.set(blockStart);
+        this.writtenPosition = position;
+    }
+
+    /**
+     * Open a direct I/O channel on the file of the given file channel.
+     *
+     * @return the channel, or null if direct I/O is not supported, in which case the caller should fall back
+     *         to a regular {@link BufferedChannel}
+     */
+    static DirectIOBufferedChannel open(ByteBufAllocator allocator, FileChannel fc, File file, int capacity)
+            throws IOException {
+        return open(allocator, fc, file, capacity, new NativeIOImpl());
+    }
+
+    @VisibleForTesting
+    static DirectIOBufferedChannel open(ByteBufAllocator allocator, FileChannel fc, File file, int capacity,
+                                        NativeIO nativeIO) throws IOException {
+        String dir = file.getAbsoluteFile().getParent();
+        if (!nativeIOAvailable || directIOUnsupportedDirs.contains(dir)) {
+            return null;
+        }
+
+        int fd;
+        try {
+            fd = nativeIO.open(file.getPath(), NativeIO.O_WRONLY | NativeIO.O_DIRECT, 00644);
+        } catch (NativeIOException | LinkageError e) {
+            // Either the native library is not available or the filesystem doesn't support O_DIRECT
+            LOG.warn("Unable to open {} with O_DIRECT, falling back to buffered journal writes in {}: {}",
+                    file, dir, e.getMessage());
+            if (e instanceof LinkageError) {
+                nativeIOAvailable = false;
+            } else {
+                directIOUnsupportedDirs.add(dir);
+            }
+            return null;
+        }
+
+        ByteBuf writeBuffer = null;
+        try {
+            writeBuffer = allocateAligned(allocator, (int) alignUp(Math.max(capacity, ALIGNMENT)));
+            return new DirectIOBufferedChannel(fc, writeBuffer, nativeIO, fd, file.getPath());
+        } catch (IOException | RuntimeException e) {
+            if (writeBuffer != null) {
+                writeBuffer.release();
+            }
+            closeFd(nativeIO, fd, file.getPath());
+            throw e;
+        }
+    }
+
+    private static ByteBuf allocateAligned(ByteBufAllocator allocator, int size) throws IOException {
+        ByteBuf buf = allocator.directBuffer(size + ALIGNMENT);
+        if (!buf.hasMemoryAddress()) {
+            buf.release();
+            throw new IOException("Direct I/O requires buffers with a memory address");
+        }
+        long addr = buf.memoryAddress();
+        int alignOffset = (int) ((ALIGNMENT - (addr & (ALIGNMENT - 1))) & (ALIGNMENT - 1));
+        // The slice shares the reference count of the whole buffer
+        return buf.slice(alignOffset, size).clear();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        int length = writeBuffer.writerIndex();
+        if (length == writtenBytesInBuffer) {
+            return;
+        }
+
+        int alignedLength = (int) alignUp(length);
+        writeBuffer.setZero(length, alignedLength - length);
+        long offset = writeBufferStartPosition.get();
+        try {
+            int written = nativeIO.pwrite(fd, bufferAddress, alignedLength, offset);
+            if (written != alignedLength) {
+                throw new IOException("Incomplete write on " + filename + " at offset " + offset
+                        + ": " + written + "/" + alignedLength + " bytes written");
+            }
+        } catch (NativeIOException e) {
+            throw new IOException("Failed to write " + alignedLength + " bytes on " + filename
+                    + " at offset " + offset + ", errno: " + e.getErrno(), e);
+        }
+
+        // Keep the last partial block, it will be completed by the next flush
+        int tailStart = (int) alignDown(length);
+        int tailLength = length - tailStart;
+        if (tailStart > 0) {
+            writeBuffer.setBytes(0, writeBuffer, tailStart, tailLength);
+            writeBufferStartPosition.addAndGet(tailStart);
+        }
+        writeBuffer.writerIndex(tailLength);
+        writtenBytesInBuffer = tailLength;
+        writtenPosition = offset + length;
+    }
+
+    @Override
+    public long forceWrite(boolean forceMetadata) throws IOException {
+        long positionForceWrite = writtenPosition;
+        if (positionForceWrite == syncedPosition) {
+            // The data is already on the device and there is nothing new to sync
+            return positionForceWrite;
+        }
+
+        try {
+            nativeIO.fsync(fd);
+        } catch (NativeIOException e) {
+            throw new IOException("Failed to fsync " + filename + ", errno: " + e.getErrno(), e);
+        }
+        syncedPosition = positionForceWrite;
+        return positionForceWrite;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeFd(nativeIO, fd, filename);
+        } finally {
+            super.close();
+        }
+    }
+
+    private static void closeFd(NativeIO nativeIO, int fd, String filename) throws IOException {
+        try {
+            nativeIO.close(fd);
+        } catch (NativeIOException e) {
+            throw new IOException("Failed to close " + filename + ", errno: " + e.getErrno(), e);
+        }
+    }
+
+    static long alignUp(long position) {
+        return (position + ALIGNMENT - 1) & ~(long) (ALIGNMENT - 1);
+    }
+
+    static long alignDown(long position) {
+        return position & ~(long) (ALIGNMENT - 1);
+    }
+}
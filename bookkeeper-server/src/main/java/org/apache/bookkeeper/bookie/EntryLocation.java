@@ -28,11 +28,18 @@ public class EntryLocation {
     public final long ledger;
     public final long entry;
     public final long location;
+    // location the entry was copied from, 0 if unknown
+    public final long previousLocation;
 
     public EntryLocation(long ledger, long entry, long location) {
+        this(ledger, entry, location, 0L);
+    }
+
+    public EntryLocation(long ledger, long entry, long location, long previousLocation) {
         this.ledger = ledger;
         this.entry = entry;
         this.location = location;
+        this.previousLocation = previousLocation;
     }
 
     public long getLedger() {
@@ -47,6 +54,10 @@ public class EntryLocation {
         return location;
     }
 
+    public long getPreviousLocation() {
+        return previousLocation;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder().append("EntryLocation{")
@@ -99,8 +99,11 @@ public class EntryLogCompactor extends AbstractLogCompactor {
                     }
                     long entryId = entry.getLong(entry.readerIndex() + 8);
 
-                    long newoffset = entryLogger.addEntry(ledgerId, entry);
-                    offsets.add(new EntryLocation(ledgerId, entryId, newoffset));
+                    // the entries surviving a compaction are likely to be retained for a long time
+                    long newoffset = entryLogger.addEntry(ledgerId, entry, EntryLogger.COLD_LOG_STREAM);
+                    // the location of an entry points after its size
+                    long oldoffset = (meta.getEntryLogId() << 32L) | (offset + 4);
+                    offsets.add(new EntryLocation(ledgerId, entryId, newoffset, oldoffset));
 
                 }
             };
@@ -70,6 +70,11 @@ abstract class EntryLogManagerBase implements EntryLogManager {
     public long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException {
         int entrySize = entry.readableBytes() + 4; // Adding 4 bytes to prepend the size
         BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(ledger, entrySize, rollLog);
+        return addEntry(logChannel, ledger, entry);
+    }
+
+    long addEntry(BufferedLogChannel logChannel, long ledger, ByteBuf entry) throws IOException {
+        int entrySize = entry.readableBytes() + 4;
         ByteBuf sizeBuffer = sizeBufferForAdd.get();
         sizeBuffer.clear();
         sizeBuffer.writeInt(entry.readableBytes());
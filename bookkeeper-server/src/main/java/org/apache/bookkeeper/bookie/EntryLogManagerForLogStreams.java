@@ -0,0 +1,280 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.bookie.DefaultEntryLogger.BufferedLogChannel;
+import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.IOUtils;
+
+/**
+ * An {@link EntryLogManager} writing one active entry log per stream, so that the entries with different expected
+ * lifetimes are not interleaved in the same entry logs.
+ *
+ * <p>The methods of {@link EntryLogManagerBase} taking a ledger id take a stream instead.
+ */
+@Slf4j
+class EntryLogManagerForLogStreams extends EntryLogManagerBase {
+
+    // read without locking by the readers of the active entry logs
+    private final AtomicReferenceArray<BufferedLogChannel> activeLogChannels;
+    private final AtomicBoolean[] shouldCreateNewEntryLogs;
+    private final DefaultEntryLogger.RecentEntryLogsStatus recentlyCreatedEntryLogsStatus;
+
+    EntryLogManagerForLogStreams(ServerConfiguration conf, LedgerDirsManager ledgerDirsManager,
+            EntryLoggerAllocator entryLoggerAllocator, List<DefaultEntryLogger.EntryLogListener> listeners,
+            DefaultEntryLogger.RecentEntryLogsStatus recentlyCreatedEntryLogsStatus, int numLogStreams) {
+        super(conf, ledgerDirsManager, entryLoggerAllocator, listeners);
+        this.rotatedLogChannels = new LinkedList<BufferedLogChannel>();
+        this.recentlyCreatedEntryLogsStatus = recentlyCreatedEntryLogsStatus;
+        this.activeLogChannels = new AtomicReferenceArray<>(numLogStreams);
+        this.shouldCreateNewEntryLogs = new AtomicBoolean[numLogStreams];
+        for (int i = 0; i < numLogStreams; i++) {
+            shouldCreateNewEntryLogs[i] = new AtomicBoolean(false);
+        }
+        // Register listener for disk full notifications.
+        ledgerDirsManager.addLedgerDirsListener(getLedgerDirsListener());
+    }
+
+    private LedgerDirsListener getLedgerDirsListener() {
+        return new LedgerDirsListener() {
+            @Override
+            public void diskFull(File disk) {
+                // If the disk of an active entry log is full, then create a new entry log for its stream.
+                createNewLogsIn(disk);
+            }
+
+            @Override
+            public void diskAlmostFull(File disk) {
+                createNewLogsIn(disk);
+            }
+        };
+    }
+
+    private void createNewLogsIn(File disk) {
+        for (int i = 0; i < activeLogChannels.length(); i++) {
+            BufferedLogChannel activeLogChannel = activeLogChannels.get(i);
+            if (activeLogChannel != null && activeLogChannel.getLogFile().getParentFile().equals(disk)) {
+                shouldCreateNewEntryLogs[i].set(true);
+            }
+        }
+    }
+
+    private int streamIndex(long logStream) {
+        // the entries added without a stream go to the first one
+        return logStream >= 0 && logStream < activeLogChannels.length() ? (int) logStream : 0;
+    }
+
+    @Override
+    public synchronized long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException {
+        return addEntry(ledger, entry, 0, rollLog);
+    }
+
+    synchronized long addEntry(long ledger, ByteBuf entry, int logStream, boolean rollLog) throws IOException {
+        checkArgument(logStream >= 0 && logStream < activeLogChannels.length(), "Invalid log stream %s", logStream);
+        int entrySize = entry.readableBytes() + 4; // Adding 4 bytes to prepend the size
+        BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(logStream, entrySize, rollLog);
+        return addEntry(logChannel, ledger, entry);
+    }
+
+    @Override
+    synchronized BufferedLogChannel getCurrentLogForLedgerForAddEntry(long logStream, int entrySize,
+            boolean rollLog) throws IOException {
+        int idx = streamIndex(logStream);
+        BufferedLogChannel activeLogChannel = activeLogChannels.get(idx);
+        if (null == activeLogChannel) {
+            // log channel can be null because the file is deferred to be created
+            createNewLog(idx, "because the active log channel of stream " + idx + " has not initialized yet");
+            return activeLogChannels.get(idx);
+        }
+
+        boolean reachEntryLogLimit = rollLog ? reachEntryLogLimit(activeLogChannel, entrySize)
+                : readEntryLogHardLimit(activeLogChannel, entrySize);
+        // Create new log if logSizeLimit reached or current disk is full
+        boolean createNewLog = shouldCreateNewEntryLogs[idx].get();
+        if (createNewLog || reachEntryLogLimit) {
+            activeLogChannel.flushAndForceWriteIfRegularFlush(false);
+            createNewLog(idx, "for stream " + idx + ": createNewLog = " + createNewLog
+                    + ", reachEntryLogLimit = " + reachEntryLogLimit);
+            // Reset the flag
+            if (createNewLog) {
+                shouldCreateNewEntryLogs[idx].set(false);
+            }
+        }
+        return activeLogChannels.get(idx);
+    }
+
+    @Override
+    synchronized void createNewLog(long logStream) throws IOException {
+        super.createNewLog(streamIndex(logStream));
+    }
+
+    @Override
+    synchronized void createNewLog(long logStream, String reason) throws IOException {
+        super.createNewLog(streamIndex(logStream), reason);
+    }
+
+    @Override
+    public synchronized void setCurrentLogForLedgerAndAddToRotate(long logStream, BufferedLogChannel logChannel) {
+        BufferedLogChannel hasToRotateLogChannel = activeLogChannels.getAndSet(streamIndex(logStream), logChannel);
+        if (hasToRotateLogChannel != null) {
+            rotatedLogChannels.add(hasToRotateLogChannel);
+        }
+    }
+
+    @Override
+    public BufferedLogChannel getCurrentLogForLedger(long logStream) {
+        return activeLogChannels.get(streamIndex(logStream));
+    }
+
+    @Override
+    public BufferedLogChannel getCurrentLogIfPresent(long entryLogId) {
+        for (int i = 0; i < activeLogChannels.length(); i++) {
+            BufferedLogChannel activeLogChannel = activeLogChannels.get(i);
+            if (activeLogChannel != null && activeLogChannel.getLogId() == entryLogId) {
+                return activeLogChannel;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public File getDirForNextEntryLog(List<File> writableLedgerDirs) {
+        Collections.shuffle(writableLedgerDirs);
+        return writableLedgerDirs.get(0);
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        // the active entry logs of the streams filled slowly need to be flushed as well
+        flush();
+    }
+
+    private List<BufferedLogChannel> getCopyOfCurrentLogs() {
+        List<BufferedLogChannel> currentLogs = new ArrayList<>(activeLogChannels.length());
+        for (int i = 0; i < activeLogChannels.length(); i++) {
+            BufferedLogChannel activeLogChannel = activeLogChannels.get(i);
+            if (activeLogChannel != null) {
+                currentLogs.add(activeLogChannel);
+            }
+        }
+        return currentLogs;
+    }
+
+    @Override
+    public void flushCurrentLogs() throws IOException {
+        for (BufferedLogChannel activeLogChannel : getCopyOfCurrentLogs()) {
+            /**
+             * flushCurrentLogs method is called during checkpoint, so
+             * metadata of the file also should be force written.
+             */
+            flushLogChannel(activeLogChannel, true);
+        }
+    }
+
+    @Override
+    void flushRotatedLogs() throws IOException {
+        List<BufferedLogChannel> channels = null;
+        synchronized (this) {
+            channels = rotatedLogChannels;
+            rotatedLogChannels = new LinkedList<BufferedLogChannel>();
+        }
+        if (null == channels) {
+            return;
+        }
+        Iterator<BufferedLogChannel> chIter = channels.iterator();
+        while (chIter.hasNext()) {
+            BufferedLogChannel channel = chIter.next();
+            try {
+                channel.flushAndForceWrite(true);
+            } catch (IOException ioe) {
+                // rescue from flush exception, add unflushed channels back
+                synchronized (this) {
+                    if (null == rotatedLogChannels) {
+                        rotatedLogChannels = channels;
+                    } else {
+                        rotatedLogChannels.addAll(0, channels);
+                    }
+                }
+                throw ioe;
+            }
+            // remove the channel from the list after it is successfully flushed
+            chIter.remove();
+            // since this channel is only used for writing, after flushing the channel,
+            // we had to close the underlying file channel. Otherwise, we might end up
+            // leaking fds which cause the disk spaces could not be reclaimed.
+            channel.close();
+            recentlyCreatedEntryLogsStatus.flushRotatedEntryLog(channel.getLogId());
+            log.info("Synced entry logger {} to disk.", channel.getLogId());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (BufferedLogChannel activeLogChannel : getCopyOfCurrentLogs()) {
+            activeLogChannel.close();
+        }
+    }
+
+    @Override
+    public void forceClose() {
+        for (BufferedLogChannel activeLogChannel : getCopyOfCurrentLogs()) {
+            IOUtils.close(log, activeLogChannel);
+        }
+    }
+
+    @Override
+    public void prepareSortedLedgerStorageCheckpoint(long numBytesFlushed) throws IOException {
+        // the log streams are only written by the DbLedgerStorage, which flushes the entry logs on each checkpoint
+    }
+
+    @Override
+    public void prepareEntryMemTableFlush() {
+        // do nothing
+    }
+
+    @Override
+    public boolean commitEntryMemTableFlush() throws IOException {
+        return false;
+    }
+
+    @Override
+    public BufferedLogChannel createNewLogForCompaction() throws IOException {
+        BufferedLogChannel newLogForCompaction = entryLoggerAllocator.createNewLogForCompaction(
+                selectDirForNextEntryLog());
+        entryLoggerAllocator.setWritingCompactingLogId(newLogForCompaction.getLogId());
+        return newLogForCompaction;
+    }
+}
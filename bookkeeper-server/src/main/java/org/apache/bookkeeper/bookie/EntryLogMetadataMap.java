@@ -22,11 +22,18 @@
 package org.apache.bookkeeper.bookie;
 
 import java.io.Closeable;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 
 /**
  * Map-store to store Entrylogger metadata.
+ *
+ * <p>Implementations must be thread safe. When the garbage collector runs on gc workers (see
+ * {@link GarbageCollectorThread#setGcWorkers}), the compactors on the workers read the metadata of the entry log they
+ * compact and remove it once compacted, concurrently with each other. The calls for a given entry log are never
+ * concurrent.
  */
 public interface EntryLogMetadataMap extends Closeable {
 
@@ -65,6 +72,30 @@ public interface EntryLogMetadataMap extends Closeable {
      */
     void forKey(long entryLogId, BiConsumer<Long, EntryLogMetadata> action) throws EntryLogMetadataMapException;
 
+    /**
+     * Performs the given action for each entry log holding entries of at least one of the ledgers.
+     *
+     * <p>The default implementation goes through all the entry logs. A map indexing the entry logs
+     * of each ledger only reads the entry logs of the given ledgers.
+     *
+     * @param ledgerIds
+     * @param action
+     * @throws EntryLogMetadataMapException
+     */
+    default void forEachEntryLogOfLedgers(ConcurrentLongHashSet ledgerIds,
+                                          BiConsumer<Long, EntryLogMetadata> action)
+            throws EntryLogMetadataMapException {
+        Set<Long> ledgers = ledgerIds.items();
+        forEach((entryLogId, meta) -> {
+            for (long ledgerId : ledgers) {
+                if (meta.containsLedger(ledgerId)) {
+                    action.accept(entryLogId, meta);
+                    return;
+                }
+            }
+        });
+    }
+
     /**
      * Removes entryLogMetadata record from the map.
      *
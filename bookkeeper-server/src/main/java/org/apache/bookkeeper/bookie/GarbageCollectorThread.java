@@ -21,23 +21,34 @@
 
 package org.apache.bookkeeper.bookie;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.bookkeeper.util.BookKeeperConstants.METADATA_CACHE;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import lombok.Getter;
 import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
 import org.apache.bookkeeper.bookie.GarbageCollector.GarbageCleaner;
@@ -48,8 +59,10 @@ import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -97,14 +110,21 @@ public class GarbageCollectorThread implements Runnable {
     // Stats loggers for garbage collection operations
     private final GarbageCollectorStats gcStats;
 
-    private volatile long activeEntryLogSize;
-    private volatile long totalEntryLogSize;
-    private volatile int numActiveEntryLogs;
+    private final AtomicLong activeEntryLogSize = new AtomicLong(0L);
+    private final AtomicLong totalEntryLogSize = new AtomicLong(0L);
+    private final AtomicInteger numActiveEntryLogs = new AtomicInteger(0);
     private volatile double entryLogCompactRatio;
     private volatile int[] currentEntryLogUsageBuckets;
 
     final CompactableLedgerStorage ledgerStorage;
 
+    // Ledgers deleted from the ledger storage and not removed from the entry log metadata yet, so that a gc run
+    // only updates the metadata of the entry logs holding them
+    private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
+    // Whether the next gc run checks the existence of all the ledgers of all the entry logs, which is done on the
+    // first run, on the forced ones and after a failure to update the metadata
+    private boolean checkAllEntryLogLedgers = true;
+
     // flag to ensure gc thread will not be interrupted during compaction
     // to reduce the risk getting entry log corrupted
     final AtomicBoolean compacting = new AtomicBoolean(false);
@@ -131,6 +151,14 @@ public class GarbageCollectorThread implements Runnable {
     private static final AtomicLong threadNum = new AtomicLong(0);
     final AbstractLogCompactor.Throttler throttler;
 
+    final AbstractLogCompactor.LogRemovalListener logRemover;
+
+    // Workers shared with the garbage collectors of the other ledger directories, to extract the metadata of and to
+    // compact several entry logs at once. null to do it all in the garbage collector thread
+    private volatile ExecutorService gcWorkers = null;
+    // The compactors used on the workers, one per entry log compacted at once
+    private final List<AbstractLogCompactor> workerCompactors = new ArrayList<>();
+
     /**
      * Create a garbage collector thread.
      *
@@ -175,17 +203,14 @@ public class GarbageCollectorThread implements Runnable {
         this.ledgerStorage = ledgerStorage;
         this.gcWaitTime = conf.getGcWaitTime();
 
-        this.numActiveEntryLogs = 0;
-        this.activeEntryLogSize = 0L;
-        this.totalEntryLogSize = 0L;
         this.entryLogCompactRatio = 0.0;
         this.currentEntryLogUsageBuckets = new int[ENTRY_LOG_USAGE_SEGMENT_COUNT];
         this.garbageCollector = new ScanAndCompareGarbageCollector(ledgerManager, ledgerStorage, conf, statsLogger);
         this.gcStats = new GarbageCollectorStats(
             statsLogger,
-            () -> numActiveEntryLogs,
-            () -> activeEntryLogSize,
-            () -> totalEntryLogSize,
+            numActiveEntryLogs::get,
+            activeEntryLogSize::get,
+            totalEntryLogSize::get,
             () -> garbageCollector.getNumActiveLedgers(),
             () -> entryLogCompactRatio,
             () -> currentEntryLogUsageBuckets
@@ -198,6 +223,7 @@ public class GarbageCollectorThread implements Runnable {
                 }
                 gcStats.getDeletedLedgerCounter().inc();
                 ledgerStorage.deleteLedger(ledgerId);
+                deletedLedgers.add(ledgerId);
             } catch (IOException e) {
                 LOG.error("Exception when deleting the ledger index file on the Bookie: ", e);
             }
@@ -214,7 +240,7 @@ public class GarbageCollectorThread implements Runnable {
 
         boolean isForceAllowCompaction = conf.isForceAllowCompaction();
 
-        AbstractLogCompactor.LogRemovalListener remover = new AbstractLogCompactor.LogRemovalListener() {
+        this.logRemover = new AbstractLogCompactor.LogRemovalListener() {
             @Override
             public void removeEntryLog(long logToRemove) {
                 try {
@@ -227,11 +253,7 @@ public class GarbageCollectorThread implements Runnable {
                 }
             }
         };
-        if (conf.getUseTransactionalCompaction()) {
-            this.compactor = new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
-        } else {
-            this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
-        }
+        this.compactor = newCompactor();
 
         this.throttler = new AbstractLogCompactor.Throttler(conf);
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
@@ -285,6 +307,42 @@ public class GarbageCollectorThread implements Runnable {
         lastMinorCompactionTime = lastMajorCompactionTime = System.currentTimeMillis();
     }
 
+    private AbstractLogCompactor newCompactor() {
+        if (conf.getUseTransactionalCompaction()) {
+            return new TransactionalEntryLogCompactor(conf, entryLogger, ledgerStorage, logRemover);
+        } else {
+            return new EntryLogCompactor(conf, entryLogger, ledgerStorage, logRemover);
+        }
+    }
+
+    /**
+     * Extract the metadata of and compact several entry logs at once on workers. Must be called before the garbage
+     * collector is started.
+     *
+     * <p>The compactors running on the workers remove the compacted entry logs from the {@link EntryLogMetadataMap}
+     * through {@link #logRemover}, so the map is then accessed from several threads at once.
+     *
+     * @param gcWorkers
+     *          workers, shared with the garbage collectors of the other ledger directories
+     * @param parallelism
+     *          max number of entry logs scanned or compacted at once
+     * @param ioBudget
+     *          throttler shared with the garbage collectors of the other ledger directories
+     */
+    public synchronized void setGcWorkers(ExecutorService gcWorkers, int parallelism,
+                                          AbstractLogCompactor.Throttler ioBudget) {
+        checkArgument(parallelism > 0, "Invalid gc workers parallelism %s", parallelism);
+        throttler.setBudget(ioBudget);
+        compactor.throttler.setBudget(ioBudget);
+        workerCompactors.clear();
+        for (int i = 0; i < parallelism; i++) {
+            AbstractLogCompactor workerCompactor = newCompactor();
+            workerCompactor.throttler.setBudget(ioBudget);
+            workerCompactors.add(workerCompactor);
+        }
+        this.gcWorkers = gcWorkers;
+    }
+
     private EntryLogMetadataMap createEntryLogMetadataMap() throws IOException {
         if (conf.isGcEntryLogMetadataCacheEnabled()) {
             String baseDir = Strings.isNullOrEmpty(conf.getGcEntryLogMetadataCachePath())
@@ -432,7 +490,11 @@ public class GarbageCollectorThread implements Runnable {
                 extractMetaFromEntryLogs();
 
                 // gc entry logs
-                doGcEntryLogs();
+                if (force || checkAllEntryLogLedgers) {
+                    doGcEntryLogs();
+                } else {
+                    doGcEntryLogsOfDeletedLedgers();
+                }
                 gcStats.getExtractMetaRuntime()
                         .registerSuccessfulEvent(MathUtils.elapsedNanos(extractMetaStart), TimeUnit.NANOSECONDS);
             } catch (EntryLogMetadataMapException e) {
@@ -529,6 +591,9 @@ public class GarbageCollectorThread implements Runnable {
         // Get a cumulative count, don't update until complete
         AtomicLong activeEntryLogSizeAcc = new AtomicLong(0L);
         AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
+        // the existence of all the ledgers is checked, including the deleted ones
+        deletedLedgers.clear();
+        checkAllEntryLogLedgers = false;
 
         // Loop through all of the entry logs and remove the non-active ledgers.
         entryLogMetaMap.forEach((entryLogId, meta) -> {
@@ -553,13 +618,51 @@ public class GarbageCollectorThread implements Runnable {
                 // from entry-logger in this pass and will be taken care in next
                 // schedule task
                 LOG.warn("Failed to remove ledger from entry-log metadata {}", entryLogId, e);
+                checkAllEntryLogLedgers = true;
             }
             activeEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
             totalEntryLogSizeAcc.getAndAdd(meta.getTotalSize());
         });
-        this.activeEntryLogSize = activeEntryLogSizeAcc.get();
-        this.totalEntryLogSize = totalEntryLogSizeAcc.get();
-        this.numActiveEntryLogs = entryLogMetaMap.size();
+        this.activeEntryLogSize.set(activeEntryLogSizeAcc.get());
+        this.totalEntryLogSize.set(totalEntryLogSizeAcc.get());
+        this.numActiveEntryLogs.set(entryLogMetaMap.size());
+    }
+
+    /**
+     * Garbage collect the entry logs holding the ledgers deleted since the last gc run.
+     *
+     * <p>Only the metadata of these entry logs is read and updated, and the entry log sizes are updated from the
+     * changes made to it.
+     */
+    private void doGcEntryLogsOfDeletedLedgers() throws EntryLogMetadataMapException {
+        if (deletedLedgers.isEmpty()) {
+            return;
+        }
+        entryLogMetaMap.forEachEntryLogOfLedgers(deletedLedgers, (entryLogId, meta) -> {
+            long numLedgers = meta.getLedgersMap().size();
+            long remainingSize = meta.getRemainingSize();
+            meta.removeLedgerIf(deletedLedgers::contains);
+            activeEntryLogSize.addAndGet(meta.getRemainingSize() - remainingSize);
+            try {
+                if (meta.isEmpty()) {
+                    LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
+                    if (removeEntryLog(entryLogId)) {
+                        gcStats.getReclaimedSpaceViaDeletes().addCount(meta.getTotalSize());
+                        totalEntryLogSize.addAndGet(-meta.getTotalSize());
+                        numActiveEntryLogs.decrementAndGet();
+                    } else {
+                        gcStats.getReclaimFailedToDelete().inc();
+                    }
+                } else if (meta.getLedgersMap().size() != numLedgers) {
+                    entryLogMetaMap.put(entryLogId, meta);
+                }
+            } catch (EntryLogMetadataMapException e) {
+                // the deleted ledgers are forgotten, the existence of all the ledgers is checked on the next run
+                LOG.warn("Failed to remove ledger from entry-log metadata {}", entryLogId, e);
+                checkAllEntryLogLedgers = true;
+            }
+        });
+        deletedLedgers.clear();
     }
 
     private boolean removeIfLedgerNotExists(EntryLogMetadata meta) throws EntryLogMetadataMapException {
@@ -585,9 +688,12 @@ public class GarbageCollectorThread implements Runnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
      * Those entry log files whose remaining size percentage is higher than threshold
-     * would not be compacted.
+     * would not be compacted. The others are compacted by decreasing benefit, that is the
+     * space reclaimed per byte of I/O: compacting an entry log reads the whole file and
+     * copies its remaining entries, so it reclaims {@code total - remaining} bytes
+     * for {@code total + remaining} bytes of I/O. Entry logs with the same benefit are
+     * compacted by decreasing reclaimed space.
      * </p>
      */
     @VisibleForTesting
@@ -598,10 +704,7 @@ public class GarbageCollectorThread implements Runnable {
         int[] entryLogUsageBuckets = new int[numBuckets];
         int[] compactedBuckets = new int[numBuckets];
 
-        ArrayList<LinkedList<Long>> compactableBuckets = new ArrayList<>(numBuckets);
-        for (int i = 0; i < numBuckets; i++) {
-            compactableBuckets.add(new LinkedList<>());
-        }
+        List<CompactionCandidate> candidates = new ArrayList<>();
 
         long start = System.currentTimeMillis();
         MutableLong end = new MutableLong(start);
@@ -627,7 +730,8 @@ public class GarbageCollectorThread implements Runnable {
                 return;
             }
 
-            compactableBuckets.get(bucketIndex).add(meta.getEntryLogId());
+            candidates.add(new CompactionCandidate(meta.getEntryLogId(), meta.getTotalSize(),
+                    meta.getRemainingSize(), bucketIndex));
         });
         currentEntryLogUsageBuckets = entryLogUsageBuckets;
         gcStats.setEntryLogUsageBuckets(currentEntryLogUsageBuckets);
@@ -635,18 +739,42 @@ public class GarbageCollectorThread implements Runnable {
                 "Compaction: entry log usage buckets before compaction [10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
                 entryLogUsageBuckets);
 
-        final int maxBucket = calculateUsageIndex(numBuckets, threshold);
-        int totalEntryLogIds = 0;
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            totalEntryLogIds += compactableBuckets.get(currBucket).size();
-        }
+        candidates.sort(CompactionCandidate.BY_DECREASING_BENEFIT);
+        final int totalEntryLogIds = candidates.size();
         long lastPrintTimestamp = 0;
         AtomicInteger processedEntryLogCnt = new AtomicInteger(0);
+        MutableLong projectedReclaimedBytes = new MutableLong(0);
+        MutableLong reclaimedBytes = new MutableLong(0);
+
+        Consumer<CompactionOutcome> recordOutcome = outcome -> {
+            if (!outcome.attempted) {
+                return;
+            }
+            gcStats.getProjectedSpaceViaCompaction().addCount(outcome.projectedReclaimedBytes);
+            projectedReclaimedBytes.add(outcome.projectedReclaimedBytes);
+            if (outcome.reclaimedBytes >= 0) {
+                gcStats.getReclaimedSpaceViaCompaction().addCount(outcome.reclaimedBytes);
+                reclaimedBytes.add(outcome.reclaimedBytes);
+                // the compacted entry log is removed, its remaining entries are counted with the entry log they
+                // were copied to once it is extracted
+                activeEntryLogSize.addAndGet(-outcome.candidate.remainingSize);
+                totalEntryLogSize.addAndGet(-outcome.candidate.totalSize);
+                numActiveEntryLogs.decrementAndGet();
+            }
+            compactedBuckets[outcome.candidate.bucketIndex]++;
+            processedEntryLogCnt.getAndIncrement();
+        };
 
-        stopCompaction:
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            LinkedList<Long> entryLogIds = compactableBuckets.get(currBucket);
-            while (!entryLogIds.isEmpty()) {
+        // On the gc workers, the compactions run while the next entry logs are submitted, one per idle compactor.
+        // The compacting flag is held until they are all done, so that a shutdown waits for them
+        ExecutorService workers = gcWorkers;
+        boolean parallel = workers != null && compacting.compareAndSet(false, true);
+        CompletionService<CompactionOutcome> compactions = parallel ? new ExecutorCompletionService<>(workers) : null;
+        ArrayDeque<AbstractLogCompactor> idleCompactors = new ArrayDeque<>(workerCompactors);
+        int numInProgress = 0;
+        EntryLogMetadataMapException failure = null;
+        try {
+            for (CompactionCandidate candidate : candidates) {
                 if (timeDiff.getValue() < maxTimeMillis) {
                     end.setValue(System.currentTimeMillis());
                     timeDiff.setValue(end.getValue() - start);
@@ -655,36 +783,61 @@ public class GarbageCollectorThread implements Runnable {
                 if ((maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis) || !running) {
                     // We allow the usage limit calculation to continue so that we get an accurate
                     // report of where the usage was prior to running compaction.
-                    break stopCompaction;
+                    break;
                 }
 
-                final int bucketIndex = currBucket;
-                final long logId = entryLogIds.remove();
                 if (System.currentTimeMillis() - lastPrintTimestamp >= MINUTE) {
                     lastPrintTimestamp = System.currentTimeMillis();
                     LOG.info("Compaction progress {} / {}, current compaction entryLogId: {}",
-                        processedEntryLogCnt.get(), totalEntryLogIds, logId);
+                        processedEntryLogCnt.get(), totalEntryLogIds, candidate.entryLogId);
                 }
-                entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
-                    if (meta == null) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Metadata for entry log {} already deleted", logId);
-                        }
-                        return;
+
+                if (!parallel) {
+                    CompactionOutcome outcome = compactCandidate(candidate, null, threshold);
+                    if (outcome.exception != null) {
+                        throw outcome.exception;
                     }
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Compacting entry log {} with usage {} below threshold {}",
-                                meta.getEntryLogId(), meta.getUsage(), threshold);
+                    recordOutcome.accept(outcome);
+                    continue;
+                }
+
+                if (idleCompactors.isEmpty()) {
+                    CompactionOutcome outcome = takeResult(compactions);
+                    numInProgress--;
+                    idleCompactors.add(outcome.compactor);
+                    recordOutcome.accept(outcome);
+                    failure = outcome.exception;
+                    if (failure != null) {
+                        break;
                     }
+                }
+                AbstractLogCompactor workerCompactor = idleCompactors.poll();
+                try {
+                    compactions.submit(() -> compactCandidate(candidate, workerCompactor, threshold));
+                    numInProgress++;
+                } catch (RejectedExecutionException e) {
+                    // the gc workers are shut down with the ledger storage
+                    LOG.warn("Failed to submit the compaction of entry log {}", candidate.entryLogId, e);
+                    idleCompactors.add(workerCompactor);
+                    break;
+                }
+            }
 
-                    long priorRemainingSize = meta.getRemainingSize();
-                    compactEntryLog(meta);
-                    gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
-                    compactedBuckets[bucketIndex]++;
-                    processedEntryLogCnt.getAndIncrement();
-                });
+            for (; numInProgress > 0; numInProgress--) {
+                CompactionOutcome outcome = takeResult(compactions);
+                recordOutcome.accept(outcome);
+                if (failure == null) {
+                    failure = outcome.exception;
+                }
+            }
+        } finally {
+            if (parallel) {
+                compacting.set(false);
             }
         }
+        if (failure != null) {
+            throw failure;
+        }
 
         if (LOG.isDebugEnabled()) {
             if (!running) {
@@ -699,6 +852,126 @@ public class GarbageCollectorThread implements Runnable {
         this.entryLogCompactRatio = totalEntryLogNum == 0 ? 0 : (double) compactedEntryLogNum / totalEntryLogNum;
         LOG.info("Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}, compacted {}, "
                 + "compacted entry log ratio {}", entryLogUsageBuckets, compactedBuckets, entryLogCompactRatio);
+        LOG.info("Compaction: projected reclaimed space {} bytes, reclaimed space {} bytes",
+                projectedReclaimedBytes, reclaimedBytes);
+    }
+
+    /**
+     * An entry log picked for compaction.
+     */
+    @VisibleForTesting
+    static class CompactionCandidate {
+        // Higher benefit first, then more reclaimed space first
+        static final Comparator<CompactionCandidate> BY_DECREASING_BENEFIT =
+                Comparator.comparingDouble(CompactionCandidate::getBenefit)
+                        .thenComparingLong(CompactionCandidate::getReclaimableSize)
+                        .reversed();
+
+        final long entryLogId;
+        final long totalSize;
+        final long remainingSize;
+        final int bucketIndex;
+
+        CompactionCandidate(long entryLogId, long totalSize, long remainingSize, int bucketIndex) {
+            this.entryLogId = entryLogId;
+            this.totalSize = totalSize;
+            this.remainingSize = remainingSize;
+            this.bucketIndex = bucketIndex;
+        }
+
+        long getReclaimableSize() {
+            return Math.max(0, totalSize - remainingSize);
+        }
+
+        /**
+         * @return the space reclaimed per byte read and written by the compaction of the entry log
+         */
+        double getBenefit() {
+            long cost = totalSize + remainingSize;
+            return cost <= 0 ? 0 : (double) getReclaimableSize() / cost;
+        }
+    }
+
+    /**
+     * The outcome of the compaction of an entry log.
+     */
+    private static class CompactionOutcome {
+        final CompactionCandidate candidate;
+        // the compactor used on a gc worker, null in the garbage collector thread
+        final AbstractLogCompactor compactor;
+        // false if the metadata of the entry log was deleted before the compaction
+        boolean attempted = false;
+        long projectedReclaimedBytes = 0;
+        // -1 if the entry log was not compacted
+        long reclaimedBytes = -1;
+        EntryLogMetadataMapException exception = null;
+
+        CompactionOutcome(CompactionCandidate candidate, AbstractLogCompactor compactor) {
+            this.candidate = candidate;
+            this.compactor = compactor;
+        }
+    }
+
+    /**
+     * Compact an entry log picked for compaction.
+     *
+     * @param candidate the entry log to compact
+     * @param workerCompactor the compactor to use on a gc worker, null to compact in the garbage collector thread
+     * @param threshold the compaction threshold
+     */
+    private CompactionOutcome compactCandidate(CompactionCandidate candidate, AbstractLogCompactor workerCompactor,
+                                               double threshold) {
+        CompactionOutcome outcome = new CompactionOutcome(candidate, workerCompactor);
+        AbstractLogCompactor.Throttler copyThrottler = (workerCompactor != null ? workerCompactor : compactor).throttler;
+        try {
+            entryLogMetaMap.forKey(candidate.entryLogId, (entryLogId, meta) -> {
+                if (meta == null) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Metadata for entry log {} already deleted", entryLogId);
+                    }
+                    return;
+                }
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Compacting entry log {} with usage {} below threshold {}",
+                            meta.getEntryLogId(), meta.getUsage(), threshold);
+                }
+
+                outcome.attempted = true;
+                outcome.projectedReclaimedBytes = meta.getTotalSize() - meta.getRemainingSize();
+                long copiedBytesBefore = copyThrottler.getAcquiredBytes();
+                boolean compacted = workerCompactor != null
+                        ? compactEntryLog(workerCompactor, meta) : compactEntryLog(meta);
+                if (compacted) {
+                    // the entries copied by the compactor are the ones which were still alive when compacting
+                    long copiedBytes = copyThrottler.getAcquiredBytes() - copiedBytesBefore;
+                    outcome.reclaimedBytes = Math.max(0, meta.getTotalSize() - copiedBytes);
+                }
+            });
+        } catch (EntryLogMetadataMapException e) {
+            outcome.exception = e;
+        }
+        return outcome;
+    }
+
+    private static <T> T takeResult(CompletionService<T> completionService) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return Uninterruptibles.getUninterruptibly(completionService.take());
+                } catch (InterruptedException e) {
+                    // the tasks already submitted must complete before going on
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwables.throwIfUnchecked(e.getCause());
+                    throw new IllegalStateException("Unexpected failure of a gc worker task", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
@@ -714,6 +987,14 @@ public class GarbageCollectorThread implements Runnable {
                 (int) Math.floor(usage * numBuckets));
     }
 
+    /**
+     * Set the monitor of the load of the bookie, the compaction backs off while the bookie is busy.
+     */
+    public void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+        throttler.setLoadMonitor(loadMonitor);
+        compactor.throttler.setLoadMonitor(loadMonitor);
+    }
+
     /**
      * Shutdown the garbage collector thread.
      *
@@ -729,6 +1010,9 @@ public class GarbageCollectorThread implements Runnable {
 
         throttler.cancelledAcquire();
         compactor.throttler.cancelledAcquire();
+        for (AbstractLogCompactor workerCompactor : workerCompactors) {
+            workerCompactor.throttler.cancelledAcquire();
+        }
         while (!compacting.compareAndSet(false, true)) {
             // Wait till the thread stops compacting
             Thread.sleep(100);
@@ -765,8 +1049,9 @@ public class GarbageCollectorThread implements Runnable {
      * Compact an entry log.
      *
      * @param entryLogMeta
+     * @return true if the entry log was compacted
      */
-    protected void compactEntryLog(EntryLogMetadata entryLogMeta) {
+    protected boolean compactEntryLog(EntryLogMetadata entryLogMeta) {
         // Similar with Sync Thread
         // try to mark compacting flag to make sure it would not be interrupted
         // by shutdown during compaction. otherwise it will receive
@@ -775,67 +1060,134 @@ public class GarbageCollectorThread implements Runnable {
         if (!compacting.compareAndSet(false, true)) {
             // set compacting flag failed, means compacting is true now
             // indicates that compaction is in progress for this EntryLogId.
-            return;
+            return false;
         }
 
         try {
             // Do the actual compaction
-            compactor.compact(entryLogMeta);
-        } catch (Exception e) {
-            LOG.error("Failed to compact entry log {} due to unexpected error", entryLogMeta.getEntryLogId(), e);
+            return compactEntryLog(compactor, entryLogMeta);
         } finally {
             // Mark compaction done
             compacting.set(false);
         }
     }
 
+    private boolean compactEntryLog(AbstractLogCompactor compactor, EntryLogMetadata entryLogMeta) {
+        try {
+            return compactor.compact(entryLogMeta);
+        } catch (Exception e) {
+            LOG.error("Failed to compact entry log {} due to unexpected error", entryLogMeta.getEntryLogId(), e);
+            return false;
+        }
+    }
+
     /**
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
      *
+     * <p>With gc workers, several entry logs are read at once on the workers, and the entry log metadata map is
+     * updated in the garbage collector thread.
+     *
      * @throws EntryLogMetadataMapException
      */
     protected void extractMetaFromEntryLogs() throws EntryLogMetadataMapException {
-        for (long entryLogId : entryLogger.getFlushedLogIds()) {
-            // Comb the current entry log file if it has not already been extracted.
-            if (entryLogMetaMap.containsKey(entryLogId)) {
-                continue;
+        ExecutorService workers = gcWorkers;
+        if (workers == null) {
+            for (long entryLogId : entryLogger.getFlushedLogIds()) {
+                if (needsMetaExtraction(entryLogId)) {
+                    addEntryLogMetadata(entryLogId, extractEntryLogMetadata(entryLogId));
+                }
             }
+            return;
+        }
 
-            // check whether log file exists or not
-            // if it doesn't exist, this log file might have been garbage collected.
-            if (!entryLogger.logExists(entryLogId)) {
-                continue;
+        CompletionService<Pair<Long, EntryLogMetadata>> extractions = new ExecutorCompletionService<>(workers);
+        int parallelism = Math.max(1, workerCompactors.size());
+        int numInProgress = 0;
+        try {
+            for (long entryLogId : entryLogger.getFlushedLogIds()) {
+                if (!needsMetaExtraction(entryLogId)) {
+                    continue;
+                }
+                if (numInProgress >= parallelism) {
+                    Pair<Long, EntryLogMetadata> extracted = takeResult(extractions);
+                    numInProgress--;
+                    addEntryLogMetadata(extracted.getLeft(), extracted.getRight());
+                }
+                try {
+                    extractions.submit(() -> Pair.of(entryLogId, extractEntryLogMetadata(entryLogId)));
+                    numInProgress++;
+                } catch (RejectedExecutionException e) {
+                    // the gc workers are shut down with the ledger storage
+                    LOG.warn("Failed to submit the extraction of entry log {} meta", entryLogId, e);
+                    break;
+                }
             }
+        } finally {
+            // collect the extractions in progress, even after a failure, so that they do not overlap with the
+            // next ones
+            for (; numInProgress > 0; numInProgress--) {
+                Pair<Long, EntryLogMetadata> extracted = takeResult(extractions);
+                addEntryLogMetadata(extracted.getLeft(), extracted.getRight());
+            }
+        }
+    }
 
-            LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+    private boolean needsMetaExtraction(long entryLogId) throws EntryLogMetadataMapException {
+        // Comb the current entry log file if it has not already been extracted.
+        // check whether log file exists or not
+        // if it doesn't exist, this log file might have been garbage collected.
+        return !entryLogMetaMap.containsKey(entryLogId) && entryLogger.logExists(entryLogId);
+    }
 
-            try {
-                // Read through the entry log file and extract the entry log meta
-                EntryLogMetadata entryLogMeta = entryLogger.getEntryLogMetadata(entryLogId, throttler);
-                removeIfLedgerNotExists(entryLogMeta);
-                if (entryLogMeta.isEmpty()) {
-                    // This means the entry log is not associated with any active
-                    // ledgers anymore.
-                    // We can remove this entry log file now.
-                    LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
-                    if (removeEntryLog(entryLogId)) {
-                        gcStats.getReclaimedSpaceViaDeletes().addCount(entryLogMeta.getTotalSize());
-                    } else {
-                        gcStats.getReclaimFailedToDelete().inc();
-                    }
+    /**
+     * Read through the entry log file and extract the entry log meta.
+     *
+     * @return the entry log meta, or null if it could not be extracted
+     */
+    private EntryLogMetadata extractEntryLogMetadata(long entryLogId) {
+        LOG.info("Extracting entry log meta from entryLogId: {}", entryLogId);
+
+        try {
+            return entryLogger.getEntryLogMetadata(entryLogId, throttler);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Premature exception when processing {} recovery will take care of the problem",
+                    entryLogId, e);
+        } catch (OutOfMemoryError oome) {
+            // somewhat similar to https://github.com/apache/bookkeeper/pull/3901
+            // entrylog file can be corrupted but instead having a negative entry size
+            // it ends up with very large value for the entry size causing OODME
+            LOG.warn("OutOfMemoryError when processing {} - skipping the entry log", entryLogId, oome);
+        }
+        return null;
+    }
+
+    private void addEntryLogMetadata(long entryLogId, EntryLogMetadata entryLogMeta)
+            throws EntryLogMetadataMapException {
+        if (entryLogMeta == null) {
+            return;
+        }
+        try {
+            removeIfLedgerNotExists(entryLogMeta);
+            if (entryLogMeta.isEmpty()) {
+                // This means the entry log is not associated with any active
+                // ledgers anymore.
+                // We can remove this entry log file now.
+                LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
+                if (removeEntryLog(entryLogId)) {
+                    gcStats.getReclaimedSpaceViaDeletes().addCount(entryLogMeta.getTotalSize());
                 } else {
-                    entryLogMetaMap.put(entryLogId, entryLogMeta);
+                    gcStats.getReclaimFailedToDelete().inc();
                 }
-            } catch (IOException | RuntimeException e) {
-                LOG.warn("Premature exception when processing {} recovery will take care of the problem",
-                        entryLogId, e);
-            } catch (OutOfMemoryError oome) {
-                // somewhat similar to https://github.com/apache/bookkeeper/pull/3901
-                // entrylog file can be corrupted but instead having a negative entry size
-                // it ends up with very large value for the entry size causing OODME
-                LOG.warn("OutOfMemoryError when processing {} - skipping the entry log", entryLogId, oome);
+            } else {
+                entryLogMetaMap.put(entryLogId, entryLogMeta);
+                activeEntryLogSize.addAndGet(entryLogMeta.getRemainingSize());
+                totalEntryLogSize.addAndGet(entryLogMeta.getTotalSize());
+                numActiveEntryLogs.incrementAndGet();
             }
+        } catch (RuntimeException e) {
+            LOG.warn("Premature exception when processing {} recovery will take care of the problem",
+                    entryLogId, e);
         }
     }
 
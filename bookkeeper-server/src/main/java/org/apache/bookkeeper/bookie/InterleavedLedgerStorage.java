@@ -273,6 +273,11 @@ public class InterleavedLedgerStorage implements CompactableLedgerStorage, Entry
         gcThread.suspendMinorGC();
     }
 
+    @Override
+    public void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+        gcThread.setLoadMonitor(loadMonitor);
+    }
+
     public void suspendMajorGC() {
         gcThread.suspendMajorGC();
     }
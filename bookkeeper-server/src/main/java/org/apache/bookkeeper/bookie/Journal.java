@@ -541,8 +541,11 @@ public class Journal implements CheckpointSource {
             long fsyncStartTime = MathUtils.nowInNano();
             try {
                 lastRequest.flushFileToDisk();
-                journalStats.getJournalSyncStats().registerSuccessfulEvent(MathUtils.elapsedNanos(fsyncStartTime),
-                        TimeUnit.NANOSECONDS);
+                long fsyncLatency = MathUtils.elapsedNanos(fsyncStartTime);
+                journalStats.getJournalSyncStats().registerSuccessfulEvent(fsyncLatency, TimeUnit.NANOSECONDS);
+                if (groupCommitController != null) {
+                    groupCommitController.recordSyncLatency(fsyncLatency);
+                }
                 lastLogMark.setCurLogMark(lastRequest.logId, lastRequest.lastFlushedPosition);
             } catch (IOException ioe) {
                 journalStats.getJournalSyncStats()
@@ -609,6 +612,8 @@ public class Journal implements CheckpointSource {
     private final long bufferedWritesThreshold;
     // should we flush if the queue is empty
     private final boolean flushWhenQueueEmpty;
+    // adapts the grouping of the journal writes to the load, if enabled
+    private final JournalGroupCommitController groupCommitController;
     // should we hint the filesystem to remove pages from cache after force write
     private final boolean removePagesFromCache;
     private final int journalFormatVersionToWrite;
@@ -714,6 +719,14 @@ public class Journal implements CheckpointSource {
         // Expose Stats
         this.journalStats = new JournalStats(journalStatsLogger, journalMaxMemory,
                 () -> memoryLimitController.currentUsage());
+
+        if (conf.getJournalAdaptiveGroupCommit()) {
+            this.groupCommitController = new JournalGroupCommitController(
+                    TimeUnit.MICROSECONDS.toNanos(conf.getJournalGroupCommitTargetLatencyMicros()),
+                    maxGroupWaitInNanos, journalStats, MathUtils.nowInNano());
+        } else {
+            this.groupCommitController = null;
+        }
     }
 
     public Journal(int journalIndex, File journalDirectory, ServerConfiguration conf,
@@ -985,6 +998,10 @@ public class Journal implements CheckpointSource {
             long logId = journalIds.isEmpty() ? System.currentTimeMillis() : journalIds.get(journalIds.size() - 1);
             long lastFlushPosition = 0;
             boolean groupWhenTimeout = false;
+            // The grouping thresholds, updated after each flush when the group commit is adaptive
+            long groupWaitNanos = groupCommitController != null ? 0 : maxGroupWaitInNanos;
+            long entriesThreshold = groupCommitController != null ? 0 : bufferedEntriesThreshold;
+            boolean flushOnEmptyQueue = groupCommitController != null || flushWhenQueueEmpty;
 
             long dequeueStartTime = 0L;
             long lastFlushTimeMs = System.currentTimeMillis();
@@ -1031,9 +1048,9 @@ public class Journal implements CheckpointSource {
                     } else {
                         // There are already some entries pending. We must adjust
                         // the waiting time to the remaining groupWait time
-                        long pollWaitTimeNanos = maxGroupWaitInNanos
+                        long pollWaitTimeNanos = groupWaitNanos
                                 - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime);
-                        if (flushWhenQueueEmpty || pollWaitTimeNanos < 0) {
+                        if (flushOnEmptyQueue || pollWaitTimeNanos < 0) {
                             pollWaitTimeNanos = 0;
                         }
 
@@ -1044,6 +1061,9 @@ public class Journal implements CheckpointSource {
                     dequeueStartTime = MathUtils.nowInNano();
 
                     if (localQueueEntriesLen > 0) {
+                        if (groupCommitController != null) {
+                            groupCommitController.recordArrivals(localQueueEntriesLen);
+                        }
                         qe = localQueueEntries[localQueueEntriesIdx];
                         localQueueEntries[localQueueEntriesIdx++] = null;
                     }
@@ -1053,12 +1073,12 @@ public class Journal implements CheckpointSource {
                     boolean shouldFlush = false;
                     // We should issue a forceWrite if any of the three conditions below holds good
                     // 1. If the oldest pending entry has been pending for longer than the max wait time
-                    if (maxGroupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
-                            .elapsedNanos(toFlush.get(0).enqueueTime) > maxGroupWaitInNanos)) {
+                    if (groupWaitNanos > 0 && !groupWhenTimeout && (MathUtils
+                            .elapsedNanos(toFlush.get(0).enqueueTime) > groupWaitNanos)) {
                         groupWhenTimeout = true;
-                    } else if (maxGroupWaitInNanos > 0 && groupWhenTimeout
+                    } else if (groupWaitNanos > 0 && groupWhenTimeout
                         && (qe == null // no entry to group
-                            || MathUtils.elapsedNanos(qe.enqueueTime) < maxGroupWaitInNanos)) {
+                            || MathUtils.elapsedNanos(qe.enqueueTime) < groupWaitNanos)) {
                         // when group timeout, it would be better to look forward, as there might be lots of
                         // entries already timeout
                         // due to a previous slow write (writing to filesystem which impacted by force write).
@@ -1069,13 +1089,13 @@ public class Journal implements CheckpointSource {
                         shouldFlush = true;
                         journalStats.getFlushMaxWaitCounter().inc();
                     } else if (qe != null
-                            && ((bufferedEntriesThreshold > 0 && toFlush.size() > bufferedEntriesThreshold)
+                            && ((entriesThreshold > 0 && toFlush.size() > entriesThreshold)
                             || (bc.position() > lastFlushPosition + bufferedWritesThreshold))) {
                         // 2. If we have buffered more than the buffWriteThreshold or bufferedEntriesThreshold
                         groupWhenTimeout = false;
                         shouldFlush = true;
                         journalStats.getFlushMaxOutstandingBytesCounter().inc();
-                    } else if (qe == null && flushWhenQueueEmpty) {
+                    } else if (qe == null && flushOnEmptyQueue) {
                         // We should get here only if we flushWhenQueueEmpty is true else we would wait
                         // for timeout that would put is past the maxWait threshold
                         // 3. If the queue is empty i.e. no benefit of grouping. This happens when we have one
@@ -1150,6 +1170,12 @@ public class Journal implements CheckpointSource {
                         numEntriesToFlush = 0;
 
                         batchSize = 0L;
+                        if (groupCommitController != null) {
+                            groupCommitController.update(MathUtils.nowInNano());
+                            groupWaitNanos = groupCommitController.getGroupWaitNanos();
+                            entriesThreshold = groupCommitController.getBatchEntriesThreshold();
+                            flushOnEmptyQueue = groupWaitNanos <= 0;
+                        }
                         // check whether journal file is over file limit
                         if (shouldRolloverJournal) {
                             // if the journal file is rolled over, the journal file will be closed after last
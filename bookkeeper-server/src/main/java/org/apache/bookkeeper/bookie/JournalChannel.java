@@ -23,6 +23,7 @@ package org.apache.bookkeeper.bookie;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import io.netty.buffer.UnpooledByteBufAllocator;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -185,11 +186,11 @@ class JournalChannel implements Closeable {
             }
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
-            writeHeader(bcBuilder, writeBufferSize);
+            writeHeader(fn, bcBuilder, writeBufferSize);
         } else if (reuseFile) { // Open an existing journal to write, it needs fileChannelProvider support reuse file.
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
-            writeHeader(bcBuilder, writeBufferSize);
+            writeHeader(fn, bcBuilder, writeBufferSize);
         } else {  // open an existing file to read.
             fc = channel.getFileChannel();
             // readonly, use fileChannel directly, no need to use BufferedChannel
@@ -247,7 +248,7 @@ class JournalChannel implements Closeable {
         }
     }
 
-    private void writeHeader(Journal.BufferedChannelBuilder bcBuilder,
+    private void writeHeader(File fn, Journal.BufferedChannelBuilder bcBuilder,
                              int writeBufferSize) throws IOException {
         int headerSize = (V4 == formatVersion) ? VERSION_HEADER_SIZE : HEADER_SIZE;
         ByteBuffer bb = ByteBuffer.allocate(headerSize);
@@ -258,7 +259,12 @@ class JournalChannel implements Closeable {
         bb.clear();
         fc.write(bb);
 
-        bc = bcBuilder.create(fc, writeBufferSize);
+        if (configuration.getJournalDirectIO()) {
+            bc = DirectIOBufferedChannel.open(UnpooledByteBufAllocator.DEFAULT, fc, fn, writeBufferSize);
+        }
+        if (bc == null) {
+            bc = bcBuilder.create(fc, writeBufferSize);
+        }
         forceWrite(true);
         nextPrealloc = this.preAllocSize;
         fc.write(zeros, nextPrealloc - journalAlignSize);
@@ -322,7 +328,8 @@ class JournalChannel implements Closeable {
         // +------------------------+---------------------------O
         // lastDropPosition     newDropPos             lastForceWritePosition
         //
-        if (fRemoveFromPageCache) {
+        // Direct I/O writes don't go through the page cache, there is nothing to drop
+        if (fRemoveFromPageCache && !(bc instanceof DirectIOBufferedChannel)) {
             long newDropPos = newForceWritePosition - cacheDropLagBytes;
             if (lastDropPosition < newDropPos) {
                 PageCacheUtil.bestEffortRemoveFromPageCache(fd, lastDropPosition, newDropPos - lastDropPosition);
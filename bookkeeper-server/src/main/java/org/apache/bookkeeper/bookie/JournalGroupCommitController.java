@@ -0,0 +1,142 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.stats.JournalStats;
+
+/**
+ * Chooses how long the journal groups entries before flushing them, based on the observed fsync latency and
+ * entries arrival rate.
+ *
+ * <p>The fsync latency is tracked with a moving average and a moving mean deviation, and its high percentiles
+ * are estimated as {@code average + 4 * deviation}. On each flush the controller picks:
+ * <ul>
+ * <li>Under light load, when less than one entry is expected to arrive during an fsync, there is nothing to
+ * group with: the journal flushes as soon as its queue is empty.
+ * <li>Otherwise, the journal waits as long as the target add latency allows after accounting for the fsync,
+ * and flushes early once the number of entries expected to arrive during that wait has been buffered.
+ * </ul>
+ *
+ * <p>{@link #recordSyncLatency(long)} is called by the force write thread, all the other methods by the journal
+ * thread.
+ */
+class JournalGroupCommitController {
+
+    // Weight of the new samples in the moving averages
+    private static final double ALPHA = 0.125;
+    private static final double DEVIATION_ALPHA = 0.25;
+    private static final int DEVIATION_FACTOR = 4;
+    // Minimum time over which the arrival rate is sampled
+    private static final long MIN_RATE_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long targetLatencyNanos;
+    private final long maxGroupWaitNanos;
+    private final JournalStats journalStats;
+
+    private volatile double syncLatencyNanos = 0;
+    private volatile double syncLatencyDeviationNanos = 0;
+
+    // Entries per nanosecond
+    private double arrivalRate = 0;
+    private long arrivalsInSample = 0;
+    private long sampleStartNanos;
+
+    private long groupWaitNanos = 0;
+    private int batchEntriesThreshold = 0;
+
+    /**
+     * @param targetLatencyNanos the target latency of the adds in the journal, including the fsync
+     * @param maxGroupWaitNanos the max time to wait for grouping entries, or 0 for no limit other than the target
+     */
+    JournalGroupCommitController(long targetLatencyNanos, long maxGroupWaitNanos, JournalStats journalStats,
+                                 long nowNanos) {
+        checkArgument(targetLatencyNanos > 0, "The group commit target latency must be positive");
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.maxGroupWaitNanos = maxGroupWaitNanos > 0 ? Math.min(maxGroupWaitNanos, targetLatencyNanos)
+                : targetLatencyNanos;
+        this.journalStats = journalStats;
+        this.sampleStartNanos = nowNanos;
+    }
+
+    void recordSyncLatency(long latencyNanos) {
+        double average = syncLatencyNanos;
+        if (average == 0) {
+            syncLatencyNanos = latencyNanos;
+            syncLatencyDeviationNanos = latencyNanos / 2.0;
+            return;
+        }
+
+        syncLatencyDeviationNanos = (1 - DEVIATION_ALPHA) * syncLatencyDeviationNanos
+                + DEVIATION_ALPHA * Math.abs(latencyNanos - average);
+        syncLatencyNanos = (1 - ALPHA) * average + ALPHA * latencyNanos;
+    }
+
+    void recordArrivals(int count) {
+        arrivalsInSample += count;
+    }
+
+    /**
+     * Update the group commit decision, after a flush of the journal.
+     */
+    void update(long nowNanos) {
+        long elapsed = nowNanos - sampleStartNanos;
+        if (elapsed >= MIN_RATE_SAMPLE_NANOS) {
+            double rate = (double) arrivalsInSample / elapsed;
+            arrivalRate = arrivalRate == 0 ? rate : (1 - ALPHA) * arrivalRate + ALPHA * rate;
+            arrivalsInSample = 0;
+            sampleStartNanos = nowNanos;
+        }
+
+        double syncLatency = syncLatencyNanos;
+        if (arrivalRate * syncLatency < 1) {
+            // Light load, flush immediately
+            groupWaitNanos = 0;
+            batchEntriesThreshold = 0;
+        } else {
+            long syncEstimate = (long) (syncLatency + DEVIATION_FACTOR * syncLatencyDeviationNanos);
+            groupWaitNanos = Math.max(0, Math.min(maxGroupWaitNanos, targetLatencyNanos - syncEstimate));
+            batchEntriesThreshold = (int) Math.min(Integer.MAX_VALUE,
+                    Math.max(1, Math.ceil(arrivalRate * groupWaitNanos)));
+        }
+
+        journalStats.getGroupCommitWaitStats().registerSuccessfulEvent(groupWaitNanos, TimeUnit.NANOSECONDS);
+        journalStats.getGroupCommitBatchEntriesStats().registerSuccessfulValue(batchEntriesThreshold);
+    }
+
+    /**
+     * @return the max time the oldest entry is kept waiting for grouping, 0 to flush as soon as the queue is
+     *         empty
+     */
+    long getGroupWaitNanos() {
+        return groupWaitNanos;
+    }
+
+    /**
+     * @return the number of buffered entries that triggers a flush, 0 if there is no threshold
+     */
+    int getBatchEntriesThreshold() {
+        return batchEntriesThreshold;
+    }
+}
@@ -27,6 +27,7 @@ import java.util.Arrays;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import org.apache.bookkeeper.client.api.BKException;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -161,6 +162,12 @@ public class LedgerDescriptorImpl extends LedgerDescriptor {
         return ledgerStorage.getEntry(ledgerId, entryId);
     }
 
+    @Override
+    void readEntries(long firstEntryId, int maxCount, long maxSize, Predicate<ByteBuf> consumer)
+            throws IOException, BookieException {
+        ledgerStorage.getEntries(ledgerId, firstEntryId, maxCount, maxSize, consumer);
+    }
+
     @Override
     long getLastAddConfirmed() throws IOException, BookieException {
         return ledgerStorage.getLastAddConfirmed(ledgerId);
@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.PrimitiveIterator;
+import java.util.function.Predicate;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.common.util.Watcher;
 import org.apache.bookkeeper.conf.ServerConfiguration;
@@ -144,6 +145,35 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Read a range of consecutive entries from storage, starting from {@code firstEntryId}.
+     *
+     * <p>The entries are passed one by one to the consumer, which takes ownership of them. The read stops after
+     * {@code maxCount} entries, when the consumer returns false or when an entry cannot be read. The consumer is
+     * expected to return false once the entries add up to {@code maxSize} bytes, the storage only uses it to avoid
+     * looking up more entries than will be read. An exception is only thrown if the first entry cannot be read.
+     */
+    default void getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize,
+                            Predicate<ByteBuf> consumer)
+            throws IOException, BookieException {
+        if (!consumer.test(getEntry(ledgerId, firstEntryId))) {
+            return;
+        }
+
+        for (int i = 1; i < maxCount; i++) {
+            ByteBuf entry;
+            try {
+                entry = getEntry(ledgerId, firstEntryId + i);
+            } catch (IOException | BookieException e) {
+                return;
+            }
+
+            if (!consumer.test(entry)) {
+                return;
+            }
+        }
+    }
+
     /**
      * Get last add confirmed.
      *
@@ -252,6 +282,13 @@ public interface LedgerStorage {
         return;
     }
 
+    /**
+     * Set the monitor of the load of the bookie, the background compaction backs off while the bookie is busy.
+     */
+    default void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+        return;
+    }
+
     default boolean isMajorGcSuspended() {
         return false;
     }
@@ -381,6 +381,11 @@ public class SortedLedgerStorage
         interleavedLedgerStorage.suspendMinorGC();
     }
 
+    @Override
+    public void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+        interleavedLedgerStorage.setLoadMonitor(loadMonitor);
+    }
+
     @Override
     public void suspendMajorGC() {
         interleavedLedgerStorage.suspendMajorGC();
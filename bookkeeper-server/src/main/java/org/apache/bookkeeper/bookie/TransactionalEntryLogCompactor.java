@@ -181,7 +181,9 @@ public class TransactionalEntryLogCompactor extends AbstractLogCompactor {
                             throw new IOException("Invalid entry found @ offset " + offset);
                         }
                         long newOffset = compactionLog.addEntry(ledgerId, entry);
-                        offsets.add(new EntryLocation(ledgerId, entryId, newOffset));
+                        // the location of an entry points after its size
+                        long oldOffset = (metadata.getEntryLogId() << 32L) | (offset + 4);
+                        offsets.add(new EntryLocation(ledgerId, entryId, newOffset, oldOffset));
 
                         if (LOG.isDebugEnabled()) {
                             LOG.debug("Compact add entry : lid = {}, eid = {}, offset = {}",
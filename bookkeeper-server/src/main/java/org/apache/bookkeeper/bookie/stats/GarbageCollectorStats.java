@@ -32,6 +32,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.EXTRACT_META_RU
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GC_LEDGER_RUNTIME;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MAJOR_COMPACTION_COUNT;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.MINOR_COMPACTION_COUNT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.PROJECTED_COMPACTION_SPACE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIMED_COMPACTION_SPACE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIMED_DELETION_SPACE_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.RECLAIM_FAILED_TO_DELETE;
@@ -77,6 +78,11 @@ public class GarbageCollectorStats {
         help = "Number of disk space bytes reclaimed via compacting entry log files"
     )
     private final Counter reclaimedSpaceViaCompaction;
+    @StatsDoc(
+        name = PROJECTED_COMPACTION_SPACE_BYTES,
+        help = "Number of disk space bytes expected to be reclaimed by the entry log files picked for compaction"
+    )
+    private final Counter projectedSpaceViaCompaction;
     @StatsDoc(
             name = RECLAIM_FAILED_TO_DELETE,
             help = "Number of reclaim failed counts when deleting entry log files"
@@ -148,6 +154,7 @@ public class GarbageCollectorStats {
         this.minorCompactionCounter = statsLogger.getCounter(MINOR_COMPACTION_COUNT);
         this.majorCompactionCounter = statsLogger.getCounter(MAJOR_COMPACTION_COUNT);
         this.reclaimedSpaceViaCompaction = statsLogger.getCounter(RECLAIMED_COMPACTION_SPACE_BYTES);
+        this.projectedSpaceViaCompaction = statsLogger.getCounter(PROJECTED_COMPACTION_SPACE_BYTES);
         this.reclaimedSpaceViaDeletes = statsLogger.getCounter(RECLAIMED_DELETION_SPACE_BYTES);
         this.reclaimFailedToDelete = statsLogger.getCounter(RECLAIM_FAILED_TO_DELETE);
         this.gcThreadRuntime = statsLogger.getOpStatsLogger(THREAD_RUNTIME);
@@ -40,6 +40,10 @@ public interface EntryLogger extends AutoCloseable {
     long UNASSIGNED_LEDGERID = -1L;
     // log file suffix
     String LOG_FILE_SUFFIX = ".log";
+    // stream of the entries expected to be deleted soon
+    int HOT_LOG_STREAM = 0;
+    // stream of the entries expected to be retained for a long time
+    int COLD_LOG_STREAM = 1;
 
     /**
      * Add an entry for ledger ```ledgerId``` to the entrylog.
@@ -49,6 +53,19 @@ public interface EntryLogger extends AutoCloseable {
      */
     long addEntry(long ledgerId, ByteBuf buf) throws IOException;
 
+    /**
+     * Add an entry for ledger ```ledgerId``` to the entry log of a stream, so that the entries
+     * expected to be deleted around the same time end up in the same entry logs.
+     * The entry loggers writing a single entry log at a time ignore the stream.
+     * @param ledgerId the ledger for which the entry is being added
+     * @param buf the contents of the entry (this method does not take ownership of the refcount)
+     * @param logStream {@link #HOT_LOG_STREAM} or {@link #COLD_LOG_STREAM}
+     * @return the location in the entry log of the added entry
+     */
+    default long addEntry(long ledgerId, ByteBuf buf, int logStream) throws IOException {
+        return addEntry(ledgerId, buf);
+    }
+
     /**
      * Read an entry from an entrylog location.
      * @param entryLocation the location from which to read the entry
@@ -0,0 +1,75 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * Classify the ledgers between the hot ones, expected to be deleted soon, and the cold ones, expected to be retained
+ * for a long time, from their retention observed on the bookie.
+ *
+ * <p>A ledger is cold once it outlived both a minimum age and the average lifetime of the ledgers deleted so far. The
+ * age of a ledger is counted from the first flush of its entries since the bookie started.
+ */
+class ColdLedgerClassifier {
+
+    // weight of the lifetime of the last deleted ledger in the average lifetime
+    private static final int LIFETIME_AVERAGE_WINDOW = 16;
+
+    private final long minColdAgeMillis;
+    private final ConcurrentLongLongHashMap firstFlushTimes = ConcurrentLongLongHashMap.newBuilder().build();
+    // -1 until a ledger is deleted
+    private final AtomicLong averageLifetimeMillis = new AtomicLong(-1);
+
+    ColdLedgerClassifier(long minColdAgeMillis) {
+        this.minColdAgeMillis = minColdAgeMillis;
+    }
+
+    /**
+     * @return the entry log stream for the entries of a ledger flushed at {@code nowMillis}
+     */
+    int getLogStream(long ledgerId, long nowMillis) {
+        long firstFlushTime = firstFlushTimes.putIfAbsent(ledgerId, nowMillis);
+        if (firstFlushTime < 0) {
+            return EntryLogger.HOT_LOG_STREAM;
+        }
+        long age = nowMillis - firstFlushTime;
+        return age >= Math.max(minColdAgeMillis, averageLifetimeMillis.get())
+                ? EntryLogger.COLD_LOG_STREAM : EntryLogger.HOT_LOG_STREAM;
+    }
+
+    void ledgerDeleted(long ledgerId, long nowMillis) {
+        long firstFlushTime = firstFlushTimes.remove(ledgerId);
+        if (firstFlushTime < 0) {
+            // not flushed since the bookie started
+            return;
+        }
+        long lifetime = Math.max(0, nowMillis - firstFlushTime);
+        averageLifetimeMillis.updateAndGet(average -> average < 0
+                ? lifetime : average + (lifetime - average) / LIFETIME_AVERAGE_WINDOW);
+    }
+
+    long getAverageLifetimeMillis() {
+        return averageLifetimeMillis.get();
+    }
+}
@@ -41,9 +41,12 @@ import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.bookie.AbstractLogCompactor;
 import org.apache.bookkeeper.bookie.BookieException;
+import org.apache.bookkeeper.bookie.BookieLoadMonitor;
 import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
@@ -94,6 +97,9 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
 
+    // Size of the write cache region reserved by each writer thread. 0 disables per-thread append regions
+    static final String WRITE_CACHE_APPEND_REGION_SIZE_KB = "dbStorage_writeCacheAppendRegionSizeKb";
+
     private static final int MB = 1024 * 1024;
 
     private static final long DEFAULT_WRITE_CACHE_MAX_SIZE_MB =
@@ -101,8 +107,42 @@ public class DbLedgerStorage implements LedgerStorage {
     private static final long DEFAULT_READ_CACHE_MAX_SIZE_MB =
         (long) (0.25 * PlatformDependent.estimateMaxDirectMemory()) / MB;
 
+    // Number of threads sorting the write cache and updating the locations index in parallel with the entry log
+    // writes during a flush. 0 does the whole flush in the flushing thread
+    static final String FLUSH_WORKER_THREADS = "dbStorage_flushWorkerThreads";
+
+    // Number of threads shared by the garbage collectors of all the directories, to extract the metadata of and to
+    // compact several entry logs at once, within a compaction rate for the whole bookie. 0 collects each directory
+    // in its garbage collector thread
+    static final String GC_WORKER_THREADS = "dbStorage_gcWorkerThreads";
+
+    // Max number of recently flushed entry locations kept in memory, for each ledger directory. 0 disables the cache
+    static final String LOCATION_CACHE_MAX_ENTRIES = "dbStorage_locationCacheMaxEntries";
+
+    // Record the entries copied by the compaction as relocations of ranges of the compacted entry logs, resolved on
+    // lookup, instead of updating the location of each entry in the locations index
+    static final String RELOCATE_COMPACTED_ENTRIES = "dbStorage_relocateCompactedEntries";
+    // Number of compacted entry logs with relocations after which the relocations are folded into the locations index
+    static final String RELOCATIONS_FOLD_THRESHOLD = "dbStorage_relocationsFoldThreshold";
+    static final long DEFAULT_RELOCATIONS_FOLD_THRESHOLD = 64;
+
+    // Write the entries of the ledgers expected to be retained for a long time and the entries of the other ledgers
+    // into separate entry logs. Only supported by the default entry logger
+    static final String SEGREGATE_COLD_LEDGERS = "dbStorage_segregateColdLedgers";
+    // Minimum age of a ledger on the bookie before its entries are written into the entry logs of the cold ledgers
+    static final String COLD_LEDGER_MIN_AGE_SECONDS = "dbStorage_coldLedgerMinAgeSeconds";
+    static final long DEFAULT_COLD_LEDGER_MIN_AGE_SECONDS = 3600;
+
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
+    static final String READ_AHEAD_CACHE_ADAPTIVE_ENABLED = "dbStorage_readAheadCacheAdaptiveEnabled";
+    static final String READ_AHEAD_CACHE_MAX_BATCH_SIZE = "dbStorage_readAheadCacheMaxBatchSize";
+    static final String READ_AHEAD_ASYNC_THREADS = "dbStorage_readAheadAsyncThreads";
+    static final String READ_AHEAD_ASYNC_MAX_PENDING = "dbStorage_readAheadAsyncMaxPending";
+    static final String READ_AHEAD_CACHE_PROMOTE_HOT_ENTRIES = "dbStorage_readAheadCachePromoteHotEntries";
     static final String READ_AHEAD_CACHE_BATCH_BYTES_SIZE = "dbStorage_readAheadCacheBatchBytesSize";
+    // Whether the read-ahead looks up the locations of the next entries in the index when they are not stored right
+    // after the ones read, instead of stopping there
+    static final String READ_AHEAD_INDEX_LOOKUP_ENABLED = "dbStorage_readAheadIndexLookupEnabled";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
     // the default value is -1. this feature(limit of read ahead bytes) is disabled
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE = -1;
@@ -127,6 +167,9 @@ public class DbLedgerStorage implements LedgerStorage {
     private ExecutorService entryLoggerWriteExecutor = null;
     private ExecutorService entryLoggerFlushExecutor = null;
 
+    private ExecutorService gcWorkersExecutor = null;
+    private AbstractLogCompactor.Throttler gcIoBudget = null;
+
     protected ByteBufAllocator allocator;
 
     // parent DbLedgerStorage stats (not per directory)
@@ -154,6 +197,7 @@ public class DbLedgerStorage implements LedgerStorage {
         long readCacheMaxSize = getLongVariableOrDefault(conf, READ_AHEAD_CACHE_MAX_SIZE_MB,
                 DEFAULT_READ_CACHE_MAX_SIZE_MB) * MB;
         boolean directIOEntryLogger = getBooleanVariableOrDefault(conf, DIRECT_IO_ENTRYLOGGER, false);
+        boolean segregateColdLedgers = getBooleanVariableOrDefault(conf, SEGREGATE_COLD_LEDGERS, false);
 
         this.allocator = allocator;
         this.numberOfDirs = ledgerDirsManager.getAllLedgerDirs().size();
@@ -162,6 +206,13 @@ public class DbLedgerStorage implements LedgerStorage {
         log.info(" - Number of directories: {}", numberOfDirs);
         log.info(" - Write cache size: {} MB", writeCacheMaxSize / MB);
         log.info(" - Read Cache: {} MB", readCacheMaxSize / MB);
+        if (segregateColdLedgers) {
+            if (directIOEntryLogger) {
+                log.warn(" - Cold ledgers are not segregated by the direct IO entry logger");
+            } else {
+                log.info(" - Segregate cold ledgers");
+            }
+        }
 
         if (readCacheMaxSize + writeCacheMaxSize > PlatformDependent.estimateMaxDirectMemory()) {
             throw new IOException("Read and write cache sizes exceed the configured max direct memory size");
@@ -236,7 +287,8 @@ public class DbLedgerStorage implements LedgerStorage {
                     maxFdCacheTimeSeconds,
                     slog, statsLogger);
             } else {
-                entrylogger = new DefaultEntryLogger(conf, ldm, null, statsLogger, allocator);
+                entrylogger = new DefaultEntryLogger(conf, ldm, null, statsLogger, allocator,
+                        segregateColdLedgers ? 2 : 1);
             }
             ledgerStorageList.add(newSingleDirectoryDbLedgerStorage(conf, ledgerManager, ldm,
                 idm, entrylogger,
@@ -249,6 +301,17 @@ public class DbLedgerStorage implements LedgerStorage {
             }
         }
 
+        int gcWorkerThreads = (int) getLongVariableOrDefault(conf, GC_WORKER_THREADS, 0);
+        if (gcWorkerThreads > 0) {
+            log.info(" - GC worker threads: {}", gcWorkerThreads);
+            gcWorkersExecutor = Executors.newFixedThreadPool(gcWorkerThreads,
+                    new DefaultThreadFactory("db-storage-gc-worker"));
+            gcIoBudget = new AbstractLogCompactor.Throttler(conf);
+            for (SingleDirectoryDbLedgerStorage ls : ledgerStorageList) {
+                ls.setGcWorkers(gcWorkersExecutor, gcWorkerThreads, gcIoBudget);
+            }
+        }
+
         // parent DbLedgerStorage stats (not per directory)
         readaheadBatchSizeGauge = new Gauge<Integer>() {
             @Override
@@ -318,6 +381,9 @@ public class DbLedgerStorage implements LedgerStorage {
         if (entryLoggerFlushExecutor != null) {
             entryLoggerFlushExecutor.shutdown();
         }
+        if (gcWorkersExecutor != null) {
+            gcWorkersExecutor.shutdown();
+        }
     }
 
     @Override
@@ -361,6 +427,12 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public void getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize,
+                           Predicate<ByteBuf> consumer) throws IOException, BookieException {
+        getLedgerStorage(ledgerId).getEntries(ledgerId, firstEntryId, maxCount, maxSize, consumer);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         return getLedgerStorage(ledgerId).getLastAddConfirmed(ledgerId);
@@ -525,6 +597,14 @@ public class DbLedgerStorage implements LedgerStorage {
         ledgerStorageList.stream().forEach(SingleDirectoryDbLedgerStorage::suspendMinorGC);
     }
 
+    @Override
+    public void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+        ledgerStorageList.stream().forEach(s -> s.setLoadMonitor(loadMonitor));
+        if (gcIoBudget != null) {
+            gcIoBudget.setLoadMonitor(loadMonitor);
+        }
+    }
+
     @Override
     public void suspendMajorGC() {
         ledgerStorageList.stream().forEach(SingleDirectoryDbLedgerStorage::suspendMajorGC);
@@ -24,8 +24,12 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_READ_ENT
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.function.Supplier;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.apache.bookkeeper.bookie.storage.ldb.ReadAheadController.AccessPattern;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -52,9 +56,15 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_MISSES = "write-cache-misses";
     private static final String READ_CACHE_HITS = "read-cache-hits";
     private static final String READ_CACHE_MISSES = "read-cache-misses";
+    private static final String READ_CACHE_PATTERN_HITS = "read-cache-pattern-hits";
+    private static final String READ_CACHE_PATTERN_MISSES = "read-cache-pattern-misses";
+    private static final String PATTERN_LABEL = "pattern";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
     private static final String READAHEAD_TIME = "readahead-time";
+    private static final String READAHEAD_SKIPPED = "readahead-skipped";
+    private static final String READAHEAD_MERGED = "readahead-merged";
+    private static final String READAHEAD_REJECTED = "readahead-rejected";
     private static final String FLUSH = "flush";
     private static final String FLUSH_ENTRYLOG = "flush-entrylog";
     private static final String FLUSH_LOCATIONS_INDEX = "flush-locations-index";
@@ -70,6 +80,7 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
+    static final String READ_CACHE_PROMOTIONS = "read-cache-promotions";
 
     @StatsDoc(
         name = ADD_ENTRY,
@@ -119,6 +130,20 @@ class DbLedgerStorageStats {
         parent = READ_ENTRY
     )
     private final Counter readCacheMissCounter;
+    @StatsDoc(
+        name = READ_CACHE_PATTERN_HITS,
+        help = "number of read cache hits, by access pattern detected by the adaptive read-ahead",
+        parent = READ_ENTRY
+    )
+    @Getter(AccessLevel.NONE)
+    private final Map<AccessPattern, Counter> readCachePatternHitCounters = new EnumMap<>(AccessPattern.class);
+    @StatsDoc(
+        name = READ_CACHE_PATTERN_MISSES,
+        help = "number of read cache misses, by access pattern detected by the adaptive read-ahead",
+        parent = READ_ENTRY
+    )
+    @Getter(AccessLevel.NONE)
+    private final Map<AccessPattern, Counter> readCachePatternMissCounters = new EnumMap<>(AccessPattern.class);
     @StatsDoc(
         name = READAHEAD_BATCH_COUNT,
         help = "the distribution of num of entries to read in one readahead batch"
@@ -134,6 +159,21 @@ class DbLedgerStorageStats {
             help = "Time spent on readahead operations"
     )
     private final Counter readAheadTime;
+    @StatsDoc(
+            name = READAHEAD_SKIPPED,
+            help = "number of read cache misses where readahead was skipped because the ledger is read randomly"
+    )
+    private final Counter readAheadSkippedCounter;
+    @StatsDoc(
+            name = READAHEAD_MERGED,
+            help = "number of background readahead operations not scheduled because one was pending for the same range"
+    )
+    private final Counter readAheadMergedCounter;
+    @StatsDoc(
+            name = READAHEAD_REJECTED,
+            help = "number of background readahead operations dropped because too many were pending"
+    )
+    private final Counter readAheadRejectedCounter;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -195,23 +235,37 @@ class DbLedgerStorageStats {
         help = "Current number of entries in read cache"
     )
     private final Gauge<Long> readCacheCountGauge;
+    @StatsDoc(
+        name = READ_CACHE_PROMOTIONS,
+        help = "Total number of read cache entries kept on segment rotation because they were recently read"
+    )
+    private final Counter readCachePromotionsCounter;
 
     DbLedgerStorageStats(StatsLogger stats,
                          Supplier<Long> writeCacheSizeSupplier,
                          Supplier<Long> writeCacheCountSupplier,
                          Supplier<Long> readCacheSizeSupplier,
-                         Supplier<Long> readCacheCountSupplier) {
+                         Supplier<Long> readCacheCountSupplier,
+                         Counter readCachePromotionsCounter) {
         addEntryStats = stats.getThreadScopedOpStatsLogger(ADD_ENTRY);
         readEntryStats = stats.getThreadScopedOpStatsLogger(READ_ENTRY);
         readFromLocationIndexTime = stats.getThreadScopedCounter(READ_ENTRY_LOCATIONS_INDEX_TIME);
         readFromEntryLogTime = stats.getThreadScopedCounter(READ_ENTRYLOG_TIME);
         readCacheHitCounter = stats.getCounter(READ_CACHE_HITS);
         readCacheMissCounter = stats.getCounter(READ_CACHE_MISSES);
+        for (AccessPattern pattern : AccessPattern.values()) {
+            StatsLogger patternStats = stats.scopeLabel(PATTERN_LABEL, pattern.name().toLowerCase());
+            readCachePatternHitCounters.put(pattern, patternStats.getCounter(READ_CACHE_PATTERN_HITS));
+            readCachePatternMissCounters.put(pattern, patternStats.getCounter(READ_CACHE_PATTERN_MISSES));
+        }
         writeCacheHitCounter = stats.getCounter(WRITE_CACHE_HITS);
         writeCacheMissCounter = stats.getCounter(WRITE_CACHE_MISSES);
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
         readAheadBatchSizeStats = stats.getOpStatsLogger(READAHEAD_BATCH_SIZE);
         readAheadTime = stats.getThreadScopedCounter(READAHEAD_TIME);
+        readAheadSkippedCounter = stats.getCounter(READAHEAD_SKIPPED);
+        readAheadMergedCounter = stats.getCounter(READAHEAD_MERGED);
+        readAheadRejectedCounter = stats.getCounter(READAHEAD_REJECTED);
         flushStats = stats.getOpStatsLogger(FLUSH);
         flushEntryLogStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG);
         flushLocationIndexStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX);
@@ -271,6 +325,14 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(READ_CACHE_COUNT, readCacheCountGauge);
+        this.readCachePromotionsCounter = readCachePromotionsCounter;
+    }
+
+    Counter getReadCachePatternHitCounter(AccessPattern pattern) {
+        return readCachePatternHitCounters.get(pattern);
     }
 
+    Counter getReadCachePatternMissCounter(AccessPattern pattern) {
+        return readCachePatternMissCounters.get(pattern);
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.LongPredicate;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+
+/**
+ * Cache of the locations of the most recently flushed entries.
+ *
+ * <p>Readers that are tailing a ledger typically read the entries shortly after they were flushed from the write
+ * cache. Keeping their locations in memory avoids going to the {@link KeyValueStorage} for each of these reads.
+ *
+ * <p>The cache is split in 2 segments. New locations are always inserted in the current segment and, when that is
+ * full, the other segment is cleared and becomes the current one, dropping the oldest half of the locations.
+ */
+class EntryLocationCache {
+
+    private static final int MAX_EXPECTED_ITEMS_PER_SEGMENT = 64 * 1024;
+
+    private final ConcurrentLongLongPairHashMap[] segments;
+    private final long maxSegmentEntries;
+    private volatile int currentSegmentIdx = 0;
+
+    EntryLocationCache(long maxEntries) {
+        checkArgument(maxEntries >= 2, "The location cache must hold at least 2 entries");
+        this.maxSegmentEntries = maxEntries / 2;
+        this.segments = new ConcurrentLongLongPairHashMap[2];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ConcurrentLongLongPairHashMap.newBuilder()
+                    .expectedItems((int) Math.min(maxSegmentEntries, MAX_EXPECTED_ITEMS_PER_SEGMENT))
+                    .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                    .build();
+        }
+    }
+
+    void put(long ledgerId, long entryId, long location) {
+        ConcurrentLongLongPairHashMap segment = segments[currentSegmentIdx];
+        if (segment.size() >= maxSegmentEntries) {
+            rotate(segment);
+            segment = segments[currentSegmentIdx];
+        }
+
+        segment.put(ledgerId, entryId, location, 0);
+    }
+
+    /**
+     * @return the location of the entry or 0 if it's not in the cache
+     */
+    long get(long ledgerId, long entryId) {
+        // Check the most recent segment first, since it has the most up to date locations
+        int idx = currentSegmentIdx;
+        for (int i = 0; i < segments.length; i++) {
+            LongPair res = segments[(idx + segments.length - i) % segments.length].get(ledgerId, entryId);
+            if (res != null) {
+                return res.first;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Replace the location of an entry, if the entry is in the cache.
+     */
+    void update(long ledgerId, long entryId, long location) {
+        boolean found = false;
+        for (ConcurrentLongLongPairHashMap segment : segments) {
+            found |= segment.remove(ledgerId, entryId);
+        }
+
+        if (found) {
+            put(ledgerId, entryId, location);
+        }
+    }
+
+    void removeLedgers(LongPredicate isLedgerDeleted) {
+        for (ConcurrentLongLongPairHashMap segment : segments) {
+            segment.removeIf((ledgerId, entryId, location, ignore) -> isLedgerDeleted.test(ledgerId));
+        }
+    }
+
+    long count() {
+        long count = 0;
+        for (ConcurrentLongLongPairHashMap segment : segments) {
+            count += segment.size();
+        }
+        return count;
+    }
+
+    private synchronized void rotate(ConcurrentLongLongPairHashMap fullSegment) {
+        if (segments[currentSegmentIdx] != fullSegment) {
+            // Already rotated by another thread
+            return;
+        }
+
+        int nextSegmentIdx = (currentSegmentIdx + 1) % segments.length;
+        segments[nextSegmentIdx].clear();
+        currentSegmentIdx = nextSegmentIdx;
+    }
+}
@@ -20,15 +20,21 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.collect.Iterables;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.conf.ServerConfiguration;
@@ -48,11 +54,37 @@ public class EntryLocationIndex implements Closeable {
     private final KeyValueStorage locationsDb;
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
     private final EntryLocationIndexStats stats;
+    // Locations of the recently flushed entries, null if disabled
+    private final EntryLocationCache locationCache;
+    // Relocations of the entries of the compacted entry logs, null if disabled
+    private final EntryLogRelocations relocations;
     private boolean isCompacting;
 
     public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
             StatsLogger stats) throws IOException {
+        this(conf, storageFactory, basePath, stats, 0);
+    }
+
+    public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
+            StatsLogger stats, long locationCacheMaxEntries) throws IOException {
+        this(conf, storageFactory, basePath, stats, locationCacheMaxEntries, false);
+    }
+
+    public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
+            StatsLogger stats, long locationCacheMaxEntries, boolean relocateEntries) throws IOException {
         locationsDb = storageFactory.newKeyValueStorage(basePath, "locations", DbConfigType.EntryLocation, conf);
+        locationCache = locationCacheMaxEntries > 0 ? new EntryLocationCache(locationCacheMaxEntries) : null;
+        // the relocations recorded before disabling them still need to be resolved, until they are folded
+        if (relocateEntries || EntryLogRelocations.exist(basePath)) {
+            try {
+                relocations = new EntryLogRelocations(conf, storageFactory, basePath);
+            } catch (IOException e) {
+                locationsDb.close();
+                throw e;
+            }
+        } else {
+            relocations = null;
+        }
 
         this.stats = new EntryLocationIndexStats(
             stats,
@@ -62,15 +94,36 @@ public class EntryLocationIndex implements Closeable {
                 } catch (IOException e) {
                     return -1L;
                 }
-            });
+            },
+            () -> locationCache != null ? locationCache.count() : 0L,
+            () -> relocations != null ? relocations.size() : 0L);
     }
 
     @Override
     public void close() throws IOException {
         locationsDb.close();
+        if (relocations != null) {
+            relocations.close();
+        }
+    }
+
+    private long resolve(long location) {
+        return relocations != null && location != 0 ? relocations.resolve(location) : location;
     }
 
     public long getLocation(long ledgerId, long entryId) throws IOException {
+        if (locationCache != null) {
+            long startTimeNanos = MathUtils.nowInNano();
+            long location = locationCache.get(ledgerId, entryId);
+            if (location != 0) {
+                stats.getLocationCacheHitCounter().inc();
+                stats.getLookupEntryLocationStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+                return resolve(location);
+            }
+            stats.getLocationCacheMissCounter().inc();
+        }
+
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get();
 
@@ -84,7 +137,7 @@ public class EntryLocationIndex implements Closeable {
                 return 0;
             }
             operationSuccess = true;
-            return value.getValue();
+            return resolve(value.getValue());
         } finally {
             key.recycle();
             value.recycle();
@@ -98,6 +151,48 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    /**
+     * Get the locations of a range of consecutive entries of a ledger with a single scan of the index, instead of
+     * doing one point lookup per entry.
+     *
+     * @param ledgerId the ledger id
+     * @param firstEntryId the first entry of the range (included)
+     * @param lastEntryId the last entry of the range (included)
+     * @return the locations of the entries, indexed by {@code entryId - firstEntryId}. The location is 0 for the
+     *         entries that are not found in the index.
+     */
+    public long[] getLocations(long ledgerId, long firstEntryId, long lastEntryId) throws IOException {
+        checkArgument(firstEntryId >= 0 && lastEntryId >= firstEntryId && lastEntryId < Long.MAX_VALUE,
+                "Invalid entries range [%s, %s]", firstEntryId, lastEntryId);
+        checkArgument(lastEntryId - firstEntryId < Integer.MAX_VALUE, "Entries range is too big");
+
+        long[] locations = new long[(int) (lastEntryId - firstEntryId + 1)];
+        LongPairWrapper firstKey = LongPairWrapper.get(ledgerId, firstEntryId);
+        LongPairWrapper lastKey = LongPairWrapper.get(ledgerId, lastEntryId + 1);
+
+        long startTimeNanos = MathUtils.nowInNano();
+        boolean operationSuccess = false;
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = locationsDb.iterator(firstKey.array, lastKey.array)) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long entryId = ArrayUtil.getLong(entry.getKey(), 8);
+                locations[(int) (entryId - firstEntryId)] = resolve(ArrayUtil.getLong(entry.getValue(), 0));
+            }
+            operationSuccess = true;
+            return locations;
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+            if (operationSuccess) {
+                stats.getLookupEntryLocationsStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                stats.getLookupEntryLocationsStats()
+                        .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
     public long getLastEntryInLedger(long ledgerId) throws IOException {
         if (deletedLedgers.contains(ledgerId)) {
             // Ledger already deleted
@@ -153,6 +248,16 @@ public class EntryLocationIndex implements Closeable {
         batch.close();
     }
 
+    /**
+     * Keep the location of a newly flushed entry in the location cache, so that the next reads of the entry don't
+     * need to look it up in the storage. This is a no-op if the location cache is disabled.
+     */
+    public void cacheLocation(long ledgerId, long entryId, long location) {
+        if (locationCache != null) {
+            locationCache.put(ledgerId, entryId, location);
+        }
+    }
+
     public Batch newBatch() {
         return locationsDb.newBatch();
     }
@@ -190,6 +295,104 @@ public class EntryLocationIndex implements Closeable {
 
         batch.flush();
         batch.close();
+
+        if (locationCache != null) {
+            for (EntryLocation e : newLocations) {
+                locationCache.update(e.ledger, e.entry, e.location);
+            }
+        }
+    }
+
+    /**
+     * Update the locations of the entries copied by the compaction of entry logs.
+     *
+     * <p>The locations of the entries in the compacted entry logs are not rewritten one by one in the index, the moves
+     * are recorded as relocations of ranges of locations of the compacted entry logs instead. The relocations are
+     * resolved when looking up the locations, until they are folded into the index by
+     * {@link #foldRelocations(long)}. The entries without a previous location are updated in the index.
+     */
+    public void relocateLocations(Iterable<EntryLocation> newLocations) throws IOException {
+        if (relocations == null) {
+            updateLocations(newLocations);
+            return;
+        }
+
+        List<EntryLocation> moves = new ArrayList<>();
+        List<EntryLocation> updates = new ArrayList<>();
+        for (EntryLocation e : newLocations) {
+            if (e.previousLocation != 0) {
+                moves.add(e);
+            } else {
+                updates.add(e);
+            }
+        }
+        if (!updates.isEmpty()) {
+            updateLocations(updates);
+        }
+        if (moves.isEmpty()) {
+            return;
+        }
+
+        moves.sort(Comparator.comparingLong(EntryLocation::getPreviousLocation));
+        relocations.add(moves);
+        if (log.isDebugEnabled()) {
+            log.debug("Relocated {} entries, {} relocated entry logs", moves.size(), relocations.size());
+        }
+
+        if (locationCache != null) {
+            for (EntryLocation e : moves) {
+                locationCache.update(e.ledger, e.entry, e.location);
+            }
+        }
+    }
+
+    /**
+     * Fold the relocations of the compacted entry logs into the index, once there are relocations for at least
+     * {@code minEntryLogs} entry logs.
+     *
+     * <p>The index is scanned sequentially and only the locations pointing to relocated entries are rewritten, the
+     * entries of the ledgers deleted in the meantime are not rewritten at all.
+     *
+     * @return the number of rewritten locations
+     */
+    public long foldRelocations(long minEntryLogs) throws IOException {
+        if (relocations == null || relocations.size() == 0 || relocations.size() < minEntryLogs) {
+            return 0;
+        }
+
+        // the relocations recorded during the scan are folded by the next pass
+        ConcurrentLongHashSet entryLogIds = relocations.getEntryLogIds();
+        log.info("Folding the relocations of {} compacted entry logs into the index", entryLogIds.size());
+        long startTime = System.nanoTime();
+        long numFolded = 0;
+
+        try (Batch batch = locationsDb.newBatch();
+             CloseableIterator<Entry<byte[], byte[]>> iterator = locationsDb.iterator()) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long location = ArrayUtil.getLong(entry.getValue(), 0);
+                if (!entryLogIds.contains(location >>> 32)) {
+                    continue;
+                }
+                long ledgerId = ArrayUtil.getLong(entry.getKey(), 0);
+                if (deletedLedgers.contains(ledgerId)) {
+                    continue;
+                }
+                long newLocation = relocations.resolve(location);
+                if (newLocation != location) {
+                    addLocation(batch, ledgerId, ArrayUtil.getLong(entry.getKey(), 8), newLocation);
+                    numFolded++;
+                }
+            }
+            batch.flush();
+        }
+        // the relocations can only be dropped once the index is durable
+        locationsDb.sync();
+        relocations.remove(entryLogIds);
+
+        log.info("Folded {} relocated locations of {} compacted entry logs in {} seconds", numFolded,
+                entryLogIds.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) / 1000.0);
+        return numFolded;
     }
 
     public void delete(long ledgerId) throws IOException {
@@ -241,6 +444,9 @@ public class EntryLocationIndex implements Closeable {
             }
 
             batch.flush();
+            if (locationCache != null) {
+                locationCache.removeLedgers(deletedLedgers::contains);
+            }
             for (long ledgerId : ledgersToDelete) {
                 deletedLedgers.remove(ledgerId);
             }
@@ -24,6 +24,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -42,7 +43,12 @@ class EntryLocationIndexStats {
 
     private static final String ENTRIES_COUNT = "entries-count";
     private static final String LOOKUP_ENTRY_LOCATION = "lookup-entry-location";
+    private static final String LOOKUP_ENTRY_LOCATIONS = "lookup-entry-locations";
     private static final String GET_LAST_ENTRY_IN_LEDGER = "get-last-entry-in-ledger";
+    private static final String LOCATION_CACHE_COUNT = "location-cache-count";
+    private static final String LOCATION_CACHE_HITS = "location-cache-hits";
+    private static final String LOCATION_CACHE_MISSES = "location-cache-misses";
+    private static final String RELOCATED_ENTRY_LOGS = "relocated-entry-logs";
 
     @StatsDoc(
         name = ENTRIES_COUNT,
@@ -56,14 +62,46 @@ class EntryLocationIndexStats {
     )
     private final OpStatsLogger lookupEntryLocationStats;
 
+    @StatsDoc(
+            name = LOOKUP_ENTRY_LOCATIONS,
+            help = "operation stats of looking up the locations of a range of entries"
+    )
+    private final OpStatsLogger lookupEntryLocationsStats;
+
     @StatsDoc(
             name = GET_LAST_ENTRY_IN_LEDGER,
             help = "operation stats of get last entry in ledger"
     )
     private final OpStatsLogger getLastEntryInLedgerStats;
 
+    @StatsDoc(
+        name = LOCATION_CACHE_COUNT,
+        help = "Current number of entries in the location cache"
+    )
+    private final Gauge<Long> locationCacheCountGauge;
+
+    @StatsDoc(
+        name = LOCATION_CACHE_HITS,
+        help = "number of entry location lookups served by the location cache"
+    )
+    private final Counter locationCacheHitCounter;
+
+    @StatsDoc(
+        name = LOCATION_CACHE_MISSES,
+        help = "number of entry location lookups that were not found in the location cache"
+    )
+    private final Counter locationCacheMissCounter;
+
+    @StatsDoc(
+        name = RELOCATED_ENTRY_LOGS,
+        help = "Current number of compacted entry logs with relocations not folded into the index yet"
+    )
+    private final Gauge<Long> relocatedEntryLogsGauge;
+
     EntryLocationIndexStats(StatsLogger statsLogger,
-                            Supplier<Long> entriesCountSupplier) {
+                            Supplier<Long> entriesCountSupplier,
+                            Supplier<Long> locationCacheCountSupplier,
+                            Supplier<Long> relocatedEntryLogsSupplier) {
         entriesCountGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
@@ -77,7 +115,36 @@ class EntryLocationIndexStats {
         };
         statsLogger.registerGauge(ENTRIES_COUNT, entriesCountGauge);
         lookupEntryLocationStats = statsLogger.getOpStatsLogger(LOOKUP_ENTRY_LOCATION);
+        lookupEntryLocationsStats = statsLogger.getOpStatsLogger(LOOKUP_ENTRY_LOCATIONS);
         getLastEntryInLedgerStats = statsLogger.getOpStatsLogger(GET_LAST_ENTRY_IN_LEDGER);
+
+        locationCacheCountGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return locationCacheCountSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(LOCATION_CACHE_COUNT, locationCacheCountGauge);
+        locationCacheHitCounter = statsLogger.getCounter(LOCATION_CACHE_HITS);
+        locationCacheMissCounter = statsLogger.getCounter(LOCATION_CACHE_MISSES);
+
+        relocatedEntryLogsGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return relocatedEntryLogsSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(RELOCATED_ENTRY_LOGS, relocatedEntryLogsGauge);
     }
 
 }
@@ -0,0 +1,278 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.bookkeeper.bookie.EntryLocation;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Relocations of the entries copied out of compacted entry logs, which are not folded into the
+ * {@link EntryLocationIndex} yet.
+ *
+ * <p>The entries copied by the compaction of an entry log are recorded as ranges of locations in the compacted entry
+ * log, each range being moved by a constant delta. Entries copied in sequence end up in a single range, so the
+ * relocations of an entry log are written with a few keys, instead of one key per entry.
+ *
+ * <p>The ranges are kept in memory and in a {@link KeyValueStorage}, keyed by (entryLogId, first location).
+ */
+class EntryLogRelocations implements Closeable {
+
+    static final String RELOCATIONS = "relocations";
+
+    // (start, end, delta)
+    private static final int RANGE_SIZE = 3 * Long.BYTES;
+
+    private final KeyValueStorage relocationsDb;
+    private final ConcurrentLongHashMap<LocationRanges> relocations = ConcurrentLongHashMap.<LocationRanges>newBuilder()
+            .build();
+
+    EntryLogRelocations(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath)
+            throws IOException {
+        relocationsDb = storageFactory.newKeyValueStorage(basePath, RELOCATIONS, DbConfigType.Default, conf);
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = relocationsDb.iterator()) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long entryLogId = ArrayUtil.getLong(entry.getKey(), 0);
+                merge(entryLogId, LocationRanges.deserialize(entry.getValue()));
+            }
+        } catch (IOException e) {
+            relocationsDb.close();
+            throw e;
+        }
+        if (!relocations.isEmpty()) {
+            log.info("Loaded the relocations of {} compacted entry logs", relocations.size());
+        }
+    }
+
+    /**
+     * @return whether relocations were recorded in the directory
+     */
+    static boolean exist(String basePath) {
+        return new File(basePath, RELOCATIONS).exists();
+    }
+
+    @Override
+    public void close() throws IOException {
+        relocationsDb.close();
+    }
+
+    /**
+     * @return the number of entry logs with relocations
+     */
+    long size() {
+        return relocations.size();
+    }
+
+    ConcurrentLongHashSet getEntryLogIds() {
+        ConcurrentLongHashSet entryLogIds = ConcurrentLongHashSet.newBuilder().build();
+        relocations.forEach((entryLogId, ranges) -> entryLogIds.add(entryLogId));
+        return entryLogIds;
+    }
+
+    /**
+     * Record the relocations of entries, from their previous location to their new location.
+     *
+     * @param locations the new locations of the entries, sorted by previous location
+     */
+    synchronized void add(List<EntryLocation> locations) throws IOException {
+        try (Batch batch = relocationsDb.newBatch()) {
+            int first = 0;
+            while (first < locations.size()) {
+                long entryLogId = locations.get(first).previousLocation >>> 32;
+                int last = first + 1;
+                while (last < locations.size() && locations.get(last).previousLocation >>> 32 == entryLogId) {
+                    last++;
+                }
+                LocationRanges ranges = LocationRanges.of(locations.subList(first, last));
+                LongPairWrapper key = LongPairWrapper.get(entryLogId, ranges.starts[0]);
+                try {
+                    batch.put(key.array, ranges.serialize());
+                } finally {
+                    key.recycle();
+                }
+                merge(entryLogId, ranges);
+                first = last;
+            }
+            // the relocations need to be durable before the compacted entry log is removed
+            batch.flush();
+        }
+        relocationsDb.sync();
+    }
+
+    private void merge(long entryLogId, LocationRanges ranges) {
+        // the ranges are replaced rather than updated in place, for the concurrent lookups
+        LocationRanges current = relocations.get(entryLogId);
+        relocations.put(entryLogId, current == null ? ranges : current.merge(ranges));
+    }
+
+    /**
+     * Get the current location of an entry, following the relocations of the entry logs it was copied out of.
+     *
+     * @return the current location, or the given location if it was not relocated
+     */
+    long resolve(long location) {
+        // an entry can be copied several times before the relocations are folded into the index
+        for (long i = relocations.size(); i > 0; i--) {
+            LocationRanges ranges = relocations.get(location >>> 32);
+            if (ranges == null) {
+                break;
+            }
+            long relocated = ranges.resolve(location);
+            if (relocated == location) {
+                break;
+            }
+            location = relocated;
+        }
+        return location;
+    }
+
+    /**
+     * Remove the relocations of entry logs, once they are folded into the index.
+     */
+    synchronized void remove(ConcurrentLongHashSet entryLogIds) throws IOException {
+        LongPairWrapper firstKey = LongPairWrapper.get(-1, -1);
+        LongPairWrapper lastKey = LongPairWrapper.get(-1, -1);
+        try (Batch batch = relocationsDb.newBatch()) {
+            for (long entryLogId : entryLogIds.items()) {
+                firstKey.set(entryLogId, 0);
+                lastKey.set(entryLogId + 1, 0);
+                batch.deleteRange(firstKey.array, lastKey.array);
+            }
+            batch.flush();
+        } finally {
+            firstKey.recycle();
+            lastKey.recycle();
+        }
+        entryLogIds.forEach(relocations::remove);
+    }
+
+    /**
+     * Sorted ranges of locations of an entry log, each moved by a delta. The end of a range is the location of its
+     * last entry.
+     */
+    static class LocationRanges {
+        final long[] starts;
+        final long[] ends;
+        final long[] deltas;
+
+        LocationRanges(long[] starts, long[] ends, long[] deltas) {
+            this.starts = starts;
+            this.ends = ends;
+            this.deltas = deltas;
+        }
+
+        /**
+         * @param locations the new locations of entries of an entry log, sorted by previous location
+         */
+        static LocationRanges of(List<EntryLocation> locations) {
+            long[] starts = new long[locations.size()];
+            long[] ends = new long[locations.size()];
+            long[] deltas = new long[locations.size()];
+            int numRanges = 0;
+            for (EntryLocation location : locations) {
+                long delta = location.location - location.previousLocation;
+                if (numRanges > 0 && deltas[numRanges - 1] == delta) {
+                    // the entry was copied right after the previous one
+                    ends[numRanges - 1] = location.previousLocation;
+                } else {
+                    starts[numRanges] = location.previousLocation;
+                    ends[numRanges] = location.previousLocation;
+                    deltas[numRanges] = delta;
+                    numRanges++;
+                }
+            }
+            return new LocationRanges(Arrays.copyOf(starts, numRanges), Arrays.copyOf(ends, numRanges),
+                    Arrays.copyOf(deltas, numRanges));
+        }
+
+        long resolve(long location) {
+            int idx = Arrays.binarySearch(starts, location);
+            if (idx < 0) {
+                // the range starting before the location
+                idx = -idx - 2;
+            }
+            if (idx >= 0 && location <= ends[idx]) {
+                return location + deltas[idx];
+            }
+            return location;
+        }
+
+        LocationRanges merge(LocationRanges other) {
+            int numRanges = starts.length + other.starts.length;
+            Integer[] order = new Integer[numRanges];
+            for (int i = 0; i < numRanges; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingLong(i -> i < starts.length
+                    ? starts[i] : other.starts[i - starts.length]));
+            long[] mergedStarts = new long[numRanges];
+            long[] mergedEnds = new long[numRanges];
+            long[] mergedDeltas = new long[numRanges];
+            for (int i = 0; i < numRanges; i++) {
+                LocationRanges ranges = order[i] < starts.length ? this : other;
+                int idx = order[i] < starts.length ? order[i] : order[i] - starts.length;
+                mergedStarts[i] = ranges.starts[idx];
+                mergedEnds[i] = ranges.ends[idx];
+                mergedDeltas[i] = ranges.deltas[idx];
+            }
+            return new LocationRanges(mergedStarts, mergedEnds, mergedDeltas);
+        }
+
+        byte[] serialize() {
+            byte[] value = new byte[starts.length * RANGE_SIZE];
+            for (int i = 0; i < starts.length; i++) {
+                ArrayUtil.setLong(value, i * RANGE_SIZE, starts[i]);
+                ArrayUtil.setLong(value, i * RANGE_SIZE + Long.BYTES, ends[i]);
+                ArrayUtil.setLong(value, i * RANGE_SIZE + 2 * Long.BYTES, deltas[i]);
+            }
+            return value;
+        }
+
+        static LocationRanges deserialize(byte[] value) {
+            int numRanges = value.length / RANGE_SIZE;
+            long[] starts = new long[numRanges];
+            long[] ends = new long[numRanges];
+            long[] deltas = new long[numRanges];
+            for (int i = 0; i < numRanges; i++) {
+                starts[i] = ArrayUtil.getLong(value, i * RANGE_SIZE);
+                ends[i] = ArrayUtil.getLong(value, i * RANGE_SIZE + Long.BYTES);
+                deltas[i] = ArrayUtil.getLong(value, i * RANGE_SIZE + 2 * Long.BYTES);
+            }
+            return new LocationRanges(starts, ends, deltas);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EntryLogRelocations.class);
+}
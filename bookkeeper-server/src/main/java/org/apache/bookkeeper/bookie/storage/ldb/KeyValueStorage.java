@@ -142,6 +142,20 @@ public interface KeyValueStorage extends Closeable {
      */
     CloseableIterator<Entry<byte[], byte[]>> iterator();
 
+    /**
+     * Return an iterator object that can be used to sequentially scan through all
+     * the entries within a specified range.
+     *
+     * <p>The entries returned by the iterator are only valid until the next call to
+     * {@link CloseableIterator#next()}.
+     *
+     * @param firstKey
+     *            the first key in the range (included)
+     * @param lastKey
+     *            the lastKey in the range (not included)
+     */
+    CloseableIterator<Entry<byte[], byte[]>> iterator(byte[] firstKey, byte[] lastKey);
+
     /**
      * Commit all pending write to durable storage.
      */
@@ -0,0 +1,172 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+
+/**
+ * Adds the entry locations produced by a write cache flush to the locations index from a separate thread.
+ *
+ * <p>The flush thread hands the locations over in chunks, while it keeps writing the entries in the entry log. The
+ * index thread adds them to the index batch, which is partially committed to the storage whenever it grows too big.
+ * Building the index batch thus overlaps with writing and syncing the entry log, instead of following it.
+ */
+class LocationsIndexPipeline implements AutoCloseable {
+
+    // Number of entries in each chunk
+    static final int CHUNK_SIZE = 1024;
+
+    private static final long[] END_OF_LOCATIONS = new long[0];
+
+    private final EntryLocationIndex entryLocationIndex;
+    private final Batch batch;
+    private final BlockingQueue<long[]> chunks;
+    private final CompletableFuture<Void> indexTask;
+
+    private long[] currentChunk;
+    private int currentChunkIdx;
+    private boolean completed = false;
+
+    LocationsIndexPipeline(EntryLocationIndex entryLocationIndex, Executor executor, int maxPendingChunks) {
+        this.entryLocationIndex = entryLocationIndex;
+        this.batch = entryLocationIndex.newBatch();
+        this.chunks = new ArrayBlockingQueue<>(maxPendingChunks);
+        this.indexTask = CompletableFuture.runAsync(this::addPendingLocations, executor);
+    }
+
+    /**
+     * Queue the location of an entry to be added to the index batch.
+     */
+    void addLocation(long ledgerId, long entryId, long location) throws IOException {
+        if (currentChunk == null) {
+            currentChunk = new long[CHUNK_SIZE * 3];
+            currentChunkIdx = 0;
+        }
+
+        currentChunk[currentChunkIdx] = ledgerId;
+        currentChunk[currentChunkIdx + 1] = entryId;
+        currentChunk[currentChunkIdx + 2] = location;
+        currentChunkIdx += 3;
+
+        if (currentChunkIdx == currentChunk.length) {
+            handOver(currentChunk);
+            currentChunk = null;
+        }
+    }
+
+    /**
+     * Signal that all the locations were queued. The index thread keeps adding the pending ones to the batch.
+     */
+    void endOfLocations() throws IOException {
+        if (currentChunk != null) {
+            long[] lastChunk = currentChunkIdx == currentChunk.length
+                    ? currentChunk : Arrays.copyOf(currentChunk, currentChunkIdx);
+            currentChunk = null;
+            handOver(lastChunk);
+        }
+        handOver(END_OF_LOCATIONS);
+    }
+
+    /**
+     * Wait for all the queued locations to be in the index batch and commit it.
+     */
+    void commit() throws IOException {
+        waitForIndexTask();
+        batch.flush();
+        completed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!completed) {
+            // Stop the index thread, discarding the pending locations
+            chunks.clear();
+            chunks.offer(END_OF_LOCATIONS);
+            try {
+                indexTask.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // Already reported to the flush thread
+            }
+        }
+        batch.close();
+    }
+
+    private void handOver(long[] chunk) throws IOException {
+        try {
+            while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (indexTask.isDone()) {
+                    // The index thread has failed, there's no one to take the chunk
+                    waitForIndexTask();
+                    throw new IOException("Locations index pipeline was terminated");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while adding locations to the index", e);
+        }
+    }
+
+    private void waitForIndexTask() throws IOException {
+        try {
+            indexTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while adding locations to the index", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to add locations to the index", e.getCause());
+        }
+    }
+
+    private void addPendingLocations() {
+        try {
+            while (true) {
+                long[] chunk = chunks.take();
+                if (chunk == END_OF_LOCATIONS) {
+                    return;
+                }
+
+                for (int i = 0; i < chunk.length; i += 3) {
+                    entryLocationIndex.addLocation(batch, chunk[i], chunk[i + 1], chunk[i + 2]);
+                    entryLocationIndex.cacheLocation(chunk[i], chunk[i + 1], chunk[i + 2]);
+                }
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -30,6 +30,8 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import lombok.extern.slf4j.Slf4j;
@@ -40,17 +42,28 @@ import org.apache.bookkeeper.bookie.EntryLogMetadataMap;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 
 /**
  * Persistent entryLogMetadata-map that stores entry-loggers metadata into
  * rocksDB.
+ *
+ * <p>The entry logs of each ledger are indexed in a second rocksDB, keyed by
+ * (ledgerId, entryLogId), so that the entry logs holding the deleted ledgers are
+ * found without going through the whole map. The index may have extra entries
+ * after a crash, but never misses an entry log of a ledger.
  */
 @Slf4j
 public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
     // persistent Rocksdb to store metadata-map
     private final KeyValueStorage metadataMapDB;
+    // persistent Rocksdb to index the entry logs of each ledger
+    private final KeyValueStorage ledgerIndexDB;
     private AtomicBoolean isClosed = new AtomicBoolean(false);
 
+    static final String LEDGER_INDEX = METADATA_CACHE + "-ledgers";
+    private static final byte[] EMPTY_VALUE = new byte[0];
+
     private static final FastThreadLocal<ByteArrayOutputStream> baos = new FastThreadLocal<ByteArrayOutputStream>() {
         @Override
         protected ByteArrayOutputStream initialValue() {
@@ -86,6 +99,77 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
         }
         metadataMapDB = KeyValueStorageRocksDB.factory.newKeyValueStorage(metadataPath, METADATA_CACHE,
                 DbConfigType.Default, conf);
+        try {
+            ledgerIndexDB = KeyValueStorageRocksDB.factory.newKeyValueStorage(metadataPath, LEDGER_INDEX,
+                    DbConfigType.Default, conf);
+        } catch (IOException e) {
+            metadataMapDB.close();
+            throw e;
+        }
+        try {
+            if (isEmpty(ledgerIndexDB) && !isEmpty(metadataMapDB)) {
+                // metadata-map written before the ledgers index
+                buildLedgerIndex();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static boolean isEmpty(KeyValueStorage db) throws IOException {
+        try (CloseableIterator<byte[]> keys = db.keys()) {
+            return !keys.hasNext();
+        }
+    }
+
+    private void buildLedgerIndex() throws IOException {
+        log.info("Building the ledgers index of the entrylog metadata-map");
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = metadataMapDB.iterator()) {
+            while (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                long entryLogId = ArrayUtil.getLong(entry.getKey(), 0);
+                EntryLogMetadataRecyclable metadata = getEntryLogMetadataRecyclable(entry.getValue());
+                try {
+                    updateLedgerIndex(entryLogId, metadata, null, true);
+                } finally {
+                    metadata.recycle();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds, or removes, the ledgers of the entry log metadata which are not in the excluded metadata.
+     */
+    private void updateLedgerIndex(long entryLogId, EntryLogMetadata metadata, EntryLogMetadata excluded,
+                                   boolean add) throws IOException {
+        try (KeyValueStorage.Batch batch = ledgerIndexDB.newBatch()) {
+            for (long ledgerId : metadata.getLedgersMap().keys()) {
+                if (excluded != null && excluded.containsLedger(ledgerId)) {
+                    continue;
+                }
+                LongPairWrapper key = LongPairWrapper.get(ledgerId, entryLogId);
+                try {
+                    if (add) {
+                        batch.put(key.array, EMPTY_VALUE);
+                    } else {
+                        batch.remove(key.array);
+                    }
+                } finally {
+                    key.recycle();
+                }
+            }
+            batch.flush();
+        }
+    }
+
+    private EntryLogMetadataRecyclable get(byte[] key) throws IOException {
+        byte[] value = metadataMapDB.get(key);
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        return getEntryLogMetadataRecyclable(value);
     }
 
     @Override
@@ -109,16 +193,26 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
     public void put(long entryLogId, EntryLogMetadata entryLogMeta) throws EntryLogMetadataMapException {
         throwIfClosed();
         LongWrapper key = LongWrapper.get(entryLogId);
+        EntryLogMetadataRecyclable previous = null;
         try {
             baos.get().reset();
             try {
+                previous = get(key.array);
+                // index the new ledgers before writing the metadata, and remove the deleted ones after
+                updateLedgerIndex(entryLogId, entryLogMeta, previous, true);
                 entryLogMeta.serialize(dataos.get());
                 metadataMapDB.put(key.array, baos.get().toByteArray());
+                if (previous != null) {
+                    updateLedgerIndex(entryLogId, previous, entryLogMeta, false);
+                }
             } catch (IllegalStateException | IOException e) {
                 log.error("Failed to serialize entrylog-metadata, entryLogId {}", entryLogId);
                 throw new EntryLogMetadataMapException(e);
             }
         } finally {
+            if (previous != null) {
+                previous.recycle();
+            }
             key.recycle();
         }
 
@@ -186,6 +280,46 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
         }
     }
 
+    /**
+     * Only reads the entry logs found in the ledgers index. The {@link EntryLogMetadata} life-cycle in supplied
+     * action will be transient and it will be recycled as soon as supplied action is completed.
+     */
+    @Override
+    public void forEachEntryLogOfLedgers(ConcurrentLongHashSet ledgerIds,
+                                         BiConsumer<Long, EntryLogMetadata> action)
+            throws EntryLogMetadataMapException {
+        throwIfClosed();
+        // an entry log holding several of the ledgers is only read once
+        SortedSet<Long> entryLogIds = new TreeSet<>();
+        try {
+            for (long ledgerId : ledgerIds.items()) {
+                LongPairWrapper firstKey = LongPairWrapper.get(ledgerId, 0);
+                LongPairWrapper lastKey = LongPairWrapper.get(ledgerId + 1, 0);
+                try (CloseableIterator<byte[]> keys = ledgerIndexDB.keys(firstKey.array, lastKey.array)) {
+                    while (keys.hasNext()) {
+                        entryLogIds.add(ArrayUtil.getLong(keys.next(), 8));
+                    }
+                } finally {
+                    firstKey.recycle();
+                    lastKey.recycle();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to get the entry logs of ledgers from the ledgers index {}", e.getMessage(), e);
+            throw new EntryLogMetadataMapException(e);
+        }
+        for (long entryLogId : entryLogIds) {
+            if (isClosed.get()) {
+                break;
+            }
+            forKey(entryLogId, (id, metadata) -> {
+                if (metadata != null) {
+                    action.accept(id, metadata);
+                }
+            });
+        }
+    }
+
     private EntryLogMetadataRecyclable getEntryLogMetadataRecyclable(byte[] value) throws IOException {
         ByteArrayInputStream localBais = bais.get();
         DataInputStream localDatais = datais.get();
@@ -208,13 +342,21 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
     public void remove(long entryLogId) throws EntryLogMetadataMapException {
         throwIfClosed();
         LongWrapper key = LongWrapper.get(entryLogId);
+        EntryLogMetadataRecyclable previous = null;
         try {
             try {
+                previous = get(key.array);
                 metadataMapDB.delete(key.array);
+                if (previous != null) {
+                    updateLedgerIndex(entryLogId, previous, null, false);
+                }
             } catch (IOException e) {
                 throw new EntryLogMetadataMapException(e);
             }
         } finally {
+            if (previous != null) {
+                previous.recycle();
+            }
             key.recycle();
         }
     }
@@ -232,12 +374,14 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
     @Override
     public void clear() throws EntryLogMetadataMapException {
         try {
-            try (KeyValueStorage.Batch b = metadataMapDB.newBatch();
-                 CloseableIterator<byte[]> itr = metadataMapDB.keys()) {
-                while (itr.hasNext()) {
-                    b.remove(itr.next());
+            for (KeyValueStorage db : new KeyValueStorage[] { metadataMapDB, ledgerIndexDB }) {
+                try (KeyValueStorage.Batch b = db.newBatch();
+                     CloseableIterator<byte[]> itr = db.keys()) {
+                    while (itr.hasNext()) {
+                        b.remove(itr.next());
+                    }
+                    b.flush();
                 }
-                b.flush();
             }
         } catch (IOException e) {
             throw new EntryLogMetadataMapException(e);
@@ -247,7 +391,11 @@ public class PersistentEntryLogMetadataMap implements EntryLogMetadataMap {
     @Override
     public void close() throws IOException {
         if (isClosed.compareAndSet(false, true)) {
-            metadataMapDB.close();
+            try {
+                metadataMapDB.close();
+            } finally {
+                ledgerIndexDB.close();
+            }
         } else {
             log.warn("Attempted to close already closed PersistentEntryLogMetadataMap");
         }
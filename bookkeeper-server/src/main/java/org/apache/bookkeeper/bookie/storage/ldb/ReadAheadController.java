@@ -0,0 +1,241 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Adapts the read-ahead window of each ledger to the way the ledger is being read.
+ *
+ * <p>Each ledger keeps a few read cursors, so that several readers going through the same ledger do not disturb
+ * each other. A read is matched to the closest cursor behind it, within {@link #MAX_STRIDE} entries, and a read
+ * matching no cursor starts a new one in place of the least recently used. The reads of each cursor are classified by
+ * looking at the distance between its consecutive reads:
+ * <ul>
+ * <li>{@link AccessPattern#SEQUENTIAL}: the window is doubled on every read cache miss, up to the max batch size
+ * <li>{@link AccessPattern#STRIDED}: reads with a constant small stride, the window is grown as for sequential reads
+ * and multiplied by the stride, so that it covers the same number of useful entries
+ * <li>{@link AccessPattern#RANDOM}: the window is halved and no read-ahead is done at all
+ * </ul>
+ *
+ * <p>Ledgers that are read for the first time, or after being idle, start with the initial batch size, as do the new
+ * cursors.
+ */
+class ReadAheadController {
+
+    /**
+     * Read access pattern detected on a ledger.
+     */
+    enum AccessPattern {
+        SEQUENTIAL,
+        STRIDED,
+        RANDOM
+    }
+
+    // Beyond this stride, reading ahead would mostly fill the cache with entries that are never read
+    static final int MAX_STRIDE = 16;
+
+    // Number of readers of a ledger whose access patterns are tracked separately
+    static final int MAX_CURSORS = 4;
+
+    private final int initialBatchSize;
+    private final int maxBatchSize;
+    private final long idleTimeNanos;
+
+    private final ConcurrentLongHashMap<LedgerReadState> ledgers = ConcurrentLongHashMap.<LedgerReadState>newBuilder()
+            .expectedItems(4096)
+            .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+            .build();
+
+    ReadAheadController(int initialBatchSize, int maxBatchSize, long idleTime, TimeUnit idleTimeUnit) {
+        checkArgument(initialBatchSize > 0, "Initial read-ahead batch size must be positive");
+        checkArgument(maxBatchSize >= initialBatchSize, "Max read-ahead batch size must be >= the initial one");
+        this.initialBatchSize = initialBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.idleTimeNanos = idleTimeUnit.toNanos(idleTime);
+    }
+
+    /**
+     * Record a read on a ledger.
+     *
+     * @return the access pattern detected for the ledger, including this read
+     */
+    AccessPattern recordAccess(long ledgerId, long entryId) {
+        LedgerReadState state = ledgers.get(ledgerId);
+        if (state == null) {
+            state = ledgers.computeIfAbsent(ledgerId, l -> new LedgerReadState());
+        }
+        return state.recordAccess(entryId);
+    }
+
+    /**
+     * Compute the number of entries to read-ahead after a read cache miss on an entry, adjusting the window of the
+     * cursor that read it for the next misses.
+     *
+     * @return the number of entries to read-ahead, or 0 if read-ahead should be skipped
+     */
+    int getReadAheadBatchSize(long ledgerId, long entryId) {
+        LedgerReadState state = ledgers.get(ledgerId);
+        if (state == null) {
+            return initialBatchSize;
+        }
+        return state.nextBatchSize(entryId);
+    }
+
+    void removeLedger(long ledgerId) {
+        ledgers.remove(ledgerId);
+    }
+
+    /**
+     * Forget about the ledgers that were not read recently.
+     */
+    void removeIdleLedgers() {
+        long now = MathUtils.nowInNano();
+        ledgers.removeIf((ledgerId, state) -> state.isIdle(now));
+    }
+
+    long getTrackedLedgersCount() {
+        return ledgers.size();
+    }
+
+    private final class LedgerReadState {
+        private final ReadCursor[] cursors = new ReadCursor[MAX_CURSORS];
+        private int numCursors = 0;
+        private volatile long lastAccessNanos;
+
+        LedgerReadState() {
+            this.lastAccessNanos = MathUtils.nowInNano();
+        }
+
+        synchronized AccessPattern recordAccess(long entryId) {
+            long now = MathUtils.nowInNano();
+            lastAccessNanos = now;
+            if (numCursors == 0) {
+                // First read on the ledger, optimistically assume it will be sequential
+                cursors[numCursors++] = new ReadCursor(entryId, AccessPattern.SEQUENTIAL, now);
+                return AccessPattern.SEQUENTIAL;
+            }
+
+            ReadCursor cursor = findCursor(entryId);
+            if (cursor == null) {
+                // A read far from the other readers, either a random read or a new reader
+                cursor = new ReadCursor(entryId, AccessPattern.RANDOM, now);
+                if (numCursors < MAX_CURSORS) {
+                    cursors[numCursors++] = cursor;
+                } else {
+                    int lru = 0;
+                    for (int i = 1; i < numCursors; i++) {
+                        if (cursors[i].lastAccessNanos < cursors[lru].lastAccessNanos) {
+                            lru = i;
+                        }
+                    }
+                    cursors[lru] = cursor;
+                }
+                return cursor.pattern;
+            }
+
+            cursor.lastAccessNanos = now;
+            long stride = entryId - cursor.lastEntryId;
+            if (stride == 0) {
+                // Same entry read again, eg: by a different reader
+                return cursor.pattern;
+            } else if (stride == 1) {
+                cursor.pattern = AccessPattern.SEQUENTIAL;
+            } else if (stride == cursor.lastStride) {
+                cursor.pattern = AccessPattern.STRIDED;
+            } else {
+                cursor.pattern = AccessPattern.RANDOM;
+            }
+
+            cursor.lastStride = stride;
+            cursor.lastEntryId = entryId;
+            return cursor.pattern;
+        }
+
+        /**
+         * @return the cursor closest behind the entry, within {@link #MAX_STRIDE} entries, or null
+         */
+        private ReadCursor findCursor(long entryId) {
+            ReadCursor closest = null;
+            for (int i = 0; i < numCursors; i++) {
+                long distance = entryId - cursors[i].lastEntryId;
+                if (distance >= 0 && distance <= MAX_STRIDE
+                        && (closest == null || distance < entryId - closest.lastEntryId)) {
+                    closest = cursors[i];
+                }
+            }
+            return closest;
+        }
+
+        synchronized int nextBatchSize(long entryId) {
+            ReadCursor cursor = null;
+            for (int i = 0; i < numCursors; i++) {
+                if (cursors[i].lastEntryId == entryId) {
+                    cursor = cursors[i];
+                    break;
+                }
+            }
+            if (cursor == null) {
+                // The cursor was replaced since the read was recorded
+                return initialBatchSize;
+            }
+
+            switch (cursor.pattern) {
+            case SEQUENTIAL:
+                int batchSize = cursor.window;
+                cursor.window = Math.min(maxBatchSize, cursor.window * 2);
+                return batchSize;
+
+            case STRIDED:
+                batchSize = (int) Math.min(maxBatchSize, cursor.window * cursor.lastStride);
+                cursor.window = Math.min(maxBatchSize, cursor.window * 2);
+                return batchSize;
+
+            case RANDOM:
+            default:
+                cursor.window = Math.max(initialBatchSize, cursor.window / 2);
+                return 0;
+            }
+        }
+
+        boolean isIdle(long now) {
+            return now - lastAccessNanos > idleTimeNanos;
+        }
+    }
+
+    private final class ReadCursor {
+        private long lastEntryId;
+        private long lastStride = 0;
+        private AccessPattern pattern;
+        private int window = initialBatchSize;
+        private long lastAccessNanos;
+
+        ReadCursor(long entryId, AccessPattern pattern, long now) {
+            this.lastEntryId = entryId;
+            this.pattern = pattern;
+            this.lastAccessNanos = now;
+        }
+    }
+}
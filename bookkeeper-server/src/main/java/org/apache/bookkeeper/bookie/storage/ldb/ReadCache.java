@@ -30,7 +30,10 @@ import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
 import org.slf4j.Logger;
@@ -45,11 +48,24 @@ import org.slf4j.LoggerFactory;
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>Optionally, the cache can be configured to give a second chance to the
+ * entries that were read since they were inserted, in a CLOCK fashion. When a
+ * segment is reclaimed, its referenced entries are compacted at the head of the
+ * segment, with the reference cleared, instead of being discarded. At most half of
+ * the segment is used for the promoted entries.
  */
 public class ReadCache implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
-    private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+
+    // Flag stored in the upper half of the entry size in the index, set when the entry is read
+    private static final long REFERENCED_FLAG = 1L << 32;
+    private static final long SIZE_MASK = REFERENCED_FLAG - 1;
+
+    // Size of the buffer used to move the promoted entries within a segment
+    private static final int MOVE_BUFFER_SIZE = 64 * 1024;
 
     private final List<ByteBuf> cacheSegments;
     private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
@@ -62,12 +78,39 @@ public class ReadCache implements Closeable {
     private ByteBufAllocator allocator;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private final boolean promoteHotEntries;
+    private final LongAdder promotedEntries = new LongAdder();
+    private final Counter promotionsCounter;
+
+    // Only accessed while holding the write lock
+    private long[] hotEntries;
+    private int hotEntriesIdx;
+    private byte[] moveBuffer;
+
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize) {
         this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    /**
+     * @param promoteHotEntries whether the entries that were read should survive the rotation of their segment
+     */
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean promoteHotEntries) {
+        this(allocator, maxCacheSize, maxSegmentSize, promoteHotEntries,
+                NullStatsLogger.INSTANCE.getCounter("read-cache-promotions"));
+    }
+
+    /**
+     * @param promotionsCounter counts the entries that survived the rotation of their segment
+     */
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean promoteHotEntries,
+            Counter promotionsCounter) {
         this.allocator = allocator;
+        this.promoteHotEntries = promoteHotEntries;
+        this.promotionsCounter = promotionsCounter;
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
         segmentSize = (int) (maxCacheSize / segmentsCount);
 
@@ -123,9 +166,13 @@ public class ReadCache implements Closeable {
             if (offset + entrySize > segmentSize) {
                 // Rollover to next segment
                 currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
-                currentSegmentOffset.set(alignedSize);
-                cacheIndexes.get(currentSegmentIdx).clear();
-                offset = 0;
+                if (promoteHotEntries) {
+                    offset = compactHotEntries(currentSegmentIdx, Math.min(segmentSize / 2, segmentSize - entrySize));
+                } else {
+                    cacheIndexes.get(currentSegmentIdx).clear();
+                    offset = 0;
+                }
+                currentSegmentOffset.set(offset + alignedSize);
             }
 
             // Copy entry into read cache segment
@@ -147,10 +194,15 @@ public class ReadCache implements Closeable {
             for (int i = 0; i < size; i++) {
                 int segmentIdx = (currentSegmentIdx + (size - i)) % size;
 
-                LongPair res = cacheIndexes.get(segmentIdx).get(ledgerId, entryId);
+                ConcurrentLongLongPairHashMap index = cacheIndexes.get(segmentIdx);
+                LongPair res = index.get(ledgerId, entryId);
                 if (res != null) {
                     int entryOffset = (int) res.first;
-                    int entryLen = (int) res.second;
+                    int entryLen = (int) (res.second & SIZE_MASK);
+
+                    if (promoteHotEntries && (res.second & REFERENCED_FLAG) == 0) {
+                        index.put(ledgerId, entryId, res.first, res.second | REFERENCED_FLAG);
+                    }
 
                     ByteBuf entry = allocator.buffer(entryLen, entryLen);
                     entry.writeBytes(cacheSegments.get(segmentIdx), entryOffset, entryLen);
@@ -186,6 +238,85 @@ public class ReadCache implements Closeable {
         return false;
     }
 
+    /**
+     * Clear the segment, keeping only the entries that were read since they were inserted. The surviving entries are
+     * moved at the beginning of the segment and their reference is cleared, so that they'll need to be read again to
+     * survive the next rotation.
+     *
+     * <p>Must be called while holding the write lock.
+     *
+     * @return the number of bytes used by the promoted entries in the segment
+     */
+    private int compactHotEntries(int segmentIdx, int maxPromotedBytes) {
+        ConcurrentLongLongPairHashMap index = cacheIndexes.get(segmentIdx);
+
+        int entriesCount = (int) index.size();
+        if (hotEntries == null || hotEntries.length < entriesCount * 4) {
+            hotEntries = new long[entriesCount * 4 * 2];
+        }
+
+        hotEntriesIdx = 0;
+        index.forEach((ledgerId, entryId, offset, size) -> {
+            if ((size & REFERENCED_FLAG) != 0) {
+                hotEntries[hotEntriesIdx] = offset;
+                hotEntries[hotEntriesIdx + 1] = size & SIZE_MASK;
+                hotEntries[hotEntriesIdx + 2] = ledgerId;
+                hotEntries[hotEntriesIdx + 3] = entryId;
+                hotEntriesIdx += 4;
+            }
+        });
+        index.clear();
+
+        // Entries are moved in offset order, so that an entry is never overwritten before being moved
+        ArrayGroupSort.sort(hotEntries, 0, hotEntriesIdx);
+
+        ByteBuf segment = cacheSegments.get(segmentIdx);
+        int promotedBytes = 0;
+        int promotedCount = 0;
+        for (int i = 0; i < hotEntriesIdx; i += 4) {
+            int offset = (int) hotEntries[i];
+            int size = (int) hotEntries[i + 1];
+            // the next entries are inserted at the aligned end of the promoted ones
+            if (promotedBytes + align64(size) > maxPromotedBytes) {
+                break;
+            }
+
+            moveWithinSegment(segment, offset, promotedBytes, size);
+            index.put(hotEntries[i + 2], hotEntries[i + 3], promotedBytes, size);
+            promotedBytes += align64(size);
+            promotedCount++;
+        }
+        promotedEntries.add(promotedCount);
+        promotionsCounter.addCount(promotedCount);
+
+        return promotedBytes;
+    }
+
+    private void moveWithinSegment(ByteBuf segment, int srcOffset, int dstOffset, int size) {
+        if (srcOffset == dstOffset) {
+            return;
+        }
+
+        if (moveBuffer == null) {
+            moveBuffer = new byte[MOVE_BUFFER_SIZE];
+        }
+
+        // Since the destination is always before the source, copying the chunks front to back never overwrites
+        // bytes that still need to be moved
+        for (int moved = 0; moved < size; moved += MOVE_BUFFER_SIZE) {
+            int len = Math.min(MOVE_BUFFER_SIZE, size - moved);
+            segment.getBytes(srcOffset + moved, moveBuffer, 0, len);
+            segment.setBytes(dstOffset + moved, moveBuffer, 0, len);
+        }
+    }
+
+    /**
+     * @return the total number of entries that survived the rotation of their segment
+     */
+    public long promotedCount() {
+        return promotedEntries.sum();
+    }
+
     /**
      * @return the total size of cached entries
      */
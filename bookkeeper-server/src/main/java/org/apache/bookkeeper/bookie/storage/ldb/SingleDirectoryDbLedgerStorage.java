@@ -40,18 +40,24 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import org.apache.bookkeeper.bookie.AbstractLogCompactor;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.BookieException.OperationRejectedException;
+import org.apache.bookkeeper.bookie.BookieLoadMonitor;
 import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
@@ -94,6 +100,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final LedgerMetadataIndex ledgerIndex;
     private final EntryLocationIndex entryLocationIndex;
+    private final boolean relocateCompactedEntries;
+    private final long relocationsFoldThreshold;
+    // Route the flushed entries to the hot or cold entry log stream, null if disabled
+    private final ColdLedgerClassifier coldLedgerClassifier;
 
     private final ConcurrentLongHashMap<TransientLedgerInfo> transientLedgerInfoCache;
 
@@ -108,6 +118,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     // Cache where we insert entries for speculative reading
     private final ReadCache readCache;
 
+    // Adapts the read-ahead batch size to the access pattern of each ledger, null when disabled
+    private final ReadAheadController readAheadController;
+
+    // Executor used to fill the read cache in background after a miss, null when read-ahead is done synchronously
+    private final ExecutorService readAheadExecutor;
+
+    // Read-ahead operations that are queued or running in the readAheadExecutor, by ledger
+    private final ConcurrentLongHashMap<PendingReadAhead> pendingReadAheads;
+
+    // Threads used to sort the write cache and to update the locations index while flushing, null when the flush is
+    // done entirely in the flushing thread
+    private final ExecutorService flushWorkersExecutor;
+    private final int flushWorkersThreads;
+
     private final StampedLock writeCacheRotationLock = new StampedLock();
 
     protected final ReentrantLock flushMutex = new ReentrantLock();
@@ -138,13 +162,24 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final long readCacheMaxSize;
     private final int readAheadCacheBatchSize;
     private final long readAheadCacheBatchBytesSize;
+    private final boolean readAheadIndexLookupEnabled;
 
     private final long maxThrottleTimeNanos;
 
     private final DbLedgerStorageStats dbLedgerStorageStats;
 
+    // Max number of chunks of entry locations waiting to be added to the index batch while flushing
+    private static final int MAX_PENDING_LOCATIONS_CHUNKS = 64;
+
+    // Max number of entry locations looked up at once when serving batched reads
+    static final int MAX_BATCHED_LOCATIONS_LOOKUP = 1000;
+
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
+    private static final int DEFAULT_READ_AHEAD_CACHE_MAX_BATCH_SIZE_MULTIPLIER = 10;
+
+    private static final int DEFAULT_READ_AHEAD_ASYNC_MAX_PENDING = 1024;
+
     private final long maxReadAheadBytesSize;
 
     private final Counter flushExecutorTime;
@@ -178,8 +213,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("indexDir", indexBaseDir);
 
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        int writeCacheAppendRegionSize = (int) (1024 * DbLedgerStorage.getLongVariableOrDefault(conf,
+                DbLedgerStorage.WRITE_CACHE_APPEND_REGION_SIZE_KB, 0));
+        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2, WriteCache.DEFAULT_MAX_SEGMENT_SIZE,
+                writeCacheAppendRegionSize);
+        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2,
+                WriteCache.DEFAULT_MAX_SEGMENT_SIZE, writeCacheAppendRegionSize);
         this.singleLedgerDirs = conf.getLedgerDirs().length == 1;
 
         readCacheMaxSize = readCacheSize;
@@ -188,17 +227,38 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         // Do not attempt to perform read-ahead more than half the total size of the cache
         maxReadAheadBytesSize = readCacheMaxSize / 2;
+        readAheadIndexLookupEnabled = DbLedgerStorage.getBooleanVariableOrDefault(conf,
+                DbLedgerStorage.READ_AHEAD_INDEX_LOOKUP_ENABLED, false);
 
         long maxThrottleTimeMillis = conf.getLong(DbLedgerStorage.MAX_THROTTLE_TIME_MILLIS,
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        Counter readCachePromotionsCounter = ledgerIndexDirStatsLogger.getCounter(
+                DbLedgerStorageStats.READ_CACHE_PROMOTIONS);
+        readCache = new ReadCache(allocator, readCacheMaxSize, ReadCache.DEFAULT_MAX_SEGMENT_SIZE,
+                DbLedgerStorage.getBooleanVariableOrDefault(conf,
+                        DbLedgerStorage.READ_AHEAD_CACHE_PROMOTE_HOT_ENTRIES, false), readCachePromotionsCounter);
 
         ledgerIndex = new LedgerMetadataIndex(conf,
                 KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+        relocateCompactedEntries = DbLedgerStorage.getBooleanVariableOrDefault(conf,
+                DbLedgerStorage.RELOCATE_COMPACTED_ENTRIES, false);
+        // the relocations left by a previous run with the relocations enabled are folded right away
+        relocationsFoldThreshold = relocateCompactedEntries ? DbLedgerStorage.getLongVariableOrDefault(conf,
+                DbLedgerStorage.RELOCATIONS_FOLD_THRESHOLD, DbLedgerStorage.DEFAULT_RELOCATIONS_FOLD_THRESHOLD) : 1;
         entryLocationIndex = new EntryLocationIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger,
+                DbLedgerStorage.getLongVariableOrDefault(conf, DbLedgerStorage.LOCATION_CACHE_MAX_ENTRIES, 0),
+                relocateCompactedEntries);
+
+        if (DbLedgerStorage.getBooleanVariableOrDefault(conf, DbLedgerStorage.SEGREGATE_COLD_LEDGERS, false)) {
+            coldLedgerClassifier = new ColdLedgerClassifier(TimeUnit.SECONDS.toMillis(
+                    DbLedgerStorage.getLongVariableOrDefault(conf, DbLedgerStorage.COLD_LEDGER_MIN_AGE_SECONDS,
+                            DbLedgerStorage.DEFAULT_COLD_LEDGER_MIN_AGE_SECONDS)));
+        } else {
+            coldLedgerClassifier = null;
+        }
 
         transientLedgerInfoCache = ConcurrentLongHashMap.<TransientLedgerInfo>newBuilder()
                 .expectedItems(16 * 1024)
@@ -217,9 +277,51 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             () -> writeCache.size() + writeCacheBeingFlushed.size(),
             () -> writeCache.count() + writeCacheBeingFlushed.count(),
             () -> readCache.size(),
-            () -> readCache.count()
+            () -> readCache.count(),
+            readCachePromotionsCounter
         );
 
+        if (DbLedgerStorage.getBooleanVariableOrDefault(conf, DbLedgerStorage.READ_AHEAD_CACHE_ADAPTIVE_ENABLED,
+                false) && readAheadCacheBatchSize > 0) {
+            int readAheadCacheMaxBatchSize = (int) DbLedgerStorage.getLongVariableOrDefault(conf,
+                    DbLedgerStorage.READ_AHEAD_CACHE_MAX_BATCH_SIZE,
+                    (long) readAheadCacheBatchSize * DEFAULT_READ_AHEAD_CACHE_MAX_BATCH_SIZE_MULTIPLIER);
+            readAheadController = new ReadAheadController(readAheadCacheBatchSize,
+                    Math.max(readAheadCacheBatchSize, readAheadCacheMaxBatchSize),
+                    TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
+            cleanupExecutor.scheduleAtFixedRate(readAheadController::removeIdleLedgers,
+                    TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES,
+                    TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
+        } else {
+            readAheadController = null;
+        }
+
+        int readAheadAsyncThreads = (int) DbLedgerStorage.getLongVariableOrDefault(conf,
+                DbLedgerStorage.READ_AHEAD_ASYNC_THREADS, 0);
+        if (readAheadAsyncThreads > 0) {
+            int readAheadAsyncMaxPending = (int) DbLedgerStorage.getLongVariableOrDefault(conf,
+                    DbLedgerStorage.READ_AHEAD_ASYNC_MAX_PENDING, DEFAULT_READ_AHEAD_ASYNC_MAX_PENDING);
+            readAheadExecutor = new ThreadPoolExecutor(readAheadAsyncThreads, readAheadAsyncThreads,
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(readAheadAsyncMaxPending),
+                    new DefaultThreadFactory("db-storage-readahead"));
+            pendingReadAheads = ConcurrentLongHashMap.<PendingReadAhead>newBuilder()
+                    .expectedItems(readAheadAsyncMaxPending)
+                    .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                    .build();
+        } else {
+            readAheadExecutor = null;
+            pendingReadAheads = null;
+        }
+
+        flushWorkersThreads = (int) DbLedgerStorage.getLongVariableOrDefault(conf,
+                DbLedgerStorage.FLUSH_WORKER_THREADS, 0);
+        if (flushWorkersThreads > 0) {
+            flushWorkersExecutor = Executors.newFixedThreadPool(flushWorkersThreads,
+                    new DefaultThreadFactory("db-storage-flush-worker"));
+        } else {
+            flushWorkersExecutor = null;
+        }
+
         flushExecutorTime = ledgerIndexDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
 
         executor.submit(() -> {
@@ -289,6 +391,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         gcThread.suspendMinorGC();
     }
 
+    @Override
+    public void setLoadMonitor(BookieLoadMonitor loadMonitor) {
+        gcThread.setLoadMonitor(loadMonitor);
+    }
+
+    /**
+     * Run the garbage collection of this directory on workers shared with the other directories.
+     *
+     * @see GarbageCollectorThread#setGcWorkers(ExecutorService, int, AbstractLogCompactor.Throttler)
+     */
+    void setGcWorkers(ExecutorService gcWorkers, int parallelism, AbstractLogCompactor.Throttler ioBudget) {
+        gcThread.setGcWorkers(gcWorkers, parallelism, ioBudget);
+    }
+
     public void suspendMajorGC() {
         gcThread.suspendMajorGC();
     }
@@ -343,8 +459,19 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             flush();
 
             gcThread.shutdown();
+
+            if (readAheadExecutor != null) {
+                readAheadExecutor.shutdownNow();
+                readAheadExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+
             entryLogger.close();
 
+            if (flushWorkersExecutor != null) {
+                flushWorkersExecutor.shutdown();
+                flushWorkersExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+
             cleanupExecutor.shutdown();
             cleanupExecutor.awaitTermination(1, TimeUnit.SECONDS);
 
@@ -585,32 +712,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return getLastEntry(ledgerId);
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
-        long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-        if (!writeCacheRotationLock.validate(stamp)) {
-            // Fallback to regular read lock approach
-            stamp = writeCacheRotationLock.readLock();
-            try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
-            }
-        }
-
-        // First try to read from the write cache of recent entries
-        ByteBuf entry = localWriteCache.get(ledgerId, entryId);
-        if (entry != null) {
-            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-            return entry;
+        ReadAheadController.AccessPattern accessPattern = null;
+        if (readAheadController != null) {
+            accessPattern = readAheadController.recordAccess(ledgerId, entryId);
         }
 
-        // If there's a flush going on, the entry might be in the flush buffer
-        entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
+        // First try to read from the write caches of recent entries
+        ByteBuf entry = getFromWriteCaches(ledgerId, entryId);
         if (entry != null) {
             dbLedgerStorageStats.getWriteCacheHitCounter().inc();
             return entry;
@@ -622,10 +730,16 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         entry = readCache.get(ledgerId, entryId);
         if (entry != null) {
             dbLedgerStorageStats.getReadCacheHitCounter().inc();
+            if (accessPattern != null) {
+                dbLedgerStorageStats.getReadCachePatternHitCounter(accessPattern).inc();
+            }
             return entry;
         }
 
         dbLedgerStorageStats.getReadCacheMissCounter().inc();
+        if (accessPattern != null) {
+            dbLedgerStorageStats.getReadCachePatternMissCounter(accessPattern).inc();
+        }
 
         // Read from main storage
         long entryLocation;
@@ -643,24 +757,206 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
         }
 
+        entry = readFromEntryLog(ledgerId, entryId, entryLocation);
+        readCache.put(ledgerId, entryId, entry);
+
+        // Try to read more entries, unless the ledger is being read randomly
+        int readAheadBatchSize = readAheadCacheBatchSize;
+        if (readAheadController != null) {
+            readAheadBatchSize = readAheadController.getReadAheadBatchSize(ledgerId, entryId);
+            if (readAheadBatchSize == 0) {
+                dbLedgerStorageStats.getReadAheadSkippedCounter().inc();
+                return entry;
+            }
+        }
+
+        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
+        if (readAheadExecutor != null) {
+            scheduleReadAhead(ledgerId, entryId + 1, nextEntryLocation, readAheadBatchSize);
+        } else {
+            fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, readAheadBatchSize);
+        }
+
+        return entry;
+    }
+
+    private ByteBuf getFromWriteCaches(long ledgerId, long entryId) {
+        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
+        // write caches are already thread safe on their own, here we just need to make sure we get references to both
+        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
+        long stamp = writeCacheRotationLock.tryOptimisticRead();
+        WriteCache localWriteCache = writeCache;
+        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+        if (!writeCacheRotationLock.validate(stamp)) {
+            // Fallback to regular read lock approach
+            stamp = writeCacheRotationLock.readLock();
+            try {
+                localWriteCache = writeCache;
+                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+            } finally {
+                writeCacheRotationLock.unlockRead(stamp);
+            }
+        }
+
+        ByteBuf entry = localWriteCache.get(ledgerId, entryId);
+        if (entry != null) {
+            return entry;
+        }
+
+        // If there's a flush going on, the entry might be in the flush buffer
+        return localWriteCacheBeingFlushed.get(ledgerId, entryId);
+    }
+
+    private ByteBuf readFromEntryLog(long ledgerId, long entryId, long entryLocation) throws IOException {
         long readEntryStartNano = MathUtils.nowInNano();
         try {
-            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+            return entryLogger.readEntry(ledgerId, entryId, entryLocation);
         } finally {
             dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
                     MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
         }
+    }
 
-        readCache.put(ledgerId, entryId, entry);
+    /**
+     * Read a range of entries for a batched read request.
+     *
+     * <p>The first entry is read through {@link #getEntry(long, long)}, which also triggers the read-ahead. The
+     * following entries that are not found in the caches are read from the entry log, after looking up their
+     * locations in the index with range scans instead of one lookup per entry. A range is sized to cover the entries
+     * that fit in the rest of {@code maxSize}, judging from the size of the entries read so far.
+     */
+    @Override
+    public void getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize,
+                           Predicate<ByteBuf> consumer) throws IOException, BookieException {
+        if (firstEntryId < 0) {
+            CompactableLedgerStorage.super.getEntries(ledgerId, firstEntryId, maxCount, maxSize, consumer);
+            return;
+        }
 
-        // Try to read more entries
-        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+        ByteBuf firstEntry = getEntry(ledgerId, firstEntryId);
+        long readBytes = firstEntry.readableBytes();
+        if (!consumer.test(firstEntry)) {
+            return;
+        }
 
-        return entry;
+        long[] locations = null;
+        long locationsFirstEntryId = -1;
+        for (int i = 1; i < maxCount; i++) {
+            long entryId = firstEntryId + i;
+            long startTime = MathUtils.nowInNano();
+            ByteBuf entry;
+            try {
+                entry = getFromWriteCaches(ledgerId, entryId);
+                if (entry != null) {
+                    dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+                } else {
+                    dbLedgerStorageStats.getWriteCacheMissCounter().inc();
+                    entry = readCache.get(ledgerId, entryId);
+                    if (entry != null) {
+                        dbLedgerStorageStats.getReadCacheHitCounter().inc();
+                    } else {
+                        dbLedgerStorageStats.getReadCacheMissCounter().inc();
+                    }
+                }
+
+                if (entry == null) {
+                    if (locations == null || entryId - locationsFirstEntryId >= locations.length) {
+                        int count = getLocationsLookupCount(maxCount - i, maxSize - readBytes, readBytes / i);
+                        long locationIndexStartNano = MathUtils.nowInNano();
+                        try {
+                            locations = entryLocationIndex.getLocations(ledgerId, entryId, entryId + count - 1);
+                            locationsFirstEntryId = entryId;
+                        } finally {
+                            dbLedgerStorageStats.getReadFromLocationIndexTime().addLatency(
+                                    MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
+                        }
+                    }
+
+                    long entryLocation = locations[(int) (entryId - locationsFirstEntryId)];
+                    if (entryLocation == 0) {
+                        // The entry might have been flushed from the write cache after the index range was read
+                        entry = getEntry(ledgerId, entryId);
+                    } else {
+                        entry = readFromEntryLog(ledgerId, entryId, entryLocation);
+                        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+                    }
+                } else {
+                    recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+                }
+            } catch (IOException | BookieException e) {
+                // the entries read so far are still returned
+                if (log.isDebugEnabled()) {
+                    log.debug("Stopped the batched read of ledger {} at entry {}", ledgerId, entryId, e);
+                }
+                return;
+            }
+
+            readBytes += entry.readableBytes();
+            if (!consumer.test(entry)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the number of entries to look up at once in the index for a batched read. The entries are assumed to be
+     * about as large as the ones read so far, and the lookup covers the entries up to the first one not fitting in
+     * the remaining size.
+     */
+    @VisibleForTesting
+    static int getLocationsLookupCount(int remainingCount, long remainingSize, long averageEntrySize) {
+        long count = Math.min(remainingCount, MAX_BATCHED_LOCATIONS_LOOKUP);
+        if (averageEntrySize > 0) {
+            long fitting = Math.max(0, remainingSize) / averageEntrySize;
+            if (fitting < count) {
+                count = fitting + 1;
+            }
+        }
+        return (int) Math.max(1, count);
     }
 
-    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation) {
+    /**
+     * Fill the read cache in background, so that the reader that had the cache miss does not have to wait for the
+     * whole read-ahead batch to be read from the entry log.
+     *
+     * <p>If a read-ahead covering the first entry is already pending for the same ledger, no new read-ahead is
+     * scheduled. If too many read-ahead operations are pending, the read-ahead is skipped.
+     */
+    private void scheduleReadAhead(long ledgerId, long firstEntryId, long firstEntryLocation,
+                                   int readAheadBatchSize) {
+        PendingReadAhead readAhead = new PendingReadAhead(firstEntryId, firstEntryId + readAheadBatchSize);
+        PendingReadAhead existing = pendingReadAheads.putIfAbsent(ledgerId, readAhead);
+        if (existing != null) {
+            if (existing.covers(firstEntryId)) {
+                dbLedgerStorageStats.getReadAheadMergedCounter().inc();
+                return;
+            }
+
+            // Another reader is reading a different part of the same ledger. Only the first read-ahead is tracked.
+            readAhead = null;
+        }
+
+        final PendingReadAhead trackedReadAhead = readAhead;
+        try {
+            readAheadExecutor.execute(() -> {
+                try {
+                    fillReadAheadCache(ledgerId, firstEntryId, firstEntryLocation, readAheadBatchSize);
+                } finally {
+                    if (trackedReadAhead != null) {
+                        pendingReadAheads.remove(ledgerId, trackedReadAhead);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (trackedReadAhead != null) {
+                pendingReadAheads.remove(ledgerId, trackedReadAhead);
+            }
+            dbLedgerStorageStats.getReadAheadRejectedCounter().inc();
+        }
+    }
+
+    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation,
+                                    int readAheadBatchSize) {
         long readAheadStartNano = MathUtils.nowInNano();
         int count = 0;
         long size = 0;
@@ -670,9 +966,17 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             long currentEntryLogId = firstEntryLogId;
             long currentEntryLocation = firstEntryLocation;
 
-            while (chargeReadAheadCache(count, size) && currentEntryLogId == firstEntryLogId) {
-                ByteBuf entry = entryLogger.readEntry(originalLedgerId,
-                        firstEntryId, currentEntryLocation);
+            while (chargeReadAheadCache(count, size, readAheadBatchSize) && currentEntryLogId == firstEntryLogId) {
+                ByteBuf entry;
+                try {
+                    entry = entryLogger.readEntry(originalLedgerId, firstEntryId, currentEntryLocation);
+                } catch (IOException e) {
+                    // The entry log has an entry of another ledger at this location, or ends there
+                    if (!readAheadIndexLookupEnabled) {
+                        throw e;
+                    }
+                    break;
+                }
 
                 try {
                     long currentEntryLedgerId = entry.getLong(0);
@@ -696,6 +1000,26 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     ReferenceCountUtil.release(entry);
                 }
             }
+
+            if (readAheadIndexLookupEnabled && chargeReadAheadCache(count, size, readAheadBatchSize)) {
+                // The next entries of the ledger are not stored right after the ones already read, either because they
+                // are interleaved with entries of other ledgers or because they are in a different entry log. Look up
+                // all their locations at once and keep reading from there, at the cost of random reads.
+                long[] locations = entryLocationIndex.getLocations(originalLedgerId, firstEntryId,
+                        firstEntryId + readAheadBatchSize - count - 1);
+                for (int i = 0; i < locations.length && locations[i] != 0
+                        && chargeReadAheadCache(count, size, readAheadBatchSize); i++) {
+                    ByteBuf entry = entryLogger.readEntry(originalLedgerId, firstEntryId, locations[i]);
+                    try {
+                        readCache.put(originalLedgerId, firstEntryId, entry);
+                        count++;
+                        firstEntryId++;
+                        size += entry.readableBytes();
+                    } finally {
+                        ReferenceCountUtil.release(entry);
+                    }
+                }
+            }
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("Exception during read ahead for ledger: {}: e", originalLedgerId, e);
@@ -709,8 +1033,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     }
 
     protected boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes) {
+        return chargeReadAheadCache(currentReadAheadCount, currentReadAheadBytes, readAheadCacheBatchSize);
+    }
+
+    protected boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes,
+                                           int readAheadBatchSize) {
         // compatible with old logic
-        boolean chargeSizeCondition = currentReadAheadCount < readAheadCacheBatchSize
+        boolean chargeSizeCondition = currentReadAheadCount < readAheadBatchSize
                 && currentReadAheadBytes < maxReadAheadBytesSize;
         if (chargeSizeCondition && readAheadCacheBatchBytesSize > 0) {
             // exact limits limit the size and count for each batch
@@ -822,26 +1151,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                         sizeToFlush / 1024.0 / 1024);
             }
 
-            // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                long location = entryLogger.addEntry(ledgerId, entry);
-                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-            });
-
-            long entryLoggerStart = MathUtils.nowInNano();
-            entryLogger.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
-
-            long batchFlushStartTime = MathUtils.nowInNano();
-            batch.flush();
-            batch.close();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            if (flushWorkersExecutor != null) {
+                flushWriteCacheWithWorkers();
+            } else {
+                flushWriteCache();
             }
 
             long ledgerIndexStartTime = MathUtils.nowInNano();
@@ -878,6 +1191,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
                         entryLocationIndex.removeOffsetFromDeletedLedgers();
                         ledgerIndex.removeDeletedLedgers();
+                        entryLocationIndex.foldRelocations(relocationsFoldThreshold);
                     } catch (Throwable t) {
                         log.warn("Failed to cleanup db indexes", t);
                     }
@@ -890,9 +1204,71 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
+    private long addEntryToEntryLog(long ledgerId, ByteBuf entry, long flushTimeMillis) throws IOException {
+        if (coldLedgerClassifier == null) {
+            return entryLogger.addEntry(ledgerId, entry);
+        }
+        return entryLogger.addEntry(ledgerId, entry, coldLedgerClassifier.getLogStream(ledgerId, flushTimeMillis));
+    }
+
     /**
      * Swap the current write cache with the replacement cache.
      */
+    private void flushWriteCache() throws IOException {
+        // Write all the pending entries into the entry logger and collect the offset
+        // position for each entry
+
+        Batch batch = entryLocationIndex.newBatch();
+        long flushTimeMillis = System.currentTimeMillis();
+        writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
+            long location = addEntryToEntryLog(ledgerId, entry, flushTimeMillis);
+            entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+            entryLocationIndex.cacheLocation(ledgerId, entryId, location);
+        });
+
+        long entryLoggerStart = MathUtils.nowInNano();
+        entryLogger.flush();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
+
+        long batchFlushStartTime = MathUtils.nowInNano();
+        batch.flush();
+        batch.close();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
+        if (log.isDebugEnabled()) {
+            log.debug("DB batch flushed time : {} s",
+                    MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Same as {@link #flushWriteCache()}, though the write cache is sorted in parallel by the flush workers, and one
+     * of them adds the entries locations to the index batch while the entries are written and synced in the entry
+     * log.
+     */
+    private void flushWriteCacheWithWorkers() throws IOException {
+        try (LocationsIndexPipeline locationsPipeline = new LocationsIndexPipeline(entryLocationIndex,
+                flushWorkersExecutor, MAX_PENDING_LOCATIONS_CHUNKS)) {
+            long flushTimeMillis = System.currentTimeMillis();
+            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
+                long location = addEntryToEntryLog(ledgerId, entry, flushTimeMillis);
+                locationsPipeline.addLocation(ledgerId, entryId, location);
+            }, flushWorkersExecutor, flushWorkersThreads);
+            locationsPipeline.endOfLocations();
+
+            long entryLoggerStart = MathUtils.nowInNano();
+            entryLogger.flush();
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
+
+            long batchFlushStartTime = MathUtils.nowInNano();
+            locationsPipeline.commit();
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
+            if (log.isDebugEnabled()) {
+                log.debug("DB batch flushed time : {} s",
+                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
     private void swapWriteCache() {
         long stamp = writeCacheRotationLock.writeLock();
         try {
@@ -936,6 +1312,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         entryLocationIndex.delete(ledgerId);
         ledgerIndex.delete(ledgerId);
+        if (coldLedgerClassifier != null) {
+            coldLedgerClassifier.ledgerDeleted(ledgerId, System.currentTimeMillis());
+        }
 
         for (int i = 0, size = ledgerDeletionListeners.size(); i < size; i++) {
             LedgerDeletionListener listener = ledgerDeletionListeners.get(i);
@@ -946,6 +1325,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         if (tli != null) {
             tli.close();
         }
+
+        if (readAheadController != null) {
+            readAheadController.removeLedger(ledgerId);
+        }
     }
 
     @Override
@@ -979,7 +1362,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // It's fine to have a concurrent flush operation at this point, because we
         // know that none of the entries being flushed was included in the compaction
         // round that we are dealing with.
-        entryLocationIndex.updateLocations(locations);
+        if (relocateCompactedEntries) {
+            entryLocationIndex.relocateLocations(locations);
+        } else {
+            entryLocationIndex.updateLocations(locations);
+        }
     }
 
     @VisibleForTesting
@@ -1297,4 +1684,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     DbLedgerStorageStats getDbLedgerStorageStats() {
         return dbLedgerStorageStats;
     }
+
+    /**
+     * Range of entries, with the last one excluded, that a pending read-ahead operation will try to read.
+     */
+    private static final class PendingReadAhead {
+        private final long firstEntryId;
+        private final long lastEntryId;
+
+        PendingReadAhead(long firstEntryId, long lastEntryId) {
+            this.firstEntryId = firstEntryId;
+            this.lastEntryId = lastEntryId;
+        }
+
+        boolean covers(long entryId) {
+            return entryId >= firstEntryId && entryId < lastEntryId;
+        }
+    }
 }
@@ -25,8 +25,13 @@ import static com.google.common.base.Preconditions.checkArgument;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
@@ -49,6 +54,11 @@ import org.slf4j.LoggerFactory;
  *
  * <p>There is the possibility to iterate through the stored entries in an ordered
  * way, by (ledgerId, entry).
+ *
+ * <p>When configured with an append region size, each writer thread reserves a
+ * private region of the cache and appends into it without touching the shared
+ * offset, and the index is sharded by ledger id. The shards are only merged when
+ * the cache is scanned through {@link #forEach(EntryConsumer)}.
  */
 public class WriteCache implements Closeable {
 
@@ -59,10 +69,8 @@ public class WriteCache implements Closeable {
         void accept(long ledgerId, long entryId, ByteBuf entry) throws IOException;
     }
 
-    private final ConcurrentLongLongPairHashMap index = ConcurrentLongLongPairHashMap.newBuilder()
-            .expectedItems(4096)
-            .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
-            .build();
+    private final ConcurrentLongLongPairHashMap[] indexShards;
+    private final int indexShardsMask;
 
     private final ConcurrentLongLongHashMap lastEntryMap = ConcurrentLongLongHashMap.newBuilder()
             .expectedItems(4096)
@@ -77,21 +85,47 @@ public class WriteCache implements Closeable {
     private final long segmentOffsetMask;
     private final long segmentOffsetBits;
 
-    private final AtomicLong cacheSize = new AtomicLong(0);
+    private final LongAdder cacheSize = new LongAdder();
     private final AtomicLong cacheOffset = new AtomicLong(0);
     private final LongAdder cacheCount = new LongAdder();
 
+    // Size of the region reserved by each writer thread. 0 means all the writers share the same offset
+    private final int appendRegionSize;
+
+    // Incremented on every clear, to invalidate all the append regions reserved by the writer threads
+    private final AtomicLong generation = new AtomicLong(0);
+
+    private final FastThreadLocal<AppendRegion> appendRegions = new FastThreadLocal<AppendRegion>() {
+        @Override
+        protected AppendRegion initialValue() {
+            return new AppendRegion();
+        }
+    };
+
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
 
     private final ByteBufAllocator allocator;
 
+    // Default maxSegmentSize set to 1Gb
+    static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
+
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize) {
-        // Default maxSegmentSize set to 1Gb
-        this(allocator, maxCacheSize, 1 * 1024 * 1024 * 1024);
+        this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE);
     }
 
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, 0);
+    }
+
+    /**
+     * Create a write cache where each writer thread appends into its own region.
+     *
+     * @param appendRegionSize size of the region reserved by each writer thread, or 0 to have all the writers
+     *                         appending through a single shared offset
+     */
+    public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, int appendRegionSize) {
         checkArgument(maxSegmentSize > 0);
+        checkArgument(appendRegionSize >= 0);
 
         long alignedMaxSegmentSize = alignToPowerOfTwo(maxSegmentSize);
         checkArgument(maxSegmentSize == alignedMaxSegmentSize, "Max segment size needs to be in form of 2^n");
@@ -113,13 +147,32 @@ public class WriteCache implements Closeable {
 
         int lastSegmentSize = (int) (maxCacheSize % maxSegmentSize);
         cacheSegments[segmentsCount - 1] = Unpooled.directBuffer(lastSegmentSize, lastSegmentSize);
+
+        // A region can never span over multiple segments
+        this.appendRegionSize = Math.min(align64(appendRegionSize), maxSegmentSize);
+
+        int numShards = 1;
+        if (this.appendRegionSize > 0) {
+            numShards = (int) alignToPowerOfTwo(Runtime.getRuntime().availableProcessors());
+        }
+        this.indexShards = new ConcurrentLongLongPairHashMap[numShards];
+        this.indexShardsMask = numShards - 1;
+        for (int i = 0; i < numShards; i++) {
+            indexShards[i] = ConcurrentLongLongPairHashMap.newBuilder()
+                    .expectedItems(4096)
+                    .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                    .build();
+        }
     }
 
     public void clear() {
-        cacheSize.set(0L);
+        generation.incrementAndGet();
+        cacheSize.reset();
         cacheOffset.set(0L);
         cacheCount.reset();
-        index.clear();
+        for (ConcurrentLongLongPairHashMap index : indexShards) {
+            index.clear();
+        }
         lastEntryMap.clear();
         deletedLedgers.clear();
     }
@@ -139,27 +192,19 @@ public class WriteCache implements Closeable {
         int alignedSize = align64(size);
 
         long offset;
-        int localOffset;
-        int segmentIdx;
-
-        while (true) {
-            offset = cacheOffset.getAndAdd(alignedSize);
-            localOffset = (int) (offset & segmentOffsetMask);
-            segmentIdx = (int) (offset >>> segmentOffsetBits);
+        if (appendRegionSize > 0 && size <= appendRegionSize) {
+            offset = allocateInAppendRegion(size, alignedSize);
+        } else {
+            offset = allocate(size, alignedSize);
+        }
 
-            if ((offset + size) > maxCacheSize) {
-                // Cache is full
-                return false;
-            } else if (maxSegmentSize - localOffset < size) {
-                // If an entry is at the end of a segment, we need to get a new offset and try
-                // again in next segment
-                continue;
-            } else {
-                // Found a good offset
-                break;
-            }
+        if (offset < 0) {
+            // Cache is full
+            return false;
         }
 
+        int localOffset = (int) (offset & segmentOffsetMask);
+        int segmentIdx = (int) (offset >>> segmentOffsetBits);
         cacheSegments[segmentIdx].setBytes(localOffset, entry, entry.readerIndex(), entry.readableBytes());
 
         // Update last entryId for ledger. This logic is to handle writes for the same
@@ -177,14 +222,73 @@ public class WriteCache implements Closeable {
             }
         }
 
-        index.put(ledgerId, entryId, offset, size);
+        getIndex(ledgerId).put(ledgerId, entryId, offset, size);
         cacheCount.increment();
-        cacheSize.addAndGet(size);
+        cacheSize.add(size);
         return true;
     }
 
+    /**
+     * Reserve space in the shared buffer.
+     *
+     * @return the offset of the reserved space, or -1 if the cache is full
+     */
+    private long allocate(int size, int alignedSize) {
+        while (true) {
+            long offset = cacheOffset.getAndAdd(alignedSize);
+            int localOffset = (int) (offset & segmentOffsetMask);
+
+            if ((offset + size) > maxCacheSize) {
+                // Cache is full
+                return -1;
+            } else if (maxSegmentSize - localOffset < size) {
+                // If an entry is at the end of a segment, we need to get a new offset and try
+                // again in next segment
+                continue;
+            } else {
+                // Found a good offset
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Reserve space in the append region owned by the current thread, reserving a new region from the shared
+     * buffer only when the current one is exhausted.
+     *
+     * @return the offset of the reserved space, or -1 if the cache is full
+     */
+    private long allocateInAppendRegion(int size, int alignedSize) {
+        AppendRegion region = appendRegions.get();
+        long currentGeneration = generation.get();
+
+        if (region.generation != currentGeneration || region.offset + size > region.end) {
+            long regionStart = allocate(appendRegionSize, appendRegionSize);
+            if (regionStart < 0) {
+                return -1;
+            }
+
+            region.generation = currentGeneration;
+            region.offset = regionStart;
+            region.end = regionStart + appendRegionSize;
+        }
+
+        long offset = region.offset;
+        region.offset += alignedSize;
+        return offset;
+    }
+
+    private ConcurrentLongLongPairHashMap getIndex(long ledgerId) {
+        if (indexShardsMask == 0) {
+            return indexShards[0];
+        }
+
+        // Spread the ledger ids before picking the shard, since they are typically sequential
+        return indexShards[(int) ((ledgerId * 0x9E3779B97F4A7C15L) >>> 40) & indexShardsMask];
+    }
+
     public ByteBuf get(long ledgerId, long entryId) {
-        LongPair result = index.get(ledgerId, entryId);
+        LongPair result = getIndex(ledgerId).get(ledgerId, entryId);
         if (result == null) {
             return null;
         }
@@ -200,7 +304,7 @@ public class WriteCache implements Closeable {
     }
 
     public boolean hasEntry(long ledgerId, long entryId) {
-        return index.get(ledgerId, entryId) != null;
+        return getIndex(ledgerId).get(ledgerId, entryId) != null;
     }
 
     public ByteBuf getLastEntry(long ledgerId) {
@@ -217,11 +321,124 @@ public class WriteCache implements Closeable {
         deletedLedgers.add(ledgerId);
     }
 
+    /**
+     * Scan the write cache, sorting the entries in parallel.
+     *
+     * <p>The ledgers are split in {@code sortParallelism} partitions, which are sorted independently by the
+     * executor threads. The entries of each ledger are passed to the consumer ordered by entry id, all together,
+     * though the ledgers are not passed in ledger id order.
+     */
+    public void forEach(EntryConsumer consumer, Executor sortExecutor, int sortParallelism) throws IOException {
+        if (sortParallelism <= 1) {
+            forEach(consumer);
+            return;
+        }
+
+        sortedEntriesLock.lock();
+
+        try {
+            if (sortedPartitions == null || sortedPartitions.length != sortParallelism) {
+                sortedPartitions = new long[sortParallelism][];
+                sortedPartitionsIdx = new int[sortParallelism];
+            }
+
+            long startTime = MathUtils.nowInNano();
+
+            Arrays.fill(sortedPartitionsIdx, 0);
+            for (ConcurrentLongLongPairHashMap index : indexShards) {
+                index.forEach((ledgerId, entryId, offset, length) -> {
+                    if (deletedLedgers.contains(ledgerId)) {
+                        // Ignore deleted ledgers
+                        return;
+                    }
+
+                    int partition = MathUtils.signSafeMod(ledgerId * 0x9E3779B97F4A7C15L >>> 40, sortParallelism);
+                    long[] entries = sortedPartitions[partition];
+                    int idx = sortedPartitionsIdx[partition];
+                    if (entries == null || idx + 4 > entries.length) {
+                        entries = entries == null ? new long[4 * 1024] : Arrays.copyOf(entries, entries.length * 2);
+                        sortedPartitions[partition] = entries;
+                    }
+
+                    entries[idx] = ledgerId;
+                    entries[idx + 1] = entryId;
+                    entries[idx + 2] = offset;
+                    entries[idx + 3] = length;
+                    sortedPartitionsIdx[partition] = idx + 4;
+                });
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("iteration took {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+            }
+            startTime = MathUtils.nowInNano();
+
+            // Sort entries by (ledgerId, entryId) maintaining the 4 items groups, one partition per thread
+            CompletableFuture<?>[] sortTasks = new CompletableFuture<?>[sortParallelism - 1];
+            for (int i = 1; i < sortParallelism; i++) {
+                final int partition = i;
+                sortTasks[i - 1] = CompletableFuture.runAsync(() -> sortPartition(partition), sortExecutor);
+            }
+            sortPartition(0);
+            try {
+                CompletableFuture.allOf(sortTasks).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sorting write cache entries", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to sort write cache entries", e.getCause());
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("sorting {} ms", (MathUtils.elapsedNanos(startTime) / 1e6));
+            }
+            startTime = MathUtils.nowInNano();
+
+            ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
+            for (int i = 0; i < segmentsCount; i++) {
+                entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+            }
+
+            for (int partition = 0; partition < sortParallelism; partition++) {
+                long[] entries = sortedPartitions[partition];
+                int entriesIdx = sortedPartitionsIdx[partition];
+                for (int i = 0; i < entriesIdx; i += 4) {
+                    long ledgerId = entries[i];
+                    long entryId = entries[i + 1];
+                    long offset = entries[i + 2];
+                    long length = entries[i + 3];
+
+                    int localOffset = (int) (offset & segmentOffsetMask);
+                    int segmentIdx = (int) (offset >>> segmentOffsetBits);
+                    ByteBuf entry = entrySegments[segmentIdx];
+                    entry.setIndex(localOffset, localOffset + (int) length);
+                    consumer.accept(ledgerId, entryId, entry);
+                }
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("entry log adding {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+            }
+        } finally {
+            sortedEntriesLock.unlock();
+        }
+    }
+
+    private void sortPartition(int partition) {
+        if (sortedPartitionsIdx[partition] > 0) {
+            ArrayGroupSort.sort(sortedPartitions[partition], 0, sortedPartitionsIdx[partition]);
+        }
+    }
+
     public void forEach(EntryConsumer consumer) throws IOException {
         sortedEntriesLock.lock();
 
         try {
-            int entriesToSort = (int) index.size();
+            long totalEntries = 0;
+            for (ConcurrentLongLongPairHashMap index : indexShards) {
+                totalEntries += index.size();
+            }
+            int entriesToSort = (int) totalEntries;
             int arrayLen = entriesToSort * 4;
             if (sortedEntries == null || sortedEntries.length < arrayLen) {
                 sortedEntries = new long[(int) (arrayLen * 2)];
@@ -230,18 +447,20 @@ public class WriteCache implements Closeable {
             long startTime = MathUtils.nowInNano();
 
             sortedEntriesIdx = 0;
-            index.forEach((ledgerId, entryId, offset, length) -> {
-                if (deletedLedgers.contains(ledgerId)) {
-                    // Ignore deleted ledgers
-                    return;
-                }
-
-                sortedEntries[sortedEntriesIdx] = ledgerId;
-                sortedEntries[sortedEntriesIdx + 1] = entryId;
-                sortedEntries[sortedEntriesIdx + 2] = offset;
-                sortedEntries[sortedEntriesIdx + 3] = length;
-                sortedEntriesIdx += 4;
-            });
+            for (ConcurrentLongLongPairHashMap index : indexShards) {
+                index.forEach((ledgerId, entryId, offset, length) -> {
+                    if (deletedLedgers.contains(ledgerId)) {
+                        // Ignore deleted ledgers
+                        return;
+                    }
+
+                    sortedEntries[sortedEntriesIdx] = ledgerId;
+                    sortedEntries[sortedEntriesIdx + 1] = entryId;
+                    sortedEntries[sortedEntriesIdx + 2] = offset;
+                    sortedEntries[sortedEntriesIdx + 3] = length;
+                    sortedEntriesIdx += 4;
+                });
+            }
 
             if (log.isDebugEnabled()) {
                 log.debug("iteration took {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
@@ -282,7 +501,7 @@ public class WriteCache implements Closeable {
     }
 
     public long size() {
-        return cacheSize.get();
+        return cacheSize.sum();
     }
 
     public long count() {
@@ -290,7 +509,7 @@ public class WriteCache implements Closeable {
     }
 
     public boolean isEmpty() {
-        return cacheSize.get() == 0L;
+        return cacheSize.sum() == 0L;
     }
 
     private static final int ALIGN_64_MASK = ~(64 - 1);
@@ -303,9 +522,22 @@ public class WriteCache implements Closeable {
         return (long) Math.pow(2, 64 - Long.numberOfLeadingZeros(n - 1));
     }
 
+    /**
+     * Portion of the cache reserved by a single writer thread.
+     */
+    private static final class AppendRegion {
+        long generation = -1;
+        long offset;
+        long end;
+    }
+
     private final ReentrantLock sortedEntriesLock = new ReentrantLock();
     private long[] sortedEntries;
     private int sortedEntriesIdx;
 
+    // Used when sorting the entries in parallel. Each partition holds all the entries of a subset of the ledgers
+    private long[][] sortedPartitions;
+    private int[] sortedPartitionsIdx;
+
     private static final Logger log = LoggerFactory.getLogger(WriteCache.class);
 }
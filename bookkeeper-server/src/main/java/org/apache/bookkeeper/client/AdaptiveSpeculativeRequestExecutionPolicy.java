@@ -0,0 +1,275 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} issuing the first speculative request when the request is slower
+ * than a percentile of the recent request latencies.
+ *
+ * <p>The latencies of the completed requests are kept in a histogram covering the last one to two
+ * {@link #HISTOGRAM_PERIOD_NANOS}. Until it holds {@link #MIN_SAMPLES} latencies, the first speculative request is
+ * issued after {@code firstSpeculativeRequestTimeout}. The following speculative requests back off by
+ * {@code backoffMultiplier}, up to {@code maxSpeculativeRequestTimeout}, which also caps the percentile.
+ *
+ * <p>The speculative requests are limited to {@code maxSpeculativeRatio} of the requests, so that a
+ * general slowdown does not multiply the load on the bookies. Once a request runs over this budget, no more
+ * speculative requests are issued for it.
+ */
+public class AdaptiveSpeculativeRequestExecutionPolicy implements SpeculativeRequestExecutionPolicy {
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveSpeculativeRequestExecutionPolicy.class);
+
+    static final long HISTOGRAM_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(30);
+    static final long MIN_SAMPLES = 100;
+    // The percentile is computed again after this delay, rather than on every request
+    static final long TIMEOUT_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Speculative requests budget, in thousandths of a request
+    private static final long BUDGET_UNIT = 1000;
+    private static final long MAX_BUDGET = 100 * BUDGET_UNIT;
+
+    final int firstSpeculativeRequestTimeout;
+    final int maxSpeculativeRequestTimeout;
+    final float backoffMultiplier;
+    final double percentile;
+    private final long budgetPerRequest;
+
+    private final AtomicLong budget = new AtomicLong(MAX_BUDGET);
+
+    private volatile LatencyHistogram currentHistogram = new LatencyHistogram();
+    private volatile LatencyHistogram previousHistogram = new LatencyHistogram();
+    private long histogramStartNanos;
+    private long timeoutRefreshNanos;
+    private volatile int speculativeRequestTimeout;
+
+    public AdaptiveSpeculativeRequestExecutionPolicy(int firstSpeculativeRequestTimeout,
+            int maxSpeculativeRequestTimeout, float backoffMultiplier, double percentile,
+            double maxSpeculativeRatio) {
+        if (backoffMultiplier <= 0) {
+            throw new IllegalArgumentException("Invalid value provided for backoffMultiplier");
+        }
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("Invalid value provided for percentile");
+        }
+        if (maxSpeculativeRatio <= 0) {
+            throw new IllegalArgumentException("Invalid value provided for maxSpeculativeRatio");
+        }
+        // Prevent potential over flow
+        if (Math.round((double) maxSpeculativeRequestTimeout * (double) backoffMultiplier) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid values for maxSpeculativeRequestTimeout and backoffMultiplier");
+        }
+        this.firstSpeculativeRequestTimeout = firstSpeculativeRequestTimeout;
+        this.maxSpeculativeRequestTimeout = maxSpeculativeRequestTimeout;
+        this.backoffMultiplier = backoffMultiplier;
+        this.percentile = percentile;
+        this.budgetPerRequest = Math.round(maxSpeculativeRatio * BUDGET_UNIT);
+        this.speculativeRequestTimeout = firstSpeculativeRequestTimeout;
+        this.histogramStartNanos = MathUtils.nowInNano();
+        this.timeoutRefreshNanos = histogramStartNanos;
+    }
+
+    @Override
+    public void recordRequestLatency(long latencyNanos) {
+        currentHistogram.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    @Override
+    public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
+            final SpeculativeRequestExecutor requestExecutor) {
+        addBudget(budgetPerRequest);
+        return scheduleSpeculativeRead(scheduler, requestExecutor, getSpeculativeRequestTimeout());
+    }
+
+    @VisibleForTesting
+    long getNumRecordedLatencies() {
+        long count = 0;
+        for (int i = 0; i < LatencyHistogram.NUM_BUCKETS; i++) {
+            count += currentHistogram.buckets.get(i) + previousHistogram.buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the current timeout of the first speculative request, in milliseconds
+     */
+    @VisibleForTesting
+    int getSpeculativeRequestTimeout() {
+        long now = MathUtils.nowInNano();
+        if (now - timeoutRefreshNanos >= TIMEOUT_REFRESH_NANOS) {
+            refreshSpeculativeRequestTimeout(now);
+        }
+        return speculativeRequestTimeout;
+    }
+
+    @VisibleForTesting
+    synchronized void refreshSpeculativeRequestTimeout(long now) {
+        if (now - timeoutRefreshNanos < TIMEOUT_REFRESH_NANOS) {
+            return;
+        }
+        timeoutRefreshNanos = now;
+        if (now - histogramStartNanos >= HISTOGRAM_PERIOD_NANOS) {
+            previousHistogram = currentHistogram;
+            currentHistogram = new LatencyHistogram();
+            histogramStartNanos = now;
+        }
+
+        LatencyHistogram current = currentHistogram;
+        LatencyHistogram previous = previousHistogram;
+        long[] counts = new long[LatencyHistogram.NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = current.buckets.get(i) + previous.buckets.get(i);
+            total += counts[i];
+        }
+        if (total < MIN_SAMPLES) {
+            speculativeRequestTimeout = firstSpeculativeRequestTimeout;
+            return;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long timeoutMillis = TimeUnit.MICROSECONDS.toMillis(LatencyHistogram.upperBound(i)) + 1;
+                speculativeRequestTimeout = (int) Math.min(maxSpeculativeRequestTimeout, timeoutMillis);
+                return;
+            }
+        }
+    }
+
+    private void addBudget(long amount) {
+        long current;
+        do {
+            current = budget.get();
+            if (current >= MAX_BUDGET) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(MAX_BUDGET, current + amount)));
+    }
+
+    private boolean acquireBudget() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < BUDGET_UNIT) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - BUDGET_UNIT));
+        return true;
+    }
+
+    private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
+                                         final SpeculativeRequestExecutor requestExecutor,
+                                         final int speculativeRequestTimeout) {
+        final int nextSpeculativeRequestTimeout = Math.min(maxSpeculativeRequestTimeout,
+                Math.round((float) speculativeRequestTimeout * backoffMultiplier));
+        try {
+            return scheduler.schedule(() -> {
+                if (!acquireBudget()) {
+                    // Not rescheduled: the budget only refills with new requests, and the rescheduled tasks could
+                    // neither learn that the request completed nor be cancelled
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("Speculative request budget exhausted, stopped issuing speculative requests for {}",
+                                requestExecutor);
+                    }
+                    return;
+                }
+                ListenableFuture<Boolean> issueNextRequest = requestExecutor.issueSpeculativeRequest();
+                Futures.addCallback(issueNextRequest, new FutureCallback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean issueNextRequest) {
+                        if (issueNextRequest) {
+                            scheduleSpeculativeRead(scheduler, requestExecutor, nextSpeculativeRequestTimeout);
+                        } else {
+                            if (LOG.isTraceEnabled()) {
+                                LOG.trace("Stopped issuing speculative requests for {}, "
+                                    + "speculativeReadTimeout = {}", requestExecutor, speculativeRequestTimeout);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable thrown) {
+                        LOG.warn("Failed to issue speculative request for {}, speculativeReadTimeout = {} : ",
+                                requestExecutor, speculativeRequestTimeout, thrown);
+                    }
+                }, directExecutor());
+            }, speculativeRequestTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException re) {
+            if (!scheduler.isShutdown()) {
+                LOG.warn("Failed to schedule speculative request for {}, speculativeReadTimeout = {} : ",
+                        requestExecutor, speculativeRequestTimeout, re);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A lock-free histogram of latencies in microseconds, with four linear buckets per power of two.
+     */
+    static class LatencyHistogram {
+        static final int MAX_BITS = 40;
+        static final int NUM_BUCKETS = 4 * (MAX_BITS - 1);
+
+        final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+
+        void record(long micros) {
+            buckets.incrementAndGet(bucket(micros));
+        }
+
+        static int bucket(long micros) {
+            if (micros < 4) {
+                return (int) Math.max(micros, 0);
+            }
+            long value = Math.min(micros, (1L << MAX_BITS) - 1);
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            return 4 * (msb - 1) + (int) ((value >> (msb - 2)) & 3);
+        }
+
+        /**
+         * @return the exclusive upper bound of the latencies of a bucket, in microseconds
+         */
+        static long upperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket + 1;
+            }
+            int msb = bucket / 4 + 1;
+            int sub = bucket % 4;
+            return (5L + sub) << (msb - 2);
+        }
+    }
+}
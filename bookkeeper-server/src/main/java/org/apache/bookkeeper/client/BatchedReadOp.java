@@ -112,6 +112,10 @@ public class BatchedReadOp extends ReadOpBase implements BatchedReadEntryCallbac
         bufList.retain();
         // if entry has completed don't handle twice
         if (entry.complete(rctx.bookieIndex, rctx.to, bufList)) {
+            if (clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+                clientCtx.getConf().readSpeculativeRequestPolicy.get()
+                        .recordRequestLatency(MathUtils.elapsedNanos(requestTimeNanos));
+            }
             if (!isRecoveryRead) {
                 // do not advance LastAddConfirmed for recovery reads
                 lh.updateLastConfirmed(rctx.getLastAddConfirmed(), 0L);
@@ -43,6 +43,9 @@ public interface BookKeeperClientStats {
     String RECOVER_OP = "LEDGER_RECOVER";
     String LEDGER_RECOVER_READ_ENTRIES = "LEDGER_RECOVER_READ_ENTRIES";
     String LEDGER_RECOVER_ADD_ENTRIES = "LEDGER_RECOVER_ADD_ENTRIES";
+    String LEDGER_RECOVER_READ_BATCHES = "LEDGER_RECOVER_READ_BATCHES";
+    String LEDGER_RECOVER_RECOVERED_ENTRIES = "LEDGER_RECOVER_RECOVERED_ENTRIES";
+    String LEDGER_RECOVER_RECOVERED_BYTES = "LEDGER_RECOVER_RECOVERED_BYTES";
     String LEDGER_ENSEMBLE_BOOKIE_DISTRIBUTION = "LEDGER_ENSEMBLE_BOOKIE_DISTRIBUTION";
 
     // Data Operations
@@ -94,6 +97,8 @@ public interface BookKeeperClientStats {
     String ACTIVE_TLS_CHANNEL_COUNTER = "ACTIVE_TLS_CHANNEL_COUNTER";
     String FAILED_CONNECTION_COUNTER = "FAILED_CONNECTION_COUNTER";
     String FAILED_TLS_HANDSHAKE_COUNTER = "FAILED_TLS_HANDSHAKE_COUNTER";
+    String CHANNEL_CONGESTION_WINDOW = "CONGESTION_WINDOW";
+    String CHANNEL_PENDING_REQUESTS = "PENDING_REQUESTS";
 
     // placementpolicy stats
     String NUM_WRITABLE_BOOKIES_IN_DEFAULT_RACK = "NUM_WRITABLE_BOOKIES_IN_DEFAULT_RACK";
@@ -118,6 +123,9 @@ public interface BookKeeperClientStats {
     OpStatsLogger getReadLacOpLogger();
     OpStatsLogger getRecoverAddCountLogger();
     OpStatsLogger getRecoverReadCountLogger();
+    Counter getRecoverReadBatchesCounter();
+    Counter getRecoverRecoveredEntriesCounter();
+    Counter getRecoverRecoveredBytesCounter();
     Counter getReadOpDmCounter();
     Counter getAddOpUrCounter();
     Counter getSpeculativeReadCounter();
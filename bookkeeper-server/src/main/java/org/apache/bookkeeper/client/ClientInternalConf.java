@@ -39,8 +39,11 @@ class ClientInternalConf {
     final long addEntryQuorumTimeoutNanos;
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
+    final boolean enableLatencyAwareReadReplicaSelection;
     final boolean enableStickyReads;
     final int recoveryReadBatchSize;
+    final int recoveryReadMaxOutstandingBatches;
+    final boolean enableRecoveryBatchRead;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
     final int maxAllowedEnsembleChanges;
@@ -68,8 +71,11 @@ class ClientInternalConf {
                                FeatureProvider featureProvider) {
         this.explicitLacInterval = conf.getExplictLacInterval();
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
+        this.enableLatencyAwareReadReplicaSelection = conf.isLatencyAwareReadReplicaSelectionEnabled();
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
         this.recoveryReadBatchSize = conf.getRecoveryReadBatchSize();
+        this.recoveryReadMaxOutstandingBatches = conf.getRecoveryReadMaxOutstandingBatches();
+        this.enableRecoveryBatchRead = conf.isRecoveryBatchReadEnabled();
         this.waitForWriteSetMs = conf.getWaitTimeoutOnBackpressureMillis();
         this.addEntryQuorumTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getAddEntryQuorumTimeout());
         this.throttleValue = conf.getThrottleValue();
@@ -85,7 +91,15 @@ class ClientInternalConf {
         this.enableStickyReads = conf.isStickyReadsEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
-        if (conf.getFirstSpeculativeReadTimeout() > 0) {
+        if (conf.getFirstSpeculativeReadTimeout() > 0 && conf.getSpeculativeReadTimeoutPercentile() > 0) {
+            this.readSpeculativeRequestPolicy =
+                    Optional.of(new AdaptiveSpeculativeRequestExecutionPolicy(
+                                        conf.getFirstSpeculativeReadTimeout(),
+                                        conf.getMaxSpeculativeReadTimeout(),
+                                        conf.getSpeculativeReadTimeoutBackoffMultiplier(),
+                                        conf.getSpeculativeReadTimeoutPercentile(),
+                                        conf.getMaxSpeculativeReadRatio()));
+        } else if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                                         conf.getFirstSpeculativeReadTimeout(),
@@ -94,7 +108,15 @@ class ClientInternalConf {
         } else {
             this.readSpeculativeRequestPolicy = Optional.<SpeculativeRequestExecutionPolicy>empty();
         }
-        if (conf.getFirstSpeculativeReadLACTimeout() > 0) {
+        if (conf.getFirstSpeculativeReadLACTimeout() > 0 && conf.getSpeculativeReadTimeoutPercentile() > 0) {
+            this.readLACSpeculativeRequestPolicy =
+                    Optional.of(new AdaptiveSpeculativeRequestExecutionPolicy(
+                        conf.getFirstSpeculativeReadLACTimeout(),
+                        conf.getMaxSpeculativeReadLACTimeout(),
+                        conf.getSpeculativeReadLACTimeoutBackoffMultiplier(),
+                        conf.getSpeculativeReadTimeoutPercentile(),
+                        conf.getMaxSpeculativeReadRatio()));
+        } else if (conf.getFirstSpeculativeReadLACTimeout() > 0) {
             this.readLACSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                         conf.getFirstSpeculativeReadLACTimeout(),
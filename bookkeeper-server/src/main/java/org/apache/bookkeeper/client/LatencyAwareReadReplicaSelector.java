@@ -0,0 +1,104 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.proto.BookieClient.PENDINGREQ_NOTWRITABLE_MASK;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * Picks the replica serving a read among the bookies of the read sequence, with the power of two choices.
+ *
+ * <p>Two candidates are drawn at random, and the one with the lowest expected response time, its average read
+ * latency scaled by its pending requests, is moved to the front of the read sequence. The other replicas keep their
+ * order, and remain the targets of the speculative and retried reads. Bookies with recent failures or which are not
+ * writable are not candidates. A bookie whose latency is not known yet is preferred, so that it gets measured.
+ */
+final class LatencyAwareReadReplicaSelector {
+
+    private LatencyAwareReadReplicaSelector() {
+    }
+
+    static void selectFirstReplica(List<BookieId> ensemble, BookiesHealthInfo bookiesHealthInfo,
+                                   DistributionSchedule.WriteSet writeSet) {
+        final int size = writeSet.size();
+        int numCandidates = 0;
+        for (int i = 0; i < size; i++) {
+            if (isCandidate(ensemble.get(writeSet.get(i)), bookiesHealthInfo)) {
+                numCandidates++;
+            }
+        }
+        if (numCandidates == 0) {
+            return;
+        }
+
+        int first = 0;
+        int second = -1;
+        if (numCandidates > 1) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            first = random.nextInt(numCandidates);
+            second = random.nextInt(numCandidates - 1);
+            if (second >= first) {
+                second++;
+            }
+        }
+
+        // Map the ranks of the two candidates back to their positions in the read sequence
+        int firstPos = -1;
+        int secondPos = -1;
+        int rank = 0;
+        for (int i = 0; i < size && (firstPos < 0 || (second >= 0 && secondPos < 0)); i++) {
+            if (isCandidate(ensemble.get(writeSet.get(i)), bookiesHealthInfo)) {
+                if (rank == first) {
+                    firstPos = i;
+                } else if (rank == second) {
+                    secondPos = i;
+                }
+                rank++;
+            }
+        }
+
+        int selectedPos = firstPos;
+        if (secondPos >= 0 && cost(ensemble.get(writeSet.get(secondPos)), bookiesHealthInfo)
+                < cost(ensemble.get(writeSet.get(firstPos)), bookiesHealthInfo)) {
+            selectedPos = secondPos;
+        }
+        if (selectedPos > 0) {
+            writeSet.moveAndShift(selectedPos, 0);
+        }
+    }
+
+    private static boolean isCandidate(BookieId bookie, BookiesHealthInfo bookiesHealthInfo) {
+        return bookiesHealthInfo.getBookieFailureHistory(bookie) < 0
+                && (bookiesHealthInfo.getBookiePendingRequests(bookie) & PENDINGREQ_NOTWRITABLE_MASK) == 0;
+    }
+
+    private static long cost(BookieId bookie, BookiesHealthInfo bookiesHealthInfo) {
+        long latencyNanos = bookiesHealthInfo.getBookieReadLatencyNanos(bookie);
+        if (latencyNanos < 0) {
+            return 0;
+        }
+        long pendingRequests = bookiesHealthInfo.getBookiePendingRequests(bookie) & ~PENDINGREQ_NOTWRITABLE_MASK;
+        return latencyNanos * (pendingRequests + 1);
+    }
+}
@@ -53,6 +53,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
@@ -100,18 +101,34 @@ public class LedgerHandle implements WriteHandle {
     final ClientContext clientCtx;
 
     final byte[] ledgerKey;
-    private Versioned<LedgerMetadata> versionedMetadata;
+    private volatile Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
     final ExecutorService executor;
-    long lastAddPushed;
     boolean notSupportBatch;
 
+    /**
+     * Last entryId assigned to an add. The entryIds are assigned, and the ops appended to {@link #pendingAddOps}, under
+     * {@link #addLock} rather than the handle lock, so adds don't contend with the readers of the handle state.
+     */
+    private volatile long lastAddPushed;
+
+    /**
+     * Sequences the adds: an add checks that the handle is writable, takes the next entryId, computes the ledger
+     * length and enqueues its op while holding it. Closing the handle takes it after marking the handle not writable,
+     * so that no op is enqueued after the pending adds are drained. Also taken by {@link LedgerHandleAdv}, which
+     * enqueues the ops of the entryIds given by the application.
+     */
+    final Object addLock = new Object();
+
+    private static final AtomicLongFieldUpdater<LedgerHandle> LAST_ADD_CONFIRMED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "lastAddConfirmed");
+
     private enum HandleState {
         OPEN,
         CLOSED
     }
 
-    private HandleState handleState = HandleState.OPEN;
+    private volatile HandleState handleState = HandleState.OPEN;
     private final CompletableFuture<Void> closePromise = new CompletableFuture<>();
 
     /**
@@ -242,6 +259,11 @@ public class LedgerHandle implements WriteHandle {
             public long getBookiePendingRequests(BookieId bookieSocketAddress) {
                 return clientCtx.getBookieClient().getNumPendingRequests(bookieSocketAddress, ledgerId);
             }
+
+            @Override
+            public long getBookieReadLatencyNanos(BookieId bookieSocketAddress) {
+                return clientCtx.getBookieClient().getReadLatencyNanos(bookieSocketAddress);
+            }
         };
 
         ensembleChangeCounter = clientCtx.getClientStats().getEnsembleChangeCounter();
@@ -321,11 +343,11 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
         return lastAddConfirmed;
     }
 
-    synchronized void setLastAddConfirmed(long lac) {
+    void setLastAddConfirmed(long lac) {
         this.lastAddConfirmed = lac;
     }
 
@@ -333,10 +355,22 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddPushed() {
+    public long getLastAddPushed() {
         return lastAddPushed;
     }
 
+    /**
+     * Reset the last entryId pushed, from which the entryIds of the next adds are assigned.
+     *
+     * <p>It must not be called while adds are in progress, ie. before the handle starts adding entries or after it
+     * became not writable.
+     */
+    void resetLastAddPushed(long entryId) {
+        synchronized (addLock) {
+            lastAddPushed = entryId;
+        }
+    }
+
     /**
      * Get the Ledger's key/password.
      *
@@ -365,7 +399,9 @@ public class LedgerHandle implements WriteHandle {
                 versionedMetadata = newMetadata;
                 LedgerMetadata metadata = versionedMetadata.getValue();
                 if (metadata.isClosed()) {
-                    lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
+                    // the adds which saw the handle writable are enqueued before the add lock is released
+                    lastAddConfirmed = metadata.getLastEntryId();
+                    resetLastAddPushed(lastAddConfirmed);
                     length.set(metadata.getLength());
                 }
                 return true;
@@ -504,7 +540,7 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean isClosed() {
+    public boolean isClosed() {
         return getLedgerMetadata().isClosed();
     }
 
@@ -553,14 +589,17 @@ public class LedgerHandle implements WriteHandle {
 
                     synchronized (LedgerHandle.this) {
                         prevHandleState = handleState;
+                        handleState = HandleState.CLOSED;
 
-                        // drain pending adds first
-                        pendingAdds = drainPendingAddsAndAdjustLength();
+                        synchronized (addLock) {
+                            // drain pending adds first
+                            pendingAdds = drainPendingAddsAndAdjustLength();
 
-                        // taking the length must occur after draining, as draining changes the length
-                        lastEntry = lastAddPushed = LedgerHandle.this.lastAddConfirmed;
-                        finalLength = LedgerHandle.this.length.get();
-                        handleState = HandleState.CLOSED;
+                            // taking the length must occur after draining, as draining changes the length
+                            lastEntry = LedgerHandle.this.lastAddConfirmed;
+                            resetLastAddPushed(lastEntry);
+                            finalLength = LedgerHandle.this.length.get();
+                        }
                     }
 
                     // error out all pending adds during closing, the callbacks shouldn't be
@@ -1588,37 +1627,51 @@ public class LedgerHandle implements WriteHandle {
             throttler.acquire();
         }
 
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
+        int rc = BKException.Code.OK;
+        synchronized (addLock) {
+            // the ledger can't be closed between checking and
+            // enqueuing the op, as closing drains under the add lock
             if (isHandleWritable()) {
-                long entryId = ++lastAddPushed;
-                long currentLedgerLength = addToLength(op.payload.readableBytes());
-                op.setEntryId(entryId);
-                op.setLedgerLength(currentLedgerLength);
-                pendingAddOps.add(op);
+                long entryId = lastAddPushed + 1;
+                int entryLength = op.payload.readableBytes();
+                try {
+                    long currentLedgerLength = addToLength(entryLength);
+                    try {
+                        op.setEntryId(entryId);
+                        op.setLedgerLength(currentLedgerLength);
+                        pendingAddOps.add(op);
+                    } catch (RuntimeException e) {
+                        addToLength(-entryLength);
+                        throw e;
+                    }
+                    lastAddPushed = entryId;
+                } catch (RuntimeException e) {
+                    // the entryId is not taken, the next add is assigned it
+                    LOG.error("Failed to enqueue the add of entry {} to ledger {}", entryId, ledgerId, e);
+                    rc = BKException.Code.UnexpectedConditionException;
+                }
             } else {
-                wasClosed = true;
+                rc = BKException.Code.LedgerClosedException;
             }
         }
 
-        if (wasClosed) {
+        if (rc != BKException.Code.OK) {
+            final int addRc = rc;
             // make sure the callback is triggered in main worker pool
             try {
                 executeOrdered(new Runnable() {
                     @Override
                     public void run() {
-                        LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
-                        op.cb.addCompleteWithLatency(BKException.Code.LedgerClosedException,
-                                LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
+                        if (addRc == BKException.Code.LedgerClosedException) {
+                            LOG.warn("Attempt to add to closed ledger: {}", ledgerId);
+                        }
+                        op.cb.addCompleteWithLatency(addRc, LedgerHandle.this, INVALID_ENTRY_ID, 0, op.ctx);
                         op.recyclePendAddOpObject();
                     }
 
                     @Override
                     public String toString() {
-                        return String.format("AsyncAddEntryToClosedLedger(lid=%d)", ledgerId);
+                        return String.format("AsyncAddEntryFailed(lid=%d, rc=%d)", ledgerId, addRc);
                     }
                 });
             } catch (RejectedExecutionException e) {
@@ -1645,14 +1698,18 @@ public class LedgerHandle implements WriteHandle {
 
     }
 
-    synchronized void updateLastConfirmed(long lac, long len) {
-        if (lac > lastAddConfirmed) {
-            lastAddConfirmed = lac;
+    void updateLastConfirmed(long lac, long len) {
+        if (LAST_ADD_CONFIRMED_UPDATER.getAndAccumulate(this, lac, Math::max) < lac) {
             lacUpdateHitsCounter.inc();
         } else {
             lacUpdateMissesCounter.inc();
         }
-        lastAddPushed = Math.max(lastAddPushed, lac);
+        // the lac can only be ahead of the entries pushed by a handle which is not adding entries
+        if (lastAddPushed < lac) {
+            synchronized (addLock) {
+                lastAddPushed = Math.max(lastAddPushed, lac);
+            }
+        }
         length.accumulateAndGet(len, (current, value) -> Math.max(current, value));
     }
 
@@ -2333,6 +2390,13 @@ public class LedgerHandle implements WriteHandle {
         return LedgerMetadataUtils.getCurrentEnsemble(versionedMetadata.getValue());
     }
 
+    /**
+     * Whether the reads of this ledger are all sent to the same bookie by preference.
+     */
+    boolean isStickyReadsActive() {
+        return stickyBookieIndex != STICKY_READ_BOOKIE_INDEX_UNSET;
+    }
+
     /**
      * Return a {@link WriteSet} suitable for reading a particular entry.
      * This will include all bookies that are part of the ensemble for the entry.
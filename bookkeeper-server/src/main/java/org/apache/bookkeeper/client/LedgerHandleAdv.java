@@ -226,10 +226,9 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
         }
 
         boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
+        synchronized (addLock) {
+            // the ledger can't be closed between checking and
+            // enqueuing the op, as closing drains under the add lock
             if (isHandleWritable()) {
                 long currentLength = addToLength(op.payload.readableBytes());
                 op.setLedgerLength(currentLength);
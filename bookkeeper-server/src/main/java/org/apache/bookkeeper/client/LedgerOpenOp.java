@@ -238,7 +238,8 @@ class LedgerOpenOp {
                             openComplete(bk.getReturnRc(BKException.Code.ReadException), null);
                         });
                     } else {
-                        lh.lastAddConfirmed = lh.lastAddPushed = lastConfirmed;
+                        lh.lastAddConfirmed = lastConfirmed;
+                        lh.resetLastAddPushed(lastConfirmed);
                         openComplete(BKException.Code.OK, lh);
                     }
                 }
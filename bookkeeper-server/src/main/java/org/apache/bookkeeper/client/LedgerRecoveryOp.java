@@ -18,10 +18,13 @@
 package org.apache.bookkeeper.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
+import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryListener;
 import org.apache.bookkeeper.proto.checksum.DigestManager.RecoveryData;
 import org.slf4j.Logger;
@@ -32,6 +35,12 @@ import org.slf4j.LoggerFactory;
  * with entry-id of -1 (BookieProtocol.LAST_ADD_CONFIRMED) to all bookies. Then
  * starting from the last confirmed entry (from hints in the ledger entries),
  * it reads forward until it is not able to find a particular entry.
+ *
+ * <p>The entries are read by batches of {@code recoveryReadBatchSize} entries, with up to
+ * {@code recoveryReadMaxOutstandingBatches} batches in flight, and added back to the ledger in entry id order as
+ * soon as they are read. A new batch is only read once the entries pending to be added back fit in the same window,
+ * so that the memory held by a recovery stays bounded. When the bookies support it, a batch is read with a single
+ * batch read request.
  */
 class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
@@ -49,6 +58,13 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
     // keep a copy of metadata for recovery.
     LedgerMetadata metadataForRecovery;
 
+    // the batches being read, in entry id order. only the head batch is added back to the ledger.
+    private final ArrayDeque<RecoveryBatch> outstandingBatches = new ArrayDeque<>();
+    private final int maxOutstandingBatches;
+    private boolean useBatchRead;
+    // set while no more batch can be read until some entries are added back
+    private volatile boolean readsBlockedOnAdds = false;
+
     // EntryListener Hook
     @VisibleForTesting
     ReadEntryListener entryListener = null;
@@ -69,6 +85,54 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
 
     }
 
+    class RecoveryBatchedReadOp extends BatchedReadOp {
+
+        RecoveryBatchedReadOp(LedgerHandle lh,
+                              ClientContext clientCtx,
+                              long startEntryId, int maxCount, long maxSize) {
+            super(lh, clientCtx, startEntryId, maxCount, maxSize, true);
+        }
+
+        @Override
+        protected LedgerMetadata getLedgerMetadata() {
+            return metadataForRecovery;
+        }
+
+    }
+
+    /**
+     * The entries {@code [firstEntryId, lastEntryId]} read by recovery, and the results read but not yet added back.
+     */
+    private static class RecoveryBatch {
+        final long firstEntryId;
+        final long lastEntryId;
+        final ArrayDeque<EntryResult> results = new ArrayDeque<>();
+        // next entry to ask the bookies for, when a batch read returned less entries than asked for
+        long nextEntryToRequest;
+        long numProcessed = 0;
+        boolean failed = false;
+
+        RecoveryBatch(long firstEntryId, long lastEntryId) {
+            this.firstEntryId = firstEntryId;
+            this.lastEntryId = lastEntryId;
+            this.nextEntryToRequest = firstEntryId;
+        }
+
+        boolean isDone() {
+            return failed || numProcessed == lastEntryId - firstEntryId + 1;
+        }
+    }
+
+    private static class EntryResult {
+        final int rc;
+        final LedgerEntry entry;
+
+        EntryResult(int rc, LedgerEntry entry) {
+            this.rc = rc;
+            this.entry = entry;
+        }
+    }
+
     public LedgerRecoveryOp(LedgerHandle lh, ClientContext clientCtx) {
         readCount = new AtomicLong(0);
         writeCount = new AtomicLong(0);
@@ -76,6 +140,7 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
         this.promise = new CompletableFuture<>();
         this.lh = lh;
         this.clientCtx = clientCtx;
+        this.maxOutstandingBatches = Math.max(1, clientCtx.getConf().recoveryReadMaxOutstandingBatches);
     }
 
     /**
@@ -118,8 +183,9 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
                                         .lastEntry()
                                         .getKey();
 
-                                lh.lastAddPushed = lh.lastAddConfirmed = Math.max(data.getLastAddConfirmed(),
+                                lh.lastAddConfirmed = Math.max(data.getLastAddConfirmed(),
                                         (lastEnsembleEntryId - 1));
+                                lh.resetLastAddPushed(lh.lastAddConfirmed);
 
                                 lh.length.set(data.getLength());
                                 lh.pendingAddsSequenceHead = lh.lastAddConfirmed;
@@ -165,22 +231,124 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
      * Try to read past the last confirmed.
      */
     private void doRecoveryRead() {
-        if (!promise.isDone()) {
-            startEntryToRead = endEntryToRead + 1;
-            endEntryToRead = endEntryToRead + clientCtx.getConf().recoveryReadBatchSize;
-            new RecoveryReadOp(lh, clientCtx, startEntryToRead, endEntryToRead, this, null)
+        ClientInternalConf conf = clientCtx.getConf();
+        useBatchRead = conf.enableRecoveryBatchRead && conf.useV2WireProtocol && conf.batchReadEnabled
+                && metadataForRecovery.getEnsembleSize() == metadataForRecovery.getWriteQuorumSize();
+        synchronized (this) {
+            readNextBatches();
+        }
+    }
+
+    /**
+     * Read the next batches, as long as the window of outstanding reads and adds allows it.
+     */
+    private void readNextBatches() {
+        int batchSize = clientCtx.getConf().recoveryReadBatchSize;
+        long maxPendingAdds = (long) maxOutstandingBatches * batchSize;
+        while (!promise.isDone() && !readDone && outstandingBatches.size() < maxOutstandingBatches) {
+            // raise the flag before checking, so that an add completing meanwhile resumes the reads
+            readsBlockedOnAdds = true;
+            if (readCount.get() - writeCount.get() > maxPendingAdds) {
+                return;
+            }
+            readsBlockedOnAdds = false;
+
+            RecoveryBatch batch = new RecoveryBatch(endEntryToRead + 1, endEntryToRead + batchSize);
+            endEntryToRead = batch.lastEntryId;
+            outstandingBatches.add(batch);
+            clientCtx.getClientStats().getRecoverReadBatchesCounter().inc();
+            readBatch(batch);
+        }
+    }
+
+    private void readBatch(RecoveryBatch batch) {
+        if (useBatchRead && !lh.notSupportBatch) {
+            int maxCount = (int) (batch.lastEntryId - batch.nextEntryToRequest + 1);
+            RecoveryBatchedReadOp op = new RecoveryBatchedReadOp(lh, clientCtx, batch.nextEntryToRequest, maxCount,
+                    clientCtx.getConf().nettyMaxFrameSizeBytes);
+            op.future().whenComplete((entries, cause) -> onBatchReadComplete(batch, entries, cause));
+            op.initiate();
+        } else {
+            new RecoveryReadOp(lh, clientCtx, batch.nextEntryToRequest, batch.lastEntryId, this, batch)
                 .initiate();
         }
     }
 
+    private void onBatchReadComplete(RecoveryBatch batch, LedgerEntries entries, Throwable cause) {
+        synchronized (this) {
+            int rc = BKException.getExceptionCode(cause, BKException.Code.ReadException);
+            if (rc == BKException.Code.BookieHandleNotAvailableException) {
+                // the bookie does not support batch reads, read the rest of the batch entry by entry.
+                lh.notSupportBatch = true;
+                readBatch(batch);
+                return;
+            }
+            if (rc != BKException.Code.OK) {
+                notifyEntryListener(rc, null, batch);
+                batch.results.add(new EntryResult(rc, null));
+                batch.failed = true;
+                processReadResults();
+                return;
+            }
+            int numEntries = 0;
+            for (org.apache.bookkeeper.client.api.LedgerEntry le : entries) {
+                LedgerEntry entry = new LedgerEntry((LedgerEntryImpl) le);
+                le.close();
+                notifyEntryListener(BKException.Code.OK, entry, batch);
+                batch.results.add(new EntryResult(BKException.Code.OK, entry));
+                numEntries++;
+            }
+            batch.nextEntryToRequest += numEntries;
+            if (numEntries == 0) {
+                batch.results.add(new EntryResult(BKException.Code.NoSuchEntryException, null));
+                batch.failed = true;
+            } else if (batch.nextEntryToRequest <= batch.lastEntryId) {
+                // the response was cut by the max frame size or the bookie is missing the next entry, ask again
+                // for the rest of the batch.
+                readBatch(batch);
+            }
+            processReadResults();
+        }
+    }
+
     @Override
     public void onEntryComplete(int rc, LedgerHandle lh, LedgerEntry entry, Object ctx) {
+        notifyEntryListener(rc, entry, ctx);
+        synchronized (this) {
+            ((RecoveryBatch) ctx).results.add(new EntryResult(rc, entry));
+            processReadResults();
+        }
+    }
+
+    private void notifyEntryListener(int rc, LedgerEntry entry, Object ctx) {
         // notify entry listener on individual entries being read during ledger recovery.
         ReadEntryListener listener = entryListener;
         if (null != listener) {
             listener.onEntryComplete(rc, lh, entry, ctx);
         }
+    }
 
+    /**
+     * Add back the entries read, in entry id order, then read the next batches.
+     */
+    private void processReadResults() {
+        RecoveryBatch batch;
+        while ((batch = outstandingBatches.peek()) != null) {
+            startEntryToRead = batch.firstEntryId;
+            EntryResult result;
+            while ((result = batch.results.poll()) != null) {
+                batch.numProcessed++;
+                processReadResult(result.rc, result.entry);
+            }
+            if (!batch.isDone()) {
+                break;
+            }
+            outstandingBatches.poll();
+        }
+        readNextBatches();
+    }
+
+    private void processReadResult(int rc, LedgerEntry entry) {
         // we only trigger recovery add an entry when readDone == false && callbackDone == false
         if (!promise.isDone() && !readDone && rc == BKException.Code.OK) {
             readCount.incrementAndGet();
@@ -194,24 +362,24 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             synchronized (lh) {
                 lh.length.set(entry.getLength() - (long) data.length);
                 // check whether entry id is expected, so we won't overwritten any entries by mistake
-                if (entry.getEntryId() != lh.lastAddPushed + 1) {
+                if (entry.getEntryId() != lh.getLastAddPushed() + 1) {
                     LOG.error("Unexpected to recovery add entry {} as entry {} for ledger {}.",
-                            entry.getEntryId(), (lh.lastAddPushed + 1), lh.getId());
+                            entry.getEntryId(), (lh.getLastAddPushed() + 1), lh.getId());
                     rc = BKException.Code.UnexpectedConditionException;
                 }
             }
             if (BKException.Code.OK == rc) {
-                lh.asyncRecoveryAddEntry(data, 0, data.length, this, null);
-                if (entry.getEntryId() == endEntryToRead) {
-                    // trigger next batch read
-                    doRecoveryRead();
-                }
+                lh.asyncRecoveryAddEntry(data, 0, data.length, this, (long) data.length);
                 return;
             }
         }
 
         // no entry found. stop recovery procedure but wait until recovery add finished.
         if (rc == BKException.Code.NoSuchEntryException || rc == BKException.Code.NoSuchLedgerExistsException) {
+            if (readDone) {
+                // the batches read ahead past the end of the ledger
+                return;
+            }
             readDone = true;
             if (readCount.get() == writeCount.get()) {
                 submitCallback(BKException.Code.OK);
@@ -241,9 +409,19 @@ class LedgerRecoveryOp implements ReadEntryListener, AddCallback {
             submitCallback(rc);
             return;
         }
+        clientCtx.getClientStats().getRecoverRecoveredEntriesCounter().inc();
+        clientCtx.getClientStats().getRecoverRecoveredBytesCounter().addCount((Long) ctx);
         long numAdd = writeCount.incrementAndGet();
         if (readDone && readCount.get() == numAdd) {
             submitCallback(rc);
+        } else if (readsBlockedOnAdds) {
+            // resume the reads on the ordered thread of the ledger, rather than in the callback of the add
+            readsBlockedOnAdds = false;
+            clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> {
+                synchronized (LedgerRecoveryOp.this) {
+                    readNextBatches();
+                }
+            });
         }
     }
 
@@ -108,6 +108,10 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
         buffer.retain();
         // if entry has completed don't handle twice
         if (entry.complete(rctx.bookieIndex, rctx.to, buffer)) {
+            if (clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+                clientCtx.getConf().readSpeculativeRequestPolicy.get()
+                        .recordRequestLatency(MathUtils.elapsedNanos(requestTimeNanos));
+            }
             if (!isRecoveryRead) {
                 // do not advance LastAddConfirmed for recovery reads
                 lh.updateLastConfirmed(rctx.getLastAddConfirmed(), 0L);
@@ -65,6 +65,9 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
     private final long prevEntryId;
     private long lastAddConfirmed;
     private long timeOutInMillis;
+    // whether the bookies may hold the request until the entry is added, in which case its latency is not the one of
+    // a read
+    private final boolean mayWaitForEntry;
     private final List<BookieId> currentEnsemble;
     private ScheduledFuture<?> speculativeTask = null;
 
@@ -440,6 +443,7 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
         this.prevEntryId = prevEntryId;
         this.lastAddConfirmed = lh.getLastAddConfirmed();
         this.timeOutInMillis = timeOutInMillis;
+        this.mayWaitForEntry = timeOutInMillis > 0 && lastAddConfirmed <= prevEntryId;
         this.numResponsesPending = 0;
 
         this.currentEnsemble = ensemble;
@@ -575,6 +579,10 @@ class ReadLastConfirmedAndEntryOp implements BookkeeperInternalCallbacks.ReadEnt
             if (entryId != BookieProtocol.LAST_ADD_CONFIRMED) {
                 buffer.retain();
                 if (!requestComplete.get() && request.complete(rCtx.getBookieIndex(), bookie, buffer, entryId)) {
+                    if (!mayWaitForEntry && clientCtx.getConf().readLACSpeculativeRequestPolicy.isPresent()) {
+                        clientCtx.getConf().readLACSpeculativeRequestPolicy.get()
+                                .recordRequestLatency(MathUtils.elapsedNanos(requestTimeNano));
+                    }
                     // callback immediately
                     if (rCtx.getLacUpdateTimestamp().isPresent()) {
                         long elapsedMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()
@@ -135,6 +135,10 @@ public abstract class ReadOpBase implements Runnable {
             } else {
                 writeSet = lh.getWriteSetForReadOperation(eId);
             }
+            // sticky reads already pin the reads of the ledger to a bookie
+            if (clientCtx.getConf().enableLatencyAwareReadReplicaSelection && !lh.isStickyReadsActive()) {
+                LatencyAwareReadReplicaSelector.selectFirstReplica(ensemble, lh.getBookiesHealthInfo(), writeSet);
+            }
         }
 
         public void close() {
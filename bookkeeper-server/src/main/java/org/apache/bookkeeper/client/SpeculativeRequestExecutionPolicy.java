@@ -42,4 +42,13 @@ public interface SpeculativeRequestExecutionPolicy {
      */
     ScheduledFuture<?> initiateSpeculativeRequest(ScheduledExecutorService scheduler,
             SpeculativeRequestExecutor requestExecutor);
+
+    /**
+     * Record the latency of a request that completed successfully, for policies adapting to the latency of the
+     * requests.
+     *
+     * @param latencyNanos the time from the initial request to its completion, in nanoseconds
+     */
+    default void recordRequestLatency(long latencyNanos) {
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.client.api;
+
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+
+/**
+ * A stream over a sequence of entries, returning the entries in order as soon as they are read.
+ *
+ * <p>The entries are read ahead of the consumer, up to a bounded number of entries, so the memory held by the stream
+ * does not depend on the length of the sequence.
+ *
+ * <p>The caller owns the entries returned by the stream and is responsible for calling {@link LedgerEntry#close()}
+ * on them. The entries read ahead and not returned yet are released when the stream is closed.
+ *
+ * @see ReadHandle#readStream(long, long, int)
+ */
+@Public
+@Unstable
+public interface LedgerEntryStream extends AutoCloseable {
+
+    /**
+     * Read the next entry of the sequence asynchronously.
+     *
+     * <p>Several calls may be pending at the same time, they are completed in order.
+     *
+     * @return an handle to the next entry, completed with null once all the entries of the sequence were returned
+     */
+    CompletableFuture<LedgerEntry> nextAsync();
+
+    /**
+     * Read the next entry of the sequence synchronously.
+     *
+     * @return the next entry, or null once all the entries of the sequence were returned
+     * @see #nextAsync()
+     */
+    default LedgerEntry next() throws BKException, InterruptedException {
+        return FutureUtils.<LedgerEntry, BKException>result(nextAsync(), BKException.HANDLER);
+    }
+
+    /**
+     * Stop reading ahead and release the entries read but not returned yet.
+     */
+    @Override
+    void close();
+}
@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.client.api;
 
 import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.impl.PrefetchingLedgerEntryStream;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -91,6 +92,27 @@ public interface ReadHandle extends Handle {
         return FutureUtils.result(batchReadAsync(startEntry, maxCount, maxSize), BKException.HANDLER);
     }
 
+    /**
+     * Read a sequence of entries as a stream.
+     *
+     * <p>Unlike {@link #readAsync(long, long)}, which completes once all the entries of the sequence are read, the
+     * stream returns each entry as soon as it and the entries before it are read. It reads ahead of the consumer with
+     * {@link #batchReadAsync(long, int, long)} requests, keeping at most {@code maxPrefetchEntries} entries read or
+     * being read and not returned yet.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence, inclusive
+     * @param maxPrefetchEntries
+     *          maximum number of entries read ahead of the consumer
+     * @return a stream over the entries of the sequence
+     * @see LedgerEntryStream
+     */
+    default LedgerEntryStream readStream(long firstEntry, long lastEntry, int maxPrefetchEntries) {
+        return new PrefetchingLedgerEntryStream(this, firstEntry, lastEntry, maxPrefetchEntries);
+    }
+
     /**
      * Read a sequence of entries asynchronously, allowing to read after the LastAddConfirmed range.
      * <br>This is the same of
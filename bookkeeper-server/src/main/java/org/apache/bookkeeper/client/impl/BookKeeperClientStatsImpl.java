@@ -114,6 +114,21 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = "the distribution of entries read in ledger recovery requests"
     )
     private final OpStatsLogger recoverReadEntriesStats;
+    @StatsDoc(
+        name = LEDGER_RECOVER_READ_BATCHES,
+        help = "The number of batches of entries read by ledger recovery requests"
+    )
+    private final Counter recoverReadBatchesCounter;
+    @StatsDoc(
+        name = LEDGER_RECOVER_RECOVERED_ENTRIES,
+        help = "The number of entries written back by ledger recovery requests"
+    )
+    private final Counter recoverRecoveredEntriesCounter;
+    @StatsDoc(
+        name = LEDGER_RECOVER_RECOVERED_BYTES,
+        help = "The number of bytes written back by ledger recovery requests"
+    )
+    private final Counter recoverRecoveredBytesCounter;
 
     @StatsDoc(
         name = ENSEMBLE_CHANGES,
@@ -177,6 +192,9 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.readLacOpLogger = stats.getOpStatsLogger(READ_LAC_OP);
         this.recoverAddEntriesStats = stats.getOpStatsLogger(LEDGER_RECOVER_ADD_ENTRIES);
         this.recoverReadEntriesStats = stats.getOpStatsLogger(LEDGER_RECOVER_READ_ENTRIES);
+        this.recoverReadBatchesCounter = stats.getCounter(LEDGER_RECOVER_READ_BATCHES);
+        this.recoverRecoveredEntriesCounter = stats.getCounter(LEDGER_RECOVER_RECOVERED_ENTRIES);
+        this.recoverRecoveredBytesCounter = stats.getCounter(LEDGER_RECOVER_RECOVERED_BYTES);
 
         this.ensembleChangeCounter = stats.getCounter(ENSEMBLE_CHANGES);
         this.lacUpdateHitsCounter = stats.getCounter(LAC_UPDATE_HITS);
@@ -245,6 +263,18 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         return recoverReadEntriesStats;
     }
     @Override
+    public Counter getRecoverReadBatchesCounter() {
+        return recoverReadBatchesCounter;
+    }
+    @Override
+    public Counter getRecoverRecoveredEntriesCounter() {
+        return recoverRecoveredEntriesCounter;
+    }
+    @Override
+    public Counter getRecoverRecoveredBytesCounter() {
+        return recoverRecoveredBytesCounter;
+    }
+    @Override
     public Counter getReadOpDmCounter() {
         return readOpDmCounter;
     }
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.client.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
+import org.apache.bookkeeper.client.api.ReadHandle;
+
+/**
+ * A {@link LedgerEntryStream} reading ahead of the consumer with batch reads.
+ *
+ * <p>The sequence is read by batches of half the prefetch window, so that a batch is read while the entries of the
+ * previous one are consumed. The entries of a batch are returned once the batches before it are read. A batch read
+ * returning less entries than requested, because of the maximum frame size, is completed by another batch read. When
+ * the handle does not support batch reads, the batches are read with regular reads.
+ */
+public class PrefetchingLedgerEntryStream implements LedgerEntryStream {
+
+    private final ReadHandle handle;
+    private final long lastEntryId;
+    private final int maxPrefetchEntries;
+    private final int batchSize;
+
+    // the batches being read, in entry id order
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    // the entries read and not returned yet, in entry id order
+    private final ArrayDeque<LedgerEntry> entries = new ArrayDeque<>();
+    private final ArrayDeque<CompletableFuture<LedgerEntry>> pendingNexts = new ArrayDeque<>();
+
+    // next entry to request to the handle
+    private long nextEntryToRead;
+    // next entry to return to the consumer
+    private long nextEntryToReturn;
+    private volatile boolean batchReadSupported = true;
+    private Throwable failure = null;
+    private boolean closed = false;
+
+    private static class Batch {
+        final long lastEntryId;
+        long nextEntryId;
+        final List<LedgerEntry> entries = new ArrayList<>();
+        boolean reading = false;
+        Throwable failure = null;
+
+        Batch(long firstEntryId, long lastEntryId) {
+            this.nextEntryId = firstEntryId;
+            this.lastEntryId = lastEntryId;
+        }
+
+        boolean isComplete() {
+            return failure != null || (!reading && nextEntryId > lastEntryId);
+        }
+    }
+
+    public PrefetchingLedgerEntryStream(ReadHandle handle, long firstEntryId, long lastEntryId,
+                                        int maxPrefetchEntries) {
+        checkArgument(maxPrefetchEntries > 0, "Invalid prefetch window %s", maxPrefetchEntries);
+        this.handle = handle;
+        this.lastEntryId = lastEntryId;
+        this.maxPrefetchEntries = maxPrefetchEntries;
+        this.batchSize = Math.max(1, maxPrefetchEntries / 2);
+        this.nextEntryToRead = firstEntryId;
+        this.nextEntryToReturn = firstEntryId;
+        if (firstEntryId < 0 || firstEntryId > lastEntryId) {
+            failure = new BKException.BKIncorrectParameterException();
+        } else if (lastEntryId > handle.getLastAddConfirmed()) {
+            failure = new BKException.BKReadException();
+        }
+        // start reading ahead right away, so the first entry is ready as soon as possible
+        List<Runnable> reads;
+        synchronized (this) {
+            reads = progress();
+        }
+        reads.forEach(Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<LedgerEntry> nextAsync() {
+        CompletableFuture<LedgerEntry> future = new CompletableFuture<>();
+        List<Runnable> completions;
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("The stream is closed"));
+                return future;
+            }
+            pendingNexts.add(future);
+            completions = progress();
+        }
+        completions.forEach(Runnable::run);
+        return future;
+    }
+
+    @Override
+    public void close() {
+        List<CompletableFuture<LedgerEntry>> cancelled;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            entries.forEach(LedgerEntry::close);
+            entries.clear();
+            for (Batch batch : batches) {
+                batch.entries.forEach(LedgerEntry::close);
+                batch.entries.clear();
+            }
+            batches.clear();
+            cancelled = new ArrayList<>(pendingNexts);
+            pendingNexts.clear();
+        }
+        IllegalStateException closedException = new IllegalStateException("The stream is closed");
+        cancelled.forEach(future -> future.completeExceptionally(closedException));
+    }
+
+    /**
+     * Move the entries of the head batches to the entries to return, match the entries with the pending nexts and
+     * read the next batches.
+     *
+     * @return the completions of the pending nexts and the reads of the next batches, to run once the lock released.
+     */
+    private List<Runnable> progress() {
+        Batch batch;
+        // the entries after a failed batch are never returned
+        while (failure == null && (batch = batches.peek()) != null) {
+            entries.addAll(batch.entries);
+            batch.entries.clear();
+            if (!batch.isComplete()) {
+                break;
+            }
+            batches.poll();
+            failure = batch.failure;
+        }
+
+        List<Runnable> completions = new ArrayList<>();
+        while (!pendingNexts.isEmpty()) {
+            CompletableFuture<LedgerEntry> future;
+            if (!entries.isEmpty()) {
+                future = pendingNexts.poll();
+                LedgerEntry entry = entries.poll();
+                nextEntryToReturn++;
+                completions.add(() -> {
+                    if (!future.complete(entry)) {
+                        entry.close();
+                    }
+                });
+            } else if (failure != null) {
+                future = pendingNexts.poll();
+                Throwable cause = failure;
+                completions.add(() -> future.completeExceptionally(cause));
+            } else if (nextEntryToReturn > lastEntryId) {
+                future = pendingNexts.poll();
+                completions.add(() -> future.complete(null));
+            } else {
+                break;
+            }
+        }
+
+        while (failure == null && nextEntryToRead <= lastEntryId) {
+            int count = (int) Math.min(batchSize, lastEntryId - nextEntryToRead + 1);
+            if (nextEntryToRead - nextEntryToReturn + count > maxPrefetchEntries) {
+                break;
+            }
+            Batch next = new Batch(nextEntryToRead, nextEntryToRead + count - 1);
+            nextEntryToRead += count;
+            batches.add(next);
+            next.reading = true;
+            completions.add(() -> read(next));
+        }
+        return completions;
+    }
+
+    private void read(Batch batch) {
+        int count = (int) (batch.lastEntryId - batch.nextEntryId + 1);
+        CompletableFuture<LedgerEntries> future;
+        if (batchReadSupported) {
+            // the size of a batch is only bounded by the max frame size of the client
+            future = handle.batchReadAsync(batch.nextEntryId, count, Long.MAX_VALUE);
+        } else {
+            future = handle.readAsync(batch.nextEntryId, batch.lastEntryId);
+        }
+        future.whenComplete((result, cause) -> onReadComplete(batch, result, cause));
+    }
+
+    private void onReadComplete(Batch batch, LedgerEntries result, Throwable cause) {
+        List<Runnable> completions;
+        synchronized (this) {
+            batch.reading = false;
+            if (closed) {
+                if (result != null) {
+                    result.close();
+                }
+                return;
+            }
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof UnsupportedOperationException && batchReadSupported) {
+                batchReadSupported = false;
+                batch.reading = true;
+                completions = Collections.singletonList(() -> read(batch));
+            } else {
+                completions = onBatchRead(batch, result, cause);
+            }
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    private List<Runnable> onBatchRead(Batch batch, LedgerEntries result, Throwable cause) {
+        boolean readAgain = false;
+        if (cause != null) {
+            batch.failure = cause;
+        } else {
+            int numEntries = 0;
+            for (LedgerEntry entry : result) {
+                if (entry.getEntryId() != batch.nextEntryId || entry.getEntryId() > batch.lastEntryId) {
+                    break;
+                }
+                batch.entries.add(entry.duplicate());
+                batch.nextEntryId++;
+                numEntries++;
+            }
+            result.close();
+            if (numEntries == 0) {
+                batch.failure = new BKException.BKReadException();
+            } else if (batch.nextEntryId <= batch.lastEntryId) {
+                batch.reading = true;
+                readAgain = true;
+            }
+        }
+        List<Runnable> completions = progress();
+        if (readAgain) {
+            completions.add(() -> read(batch));
+        }
+        return completions;
+    }
+}
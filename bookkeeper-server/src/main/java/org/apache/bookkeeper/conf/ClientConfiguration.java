@@ -107,14 +107,19 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String MAX_SPECULATIVE_READ_TIMEOUT = "maxSpeculativeReadTimeout";
     protected static final String SPECULATIVE_READ_TIMEOUT_BACKOFF_MULTIPLIER =
         "speculativeReadTimeoutBackoffMultiplier";
+    protected static final String SPECULATIVE_READ_TIMEOUT_PERCENTILE = "speculativeReadTimeoutPercentile";
+    protected static final String MAX_SPECULATIVE_READ_RATIO = "maxSpeculativeReadRatio";
     protected static final String FIRST_SPECULATIVE_READ_LAC_TIMEOUT = "firstSpeculativeReadLACTimeout";
     protected static final String MAX_SPECULATIVE_READ_LAC_TIMEOUT = "maxSpeculativeReadLACTimeout";
     protected static final String SPECULATIVE_READ_LAC_TIMEOUT_BACKOFF_MULTIPLIER =
         "speculativeReadLACTimeoutBackoffMultiplier";
     protected static final String ENABLE_PARALLEL_RECOVERY_READ = "enableParallelRecoveryRead";
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
+    protected static final String RECOVERY_READ_MAX_OUTSTANDING_BATCHES = "recoveryReadMaxOutstandingBatches";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String LATENCY_AWARE_READ_REPLICA_SELECTION_ENABLED =
+            "latencyAwareReadReplicaSelectionEnabled";
     protected static final String RECOVERY_BATCH_READ_ENABLED = "recoveryBatchReadEnabled";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
@@ -204,6 +209,16 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     //For batch read api, it the batch read is not stable, we can fail back to single read by this config.
     protected static final String BATCH_READ_ENABLED = "batchReadEnabled";
 
+    // Batching of the v2 add requests sent to a bookie
+    protected static final String ADD_ENTRY_BATCH_MAX_DELAY_MICROS = "addEntryBatchMaxDelayMicros";
+    protected static final String ADD_ENTRY_BATCH_MAX_SIZE_BYTES = "addEntryBatchMaxSizeBytes";
+
+    // Congestion control of the requests in flight to a bookie
+    protected static final String BOOKIE_CONGESTION_CONTROL_ENABLED = "bookieCongestionControlEnabled";
+    protected static final String BOOKIE_CONGESTION_MIN_WINDOW = "bookieCongestionMinWindow";
+    protected static final String BOOKIE_CONGESTION_MAX_WINDOW = "bookieCongestionMaxWindow";
+    protected static final String BOOKIE_CONGESTION_LATENCY_THRESHOLD = "bookieCongestionLatencyThreshold";
+
     /**
      * Construct a default client-side configuration.
      */
@@ -999,6 +1014,58 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the percentile of the recent read latencies after which the first speculative read is sent.
+     *
+     * @return the speculative read timeout percentile, 0 if the first speculative read timeout is fixed.
+     */
+    public double getSpeculativeReadTimeoutPercentile() {
+        return getDouble(SPECULATIVE_READ_TIMEOUT_PERCENTILE, 0);
+    }
+
+    /**
+     * Set the percentile of the recent read latencies after which the first speculative read is sent.
+     *
+     * <p>When set, for example to 95, the client keeps a histogram of the latency of its recent reads, and sends
+     * the first speculative read of an entry once its read is slower than this percentile. The first speculative
+     * read timeout applies until enough latencies are known, and the max speculative read timeout caps the
+     * percentile. The speculative reads are limited by {@link #setMaxSpeculativeReadRatio(double)}. This applies
+     * to the speculative reads of the entries and of the last add confirmed and entry.
+     *
+     * @param percentile
+     *          the speculative read timeout percentile, between 0 and 100. 0 keeps the first speculative read
+     *          timeout fixed.
+     * @return client configuration.
+     */
+    public ClientConfiguration setSpeculativeReadTimeoutPercentile(double percentile) {
+        setProperty(SPECULATIVE_READ_TIMEOUT_PERCENTILE, percentile);
+        return this;
+    }
+
+    /**
+     * Get the maximum ratio of speculative reads to reads, when the speculative read timeout follows a
+     * percentile of the read latencies.
+     *
+     * @return the maximum ratio of speculative reads to reads.
+     */
+    public double getMaxSpeculativeReadRatio() {
+        return getDouble(MAX_SPECULATIVE_READ_RATIO, 0.1);
+    }
+
+    /**
+     * Set the maximum ratio of speculative reads to reads, when the speculative read timeout follows a
+     * percentile of the read latencies. It keeps a general slowdown of the bookies from multiplying the reads
+     * sent to them.
+     *
+     * @param ratio
+     *          the maximum ratio of speculative reads to reads.
+     * @return client configuration.
+     */
+    public ClientConfiguration setMaxSpeculativeReadRatio(double ratio) {
+        setProperty(MAX_SPECULATIVE_READ_RATIO, ratio);
+        return this;
+    }
+
     /**
      * Multiplier to use when determining time between successive speculative read LAC requests.
      *
@@ -1144,6 +1211,33 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the maximum number of recovery read batches in flight while recovering a ledger.
+     *
+     * <p>Recovery reads the entries after the last add confirmed by batches of {@link #getRecoveryReadBatchSize()}
+     * entries, and adds them back to the ledger in entry id order. Up to this number of batches are read ahead of the
+     * entries being added back, and the next batch is only read once the entries pending to be added back fit in the
+     * same number of batches.
+     *
+     * @return the maximum number of recovery read batches in flight.
+     */
+    public int getRecoveryReadMaxOutstandingBatches() {
+        return getInt(RECOVERY_READ_MAX_OUTSTANDING_BATCHES, 1);
+    }
+
+    /**
+     * Set the maximum number of recovery read batches in flight while recovering a ledger.
+     *
+     * @param maxOutstandingBatches
+     *          maximum number of recovery read batches in flight.
+     * @return client configuration.
+     * @see #getRecoveryReadMaxOutstandingBatches()
+     */
+    public ClientConfiguration setRecoveryReadMaxOutstandingBatches(int maxOutstandingBatches) {
+        setProperty(RECOVERY_READ_MAX_OUTSTANDING_BATCHES, maxOutstandingBatches);
+        return this;
+    }
+
     /**
      * If reorder read sequence enabled or not.
      *
@@ -1174,6 +1268,33 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the replica serving each read is picked from the read latency and the pending requests of the
+     * bookies.
+     *
+     * @return true if the latency aware selection of the read replicas is enabled, otherwise false.
+     */
+    public boolean isLatencyAwareReadReplicaSelectionEnabled() {
+        return getBoolean(LATENCY_AWARE_READ_REPLICA_SELECTION_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable the latency aware selection of the replica serving each read.
+     *
+     * <p>If this flag is enabled, the client draws two bookies at random among the healthy bookies of the read
+     * sequence, and sends the read to the one with the lowest average read latency scaled by its pending requests.
+     * The other bookies keep their order for the speculative reads and the retries. The selection does not apply
+     * when the reads are sticky, see {@link #setStickyReadsEnabled(boolean)}.
+     *
+     * @param enabled
+     *          flag to enable/disable the latency aware selection of the read replicas.
+     * @return client configuration.
+     */
+    public ClientConfiguration setLatencyAwareReadReplicaSelectionEnabled(boolean enabled) {
+        setProperty(LATENCY_AWARE_READ_REPLICA_SELECTION_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * If read operation should be sticky to a single bookie or not.
      *
@@ -1204,6 +1325,10 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
 
     /**
      * If recovery batch read enabled or not.
+     *
+     * <p>When enabled, the bookie auto recovery and the ledger recovery read the entries with batch reads, as long as
+     * the client uses the v2 wire protocol, batch reads are enabled and the ensemble size of the ledger is equal to
+     * its write quorum size.
      * @return
      */
     public boolean isRecoveryBatchReadEnabled() {
@@ -2084,6 +2209,151 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return getBoolean(BATCH_READ_ENABLED, true);
     }
 
+    /**
+     * Get the maximum time the add requests to a bookie are held back to be batched together.
+     *
+     * @return the maximum batching delay of the add requests, in microseconds. 0 disables the batching.
+     */
+    public long getAddEntryBatchMaxDelayMicros() {
+        return getLong(ADD_ENTRY_BATCH_MAX_DELAY_MICROS, 0L);
+    }
+
+    /**
+     * Set the maximum time the add requests to a bookie are held back to be batched together.
+     *
+     * <p>When enabled, the consecutive add requests of the same ledger sent to a bookie within this delay are
+     * sent as a single batch add request, saving the per request processing on the bookie. The batching only
+     * applies to the v2 wire protocol ({@link #setUseV2WireProtocol(boolean)}), and to the bookies advertising
+     * the batch add requests in their registration. The adds to the other bookies, such as the bookies not
+     * upgraded yet, are sent one by one.
+     *
+     * @param delayMicros
+     *          the maximum batching delay of the add requests, in microseconds. 0 disables the batching.
+     * @return client configuration.
+     */
+    public ClientConfiguration setAddEntryBatchMaxDelayMicros(long delayMicros) {
+        setProperty(ADD_ENTRY_BATCH_MAX_DELAY_MICROS, delayMicros);
+        return this;
+    }
+
+    /**
+     * Get the maximum size of a batch of add requests.
+     *
+     * @return the maximum size of a batch of add requests, in bytes.
+     */
+    public int getAddEntryBatchMaxSizeBytes() {
+        return getInt(ADD_ENTRY_BATCH_MAX_SIZE_BYTES, 64 * 1024);
+    }
+
+    /**
+     * Set the maximum size of a batch of add requests. A batch reaching this size is sent right away, without
+     * waiting for the batching delay.
+     *
+     * @param maxSizeBytes
+     *          the maximum size of a batch of add requests, in bytes.
+     * @return client configuration.
+     */
+    public ClientConfiguration setAddEntryBatchMaxSizeBytes(int maxSizeBytes) {
+        setProperty(ADD_ENTRY_BATCH_MAX_SIZE_BYTES, maxSizeBytes);
+        return this;
+    }
+
+    /**
+     * Whether the requests in flight to each bookie are bounded by a window adapted from its latency.
+     *
+     * @return true if the congestion control of the requests sent to the bookies is enabled.
+     */
+    public boolean isBookieCongestionControlEnabled() {
+        return getBoolean(BOOKIE_CONGESTION_CONTROL_ENABLED, false);
+    }
+
+    /**
+     * Enable the congestion control of the requests sent to the bookies.
+     *
+     * <p>When enabled, the client bounds the requests in flight to each bookie with a window. The window grows
+     * while the latency of the bookie stays close to the lowest latency observed, and is halved when the latency
+     * rises above {@link #getBookieCongestionLatencyThreshold()} times this latency or when a request times out.
+     * A bookie with a full window is reported as not writable, so that the adds wait for it as configured by
+     * {@link #setWaitTimeoutOnBackpressureMillis(long)} and the reads are preferably sent to other bookies.
+     *
+     * <p>Requires {@link #setWaitTimeoutOnBackpressureMillis(long)} &gt; 0, otherwise ignored: nothing else holds
+     * the adds back once the window is full.
+     *
+     * @param enabled
+     *          whether to enable the congestion control of the requests sent to the bookies.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieCongestionControlEnabled(boolean enabled) {
+        setProperty(BOOKIE_CONGESTION_CONTROL_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the minimum number of requests allowed in flight to a bookie by the congestion control.
+     *
+     * @return the minimum congestion window of a bookie.
+     */
+    public int getBookieCongestionMinWindow() {
+        return getInt(BOOKIE_CONGESTION_MIN_WINDOW, 16);
+    }
+
+    /**
+     * Set the minimum number of requests allowed in flight to a bookie by the congestion control.
+     *
+     * @param minWindow
+     *          the minimum congestion window of a bookie.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieCongestionMinWindow(int minWindow) {
+        setProperty(BOOKIE_CONGESTION_MIN_WINDOW, minWindow);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of requests allowed in flight to a bookie by the congestion control.
+     *
+     * @return the maximum congestion window of a bookie.
+     */
+    public int getBookieCongestionMaxWindow() {
+        return getInt(BOOKIE_CONGESTION_MAX_WINDOW, 4096);
+    }
+
+    /**
+     * Set the maximum number of requests allowed in flight to a bookie by the congestion control. The window of a
+     * bookie starts at this size.
+     *
+     * @param maxWindow
+     *          the maximum congestion window of a bookie.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieCongestionMaxWindow(int maxWindow) {
+        setProperty(BOOKIE_CONGESTION_MAX_WINDOW, maxWindow);
+        return this;
+    }
+
+    /**
+     * Get the ratio of the latency of a bookie to its lowest observed latency above which the bookie is
+     * considered congested.
+     *
+     * @return the latency ratio of a congested bookie.
+     */
+    public double getBookieCongestionLatencyThreshold() {
+        return getDouble(BOOKIE_CONGESTION_LATENCY_THRESHOLD, 3.0);
+    }
+
+    /**
+     * Set the ratio of the latency of a bookie to its lowest observed latency above which the bookie is
+     * considered congested, and its congestion window is shrunk.
+     *
+     * @param threshold
+     *          the latency ratio of a congested bookie, greater than 1.
+     * @return client configuration.
+     */
+    public ClientConfiguration setBookieCongestionLatencyThreshold(double threshold) {
+        setProperty(BOOKIE_CONGESTION_LATENCY_THRESHOLD, threshold);
+        return this;
+    }
+
     @Override
     protected ClientConfiguration getThis() {
         return this;
@@ -106,6 +106,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String COMPACTION_RATE = "compactionRate";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
+    protected static final String COMPACTION_BACKOFF_READS_IN_PROGRESS = "compactionBackoffReadsInProgress";
+    protected static final String COMPACTION_BACKOFF_ADDS_IN_PROGRESS = "compactionBackoffAddsInProgress";
 
     // Gc Parameters
     protected static final String GC_WAIT_TIME = "gcWaitTime";
@@ -140,6 +142,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_WRITE_DATA = "journalWriteData";
     protected static final String JOURNAL_ADAPTIVE_GROUP_WRITES = "journalAdaptiveGroupWrites";
     protected static final String JOURNAL_MAX_GROUP_WAIT_MSEC = "journalMaxGroupWaitMSec";
+    protected static final String JOURNAL_ADAPTIVE_GROUP_COMMIT = "journalAdaptiveGroupCommit";
+    protected static final String JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MICROS = "journalGroupCommitTargetLatencyMicros";
     protected static final String JOURNAL_BUFFERED_WRITES_THRESHOLD = "journalBufferedWritesThreshold";
     protected static final String JOURNAL_BUFFERED_ENTRIES_THRESHOLD = "journalBufferedEntriesThreshold";
     protected static final String JOURNAL_FLUSH_WHEN_QUEUE_EMPTY = "journalFlushWhenQueueEmpty";
@@ -154,6 +158,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     protected static final String JOURNAL_CHANNEL_PROVIDER = "journalChannelProvider";
     protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
+    protected static final String JOURNAL_DIRECT_IO = "journalDirectIO";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
@@ -1031,6 +1036,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal is written with direct I/O (O_DIRECT), bypassing the page cache.
+     *
+     * <p>It requires the native-io library and a filesystem supporting O_DIRECT, otherwise the journal falls back
+     * to buffered writes.
+     *
+     * @return whether the journal is written with direct I/O
+     */
+    public boolean getJournalDirectIO() {
+        return this.getBoolean(JOURNAL_DIRECT_IO, false);
+    }
+
+    /**
+     * Set whether the journal is written with direct I/O (O_DIRECT), bypassing the page cache.
+     *
+     * @param journalDirectIO
+     *          whether to write the journal with direct I/O
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalDirectIO(boolean journalDirectIO) {
+        setProperty(JOURNAL_DIRECT_IO, journalDirectIO);
+        return this;
+    }
+
     /**
      * Get max number of adds in progress. 0 == unlimited.
      *
@@ -2364,6 +2393,51 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal adapts the grouping of writes to the load. When enabled, the journal chooses how long
+     * to wait and how many entries to buffer before flushing from the observed fsync latency and arrival rate, so
+     * that adds meet {@link #getJournalGroupCommitTargetLatencyMicros()}. It then replaces
+     * {@link #getJournalBufferedEntriesThreshold()} and {@link #getJournalFlushWhenQueueEmpty()}, while
+     * {@link #getJournalMaxGroupWaitMSec()} caps the wait time.
+     *
+     * @return whether the journal group commit is adaptive
+     */
+    public boolean getJournalAdaptiveGroupCommit() {
+        return getBoolean(JOURNAL_ADAPTIVE_GROUP_COMMIT, false);
+    }
+
+    /**
+     * Enable/disable the adaptive grouping of the journal writes.
+     *
+     * @param enabled flag to enable/disable the adaptive group commit
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalAdaptiveGroupCommit(boolean enabled) {
+        setProperty(JOURNAL_ADAPTIVE_GROUP_COMMIT, enabled);
+        return this;
+    }
+
+    /**
+     * Target latency of the adds in the journal, including the fsync, for the adaptive group commit.
+     * Default is 5ms.
+     *
+     * @return target latency in microseconds
+     */
+    public long getJournalGroupCommitTargetLatencyMicros() {
+        return getLong(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MICROS, 5000);
+    }
+
+    /**
+     * Set the target latency of the adds in the journal for the adaptive group commit.
+     *
+     * @param targetLatencyMicros target latency in microseconds
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalGroupCommitTargetLatencyMicros(long targetLatencyMicros) {
+        setProperty(JOURNAL_GROUP_COMMIT_TARGET_LATENCY_MICROS, targetLatencyMicros);
+        return this;
+    }
+
     /**
      * Maximum bytes to buffer to impose on a journal write to achieve grouping.
      *
@@ -2974,6 +3048,54 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of read requests in progress above which the compaction backs off. Default is 0, which
+     * disables the back off on reads.
+     *
+     * <p>While the bookie is busy, the compaction rate is halved periodically, down to a sixteenth of the
+     * configured rate, and it grows back to the configured rate once the bookie is idle again.
+     *
+     * @return the number of read requests in progress above which the compaction backs off
+     */
+    public int getCompactionBackoffReadsInProgress() {
+        return getInt(COMPACTION_BACKOFF_READS_IN_PROGRESS, 0);
+    }
+
+    /**
+     * Set the number of read requests in progress above which the compaction backs off.
+     *
+     * @param reads number of read requests in progress, 0 to disable the back off on reads
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionBackoffReadsInProgress(int reads) {
+        setProperty(COMPACTION_BACKOFF_READS_IN_PROGRESS, reads);
+        return this;
+    }
+
+    /**
+     * Get the number of add requests in progress above which the compaction backs off. Default is 0, which
+     * disables the back off on adds.
+     *
+     * <p>The add requests in progress include the adds waiting for the journal, so they grow with the journal
+     * latency.
+     *
+     * @return the number of add requests in progress above which the compaction backs off
+     */
+    public int getCompactionBackoffAddsInProgress() {
+        return getInt(COMPACTION_BACKOFF_ADDS_IN_PROGRESS, 0);
+    }
+
+    /**
+     * Set the number of add requests in progress above which the compaction backs off.
+     *
+     * @param adds number of add requests in progress, 0 to disable the back off on adds
+     * @return ServerConfiguration
+     */
+    public ServerConfiguration setCompactionBackoffAddsInProgress(int adds) {
+        setProperty(COMPACTION_BACKOFF_ADDS_IN_PROGRESS, adds);
+        return this;
+    }
+
     /**
      * Should we remove pages from page cache after force write.
      *
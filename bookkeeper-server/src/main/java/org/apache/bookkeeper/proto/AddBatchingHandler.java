@@ -0,0 +1,252 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
+import org.apache.bookkeeper.util.ByteBufList;
+
+/**
+ * Coalesces the v2 add requests of the same ledger, written to a channel within a short window, into a single
+ * {@link BookieProtocol#BATCH_ADD_ENTRY} request.
+ *
+ * <p>The add requests reach this handler as the frames built by the digest manager. A batch is open for each
+ * ledger with adds in flight on the channel, and is sent when the window started by the flush of its first add
+ * expires or when it reaches its maximum size. Writing any other request sends all the open batches first, so
+ * that the requests are not reordered with the adds. The frames are not copied: the batch references the entries,
+ * without their frame size, header and master key.
+ */
+class AddBatchingHandler extends ChannelOutboundHandlerAdapter {
+
+    // Frame size, packet header and master key preceding the entry in an add request
+    static final int ADD_REQUEST_HEADER_SIZE = 4 + 4 + BookieProtocol.MASTER_KEY_LENGTH;
+
+    private final long maxDelayNanos;
+    private final int maxBatchSize;
+
+    private final List<PendingBatch> pendingBatches = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * The adds of a ledger waiting to be sent.
+     */
+    private static class PendingBatch {
+        final int packetHeader;
+        final long ledgerId;
+        final List<Object> adds = new ArrayList<>();
+        final List<ChannelPromise> promises = new ArrayList<>();
+        int size;
+
+        PendingBatch(int packetHeader, long ledgerId) {
+            this.packetHeader = packetHeader;
+            this.ledgerId = ledgerId;
+        }
+    }
+
+    AddBatchingHandler(long maxDelayNanos, int maxBatchSize) {
+        this.maxDelayNanos = maxDelayNanos;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        ByteBuf header = getAddRequestHeader(msg);
+        if (header == null) {
+            writePendingBatches(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+
+        int packetHeader = header.getInt(header.readerIndex() + 4);
+        long ledgerId = header.getLong(header.readerIndex() + ADD_REQUEST_HEADER_SIZE);
+        int size = Integer.BYTES + readableBytes(msg) - ADD_REQUEST_HEADER_SIZE;
+        PendingBatch batch = null;
+        for (int i = 0; i < pendingBatches.size(); i++) {
+            PendingBatch pendingBatch = pendingBatches.get(i);
+            if (pendingBatch.ledgerId == ledgerId && pendingBatch.packetHeader == packetHeader) {
+                batch = pendingBatch;
+                break;
+            }
+        }
+        if (batch == null) {
+            batch = new PendingBatch(packetHeader, ledgerId);
+            pendingBatches.add(batch);
+        } else if (batch.size + size > maxBatchSize) {
+            writeBatch(ctx, batch);
+        }
+        batch.adds.add(msg);
+        batch.promises.add(promise);
+        batch.size += size;
+        if (batch.size >= maxBatchSize) {
+            // the batch goes out with the flush following the write
+            writeBatch(ctx, batch);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (flushTask == null && hasPendingAdds()) {
+            flushTask = ctx.executor().schedule(() -> {
+                flushTask = null;
+                writePendingBatches(ctx);
+                ctx.flush();
+            }, maxDelayNanos, TimeUnit.NANOSECONDS);
+        }
+        ctx.flush();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        for (PendingBatch batch : pendingBatches) {
+            for (int i = 0; i < batch.adds.size(); i++) {
+                ReferenceCountUtil.release(batch.adds.get(i));
+                batch.promises.get(i).tryFailure(cause);
+            }
+        }
+        pendingBatches.clear();
+    }
+
+    private boolean hasPendingAdds() {
+        for (int i = 0; i < pendingBatches.size(); i++) {
+            if (!pendingBatches.get(i).adds.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writePendingBatches(ChannelHandlerContext ctx) {
+        if (pendingBatches.isEmpty()) {
+            return;
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        for (int i = 0; i < pendingBatches.size(); i++) {
+            writeBatch(ctx, pendingBatches.get(i));
+        }
+        pendingBatches.clear();
+    }
+
+    private void writeBatch(ChannelHandlerContext ctx, PendingBatch pendingBatch) {
+        List<Object> adds = pendingBatch.adds;
+        int numEntries = adds.size();
+        if (numEntries == 0) {
+            return;
+        }
+        if (numEntries == 1) {
+            ctx.write(adds.get(0), pendingBatch.promises.get(0));
+            adds.clear();
+            pendingBatch.promises.clear();
+            pendingBatch.size = 0;
+            return;
+        }
+
+        ByteBuf firstHeader = getAddRequestHeader(adds.get(0));
+        ByteBuf batchHeader = ctx.alloc().buffer(ADD_REQUEST_HEADER_SIZE + Integer.BYTES);
+        batchHeader.writeInt(4 + BookieProtocol.MASTER_KEY_LENGTH + Integer.BYTES + pendingBatch.size);
+        batchHeader.writeInt(PacketHeader.toInt(PacketHeader.getVersion(pendingBatch.packetHeader),
+                BookieProtocol.BATCH_ADD_ENTRY, PacketHeader.getFlags(pendingBatch.packetHeader)));
+        batchHeader.writeBytes(firstHeader, firstHeader.readerIndex() + 8, BookieProtocol.MASTER_KEY_LENGTH);
+        batchHeader.writeInt(numEntries);
+
+        ByteBuf entrySizes = ctx.alloc().buffer(numEntries * Integer.BYTES);
+        ByteBufList batch = ByteBufList.get(batchHeader);
+        for (int i = 0; i < numEntries; i++) {
+            Object add = adds.get(i);
+            entrySizes.writeInt(readableBytes(add) - ADD_REQUEST_HEADER_SIZE);
+            batch.add(entrySizes.retainedSlice(i * Integer.BYTES, Integer.BYTES));
+            if (add instanceof ByteBuf) {
+                ByteBuf buf = (ByteBuf) add;
+                batch.add(buf.retainedSlice(buf.readerIndex() + ADD_REQUEST_HEADER_SIZE,
+                        buf.readableBytes() - ADD_REQUEST_HEADER_SIZE));
+            } else {
+                ByteBufList list = (ByteBufList) add;
+                ByteBuf first = list.getBuffer(0);
+                batch.add(first.retainedSlice(first.readerIndex() + ADD_REQUEST_HEADER_SIZE,
+                        first.readableBytes() - ADD_REQUEST_HEADER_SIZE));
+                for (int j = 1; j < list.size(); j++) {
+                    batch.add(list.getBuffer(j).retainedDuplicate());
+                }
+            }
+            ReferenceCountUtil.release(add);
+        }
+        entrySizes.release();
+
+        ChannelPromise[] promises = pendingBatch.promises.toArray(new ChannelPromise[numEntries]);
+        ChannelPromise batchPromise = ctx.newPromise().addListener(future -> {
+            for (ChannelPromise promise : promises) {
+                if (future.isSuccess()) {
+                    promise.trySuccess();
+                } else {
+                    promise.tryFailure(future.cause());
+                }
+            }
+        });
+        adds.clear();
+        pendingBatch.promises.clear();
+        pendingBatch.size = 0;
+        ctx.write(batch, batchPromise);
+    }
+
+    /**
+     * Return the buffer holding the header of the v2 add request, or null if the message is another request.
+     */
+    private static ByteBuf getAddRequestHeader(Object msg) {
+        ByteBuf header;
+        if (msg instanceof ByteBuf) {
+            header = (ByteBuf) msg;
+        } else if (msg instanceof ByteBufList && ((ByteBufList) msg).size() > 0) {
+            header = ((ByteBufList) msg).getBuffer(0);
+        } else {
+            return null;
+        }
+        // the header must be followed by the ledger id and the entry id
+        if (header.readableBytes() < ADD_REQUEST_HEADER_SIZE + 2 * Long.BYTES) {
+            return null;
+        }
+        int packetHeader = header.getInt(header.readerIndex() + 4);
+        if (PacketHeader.getVersion(packetHeader) < 2
+                || PacketHeader.getOpCode(packetHeader) != BookieProtocol.ADDENTRY) {
+            return null;
+        }
+        return header;
+    }
+
+    private static int readableBytes(Object msg) {
+        return msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes() : ((ByteBufList) msg).readableBytes();
+    }
+}
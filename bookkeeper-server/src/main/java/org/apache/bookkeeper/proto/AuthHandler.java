@@ -107,6 +107,15 @@ class AuthHandler {
                             req.getProtocolVersion(), BookieProtocol.EUA,
                             req.getLedgerId(), req.getEntryId());
                     NettyChannelUtil.writeAndFlushWithVoidPromise(ctx.channel(), response);
+                } else if (req.getOpCode() == BookieProtocol.BATCH_ADD_ENTRY) {
+                    BookieProtocol.BatchedAddRequest batch = (BookieProtocol.BatchedAddRequest) req;
+                    for (BookieProtocol.ParsedAddRequest addRequest : batch.getAddRequests()) {
+                        final BookieProtocol.AddResponse response = BookieProtocol.AddResponse.create(
+                                req.getProtocolVersion(), BookieProtocol.EUA,
+                                addRequest.getLedgerId(), addRequest.getEntryId());
+                        NettyChannelUtil.writeAndFlushWithVoidPromise(ctx.channel(), response);
+                    }
+                    batch.release();
                 } else if (req.getOpCode() == BookieProtocol.READENTRY) {
                     final BookieProtocol.ReadResponse response = new BookieProtocol.ReadResponse(
                             req.getProtocolVersion(), BookieProtocol.EUA,
@@ -20,7 +20,6 @@
  */
 package org.apache.bookkeeper.proto;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.util.Recycler;
 import io.netty.util.ReferenceCounted;
 import java.util.concurrent.ExecutorService;
@@ -48,7 +47,6 @@ public class BatchedReadEntryProcessor extends ReadEntryProcessor {
 
     @Override
     protected ReferenceCounted readData() throws Exception {
-        ByteBufList data = null;
         BatchedReadRequest batchRequest = (BatchedReadRequest) request;
         int maxCount = batchRequest.getMaxCount();
         if (maxCount <= 0) {
@@ -56,28 +54,29 @@ public class BatchedReadEntryProcessor extends ReadEntryProcessor {
         }
         long maxSize = Math.min(batchRequest.getMaxSize(), maxBatchReadSize);
         //See BookieProtoEncoding.ResponseEnDeCoderPreV3#encode on BatchedReadResponse case.
-        long frameSize = 24 + 8 + 4;
-        for (int i = 0; i < maxCount; i++) {
-            try {
-                ByteBuf entry = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId() + i);
-                frameSize += entry.readableBytes() + 4;
-                if (data == null) {
-                    data = ByteBufList.get(entry);
-                } else {
-                    if (frameSize > maxSize) {
-                        entry.release();
-                        break;
-                    }
-                    data.add(entry);
-                }
-            } catch (Throwable e) {
-                if (data == null) {
-                    throw e;
-                }
-                break;
+        long[] frameSize = { 24 + 8 + 4 };
+        ByteBufList[] data = { null };
+        try {
+            requestProcessor.getBookie().readEntries(request.getLedgerId(), request.getEntryId(), maxCount, maxSize,
+                    entry -> {
+                        frameSize[0] += entry.readableBytes() + 4;
+                        if (data[0] == null) {
+                            data[0] = ByteBufList.get(entry);
+                            return true;
+                        }
+                        if (frameSize[0] > maxSize) {
+                            entry.release();
+                            return false;
+                        }
+                        data[0].add(entry);
+                        return true;
+                    });
+        } catch (Throwable e) {
+            if (data[0] == null) {
+                throw e;
             }
         }
-        return data;
+        return data[0];
     }
 
     @Override
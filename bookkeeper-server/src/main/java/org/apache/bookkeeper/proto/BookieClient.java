@@ -85,6 +85,16 @@ public interface BookieClient {
      */
     long getNumPendingRequests(BookieId address, long ledgerId);
 
+    /**
+     * Get the moving average of the latency of the reads served by a bookie.
+     *
+     * @param address the address of the bookie
+     * @return the average read latency in nanoseconds, or -1 if unknown
+     */
+    default long getReadLatencyNanos(BookieId address) {
+        return -1L;
+    }
+
     /**
      * Send a force request to the server. When complete all entries which have
      * been written for {@code ledgerId} to this bookie will be persisted on disk.
@@ -123,6 +123,11 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         this.numConnectionsPerBookie = conf.getNumChannelsPerBookie();
         this.bookieErrorThresholdPerInterval = conf.getBookieErrorThresholdPerInterval();
 
+        if (conf.isBookieCongestionControlEnabled() && conf.getWaitTimeoutOnBackpressureMillis() <= 0) {
+            LOG.warn("The congestion control of the requests sent to the bookies is disabled, as it requires"
+                    + " waitTimeoutOnBackpressureMs > 0 (currently {})", conf.getWaitTimeoutOnBackpressureMillis());
+        }
+
         this.scheduler = scheduler;
         if (conf.getAddEntryTimeout() > 0 || conf.getReadEntryTimeout() > 0) {
             this.timeoutFuture = this.scheduler.scheduleAtFixedRate(
@@ -180,6 +185,13 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }
     }
 
+    @Override
+    public long getReadLatencyNanos(BookieId address) {
+        // do not connect to the bookie only to find out there is no latency to report
+        PerChannelBookieClientPool pcbcPool = channels.get(address);
+        return pcbcPool == null ? -1L : pcbcPool.getReadLatencyNanos();
+    }
+
     @Override
     public PerChannelBookieClient create(BookieId address, PerChannelBookieClientPool pcbcPool,
             SecurityHandlerFactory shFactory, boolean forceUseV3) throws SecurityException {
@@ -205,7 +217,8 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
                     return null;
                 }
                 PerChannelBookieClientPool newClientPool =
-                    new DefaultPerChannelBookieClientPool(conf, this, addr, numConnectionsPerBookie);
+                    new DefaultPerChannelBookieClientPool(conf, this, addr, numConnectionsPerBookie,
+                            conf.getLimitStatsLogging() ? NullStatsLogger.INSTANCE : statsLogger);
                 PerChannelBookieClientPool oldClientPool = channels.putIfAbsent(addr, newClientPool);
                 if (null == oldClientPool) {
                     clientPool = newClientPool;
@@ -0,0 +1,124 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the requests in flight to a bookie with a window adapted from the latency of its responses, in the style
+ * of TCP Vegas.
+ *
+ * <p>The latency of the bookie is compared with the lowest latency observed over the last
+ * {@link #BASE_LATENCY_PERIOD_NANOS}. While the smoothed latency stays under {@code latencyThreshold} times this
+ * base latency, the window grows by one request per window of responses (additive increase). When it rises above,
+ * or when a request times out or is rejected by the bookie, the window is halved (multiplicative decrease). The
+ * window is decreased at most once per smoothed latency, so that the responses of the requests sent before a
+ * decrease do not decrease it again.
+ */
+class BookieCongestionWindow {
+
+    // The lowest latency is forgotten after this period, to follow the changes of the bookie and network load
+    static final long BASE_LATENCY_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // Latencies under this bound are never considered as congestion, whatever the base latency
+    static final long MIN_CONGESTED_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int minWindow;
+    private final int maxWindow;
+    private final double latencyThreshold;
+
+    private double window;
+    private volatile int currentWindow;
+
+    private double smoothedLatencyNanos = -1;
+    private long baseLatencyNanos = Long.MAX_VALUE;
+    private long nextBaseLatencyNanos = Long.MAX_VALUE;
+    private long baseLatencyPeriodStartNanos;
+    private long lastDecreaseNanos;
+
+    BookieCongestionWindow(int minWindow, int maxWindow, double latencyThreshold, long nowNanos) {
+        checkArgument(minWindow > 0 && minWindow <= maxWindow,
+                "Invalid congestion window bounds [%s, %s]", minWindow, maxWindow);
+        checkArgument(latencyThreshold > 1.0, "Invalid latency threshold %s", latencyThreshold);
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.latencyThreshold = latencyThreshold;
+        // Start open, the window only closes once the bookie shows signs of congestion
+        this.window = maxWindow;
+        this.currentWindow = maxWindow;
+        this.baseLatencyPeriodStartNanos = nowNanos;
+        this.lastDecreaseNanos = nowNanos;
+    }
+
+    /**
+     * @return the maximum number of requests that should be in flight to the bookie
+     */
+    int getWindow() {
+        return currentWindow;
+    }
+
+    /**
+     * Adapt the window to the latency of a successful response of the bookie.
+     */
+    synchronized void onResponse(long latencyNanos, long nowNanos) {
+        if (nowNanos - baseLatencyPeriodStartNanos >= BASE_LATENCY_PERIOD_NANOS) {
+            baseLatencyNanos = Math.min(nextBaseLatencyNanos, latencyNanos);
+            nextBaseLatencyNanos = latencyNanos;
+            baseLatencyPeriodStartNanos = nowNanos;
+        } else {
+            baseLatencyNanos = Math.min(baseLatencyNanos, latencyNanos);
+            nextBaseLatencyNanos = Math.min(nextBaseLatencyNanos, latencyNanos);
+        }
+
+        if (smoothedLatencyNanos < 0) {
+            smoothedLatencyNanos = latencyNanos;
+        } else {
+            // Same gain as the smoothed round trip time of TCP
+            smoothedLatencyNanos += (latencyNanos - smoothedLatencyNanos) / 8;
+        }
+
+        if (smoothedLatencyNanos > MIN_CONGESTED_LATENCY_NANOS
+                && smoothedLatencyNanos > baseLatencyNanos * latencyThreshold) {
+            decrease(nowNanos);
+        } else if (window < maxWindow) {
+            window = Math.min(maxWindow, window + 1.0 / window);
+            currentWindow = (int) window;
+        }
+    }
+
+    /**
+     * Shrink the window after a request timed out or was rejected by the bookie.
+     */
+    synchronized void onCongestion(long nowNanos) {
+        decrease(nowNanos);
+    }
+
+    private void decrease(long nowNanos) {
+        if (smoothedLatencyNanos >= 0 && nowNanos - lastDecreaseNanos < smoothedLatencyNanos) {
+            return;
+        }
+        window = Math.max(minWindow, window / 2);
+        currentWindow = (int) window;
+        lastDecreaseNanos = nowNanos;
+    }
+}
@@ -20,14 +20,19 @@
  */
 package org.apache.bookkeeper.proto;
 
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -35,9 +40,14 @@ import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
+import org.apache.bookkeeper.proto.BookkeeperProtocol.ReadResponse;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Response;
 import org.apache.bookkeeper.proto.checksum.MacDigestManager;
 import org.apache.bookkeeper.util.ByteBufList;
@@ -88,6 +98,8 @@ public class BookieProtoEncoding {
      */
     public static class RequestEnDeCoderPreV3 implements EnDecoder {
         final ExtensionRegistry extensionRegistry;
+        // Size, ledger id and entry id of an entry of a batch add request
+        private static final int MIN_BATCHED_ADD_ENTRY_SIZE = Integer.BYTES + 2 * Long.BYTES;
 
         //This empty master key is used when an empty password is provided which is the hash of an empty string
         private static final byte[] emptyPasswordMasterKey;
@@ -193,6 +205,42 @@ public class BookieProtoEncoding {
                         masterKey, packet);
             }
 
+            case BookieProtocol.BATCH_ADD_ENTRY: {
+                byte[] masterKey = readMasterKey(packet);
+                int numEntries = packet.readInt();
+                // the frame is bounded by the max frame size, and each entry takes at least its size, ledger id
+                // and entry id
+                if (numEntries <= 0 || numEntries > packet.readableBytes() / MIN_BATCHED_ADD_ENTRY_SIZE) {
+                    throw new IllegalStateException("Received batch add request with invalid number of entries "
+                            + numEntries + " for " + packet.readableBytes() + " bytes");
+                }
+                List<BookieProtocol.ParsedAddRequest> addRequests = new ArrayList<>(numEntries);
+                try {
+                    for (int i = 0; i < numEntries; i++) {
+                        int entrySize = packet.readInt();
+                        if (entrySize < MIN_BATCHED_ADD_ENTRY_SIZE - Integer.BYTES
+                                || entrySize > packet.readableBytes()) {
+                            throw new IllegalStateException("Received batch add request with invalid entry size "
+                                    + entrySize + " for " + packet.readableBytes() + " bytes");
+                        }
+                        // Each entry is a slice of the packet, retained by its add request
+                        ByteBuf entry = packet.readSlice(entrySize);
+                        ledgerId = entry.getLong(entry.readerIndex());
+                        entryId = entry.getLong(entry.readerIndex() + 8);
+                        entry.markReaderIndex();
+                        addRequests.add(BookieProtocol.ParsedAddRequest.create(
+                                version, ledgerId, entryId, flags, masterKey, entry));
+                    }
+                } catch (RuntimeException e) {
+                    for (BookieProtocol.ParsedAddRequest addRequest : addRequests) {
+                        addRequest.release();
+                        addRequest.recycle();
+                    }
+                    throw e;
+                }
+                return new BookieProtocol.BatchedAddRequest(version, ledgerId, flags, masterKey, addRequests);
+            }
+
             case BookieProtocol.READENTRY:
                 ledgerId = packet.readLong();
                 entryId = packet.readLong();
@@ -438,6 +486,15 @@ public class BookieProtoEncoding {
         @Override
         public Object encode(Object msg, ByteBufAllocator allocator) throws Exception {
             BookkeeperProtocol.Request request = (BookkeeperProtocol.Request) msg;
+            if (request.hasAddRequest()
+                    && request.getAddRequest().getBody().size() >= SMALL_ENTRY_SIZE_THRESHOLD) {
+                AddRequest addRequest = request.getAddRequest();
+                return serializeProtobufWithBody(
+                        request.toBuilder().clearAddRequest().buildPartial(),
+                        BookkeeperProtocol.Request.ADDREQUEST_FIELD_NUMBER,
+                        addRequest.toBuilder().clearBody().buildPartial(),
+                        AddRequest.BODY_FIELD_NUMBER, addRequest.getBody(), allocator);
+            }
             return serializeProtobuf(request, allocator);
         }
 
@@ -462,6 +519,15 @@ public class BookieProtoEncoding {
         @Override
         public Object encode(Object msg, ByteBufAllocator allocator) throws Exception {
             BookkeeperProtocol.Response response = (BookkeeperProtocol.Response) msg;
+            if (response.hasReadResponse()
+                    && response.getReadResponse().getBody().size() >= SMALL_ENTRY_SIZE_THRESHOLD) {
+                ReadResponse readResponse = response.getReadResponse();
+                return serializeProtobufWithBody(
+                        response.toBuilder().clearReadResponse().buildPartial(),
+                        Response.READRESPONSE_FIELD_NUMBER,
+                        readResponse.toBuilder().clearBody().buildPartial(),
+                        ReadResponse.BODY_FIELD_NUMBER, readResponse.getBody(), allocator);
+            }
             return serializeProtobuf(response, allocator);
         }
 
@@ -493,6 +559,94 @@ public class BookieProtoEncoding {
         return buf;
     }
 
+    /**
+     * Serialize a message whose field {@code field} embeds a large {@code body}, without copying the body.
+     *
+     * <p>The message and the embedded message are serialized without the body into a single buffer, followed by the
+     * embedded message field and the body field written last. Protobuf parsers accept the fields in any order, so
+     * the frame is parsed as the regular serialization of the message. The body is appended to the frame as the
+     * buffers it wraps, which must stay valid until the frame is written.
+     *
+     * @param msgWithoutField message without the embedded message
+     * @param field field number of the embedded message
+     * @param fieldWithoutBody embedded message without its body
+     * @param bodyField field number of the body in the embedded message
+     * @param body body of the embedded message
+     * @param allocator allocator for the serialized headers
+     * @return the frame, made of the serialized headers followed by the body
+     */
+    private static ByteBufList serializeProtobufWithBody(MessageLite msgWithoutField, int field,
+                                                         MessageLite fieldWithoutBody, int bodyField,
+                                                         ByteString body, ByteBufAllocator allocator) {
+        int bodySize = body.size();
+        int fieldSize = fieldWithoutBody.getSerializedSize()
+                + CodedOutputStream.computeTagSize(bodyField) + CodedOutputStream.computeUInt32SizeNoTag(bodySize)
+                + bodySize;
+        int size = msgWithoutField.getSerializedSize()
+                + CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeUInt32SizeNoTag(fieldSize)
+                + fieldSize;
+        int headersSize = 4 + size - bodySize;
+
+        ByteBuf headers = allocator.directBuffer(headersSize, headersSize);
+        headers.writeInt(size);
+        ByteBufList frame = ByteBufList.get(headers);
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(headers.nioBuffer(4, headersSize - 4));
+            msgWithoutField.writeTo(out);
+            out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(fieldSize);
+            fieldWithoutBody.writeTo(out);
+            out.writeTag(bodyField, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(bodySize);
+            out.checkNoSpaceLeft();
+            UnsafeByteOperations.unsafeWriteTo(body, new ByteBufListOutput(frame));
+        } catch (IOException e) {
+            // This is in-memory serialization, should not fail
+            frame.release();
+            throw new RuntimeException(e);
+        }
+
+        headers.writerIndex(headersSize);
+        return frame;
+    }
+
+    /**
+     * Appends the bytes written by protobuf to a {@link ByteBufList}. The buffers handed over by lazy writes, which
+     * are the buffers wrapped by a {@link ByteString}, are wrapped instead of being copied.
+     */
+    private static class ByteBufListOutput extends ByteOutput {
+        private final ByteBufList bufList;
+
+        ByteBufListOutput(ByteBufList bufList) {
+            this.bufList = bufList;
+        }
+
+        @Override
+        public void write(byte value) {
+            bufList.add(Unpooled.wrappedBuffer(new byte[] { value }));
+        }
+
+        @Override
+        public void write(byte[] value, int offset, int length) {
+            bufList.add(Unpooled.copiedBuffer(value, offset, length));
+        }
+
+        @Override
+        public void writeLazy(byte[] value, int offset, int length) {
+            bufList.add(Unpooled.wrappedBuffer(value, offset, length));
+        }
+
+        @Override
+        public void write(ByteBuffer value) {
+            bufList.add(Unpooled.copiedBuffer(value));
+        }
+
+        @Override
+        public void writeLazy(ByteBuffer value) {
+            bufList.add(Unpooled.wrappedBuffer(value));
+        }
+    }
+
     /**
      * A request message encoder.
      */
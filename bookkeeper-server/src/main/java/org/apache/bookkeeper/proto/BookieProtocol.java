@@ -26,6 +26,7 @@ import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.ReferenceCounted;
+import java.util.List;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AuthMessage;
 import org.apache.bookkeeper.util.ByteBufList;
 
@@ -134,6 +135,24 @@ public interface BookieProtocol {
     byte WRITE_LAC = 5;
     byte GET_BOOKIE_INFO = 6;
     byte BATCH_READ_ENTRY = 7;
+    /**
+     * The Batch add entry request carries several entries of the same ledger, sent
+     * with the same flags and master key. The payload is the master key, a 4-byte
+     * integer with the number of entries, then each entry prefixed by its 4-byte
+     * size, exactly as it would be the payload of an ADDENTRY request. The bookie
+     * responds to each entry with an ADDENTRY response.
+     *
+     * <p>The bookies which don't know about it close the connection on receiving
+     * it, so the clients only send it to the bookies advertising the
+     * {@link #BATCH_ADD_ENTRY_EXTENSION}.
+     */
+    byte BATCH_ADD_ENTRY = 8;
+
+    /**
+     * Extension of the bookie-rpc endpoint published by the bookies accepting
+     * the {@link #BATCH_ADD_ENTRY} requests.
+     */
+    String BATCH_ADD_ENTRY_EXTENSION = "batch-add-entry";
 
     /**
      * The error code that indicates success.
@@ -421,6 +440,35 @@ public interface BookieProtocol {
         }
     }
 
+    /**
+     * A batch of add requests of the same ledger, used when processing the request on the bookie side.
+     */
+    class BatchedAddRequest extends Request {
+        final List<ParsedAddRequest> addRequests;
+
+        BatchedAddRequest(byte protocolVersion, long ledgerId, short flags, byte[] masterKey,
+                          List<ParsedAddRequest> addRequests) {
+            init(protocolVersion, BATCH_ADD_ENTRY, ledgerId, INVALID_ENTRY_ID, flags, masterKey);
+            this.addRequests = addRequests;
+        }
+
+        List<ParsedAddRequest> getAddRequests() {
+            return addRequests;
+        }
+
+        void release() {
+            for (ParsedAddRequest addRequest : addRequests) {
+                addRequest.release();
+                addRequest.recycle();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Op(%d)[Ledger:%d,Entries:%d]", opCode, ledgerId, addRequests.size());
+        }
+    }
+
     /**
      * An authentication request.
      */
@@ -46,6 +46,7 @@ import lombok.Getter;
 import org.apache.bookkeeper.auth.AuthProviderFactoryFactory;
 import org.apache.bookkeeper.auth.AuthToken;
 import org.apache.bookkeeper.bookie.Bookie;
+import org.apache.bookkeeper.bookie.BookieLoadMonitor;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ServerConfiguration;
@@ -63,7 +64,7 @@ import org.slf4j.MDC;
  * An implementation of the RequestProcessor interface.
  */
 @Getter(AccessLevel.PACKAGE)
-public class BookieRequestProcessor implements RequestProcessor {
+public class BookieRequestProcessor implements RequestProcessor, BookieLoadMonitor {
 
     private static final Logger LOG = LoggerFactory.getLogger(BookieRequestProcessor.class);
     public static final String TLS_HANDLER_NAME = "tls";
@@ -121,6 +122,10 @@ public class BookieRequestProcessor implements RequestProcessor {
     final Semaphore addsSemaphore;
     final Semaphore readsSemaphore;
 
+    // requests in progress above which the background tasks of the bookie back off
+    private final int backoffReadsInProgress;
+    private final int backoffAddsInProgress;
+
     final ChannelGroup allChannels;
 
     // to temporary blacklist channels
@@ -205,6 +210,19 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         int maxReads = serverCfg.getMaxReadsInProgressLimit();
         readsSemaphore = maxReads > 0 ? new Semaphore(maxReads, true) : null;
+
+        this.backoffReadsInProgress = serverCfg.getCompactionBackoffReadsInProgress();
+        this.backoffAddsInProgress = serverCfg.getCompactionBackoffAddsInProgress();
+    }
+
+    /**
+     * The bookie is busy when there are more read or add requests in progress than configured. The add requests
+     * in progress include the ones waiting for the journal, so they also reflect the journal latency.
+     */
+    @Override
+    public boolean isBusy() {
+        return (backoffReadsInProgress > 0 && requestStats.readsInProgress.get() > backoffReadsInProgress)
+                || (backoffAddsInProgress > 0 && requestStats.addsInProgress.get() > backoffAddsInProgress);
     }
 
     protected void onAddRequestStart(Channel channel) {
@@ -377,6 +395,10 @@ public class BookieRequestProcessor implements RequestProcessor {
                     checkArgument(r instanceof BookieProtocol.ParsedAddRequest);
                     processAddRequest((BookieProtocol.ParsedAddRequest) r, requestHandler);
                     break;
+                case BookieProtocol.BATCH_ADD_ENTRY:
+                    checkArgument(r instanceof BookieProtocol.BatchedAddRequest);
+                    processBatchedAddRequest((BookieProtocol.BatchedAddRequest) r, requestHandler);
+                    break;
                 case BookieProtocol.READENTRY:
                     checkArgument(r instanceof BookieProtocol.ReadRequest);
                     processReadRequest((BookieProtocol.ReadRequest) r, requestHandler);
@@ -685,6 +707,15 @@ public class BookieRequestProcessor implements RequestProcessor {
         }
     }
 
+    private void processBatchedAddRequest(final BookieProtocol.BatchedAddRequest r,
+                                          final BookieRequestHandler requestHandler) {
+        // Only the wire framing is batched: the entries are processed, journaled and responded to as individual
+        // adds, submitted back to back to the same ordered thread.
+        for (BookieProtocol.ParsedAddRequest addRequest : r.getAddRequests()) {
+            processAddRequest(addRequest, requestHandler);
+        }
+    }
+
     private void processReadRequest(final BookieProtocol.ReadRequest r, final BookieRequestHandler requestHandler) {
         ExecutorService fenceThreadPool =
                 null == highPriorityThreadPool ? null : highPriorityThreadPool.chooseThread(requestHandler.ctx());
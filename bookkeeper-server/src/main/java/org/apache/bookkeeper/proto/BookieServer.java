@@ -102,9 +102,14 @@ public class BookieServer {
         shFactory = SecurityProviderFactoryFactory
                 .getSecurityProviderFactory(conf.getTLSProviderFactoryClass());
 
-        this.requestProcessor = new BookieRequestProcessor(conf, bookie,
+        BookieRequestProcessor bookieRequestProcessor = new BookieRequestProcessor(conf, bookie,
                 statsLogger.scope(SERVER_SCOPE), shFactory, allocator, nettyServer.allChannels);
+        this.requestProcessor = bookieRequestProcessor;
         this.nettyServer.setRequestProcessor(this.requestProcessor);
+        // let the compaction back off while the bookie is busy serving requests
+        if (bookie.getLedgerStorage() != null) {
+            bookie.getLedgerStorage().setLoadMonitor(bookieRequestProcessor);
+        }
     }
 
     @VisibleForTesting
@@ -24,10 +24,15 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.BookKeeperClientStats;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.tls.SecurityException;
 import org.apache.bookkeeper.tls.SecurityHandlerFactory;
 import org.apache.bookkeeper.tls.SecurityProviderFactoryFactory;
@@ -55,14 +60,65 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
     final AtomicInteger counter = new AtomicInteger(0);
     final AtomicLong errorCounter = new AtomicLong(0);
 
+    // null when the congestion control of the requests sent to the bookie is disabled, or the adds do not wait on
+    // backpressure
+    final BookieCongestionWindow congestionWindow;
+    private final StatsLogger statsLogger;
+    private final Gauge<Integer> congestionWindowGauge;
+    private final Gauge<Long> pendingRequestsGauge;
+
+    // Exponentially weighted moving average of the read latency, -1 until the first read completes.
+    // Concurrent updates may be lost, which is harmless for an average.
+    private volatile long readLatencyNanos = -1L;
+
     DefaultPerChannelBookieClientPool(ClientConfiguration conf, PerChannelBookieClientFactory factory,
                                       BookieId address,
                                       int coreSize) throws SecurityException {
+        this(conf, factory, address, coreSize, NullStatsLogger.INSTANCE);
+    }
+
+    DefaultPerChannelBookieClientPool(ClientConfiguration conf, PerChannelBookieClientFactory factory,
+                                      BookieId address,
+                                      int coreSize,
+                                      StatsLogger statsLogger) throws SecurityException {
         checkArgument(coreSize > 0);
         this.factory = factory;
         this.address = address;
         this.conf = conf;
 
+        // the window only holds the adds back while they wait for a writable bookie
+        if (conf.isBookieCongestionControlEnabled() && conf.getWaitTimeoutOnBackpressureMillis() > 0) {
+            this.congestionWindow = new BookieCongestionWindow(conf.getBookieCongestionMinWindow(),
+                    conf.getBookieCongestionMaxWindow(), conf.getBookieCongestionLatencyThreshold(),
+                    MathUtils.nowInNano());
+        } else {
+            this.congestionWindow = null;
+        }
+        this.statsLogger = statsLogger.scope(BookKeeperClientStats.CHANNEL_SCOPE)
+                .scopeLabel(BookKeeperClientStats.BOOKIE_LABEL, address.toString());
+        this.congestionWindowGauge = new Gauge<Integer>() {
+            @Override
+            public Integer getDefaultValue() {
+                return 0;
+            }
+
+            @Override
+            public Integer getSample() {
+                return congestionWindow == null ? 0 : congestionWindow.getWindow();
+            }
+        };
+        this.pendingRequestsGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return getNumPendingCompletionRequests();
+            }
+        };
+
         this.shFactory = SecurityProviderFactoryFactory.getSecurityProviderFactory(conf.getTLSProviderFactoryClass());
 
         this.clients = new PerChannelBookieClient[coreSize];
@@ -87,6 +143,9 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public void initialize() {
+        // registered here rather than in the constructor, as only the pool kept for the bookie is initialized
+        statsLogger.registerGauge(BookKeeperClientStats.CHANNEL_CONGESTION_WINDOW, congestionWindowGauge);
+        statsLogger.registerGauge(BookKeeperClientStats.CHANNEL_PENDING_REQUESTS, pendingRequestsGauge);
         for (PerChannelBookieClient pcbc : this.clients) {
             pcbc.connectIfNeededAndDoOp(this);
         }
@@ -122,6 +181,9 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public boolean isWritable(long key) {
+        if (congestionWindow != null && getNumPendingCompletionRequests() >= congestionWindow.getWindow()) {
+            return false;
+        }
         return getClient(key).isWritable();
     }
 
@@ -140,6 +202,34 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
         errorCounter.incrementAndGet();
     }
 
+    @Override
+    public void recordResponse(int rc, long latencyNanos) {
+        if (congestionWindow == null) {
+            return;
+        }
+        if (rc == BKException.Code.TimeoutException || rc == BKException.Code.TooManyRequestsException) {
+            congestionWindow.onCongestion(MathUtils.nowInNano());
+        } else if (rc == BKException.Code.OK) {
+            congestionWindow.onResponse(latencyNanos, MathUtils.nowInNano());
+        }
+    }
+
+    @Override
+    public void recordReadResponse(int rc, long latencyNanos) {
+        // Timeouts are accounted with the time waited, so that a slow bookie is not preferred for the reads
+        if (rc == BKException.Code.OK || rc == BKException.Code.NoSuchEntryException
+                || rc == BKException.Code.TimeoutException) {
+            long average = readLatencyNanos;
+            readLatencyNanos = average < 0 ? latencyNanos : average + (latencyNanos - average) / 8;
+        }
+        recordResponse(rc, latencyNanos);
+    }
+
+    @Override
+    public long getReadLatencyNanos() {
+        return readLatencyNanos;
+    }
+
     @Override
     public void disconnect(boolean wait) {
         for (int i = 0; i < clients.length; i++) {
@@ -152,6 +242,8 @@ class DefaultPerChannelBookieClientPool implements PerChannelBookieClientPool,
 
     @Override
     public void close(boolean wait) {
+        statsLogger.unregisterGauge(BookKeeperClientStats.CHANNEL_CONGESTION_WINDOW, congestionWindowGauge);
+        statsLogger.unregisterGauge(BookKeeperClientStats.CHANNEL_PENDING_REQUESTS, pendingRequestsGauge);
         for (int i = 0; i < clients.length; i++) {
             clients[i].close(wait);
             if (clients != clientsV3Enforced) {
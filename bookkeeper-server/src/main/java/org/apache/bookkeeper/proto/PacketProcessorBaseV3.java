@@ -23,6 +23,8 @@ package org.apache.bookkeeper.proto;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.common.util.MathUtils;
@@ -53,6 +55,15 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
     }
 
     protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger) {
+        sendResponse(code, response, statsLogger, null);
+    }
+
+    /**
+     * Send a response wrapping the buffer {@code responseBody} without copy. The buffer is released once the
+     * response is written, or dropped.
+     */
+    protected void sendResponse(StatusCode code, Object response, OpStatsLogger statsLogger,
+                                ReferenceCounted responseBody) {
         final long writeNanos = MathUtils.nowInNano();
 
         Channel channel = requestHandler.ctx().channel();
@@ -83,6 +94,7 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
                 requestProcessor.getRequestStats().getChannelWriteStats()
                         .registerFailedEvent(MathUtils.elapsedNanos(writeNanos), TimeUnit.NANOSECONDS);
                 statsLogger.registerFailedEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+                ReferenceCountUtil.release(responseBody);
                 return;
             } else {
                 requestProcessor.invalidateBlacklist(channel);
@@ -92,6 +104,7 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
             channel.writeAndFlush(response).addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture future) throws Exception {
+                    ReferenceCountUtil.release(responseBody);
                     long writeElapsedNanos = MathUtils.elapsedNanos(writeNanos);
                     if (!future.isSuccess()) {
                         requestProcessor.getRequestStats().getChannelWriteStats()
@@ -110,6 +123,7 @@ public abstract class PacketProcessorBaseV3 implements Runnable {
         } else {
             log.debug("Netty channel {} is inactive, "
                     + "hence bypassing netty channel writeAndFlush during sendResponse", channel);
+            ReferenceCountUtil.release(responseBody);
         }
     }
 
@@ -79,15 +79,14 @@ import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiPredicate;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import lombok.SneakyThrows;
@@ -96,11 +95,13 @@ import org.apache.bookkeeper.auth.ClientAuthProvider;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeperClientStats;
 import org.apache.bookkeeper.client.BookieInfoReader.BookieInfo;
+import org.apache.bookkeeper.client.DefaultBookieAddressResolver;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.MdcUtils;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.discover.RegistrationClient;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
@@ -145,8 +146,8 @@ import org.apache.bookkeeper.tls.SecurityHandlerFactory.NodeType;
 import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
-import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongPairHashMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -176,6 +177,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private static final int DEFAULT_HIGH_PRIORITY_VALUE = 100; // We may add finer grained priority later.
     private static final AtomicLong txnIdGenerator = new AtomicLong(0);
     static final String CONSOLIDATION_HANDLER_NAME = "consolidation";
+    static final String ADD_BATCHER_HANDLER_NAME = "addBatcher";
 
     final BookieId bookieId;
     final BookieAddressResolver bookieAddressResolver;
@@ -188,13 +190,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final long getBookieInfoTimeoutNanos;
     final int startTLSTimeout;
 
-    private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
-            ConcurrentOpenHashMap.<CompletionKey, CompletionValue>newBuilder().autoShrink(true).build();
+    // Requests in flight keyed by txnId, for the v3 protocol and the v2 batch reads
+    private final ConcurrentLongHashMap<CompletionValue> txnCompletions =
+            ConcurrentLongHashMap.<CompletionValue>newBuilder().autoShrink(true).build();
 
-    // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
-    // read request for the same ledgerId/entryId
-    private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
-        new SynchronizedHashMultiMap<>();
+    // V2 requests in flight keyed by ledgerId and entryId, for each type of request. The same entry can have several
+    // requests in flight, e.g. when it is read again by a speculative read.
+    private final ConcurrentLongPairHashMultiMap<CompletionValue> addCompletionsV2;
+    private final ConcurrentLongPairHashMultiMap<CompletionValue> readCompletionsV2;
+    private final ConcurrentLongPairHashMultiMap<CompletionValue> readLacCompletionsV2;
 
     private final StatsLogger statsLogger;
     @StatsDoc(
@@ -317,6 +321,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final Counter failedTlsHandshakeCounter;
 
     private final boolean useV2WireProtocol;
+    private final long addEntryBatchMaxDelayNanos;
+    private final int addEntryBatchMaxSize;
+    // whether the bookie advertises the batch add requests, looked up in the background. The adds are not batched
+    // until it is known
+    private volatile boolean batchAddSupported = false;
     private final boolean preserveMdcForTaskExecution;
 
     /**
@@ -404,6 +413,23 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.getBookieInfoTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getBookieInfoTimeout());
         this.startTLSTimeout = conf.getStartTLSTimeout();
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
+        if (useV2WireProtocol) {
+            this.addCompletionsV2 = ConcurrentLongPairHashMultiMap.<CompletionValue>newBuilder()
+                    .autoShrink(true).build();
+            this.readCompletionsV2 = ConcurrentLongPairHashMultiMap.<CompletionValue>newBuilder()
+                    .autoShrink(true).build();
+            this.readLacCompletionsV2 = ConcurrentLongPairHashMultiMap.<CompletionValue>newBuilder()
+                    .expectedItems(16).concurrencyLevel(1).autoShrink(true).build();
+        } else {
+            this.addCompletionsV2 = null;
+            this.readCompletionsV2 = null;
+            this.readLacCompletionsV2 = null;
+        }
+        // The batching of the adds relies on the frames of the v2 add requests
+        this.addEntryBatchMaxDelayNanos = useV2WireProtocol
+                ? TimeUnit.MICROSECONDS.toNanos(conf.getAddEntryBatchMaxDelayMicros()) : 0;
+        this.addEntryBatchMaxSize = Math.min(conf.getAddEntryBatchMaxSizeBytes(),
+                maxFrameSize - AddBatchingHandler.ADD_REQUEST_HEADER_SIZE - Integer.BYTES);
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
 
         this.authProviderFactory = authProviderFactory;
@@ -528,7 +554,53 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     protected long getNumPendingCompletionRequests() {
-        return completionObjects.size();
+        long numPendingRequests = txnCompletions.size();
+        if (useV2WireProtocol) {
+            numPendingRequests += addCompletionsV2.size() + readCompletionsV2.size() + readLacCompletionsV2.size();
+        }
+        return numPendingRequests;
+    }
+
+    /**
+     * Look up in the background whether the bookie accepts the batch add requests, which it advertises as an
+     * extension of its bookie-rpc endpoint, and install the add batcher on the new channel once it is known.
+     */
+    private void lookupBatchAddSupport(Channel newChannel) {
+        if (!(bookieAddressResolver instanceof DefaultBookieAddressResolver)) {
+            return;
+        }
+        RegistrationClient registrationClient =
+                ((DefaultBookieAddressResolver) bookieAddressResolver).getRegistrationClient();
+        if (registrationClient == null) {
+            return;
+        }
+        registrationClient.getBookieServiceInfo(bookieId).whenComplete((info, e) -> {
+            if (e != null) {
+                LOG.warn("Cannot get the service info of bookie {}, not batching the adds: {}", bookieId,
+                        e.toString());
+                return;
+            }
+            batchAddSupported = info.getValue().getEndpoints().stream()
+                    .anyMatch(endpoint -> "bookie-rpc".equals(endpoint.getProtocol())
+                            && endpoint.getExtensions() != null
+                            && endpoint.getExtensions().contains(BookieProtocol.BATCH_ADD_ENTRY_EXTENSION));
+            if (batchAddSupported) {
+                newChannel.eventLoop().execute(() -> maybeAddBatcher(newChannel.pipeline()));
+            }
+        });
+    }
+
+    /**
+     * Install the add batcher on a pipeline of the bookie, if it accepts the batch add requests. Only called from
+     * the event loop of the channel.
+     */
+    private void maybeAddBatcher(ChannelPipeline pipeline) {
+        // the handlers are removed from the pipeline of a closed channel
+        if (batchAddSupported && pipeline.get(ADD_BATCHER_HANDLER_NAME) == null
+                && pipeline.get("bytebufList") != null) {
+            pipeline.addAfter("bytebufList", ADD_BATCHER_HANDLER_NAME,
+                    new AddBatchingHandler(addEntryBatchMaxDelayNanos, addEntryBatchMaxSize));
+        }
     }
 
     protected ChannelFuture connect() {
@@ -544,6 +616,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     bookieId, err.toString());
             return processBookieNotResolvedError(startTime, err);
         }
+        // the batches are only sent to the bookies which advertise them, the others close the connection on them
+        final boolean batchAdds = addEntryBatchMaxDelayNanos > 0;
 
         // Set up the ClientBootStrap so we can create a new Channel connection to the bookie.
         Bootstrap bootstrap = new Bootstrap();
@@ -607,6 +681,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 pipeline.addLast("authHandler", new AuthHandler.ClientSideHandler(authProviderFactory, txnIdGenerator,
                             connectionPeer, useV2WireProtocol));
                 pipeline.addLast("mainhandler", PerChannelBookieClient.this);
+                if (batchAdds) {
+                    maybeAddBatcher(pipeline);
+                }
             }
         });
 
@@ -616,6 +693,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         ChannelFuture future = bootstrap.connect(bookieAddr);
+        if (batchAdds) {
+            // looked up again on every connection, as the bookie may have been upgraded or downgraded meanwhile
+            lookupBatchAddSupport(future.channel());
+        }
         future.addListener(contextPreservingListener(new ConnectionFutureListener(startTime)));
         future.addListener(x -> makeWritable());
         return future;
@@ -689,10 +770,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void writeLac(final long ledgerId, final byte[] masterKey, final long lac, ByteBufList toSend, WriteLacCallback cb,
             Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId,
-                                                                OperationType.WRITE_LAC);
+        final CompletionKey completionKey = acquireTxnKey(txnId, OperationType.WRITE_LAC);
         // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new WriteLacCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -728,10 +808,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return;
         }
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId,
-                                                                OperationType.FORCE_LEDGER);
+        final CompletionKey completionKey = acquireTxnKey(txnId, OperationType.FORCE_LEDGER);
         // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new ForceLedgerCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -797,7 +876,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.ADD_ENTRY);
+            completionKey = acquireTxnKey(txnId, OperationType.ADD_ENTRY);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -851,7 +930,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             completionKey = acquireV2Key(ledgerId, 0, OperationType.READ_LAC);
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.READ_LAC);
+            completionKey = acquireTxnKey(txnId, OperationType.READ_LAC);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -873,8 +952,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        final CompletionKey completionKey = acquireTxnKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
+        putCompletionKeyValue(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -935,7 +1014,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             completionKey = acquireV2Key(ledgerId, entryId, OperationType.READ_ENTRY);
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.READ_ENTRY);
+            completionKey = acquireTxnKey(txnId, OperationType.READ_ENTRY);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -991,7 +1070,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .build();
         }
 
-        ReadCompletion readCompletion = new ReadCompletion(completionKey, cb, ctx, ledgerId, entryId);
+        ReadCompletion readCompletion = new ReadCompletion(completionKey, cb, ctx, ledgerId, entryId,
+                null != timeOutInMillis);
         putCompletionKeyValue(completionKey, readCompletion);
 
         writeAndFlush(channel, completionKey, request, allowFastFail, null, null);
@@ -1029,7 +1109,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (useV2WireProtocol) {
             request = BookieProtocol.BatchedReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                     ledgerId, startEntryId, (short) flags, masterKey, txnId, maxCount, maxSize);
-            completionKey = new TxnCompletionKey(txnId, OperationType.BATCH_READ_ENTRY);
+            completionKey = acquireTxnKey(txnId, OperationType.BATCH_READ_ENTRY);
         } else {
             throw new UnsupportedOperationException("Unsupported batch read entry operation for v3 protocol.");
         }
@@ -1042,8 +1122,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
+        final CompletionKey completionKey = acquireTxnKey(txnId, OperationType.GET_BOOKIE_INFO);
+        putCompletionKeyValue(completionKey,
                               new GetBookieInfoCompletion(
                                       completionKey, cb, ctx));
 
@@ -1064,14 +1144,15 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, getBookieInfoRequest);
     }
 
-    private static final BiPredicate<CompletionKey, CompletionValue> timeoutCheck = (key, value) -> {
-        return value.maybeTimeout();
-    };
-
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
-
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        int timedOutOperations = txnCompletions.removeIf((txnId, value) -> value.maybeTimeout());
+        if (useV2WireProtocol) {
+            ConcurrentLongPairHashMultiMap.LongPairObjectPredicate<CompletionValue> timeoutCheck =
+                    (ledgerId, entryId, value) -> value.maybeTimeout();
+            timedOutOperations += addCompletionsV2.removeIf(timeoutCheck);
+            timedOutOperations += readCompletionsV2.removeIf(timeoutCheck);
+            timedOutOperations += readLacCompletionsV2.removeIf(timeoutCheck);
+        }
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1196,11 +1277,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         try {
             final long startTime = MathUtils.nowInNano();
 
+            // the key is held until the write completes, as the response can complete the request, and release the
+            // key, before the listener runs
+            key.retain();
             ChannelPromise promise = channel.newPromise().addListener(future -> {
                 try {
                     if (future.isSuccess()) {
                         nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        CompletionValue completion = completionObjects.get(key);
+                        CompletionValue completion = key.getCompletion();
                         if (completion != null) {
                             completion.setOutstanding();
                         }
@@ -1209,6 +1293,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         errorOut(key);
                     }
                 } finally {
+                    key.release();
                     if (cleanupActionAfterWrite != null) {
                         cleanupActionAfterWrite.run();
                     }
@@ -1228,12 +1313,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = key.removeCompletion();
         if (completion != null) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
@@ -1241,12 +1323,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = key.removeCompletion();
         if (completion != null) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1275,13 +1354,17 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
-        Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
-        while (multikey.isPresent()) {
-            multikey.ifPresent(k -> errorOut(k, rc));
-            multikey = completionObjectsV2Conflicts.getAnyKey();
+        List<CompletionValue> completions = new ArrayList<>();
+        txnCompletions.removeIf((txnId, value) -> completions.add(value));
+        if (useV2WireProtocol) {
+            ConcurrentLongPairHashMultiMap.LongPairObjectPredicate<CompletionValue> collector =
+                    (ledgerId, entryId, value) -> completions.add(value);
+            addCompletionsV2.removeIf(collector);
+            readCompletionsV2.removeIf(collector);
+            readLacCompletionsV2.removeIf(collector);
         }
-        for (CompletionKey key : completionObjects.keys()) {
-            errorOut(key, rc);
+        for (CompletionValue completion : completions) {
+            completion.errorOut(rc);
         }
     }
 
@@ -1291,6 +1374,18 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    void recordResponse(int rc, long latencyNanos) {
+        if (pcbcPool != null) {
+            pcbcPool.recordResponse(rc, latencyNanos);
+        }
+    }
+
+    void recordReadResponse(int rc, long latencyNanos) {
+        if (pcbcPool != null) {
+            pcbcPool.recordReadResponse(rc, latencyNanos);
+        }
+    }
+
     /**
      * If our channel has disconnected, we just error out the pending entries.
      */
@@ -1405,14 +1500,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         OperationType operationType = getOperationType(response.getOpCode());
         StatusCode status = getStatusCodeFromErrorCode(response.errorCode);
 
-        CompletionKey key;
+        CompletionValue completionValue;
         if (OperationType.BATCH_READ_ENTRY == operationType) {
-            key = new TxnCompletionKey(((BookieProtocol.BatchedReadResponse) response).getRequestId(), operationType);
+            completionValue = txnCompletions.remove(((BookieProtocol.BatchedReadResponse) response).getRequestId());
         } else {
-            key = acquireV2Key(response.ledgerId, response.entryId, operationType);
+            ConcurrentLongPairHashMultiMap<CompletionValue> completions = getV2Completions(operationType);
+            completionValue = completions != null ? completions.removeAny(response.ledgerId, response.entryId) : null;
         }
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1529,8 +1623,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void readV3Response(final Response response) {
         final BKPacketHeader header = response.getHeader();
 
-        final CompletionKey key = newCompletionKey(header.getTxnId(), header.getOperation());
-        final CompletionValue completionValue = completionObjects.get(key);
+        final CompletionValue completionValue = txnCompletions.remove(header.getTxnId());
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1555,8 +1648,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 }
             });
         }
-
-        completionObjects.remove(key);
     }
 
     void initTLSHandshake() {
@@ -1687,6 +1778,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             return MathUtils.elapsedNanos(startTime);
         }
 
+        void recordResponse(int rc) {
+            PerChannelBookieClient.this.recordResponse(rc, latency());
+        }
+
+        void recordReadResponse(int rc) {
+            PerChannelBookieClient.this.recordReadResponse(rc, latency());
+        }
+
         void logOpResult(int rc) {
             if (rc != BKException.Code.OK) {
                 opLogger.registerFailedEvent(latency(), TimeUnit.NANOSECONDS);
@@ -1937,6 +2036,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                               final ReadEntryCallback originalCallback,
                               final Object originalCtx,
                               long ledgerId, final long entryId) {
+            this(key, originalCallback, originalCtx, ledgerId, entryId, false);
+        }
+
+        public ReadCompletion(final CompletionKey key,
+                              final ReadEntryCallback originalCallback,
+                              final Object originalCtx,
+                              long ledgerId, final long entryId,
+                              final boolean longPoll) {
             super("Read", originalCtx, ledgerId, entryId,
                   readEntryOpLogger, readTimeoutOpLogger);
 
@@ -1946,6 +2053,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                                   long entryId, ByteBuf buffer,
                                                   Object ctx) {
                         logOpResult(rc);
+                        if (!longPoll) {
+                            recordReadResponse(rc);
+                        }
                         originalCallback.readEntryComplete(rc,
                                                            ledgerId, entryId,
                                                            buffer, originalCtx);
@@ -2321,6 +2431,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                   BookieId addr,
                                   Object ctx) {
             logOpResult(rc);
+            recordResponse(rc);
             originalCallback.writeComplete(rc, ledgerId, entryId, addr, ctx);
             key.release();
             handle.recycle(this);
@@ -2382,31 +2493,47 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    // visible for testing
-    CompletionKey newCompletionKey(long txnId, OperationType operationType) {
-        return new TxnCompletionKey(txnId, operationType);
+    private final Recycler<TxnCompletionKey> txnKeyRecycler = new Recycler<TxnCompletionKey>() {
+            @Override
+            protected TxnCompletionKey newObject(Recycler.Handle<TxnCompletionKey> handle) {
+                return new TxnCompletionKey(handle);
+            }
+        };
+
+    TxnCompletionKey acquireTxnKey(long txnId, OperationType operationType) {
+        TxnCompletionKey key = txnKeyRecycler.get();
+        key.reset(txnId, operationType);
+        return key;
     }
 
     class TxnCompletionKey extends CompletionKey {
-        final long txnId;
+        private final Handle<TxnCompletionKey> recyclerHandle;
+        long txnId;
 
-        public TxnCompletionKey(long txnId, OperationType operationType) {
-            super(operationType);
+        private TxnCompletionKey(Handle<TxnCompletionKey> handle) {
+            super(null);
+            this.recyclerHandle = handle;
+        }
+
+        void reset(long txnId, OperationType operationType) {
             this.txnId = txnId;
+            this.operationType = operationType;
+            resetRefCnt();
         }
 
         @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof TxnCompletionKey)) {
-                return false;
-            }
-            TxnCompletionKey that = (TxnCompletionKey) obj;
-            return this.txnId == that.txnId && this.operationType == that.operationType;
+        void putCompletion(CompletionValue value) {
+            txnCompletions.put(txnId, value);
         }
 
         @Override
-        public int hashCode() {
-            return ((int) txnId);
+        CompletionValue getCompletion() {
+            return txnCompletions.get(txnId);
+        }
+
+        @Override
+        CompletionValue removeCompletion() {
+            return txnCompletions.remove(txnId);
         }
 
         @Override
@@ -2414,16 +2541,47 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             return String.format("TxnId(%d), OperationType(%s)", txnId, operationType);
         }
 
+        @Override
+        void recycle() {
+            recyclerHandle.recycle(this);
+        }
     }
 
+    /**
+     * The key of a request in flight, identifying its completion in the maps of the requests in flight.
+     *
+     * <p>The keys are recycled once released by both their completion and the write of their request, so that a
+     * key is never reused for another request while it is still in use.
+     */
     abstract class CompletionKey {
         OperationType operationType;
+        private final AtomicInteger refCnt = new AtomicInteger(1);
 
         CompletionKey(OperationType operationType) {
             this.operationType = operationType;
         }
 
-        public void release() {}
+        abstract void putCompletion(CompletionValue value);
+
+        abstract CompletionValue getCompletion();
+
+        abstract CompletionValue removeCompletion();
+
+        void resetRefCnt() {
+            refCnt.set(1);
+        }
+
+        void retain() {
+            refCnt.incrementAndGet();
+        }
+
+        public void release() {
+            if (refCnt.decrementAndGet() == 0) {
+                recycle();
+            }
+        }
+
+        void recycle() {}
     }
 
     /**
@@ -2460,20 +2618,20 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
-        if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
-            // There's a pending read request on same ledger/entry. Use the multimap to track all of them
-            completionObjectsV2Conflicts.put(key, value);
-        }
+        key.putCompletion(value);
     }
 
-    private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
+    private ConcurrentLongPairHashMultiMap<CompletionValue> getV2Completions(OperationType operationType) {
+        switch (operationType) {
+            case ADD_ENTRY:
+                return addCompletionsV2;
+            case READ_ENTRY:
+                return readCompletionsV2;
+            case READ_LAC:
+                return readLacCompletionsV2;
+            default:
+                return null;
         }
-        return completionValue;
     }
 
     private long getTxnId() {
@@ -2509,22 +2667,22 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             this.ledgerId = ledgerId;
             this.entryId = entryId;
             this.operationType = operationType;
+            resetRefCnt();
         }
 
         @Override
-        public boolean equals(Object object) {
-            if (!(object instanceof EntryCompletionKey)) {
-                return  false;
-            }
-            EntryCompletionKey that = (EntryCompletionKey) object;
-            return this.entryId == that.entryId
-                && this.ledgerId == that.ledgerId
-                && this.operationType == that.operationType;
+        void putCompletion(CompletionValue value) {
+            getV2Completions(operationType).put(ledgerId, entryId, value);
         }
 
         @Override
-        public int hashCode() {
-            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
+        CompletionValue getCompletion() {
+            return getV2Completions(operationType).get(ledgerId, entryId);
+        }
+
+        @Override
+        CompletionValue removeCompletion() {
+            return getV2Completions(operationType).removeAny(ledgerId, entryId);
         }
 
         @Override
@@ -2533,7 +2691,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         @Override
-        public void release() {
+        void recycle() {
             recyclerHandle.recycle(this);
         }
     }
@@ -2704,8 +2862,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         LOG.info("Initializing TLS to {}", channel);
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
+        final CompletionKey completionKey = acquireTxnKey(txnId, OperationType.START_TLS);
+        putCompletionKeyValue(completionKey,
                               new StartTLSCompletion(completionKey));
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -66,6 +66,39 @@ public interface PerChannelBookieClientPool {
      */
     void recordError();
 
+    /**
+     * Record the outcome and the latency of a request completed by the bookie. Long poll requests, whose latency
+     * does not depend on the bookie load, are not recorded.
+     *
+     * @param rc
+     *          the return code of the request.
+     * @param latencyNanos
+     *          the time from sending the request to its completion, in nanoseconds.
+     */
+    default void recordResponse(int rc, long latencyNanos) {
+    }
+
+    /**
+     * Record the outcome and the latency of a read request completed by the bookie.
+     *
+     * @param rc
+     *          the return code of the read request.
+     * @param latencyNanos
+     *          the time from sending the request to its completion, in nanoseconds.
+     */
+    default void recordReadResponse(int rc, long latencyNanos) {
+        recordResponse(rc, latencyNanos);
+    }
+
+    /**
+     * Get the moving average of the latency of the reads served by the bookie.
+     *
+     * @return the average read latency in nanoseconds, or -1 if no read completed yet.
+     */
+    default long getReadLatencyNanos() {
+        return -1L;
+    }
+
     /**
      * Check if any ops on any channel needs to be timed out.
      * This is called on all channels, even if the channel is not yet connected.
@@ -18,7 +18,6 @@
 package org.apache.bookkeeper.proto;
 
 import com.google.common.base.Stopwatch;
-import com.google.protobuf.ByteString;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.util.ReferenceCountUtil;
@@ -47,6 +46,8 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
     private final ExecutorService fenceThreadPool;
 
     private CompletableFuture<Boolean> fenceResult = null;
+    // Entry wrapped by the read response, released once the response is written
+    private ByteBuf responseBody = null;
 
     protected final ReadRequest readRequest;
     protected final long ledgerId;
@@ -176,7 +177,7 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
             return null;
         } else {
             try {
-                readResponseBuilder.setBody(ByteString.copyFrom(entryBody.nioBuffer()));
+                readResponseBuilder.setBody(ByteStringUtil.byteBufToByteString(entryBody));
                 if (readLACPiggyBack) {
                     readResponseBuilder.setEntryId(entryId);
                 } else {
@@ -185,7 +186,10 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                 }
                 registerSuccessfulEvent(readStats, startTimeSw);
                 readResponseBuilder.setStatus(StatusCode.EOK);
-                return readResponseBuilder.build();
+                ReadResponse readResponse = readResponseBuilder.build();
+                setResponseBody(entryBody);
+                entryBody = null;
+                return readResponse;
             } finally {
                 ReferenceCountUtil.release(entryBody);
             }
@@ -287,12 +291,16 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
             registerFailedEvent(requestProcessor.getRequestStats().getFenceReadWaitStats(), lastPhaseStartTime);
         } else {
             status = StatusCode.EOK;
-            readResponse.setBody(ByteString.copyFrom(entryBody.nioBuffer()));
+            readResponse.setBody(ByteStringUtil.byteBufToByteString(entryBody));
             registerSuccessfulEvent(requestProcessor.getRequestStats().getFenceReadWaitStats(), lastPhaseStartTime);
         }
 
         if (null != entryBody) {
-            ReferenceCountUtil.release(entryBody);
+            if (fenceResult) {
+                setResponseBody(entryBody);
+            } else {
+                ReferenceCountUtil.release(entryBody);
+            }
         }
 
         readResponse.setStatus(status);
@@ -324,12 +332,21 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                 .setHeader(getHeader())
                 .setStatus(readResponse.getStatus())
                 .setReadResponse(readResponse);
+        ByteBuf body = responseBody;
+        responseBody = null;
         sendResponse(response.getStatus(),
                      response.build(),
-                     reqStats);
+                     reqStats,
+                     body);
         requestProcessor.onReadRequestFinish();
     }
 
+    private void setResponseBody(ByteBuf entryBody) {
+        // release the body of a response which was not sent
+        ReferenceCountUtil.release(responseBody);
+        responseBody = entryBody;
+    }
+
     //
     // Stats Methods
     //
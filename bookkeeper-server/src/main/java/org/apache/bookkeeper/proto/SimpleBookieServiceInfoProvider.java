@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.proto;
 
 import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.function.Supplier;
 import org.apache.bookkeeper.bookie.BookieImpl;
 import org.apache.bookkeeper.conf.ServerConfiguration;
@@ -45,7 +46,11 @@ public class SimpleBookieServiceInfoProvider implements Supplier<BookieServiceIn
     @Override
     public BookieServiceInfo get() {
         try {
-            return BookieServiceInfoUtils.buildLegacyBookieServiceInfo(bookieSocketAddress.toBookieId().toString());
+            BookieServiceInfo bookieServiceInfo =
+                    BookieServiceInfoUtils.buildLegacyBookieServiceInfo(bookieSocketAddress.toBookieId().toString());
+            bookieServiceInfo.getEndpoints().forEach(endpoint ->
+                    endpoint.setExtensions(Collections.singletonList(BookieProtocol.BATCH_ADD_ENTRY_EXTENSION)));
+            return bookieServiceInfo;
         } catch (UnknownHostException err) {
             throw new RuntimeException(err);
         }
@@ -31,6 +31,7 @@ import org.apache.bookkeeper.common.allocator.ByteBufAllocatorWithOomHandler;
 import org.apache.bookkeeper.common.component.ComponentInfoPublisher;
 import org.apache.bookkeeper.common.component.ComponentInfoPublisher.EndpointInfo;
 import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookieServer;
 import org.apache.bookkeeper.server.component.ServerLifecycleComponent;
 import org.apache.bookkeeper.server.conf.BookieConfiguration;
@@ -110,6 +111,7 @@ public class BookieService extends ServerLifecycleComponent {
             if (conf.getServerConf().getTLSProviderFactoryClass() != null) {
                 extensions.add("tls");
             }
+            extensions.add(BookieProtocol.BATCH_ADD_ENTRY_EXTENSION);
             EndpointInfo endpoint = new EndpointInfo("bookie",
                     localAddress.getPort(),
                     localAddress.getHostName(),
@@ -0,0 +1,577 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Multimap from a pair of longs to Objects.
+ *
+ * <p>Provides similar methods as a {@code ConcurrentMap<LongPair, Collection<Object>>} with 3 differences:
+ * <ol>
+ * <li>No boxing/unboxing from (long, long) -&gt; key object
+ * <li>Open hash map with linear probing, no node allocations to store the values
+ * <li>The values of the same key are stored in separate buckets, there is no collection allocated per key
+ * </ol>
+ *
+ * <p>The map is meant to hold the keys having only one value most of the time, such as the requests in flight
+ * keyed by ledger and entry id, while still allowing duplicates.
+ *
+ * <b>WARN: method forEach do not guarantee thread safety.</b>
+ * @param <V>
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentLongPairHashMultiMap<V> {
+
+    private static final Object EmptyValue = null;
+    private static final Object DeletedValue = new Object();
+
+    private static final int DefaultExpectedItems = 256;
+    private static final int DefaultConcurrencyLevel = 16;
+
+    private static final float DefaultMapFillFactor = 0.66f;
+    private static final float DefaultMapIdleFactor = 0.15f;
+
+    private static final float DefaultExpandFactor = 2;
+    private static final float DefaultShrinkFactor = 2;
+
+    private static final boolean DefaultAutoShrink = false;
+
+    public static <V> Builder<V> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Builder of ConcurrentLongPairHashMultiMap.
+     */
+    public static class Builder<T> {
+        int expectedItems = DefaultExpectedItems;
+        int concurrencyLevel = DefaultConcurrencyLevel;
+        float mapFillFactor = DefaultMapFillFactor;
+        float mapIdleFactor = DefaultMapIdleFactor;
+        float expandFactor = DefaultExpandFactor;
+        float shrinkFactor = DefaultShrinkFactor;
+        boolean autoShrink = DefaultAutoShrink;
+
+        public Builder<T> expectedItems(int expectedItems) {
+            this.expectedItems = expectedItems;
+            return this;
+        }
+
+        public Builder<T> concurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        public Builder<T> mapFillFactor(float mapFillFactor) {
+            this.mapFillFactor = mapFillFactor;
+            return this;
+        }
+
+        public Builder<T> mapIdleFactor(float mapIdleFactor) {
+            this.mapIdleFactor = mapIdleFactor;
+            return this;
+        }
+
+        public Builder<T> expandFactor(float expandFactor) {
+            this.expandFactor = expandFactor;
+            return this;
+        }
+
+        public Builder<T> shrinkFactor(float shrinkFactor) {
+            this.shrinkFactor = shrinkFactor;
+            return this;
+        }
+
+        public Builder<T> autoShrink(boolean autoShrink) {
+            this.autoShrink = autoShrink;
+            return this;
+        }
+
+        public ConcurrentLongPairHashMultiMap<T> build() {
+            return new ConcurrentLongPairHashMultiMap<>(expectedItems, concurrencyLevel,
+                    mapFillFactor, mapIdleFactor, autoShrink, expandFactor, shrinkFactor);
+        }
+    }
+
+    /**
+     * Predicate specialization for (long, long, V) types.
+     *
+     * @param <V>
+     */
+    public interface LongPairObjectPredicate<V> {
+        boolean test(long key1, long key2, V value);
+    }
+
+    /**
+     * An entry processor.
+     */
+    public interface EntryProcessor<V> {
+        void accept(long key1, long key2, V value);
+    }
+
+    private final Section<V>[] sections;
+
+    private ConcurrentLongPairHashMultiMap(int expectedItems, int concurrencyLevel,
+                                           float mapFillFactor, float mapIdleFactor,
+                                           boolean autoShrink, float expandFactor, float shrinkFactor) {
+        checkArgument(expectedItems > 0);
+        checkArgument(concurrencyLevel > 0);
+        checkArgument(expectedItems >= concurrencyLevel);
+        checkArgument(mapFillFactor > 0 && mapFillFactor < 1);
+        checkArgument(mapIdleFactor > 0 && mapIdleFactor < 1);
+        checkArgument(mapFillFactor > mapIdleFactor);
+        checkArgument(expandFactor > 1);
+        checkArgument(shrinkFactor > 1);
+
+        int numSections = concurrencyLevel;
+        int perSectionExpectedItems = expectedItems / numSections;
+        int perSectionCapacity = (int) (perSectionExpectedItems / mapFillFactor);
+        this.sections = (Section<V>[]) new Section[numSections];
+
+        for (int i = 0; i < numSections; i++) {
+            sections[i] = new Section<>(perSectionCapacity, mapFillFactor, mapIdleFactor,
+                    autoShrink, expandFactor, shrinkFactor);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Section<V> s : sections) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    public long capacity() {
+        long capacity = 0;
+        for (Section<V> s : sections) {
+            capacity += s.capacity;
+        }
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        for (Section<V> s : sections) {
+            if (s.size != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return one of the values of the key, or null if there is none
+     */
+    public V get(long key1, long key2) {
+        long h = hash(key1, key2);
+        return getSection(h).get(key1, key2, (int) h);
+    }
+
+    public boolean containsKey(long key1, long key2) {
+        return get(key1, key2) != null;
+    }
+
+    /**
+     * Add a value to the key, in addition to the values already associated to it.
+     */
+    public void put(long key1, long key2, V value) {
+        checkNotNull(value);
+        long h = hash(key1, key2);
+        getSection(h).put(key1, key2, value, (int) h);
+    }
+
+    /**
+     * Remove one of the values of the key.
+     *
+     * @return the value removed, or null if there is none
+     */
+    public V removeAny(long key1, long key2) {
+        long h = hash(key1, key2);
+        return getSection(h).remove(key1, key2, null, (int) h);
+    }
+
+    public boolean remove(long key1, long key2, V value) {
+        checkNotNull(value);
+        long h = hash(key1, key2);
+        return getSection(h).remove(key1, key2, value, (int) h) != null;
+    }
+
+    public int removeIf(LongPairObjectPredicate<V> predicate) {
+        checkNotNull(predicate);
+
+        int removedCount = 0;
+        for (Section<V> s : sections) {
+            removedCount += s.removeIf(predicate);
+        }
+
+        return removedCount;
+    }
+
+    private Section<V> getSection(long hash) {
+        // Use 32 msb out of long to get the section
+        final int sectionIdx = (int) (hash >>> 32) & (sections.length - 1);
+        return sections[sectionIdx];
+    }
+
+    public void clear() {
+        for (Section<V> s : sections) {
+            s.clear();
+        }
+    }
+
+    /**
+     * Iterate over all the entries in the map and apply the processor function to each of them.
+     * <p>
+     * <b>Warning: Do Not Guarantee Thread-Safety.</b>
+     * @param processor the processor to apply to each entry
+     */
+    public void forEach(EntryProcessor<V> processor) {
+        for (Section<V> s : sections) {
+            s.forEach(processor);
+        }
+    }
+
+    // A section is a portion of the hash map that is covered by a single
+    @SuppressWarnings("serial")
+    private static final class Section<V> extends StampedLock {
+        // Keys are stored in the table as (key1, key2) pairs, at twice the index of their value
+        private volatile long[] table;
+        private volatile V[] values;
+
+        private volatile int capacity;
+        private final int initCapacity;
+        private volatile int size;
+        private int usedBuckets;
+        private int resizeThresholdUp;
+        private int resizeThresholdBelow;
+        private final float mapFillFactor;
+        private final float mapIdleFactor;
+        private final float expandFactor;
+        private final float shrinkFactor;
+        private final boolean autoShrink;
+
+        Section(int capacity, float mapFillFactor, float mapIdleFactor, boolean autoShrink,
+                float expandFactor, float shrinkFactor) {
+            this.capacity = alignToPowerOfTwo(capacity);
+            this.initCapacity = this.capacity;
+            this.table = new long[2 * this.capacity];
+            this.values = (V[]) new Object[this.capacity];
+            this.size = 0;
+            this.usedBuckets = 0;
+            this.autoShrink = autoShrink;
+            this.mapFillFactor = mapFillFactor;
+            this.mapIdleFactor = mapIdleFactor;
+            this.expandFactor = expandFactor;
+            this.shrinkFactor = shrinkFactor;
+            this.resizeThresholdUp = (int) (this.capacity * mapFillFactor);
+            this.resizeThresholdBelow = (int) (this.capacity * mapIdleFactor);
+        }
+
+        V get(long key1, long key2, int keyHash) {
+            long stamp = tryOptimisticRead();
+            boolean acquiredLock = false;
+
+            // add local variable here, so OutOfBound won't happen
+            long[] table = this.table;
+            V[] values = this.values;
+            // calculate table.length as capacity to avoid rehash changing capacity
+            int bucket = signSafeMod(keyHash, values.length);
+
+            try {
+                while (true) {
+                    // First try optimistic locking
+                    long storedKey1 = table[2 * bucket];
+                    long storedKey2 = table[2 * bucket + 1];
+                    V storedValue = values[bucket];
+
+                    if (!acquiredLock && !validate(stamp)) {
+                        // Fallback to acquiring read lock, and restart from the first bucket of the key
+                        stamp = readLock();
+                        acquiredLock = true;
+
+                        table = this.table;
+                        values = this.values;
+                        bucket = signSafeMod(keyHash, values.length);
+                        continue;
+                    }
+
+                    if (storedValue == EmptyValue) {
+                        // Not found
+                        return null;
+                    } else if (storedValue != DeletedValue && storedKey1 == key1 && storedKey2 == key2) {
+                        return storedValue;
+                    }
+
+                    bucket = (bucket + 1) & (values.length - 1);
+                }
+            } finally {
+                if (acquiredLock) {
+                    unlockRead(stamp);
+                }
+            }
+        }
+
+        void put(long key1, long key2, V value, int keyHash) {
+            long stamp = writeLock();
+            int capacity = this.capacity;
+            int bucket = signSafeMod(keyHash, capacity);
+
+            try {
+                while (true) {
+                    V storedValue = values[bucket];
+                    if (storedValue == EmptyValue || storedValue == DeletedValue) {
+                        // The values of the same key don't need to be contiguous, so the value can take the first
+                        // available bucket
+                        if (storedValue == EmptyValue) {
+                            ++usedBuckets;
+                        }
+                        table[2 * bucket] = key1;
+                        table[2 * bucket + 1] = key2;
+                        values[bucket] = value;
+                        ++size;
+                        return;
+                    }
+
+                    bucket = (bucket + 1) & (capacity - 1);
+                }
+            } finally {
+                if (usedBuckets > resizeThresholdUp) {
+                    try {
+                        int newCapacity = alignToPowerOfTwo((int) (capacity * expandFactor));
+                        rehash(newCapacity);
+                    } finally {
+                        unlockWrite(stamp);
+                    }
+                } else {
+                    unlockWrite(stamp);
+                }
+            }
+        }
+
+        private V remove(long key1, long key2, Object value, int keyHash) {
+            long stamp = writeLock();
+            int capacity = this.capacity;
+            int bucket = signSafeMod(keyHash, capacity);
+
+            try {
+                while (true) {
+                    V storedValue = values[bucket];
+                    if (storedValue == EmptyValue) {
+                        // Key wasn't found
+                        return null;
+                    } else if (storedValue != DeletedValue
+                            && table[2 * bucket] == key1 && table[2 * bucket + 1] == key2
+                            && (value == null || value.equals(storedValue))) {
+                        removeBucket(bucket);
+                        return storedValue;
+                    }
+
+                    bucket = (bucket + 1) & (capacity - 1);
+                }
+            } finally {
+                maybeShrinkAndUnlock(stamp);
+            }
+        }
+
+        int removeIf(LongPairObjectPredicate<V> filter) {
+            long stamp = writeLock();
+
+            int removedCount = 0;
+            try {
+                // Go through all the buckets for this section
+                int capacity = this.capacity;
+                for (int bucket = 0; size > 0 && bucket < capacity; bucket++) {
+                    V storedValue = values[bucket];
+
+                    if (storedValue != EmptyValue && storedValue != DeletedValue
+                            && filter.test(table[2 * bucket], table[2 * bucket + 1], storedValue)) {
+                        removeBucket(bucket);
+                        ++removedCount;
+                    }
+                }
+
+                return removedCount;
+            } finally {
+                maybeShrinkAndUnlock(stamp);
+            }
+        }
+
+        private void removeBucket(int bucket) {
+            --size;
+            V nextValueInArray = values[signSafeMod(bucket + 1, capacity)];
+            if (nextValueInArray == EmptyValue) {
+                values[bucket] = (V) EmptyValue;
+                --usedBuckets;
+
+                cleanDeletedStatus(bucket);
+            } else {
+                values[bucket] = (V) DeletedValue;
+            }
+        }
+
+        private void cleanDeletedStatus(int startBucket) {
+            // Cleanup all the buckets that were in `DeletedValue` state,
+            // so that we can reduce unnecessary expansions
+            int lastBucket = signSafeMod(startBucket - 1, capacity);
+            while (values[lastBucket] == DeletedValue) {
+                values[lastBucket] = (V) EmptyValue;
+                --usedBuckets;
+
+                lastBucket = signSafeMod(--lastBucket, capacity);
+            }
+        }
+
+        private void maybeShrinkAndUnlock(long stamp) {
+            if (autoShrink && size < resizeThresholdBelow) {
+                try {
+                    // Shrinking must at least ensure initCapacity,
+                    // so as to avoid frequent shrinking and expansion near initCapacity
+                    int newCapacity = Math.max(alignToPowerOfTwo((int) (capacity / shrinkFactor)), initCapacity);
+                    int newResizeThresholdUp = (int) (newCapacity * mapFillFactor);
+                    if (newCapacity < capacity && newResizeThresholdUp > size) {
+                        // shrink the hashmap
+                        rehash(newCapacity);
+                    }
+                } finally {
+                    unlockWrite(stamp);
+                }
+            } else {
+                unlockWrite(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+
+            try {
+                if (autoShrink && capacity > initCapacity) {
+                    shrinkToInitCapacity();
+                } else {
+                    Arrays.fill(table, 0);
+                    Arrays.fill(values, EmptyValue);
+                    this.size = 0;
+                    this.usedBuckets = 0;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        public void forEach(EntryProcessor<V> processor) {
+            long stamp = readLock();
+
+            try {
+                // Go through all the buckets for this section
+                int capacity = this.capacity;
+                for (int bucket = 0; bucket < capacity; bucket++) {
+                    V storedValue = values[bucket];
+
+                    if (storedValue != DeletedValue && storedValue != EmptyValue) {
+                        processor.accept(table[2 * bucket], table[2 * bucket + 1], storedValue);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private void rehash(int newCapacity) {
+            // Expand the hashmap
+            long[] newTable = new long[2 * newCapacity];
+            V[] newValues = (V[]) new Object[newCapacity];
+
+            // Re-hash table
+            for (int i = 0; i < values.length; i++) {
+                V storedValue = values[i];
+                if (storedValue != EmptyValue && storedValue != DeletedValue) {
+                    insertKeyValueNoLock(newTable, newValues, table[2 * i], table[2 * i + 1], storedValue);
+                }
+            }
+
+            table = newTable;
+            values = newValues;
+            usedBuckets = size;
+            // Capacity needs to be updated after the values, so that we won't see
+            // a capacity value bigger than the actual array size
+            capacity = newCapacity;
+            resizeThresholdUp = (int) (capacity * mapFillFactor);
+            resizeThresholdBelow = (int) (capacity * mapIdleFactor);
+        }
+
+        private void shrinkToInitCapacity() {
+            long[] newTable = new long[2 * initCapacity];
+            V[] newValues = (V[]) new Object[initCapacity];
+
+            table = newTable;
+            values = newValues;
+            size = 0;
+            usedBuckets = 0;
+            // Capacity needs to be updated after the values, so that we won't see
+            // a capacity value bigger than the actual array size
+            capacity = initCapacity;
+            resizeThresholdUp = (int) (capacity * mapFillFactor);
+            resizeThresholdBelow = (int) (capacity * mapIdleFactor);
+        }
+
+        private static <V> void insertKeyValueNoLock(long[] table, V[] values, long key1, long key2, V value) {
+            int bucket = signSafeMod(hash(key1, key2), values.length);
+
+            while (true) {
+                if (values[bucket] == EmptyValue) {
+                    // The bucket is empty, so we can use it
+                    table[2 * bucket] = key1;
+                    table[2 * bucket + 1] = key2;
+                    values[bucket] = value;
+                    return;
+                }
+
+                bucket = (bucket + 1) & (values.length - 1);
+            }
+        }
+    }
+
+    private static final long HashMixer = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    static final long hash(long key1, long key2) {
+        long hash = key1 * HashMixer;
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        hash += 31 + (key2 * HashMixer);
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        return hash;
+    }
+
+    static final int signSafeMod(long n, int max) {
+        return (int) n & (max - 1);
+    }
+
+    private static int alignToPowerOfTwo(int n) {
+        return (int) Math.pow(2, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+}
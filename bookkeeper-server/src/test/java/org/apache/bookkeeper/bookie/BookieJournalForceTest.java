@@ -36,6 +36,7 @@ import static org.mockito.Mockito.when;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import java.io.File;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -252,6 +253,47 @@ public class BookieJournalForceTest {
         journal.shutdown();
     }
 
+    @Test
+    public void testAdaptiveGroupCommit() throws Exception {
+        File journalDir = tempDir.newFolder();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        final int numEntries = 100;
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+            .setJournalAdaptiveGroupCommit(true)
+            .setMetadataServiceUri(null);
+
+        LedgerDirsManager ledgerDirsManager = mock(LedgerDirsManager.class);
+        TestStatsProvider testStatsProvider = new TestStatsProvider();
+        Journal journal = new Journal(0, journalDir, conf, ledgerDirsManager,
+                testStatsProvider.getStatsLogger("test"), UnpooledByteBufAllocator.DEFAULT);
+        journal.start();
+
+        CountDownLatch latch = new CountDownLatch(numEntries);
+        long ledgerId = 1;
+        for (long entryId = 0; entryId < numEntries; entryId++) {
+            journal.logAddEntry(ledgerId, entryId, DATA, false /* ackBeforeSync */, new WriteCallback() {
+                @Override
+                public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
+                    latch.countDown();
+                }
+            }, null);
+        }
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+
+        // The group commit decisions are exported after every flush
+        TestStatsProvider.TestOpStatsLogger groupCommitWaitStats =
+                (TestStatsProvider.TestOpStatsLogger) journal.getJournalStats().getGroupCommitWaitStats();
+        TestStatsProvider.TestOpStatsLogger groupCommitBatchEntriesStats =
+                (TestStatsProvider.TestOpStatsLogger) journal.getJournalStats().getGroupCommitBatchEntriesStats();
+        assertTrue(groupCommitWaitStats.getSuccessCount() > 0);
+        assertEquals(groupCommitWaitStats.getSuccessCount(), groupCommitBatchEntriesStats.getSuccessCount());
+
+        journal.shutdown();
+    }
+
     @Test
     public void testInterleavedRequests() throws Exception {
         File journalDir = tempDir.newFolder();
@@ -65,9 +65,11 @@ import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.Lock;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger.BufferedLogChannel;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.common.testing.annotations.FlakyTest;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.test.TestStatsProvider;
 import org.apache.bookkeeper.util.DiskChecker;
 import org.apache.bookkeeper.util.IOUtils;
@@ -201,6 +203,42 @@ public class DefaultEntryLogTest {
         assertFalse(channel.sealed);
     }
 
+    @Test
+    public void testEntryLogStreams() throws Exception {
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf, dirsMgr, null, NullStatsLogger.INSTANCE,
+                UnpooledByteBufAllocator.DEFAULT, 2);
+        assertInstanceOf(EntryLogManagerForLogStreams.class, entryLogger.getEntryLogManager());
+
+        long location1 = entryLogger.addEntry(1L, generateEntry(1, 0), EntryLogger.HOT_LOG_STREAM);
+        long location2 = entryLogger.addEntry(2L, generateEntry(2, 0), EntryLogger.COLD_LOG_STREAM);
+        long location3 = entryLogger.addEntry(3L, generateEntry(3, 0), EntryLogger.HOT_LOG_STREAM);
+        // the entries added without a stream go to the hot stream
+        long location4 = entryLogger.addEntry(4L, generateEntry(4, 0));
+        long location5 = entryLogger.addEntry(2L, generateEntry(2, 1), EntryLogger.COLD_LOG_STREAM);
+
+        long hotLogId = location1 >> 32;
+        long coldLogId = location2 >> 32;
+        assertNotEquals(hotLogId, coldLogId);
+        assertEquals(hotLogId, location3 >> 32);
+        assertEquals(hotLogId, location4 >> 32);
+        assertEquals(coldLogId, location5 >> 32);
+
+        // the active entry logs of both streams are readable
+        entryLogger.flush();
+        long[][] entries = { { 1, 0, location1 }, { 2, 0, location2 }, { 3, 0, location3 }, { 4, 0, location4 },
+                { 2, 1, location5 } };
+        for (long[] entry : entries) {
+            ByteBuf value = entryLogger.readEntry(entry[0], entry[1], entry[2]);
+            assertEquals(entry[0], value.readLong());
+            assertEquals(entry[1], value.readLong());
+            byte[] data = new byte[value.readableBytes()];
+            value.readBytes(data);
+            value.release();
+            assertEquals(generateDataString(entry[0], entry[1]), new String(data));
+        }
+        entryLogger.close();
+    }
+
     @Test
     public void testDeferCreateNewLogWithoutEnoughDiskSpaces() throws Exception {
         entryLogger.close();
@@ -0,0 +1,171 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.test.TmpDirs;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DirectIOBufferedChannel}.
+ */
+public class DirectIOBufferedChannelTest {
+
+    private final TmpDirs tmpDirs = new TmpDirs();
+
+    @After
+    public void cleanup() throws Exception {
+        tmpDirs.cleanup();
+    }
+
+    @Test
+    public void testWriteUnalignedData() throws Exception {
+        File file = new File(tmpDirs.createNew("directio", "dir"), "test.log");
+        Random random = new Random(1);
+        byte[] header = new byte[100];
+        random.nextBytes(header);
+        byte[] expected = Arrays.copyOf(header, header.length);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel fc = raf.getChannel();
+            fc.write(ByteBuffer.wrap(header));
+
+            DirectIOBufferedChannel bc = DirectIOBufferedChannel.open(UnpooledByteBufAllocator.DEFAULT, fc, file,
+                    3 * DirectIOBufferedChannel.ALIGNMENT);
+            assumeTrue("Direct I/O is not supported", bc != null);
+            assertEquals(header.length, bc.position());
+
+            for (int size : new int[] { 1, 17, 4095, 4096, 4097, 10000, 30000, 3 }) {
+                byte[] data = new byte[size];
+                random.nextBytes(data);
+                bc.write(Unpooled.wrappedBuffer(data));
+                bc.flush();
+
+                int offset = expected.length;
+                expected = Arrays.copyOf(expected, offset + size);
+                System.arraycopy(data, 0, expected, offset, size);
+                assertEquals(expected.length, bc.position());
+                assertEquals(expected.length, bc.forceWrite(false));
+            }
+
+            // Data still in the write buffer can be read back
+            ByteBuf read = Unpooled.buffer(expected.length);
+            assertEquals(expected.length, bc.read(read, 0, expected.length));
+            assertArrayEquals(expected, Arrays.copyOf(read.array(), expected.length));
+            bc.close();
+        }
+
+        // On disk, the data is followed by the padding of the last block
+        byte[] onDisk = Files.readAllBytes(file.toPath());
+        assertEquals(DirectIOBufferedChannel.alignUp(expected.length), onDisk.length);
+        assertArrayEquals(expected, Arrays.copyOf(onDisk, expected.length));
+        for (int i = expected.length; i < onDisk.length; i++) {
+            assertEquals(0, onDisk[i]);
+        }
+    }
+
+    @Test
+    public void testDirectIOUnsupportedInOneDirectory() throws Exception {
+        File unsupportedDir = tmpDirs.createNew("unsupported", "dir");
+        File supportedDir = tmpDirs.createNew("supported", "dir");
+        NativeIO failingNativeIO = mock(NativeIO.class);
+        when(failingNativeIO.open(anyString(), anyInt(), anyInt()))
+                .thenThrow(new NativeIOException("open failed", 22));
+
+        File file = new File(unsupportedDir, "1.txn");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            assertNull(DirectIOBufferedChannel.open(UnpooledByteBufAllocator.DEFAULT, raf.getChannel(), file,
+                    DirectIOBufferedChannel.ALIGNMENT, failingNativeIO));
+        }
+        // The next journal files of that directory are not opened with O_DIRECT
+        file = new File(unsupportedDir, "2.txn");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            assertNull(DirectIOBufferedChannel.open(UnpooledByteBufAllocator.DEFAULT, raf.getChannel(), file,
+                    DirectIOBufferedChannel.ALIGNMENT));
+        }
+        // The other directories still are
+        file = new File(supportedDir, "1.txn");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            DirectIOBufferedChannel bc = DirectIOBufferedChannel.open(UnpooledByteBufAllocator.DEFAULT,
+                    raf.getChannel(), file, DirectIOBufferedChannel.ALIGNMENT);
+            assumeTrue("Direct I/O is not supported", bc != null);
+            bc.close();
+        }
+    }
+
+    @Test
+    public void testJournalChannelWithDirectIO() throws Exception {
+        File journalDir = tmpDirs.createNew("journal", "dir");
+        ServerConfiguration conf = new ServerConfiguration().setJournalDirectIO(true);
+
+        JournalChannel jc = new JournalChannel(journalDir, 1, 4 * JournalChannel.MB, 65536,
+                JournalChannel.SECTOR_SIZE, false, JournalChannel.V6, conf, new DefaultFileChannelProvider());
+        BufferedChannel bc = jc.getBufferedChannel();
+        assumeTrue("Direct I/O is not supported", bc instanceof DirectIOBufferedChannel);
+
+        byte[] data = new byte[12345];
+        new Random(2).nextBytes(data);
+        ByteBuf buf = Unpooled.buffer(Integer.BYTES + data.length);
+        buf.writeInt(data.length);
+        buf.writeBytes(data);
+        bc.write(buf);
+        bc.flush();
+        jc.forceWrite(false);
+        jc.close();
+
+        JournalChannel readChannel = new JournalChannel(journalDir, 1);
+        assertEquals(JournalChannel.V6, readChannel.getFormatVersion());
+        ByteBuffer read = ByteBuffer.allocate(Integer.BYTES + data.length);
+        while (read.hasRemaining()) {
+            assertTrue(readChannel.read(read) > 0);
+        }
+        read.flip();
+        assertEquals(data.length, read.getInt());
+        byte[] readData = new byte[data.length];
+        read.get(readData);
+        assertArrayEquals(data, readData);
+        readChannel.close();
+    }
+}
@@ -40,6 +40,10 @@ import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
@@ -144,6 +148,64 @@ public class GarbageCollectorThreadTest {
         Assert.assertEquals("Incorrect number of items", items + 1, sum);
     }
 
+    @Test
+    public void testCompactionCandidatesByDecreasingBenefit() {
+        List<GarbageCollectorThread.CompactionCandidate> candidates = new ArrayList<>();
+        // 90% reclaimable
+        candidates.add(new GarbageCollectorThread.CompactionCandidate(1L, 1000L, 100L, 1));
+        // 50% reclaimable
+        candidates.add(new GarbageCollectorThread.CompactionCandidate(2L, 1000L, 500L, 5));
+        // 90% reclaimable, but a larger entry log
+        candidates.add(new GarbageCollectorThread.CompactionCandidate(3L, 2000L, 200L, 1));
+        // nothing left in the entry log
+        candidates.add(new GarbageCollectorThread.CompactionCandidate(4L, 1000L, 0L, 0));
+
+        candidates.sort(GarbageCollectorThread.CompactionCandidate.BY_DECREASING_BENEFIT);
+        assertEquals(4L, candidates.get(0).entryLogId);
+        assertEquals(3L, candidates.get(1).entryLogId);
+        assertEquals(1L, candidates.get(2).entryLogId);
+        assertEquals(2L, candidates.get(3).entryLogId);
+    }
+
+    @Test
+    public void testThrottlerBacksOffWhenBookieIsBusy() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setIsThrottleByBytes(true);
+        conf.setCompactionRateByBytes(1600);
+        AbstractLogCompactor.Throttler throttler = new AbstractLogCompactor.Throttler(conf);
+        AtomicBoolean busy = new AtomicBoolean(true);
+        throttler.setLoadMonitor(busy::get);
+
+        long interval = AbstractLogCompactor.Throttler.RATE_ADJUST_INTERVAL_NANOS;
+        long now = System.nanoTime();
+        assertEquals(1600, throttler.getRate(), 0.0);
+        // the rate is not adjusted more than once per interval
+        throttler.adjustRate(now);
+        assertEquals(1600, throttler.getRate(), 0.0);
+
+        now += interval;
+        throttler.adjustRate(now);
+        assertEquals(800, throttler.getRate(), 0.0);
+        for (int i = 0; i < 10; i++) {
+            now += interval;
+            throttler.adjustRate(now);
+        }
+        assertEquals(100, throttler.getRate(), 0.0);
+
+        busy.set(false);
+        now += interval;
+        throttler.adjustRate(now);
+        assertEquals(260, throttler.getRate(), 0.0);
+        for (int i = 0; i < 10; i++) {
+            now += interval;
+            throttler.adjustRate(now);
+        }
+        assertEquals(1600, throttler.getRate(), 0.0);
+
+        throttler.acquire(100);
+        assertEquals(100 + Integer.BYTES, throttler.getAcquiredBytes());
+    }
+
     @Test
     public void testExtractMetaFromEntryLogsLegacy() throws Exception {
         File ledgerDir = tmpDirs.createNew("testExtractMeta", "ledgers");
@@ -159,17 +221,38 @@ public class GarbageCollectorThreadTest {
                                                        ledgerDir), ledgerDir);
     }
 
+    @Test
+    public void testExtractMetaFromEntryLogsWithGcWorkers() throws Exception {
+        File ledgerDir = tmpDirs.createNew("testExtractMeta", "ledgers");
+        ExecutorService gcWorkers = Executors.newFixedThreadPool(2);
+        try {
+            testExtractMetaFromEntryLogs(
+                    newLegacyEntryLogger(20000, ledgerDir), ledgerDir, gcWorkers);
+        } finally {
+            gcWorkers.shutdownNow();
+        }
+    }
+
     private void testExtractMetaFromEntryLogs(EntryLogger entryLogger, File ledgerDir)
             throws Exception {
+        testExtractMetaFromEntryLogs(entryLogger, ledgerDir, null);
+    }
+
+    private void testExtractMetaFromEntryLogs(EntryLogger entryLogger, File ledgerDir, ExecutorService gcWorkers)
+            throws Exception {
 
         MockLedgerStorage storage = new MockLedgerStorage();
         MockLedgerManager lm = new MockLedgerManager();
 
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
         GarbageCollectorThread gcThread = new GarbageCollectorThread(
-                TestBKConfiguration.newServerConfiguration(), lm,
+                conf, lm,
                 newDirsManager(ledgerDir),
                 storage, entryLogger,
                 NullStatsLogger.INSTANCE);
+        if (gcWorkers != null) {
+            gcThread.setGcWorkers(gcWorkers, 2, new AbstractLogCompactor.Throttler(conf));
+        }
 
         // Add entries.
         // Ledger 1 is on first entry log
@@ -239,6 +322,66 @@ public class GarbageCollectorThreadTest {
         assertFalse(entryLogger.logExists(logId3));
     }
 
+    @Test
+    public void testGcEntryLogsOfDeletedLedgers() throws Exception {
+        File ledgerDir = tmpDirs.createNew("testGcDeletedLedgers", "ledgers");
+        EntryLogger entryLogger = newLegacyEntryLogger(20000, ledgerDir);
+
+        MockLedgerStorage storage = new MockLedgerStorage();
+        MockLedgerManager lm = new MockLedgerManager();
+
+        GarbageCollectorThread gcThread = new GarbageCollectorThread(
+            TestBKConfiguration.newServerConfiguration(), lm,
+            newDirsManager(ledgerDir),
+            storage, entryLogger, NullStatsLogger.INSTANCE);
+
+        // Add entries.
+        // Ledgers 1 and 2 are on the first entry log
+        // Ledger 3 is on the second entry log
+        // Ledger 4 is on the third entry log (which is still active when extract meta)
+        long loc1 = entryLogger.addEntry(1L, makeEntry(1L, 1L, 5000));
+        long loc2 = entryLogger.addEntry(2L, makeEntry(2L, 1L, 5000));
+        assertThat(logIdFromLocation(loc2), equalTo(logIdFromLocation(loc1)));
+        long loc3 = entryLogger.addEntry(3L, makeEntry(3L, 1L, 15000));
+        assertThat(logIdFromLocation(loc3), greaterThan(logIdFromLocation(loc2)));
+        long loc4 = entryLogger.addEntry(4L, makeEntry(4L, 1L, 15000));
+        assertThat(logIdFromLocation(loc4), greaterThan(logIdFromLocation(loc3)));
+
+        long logId1 = logIdFromLocation(loc1);
+        long logId2 = logIdFromLocation(loc3);
+        entryLogger.flush();
+
+        for (long ledgerId = 1L; ledgerId <= 4L; ledgerId++) {
+            storage.setMasterKey(ledgerId, new byte[0]);
+        }
+
+        // the first run checks all the ledgers of all the entry logs
+        final EntryLogMetadataMap entryLogMetaMap = gcThread.getEntryLogMetaMap();
+        gcThread.runWithFlags(false, true, true);
+        assertTrue(entryLogMetaMap.containsKey(logId1));
+        assertTrue(entryLogMetaMap.containsKey(logId2));
+
+        // the next runs only update the entry logs of the ledgers deleted by the gc
+        storage.deleteLedger(3L);
+        gcThread.runWithFlags(false, true, true);
+        assertTrue(entryLogger.logExists(logId2));
+        assertTrue(entryLogMetaMap.containsKey(logId2));
+
+        gcThread.garbageCleaner.clean(3L);
+        gcThread.runWithFlags(false, true, true);
+        assertFalse(entryLogger.logExists(logId2));
+        assertFalse(entryLogMetaMap.containsKey(logId2));
+
+        gcThread.garbageCleaner.clean(1L);
+        gcThread.runWithFlags(false, true, true);
+        assertTrue(entryLogger.logExists(logId1));
+        entryLogMetaMap.forKey(logId1, (entryLogId, meta) -> {
+            assertFalse(meta.containsLedger(1L));
+            assertTrue(meta.containsLedger(2L));
+            assertEquals(0.5, meta.getUsage(), 0.01);
+        });
+    }
+
     @Test
     public void testCompactionWithFileSizeCheck() throws Exception {
         File ledgerDir = tmpDirs.createNew("testFileSize", "ledgers");
@@ -372,4 +515,64 @@ public class GarbageCollectorThreadTest {
         assertEquals(0, storage.getUpdatedLocations().size());
     }
 
+    @Test
+    public void testCompactionWithGcWorkers() throws Exception {
+        File ledgerDir = tmpDirs.createNew("testCompactionWithGcWorkers", "ledgers");
+        EntryLogger entryLogger = newLegacyEntryLogger(20000, ledgerDir);
+
+        MockLedgerStorage storage = new MockLedgerStorage();
+        MockLedgerManager lm = new MockLedgerManager();
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        GarbageCollectorThread gcThread = new GarbageCollectorThread(
+            conf, lm,
+            newDirsManager(ledgerDir),
+            storage, entryLogger, NullStatsLogger.INSTANCE);
+        ExecutorService gcWorkers = Executors.newFixedThreadPool(2);
+        gcThread.setGcWorkers(gcWorkers, 2, new AbstractLogCompactor.Throttler(conf));
+
+        try {
+            // Add entries.
+            // Ledgers 1 and 2 are on the first entry log
+            // Ledgers 3 and 4 are on the second entry log
+            // Ledger 5 is on the third entry log (which is still active when compacting)
+            long loc1 = entryLogger.addEntry(1L, makeEntry(1L, 1L, 5000));
+            long loc2 = entryLogger.addEntry(2L, makeEntry(2L, 1L, 5000));
+            assertThat(logIdFromLocation(loc2), equalTo(logIdFromLocation(loc1)));
+            long loc3 = entryLogger.addEntry(3L, makeEntry(3L, 1L, 8000));
+            assertThat(logIdFromLocation(loc3), greaterThan(logIdFromLocation(loc2)));
+            long loc4 = entryLogger.addEntry(4L, makeEntry(4L, 1L, 8000));
+            assertThat(logIdFromLocation(loc4), equalTo(logIdFromLocation(loc3)));
+            long loc5 = entryLogger.addEntry(5L, makeEntry(5L, 1L, 15000));
+            assertThat(logIdFromLocation(loc5), greaterThan(logIdFromLocation(loc4)));
+
+            long logId1 = logIdFromLocation(loc1);
+            long logId2 = logIdFromLocation(loc3);
+            entryLogger.flush();
+
+            for (long ledgerId = 1L; ledgerId <= 5L; ledgerId++) {
+                storage.setMasterKey(ledgerId, new byte[0]);
+            }
+            assertThat(entryLogger.getFlushedLogIds(), containsInAnyOrder(logId1, logId2));
+
+            // both logs are under the major compaction threshold, they are compacted concurrently
+            storage.deleteLedger(1L);
+            storage.deleteLedger(4L);
+            gcThread.runWithFlags(true, false, false);
+
+            assertFalse(entryLogger.logExists(logId1));
+            assertFalse(entryLogger.logExists(logId2));
+            final EntryLogMetadataMap entryLogMetaMap = gcThread.getEntryLogMetaMap();
+            assertFalse(entryLogMetaMap.containsKey(logId1));
+            assertFalse(entryLogMetaMap.containsKey(logId2));
+
+            List<Long> relocatedLedgers = new ArrayList<>();
+            for (EntryLocation location : storage.getUpdatedLocations()) {
+                relocatedLedgers.add(location.getLedger());
+            }
+            assertThat(relocatedLedgers, containsInAnyOrder(2L, 3L));
+        } finally {
+            gcWorkers.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.stats.JournalStats;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link JournalGroupCommitController}.
+ */
+public class JournalGroupCommitControllerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final JournalStats journalStats = new JournalStats(NullStatsLogger.INSTANCE, 0, () -> 0L);
+
+    @Test
+    public void testLightLoadFlushesImmediately() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(5 * MS, 0, journalStats, 0);
+
+        // 1 entry every 10ms, with 1ms fsyncs
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            controller.recordArrivals(1);
+            controller.recordSyncLatency(MS);
+            now += 10 * MS;
+            controller.update(now);
+            assertEquals(0, controller.getGroupWaitNanos());
+            assertEquals(0, controller.getBatchEntriesThreshold());
+        }
+    }
+
+    @Test
+    public void testHeavyLoadGroupsEntries() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(5 * MS, 0, journalStats, 0);
+
+        // 100 entries per ms, with stable 1ms fsyncs
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            controller.recordArrivals(100);
+            controller.recordSyncLatency(MS);
+            now += MS;
+            controller.update(now);
+        }
+
+        // The wait leaves room for the fsync within the target latency
+        assertEquals(4 * MS, controller.getGroupWaitNanos(), 1000);
+        // The entries expected to arrive during the wait
+        assertEquals(400, controller.getBatchEntriesThreshold(), 1);
+    }
+
+    @Test
+    public void testSlowSyncsReduceWait() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(5 * MS, 0, journalStats, 0);
+
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            controller.recordArrivals(100);
+            controller.recordSyncLatency(MS);
+            now += MS;
+            controller.update(now);
+        }
+        long fastSyncsWait = controller.getGroupWaitNanos();
+
+        // Fsync latency jumps, leaving less time to group entries
+        for (int i = 0; i < 20; i++) {
+            controller.recordArrivals(100);
+            controller.recordSyncLatency(3 * MS);
+            now += MS;
+            controller.update(now);
+        }
+        assertTrue(controller.getGroupWaitNanos() < fastSyncsWait);
+
+        // Fsyncs beyond the target: flush as soon as possible
+        for (int i = 0; i < 20; i++) {
+            controller.recordArrivals(100);
+            controller.recordSyncLatency(10 * MS);
+            now += MS;
+            controller.update(now);
+        }
+        assertEquals(0, controller.getGroupWaitNanos());
+    }
+
+    @Test
+    public void testMaxGroupWait() {
+        JournalGroupCommitController controller = new JournalGroupCommitController(5 * MS, 2 * MS, journalStats, 0);
+
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            controller.recordArrivals(100);
+            controller.recordSyncLatency(MS);
+            now += MS;
+            controller.update(now);
+        }
+        assertEquals(2 * MS, controller.getGroupWaitNanos());
+        assertEquals(200, controller.getBatchEntriesThreshold(), 1);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.apache.bookkeeper.bookie.storage.EntryLogger.COLD_LOG_STREAM;
+import static org.apache.bookkeeper.bookie.storage.EntryLogger.HOT_LOG_STREAM;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ColdLedgerClassifier}.
+ */
+public class ColdLedgerClassifierTest {
+
+    @Test
+    public void testColdAfterMinAge() {
+        ColdLedgerClassifier classifier = new ColdLedgerClassifier(1000);
+
+        assertEquals(HOT_LOG_STREAM, classifier.getLogStream(1, 10_000));
+        assertEquals(HOT_LOG_STREAM, classifier.getLogStream(1, 10_999));
+        assertEquals(COLD_LOG_STREAM, classifier.getLogStream(1, 11_000));
+        // the age is counted from the first flush of each ledger
+        assertEquals(HOT_LOG_STREAM, classifier.getLogStream(2, 11_000));
+    }
+
+    @Test
+    public void testColdAfterAverageLifetime() {
+        ColdLedgerClassifier classifier = new ColdLedgerClassifier(1000);
+        assertEquals(-1, classifier.getAverageLifetimeMillis());
+
+        // the deleted ledgers lived 10 seconds
+        for (long ledgerId = 0; ledgerId < 10; ledgerId++) {
+            classifier.getLogStream(ledgerId, 0);
+            classifier.ledgerDeleted(ledgerId, 10_000);
+        }
+        assertEquals(10_000, classifier.getAverageLifetimeMillis());
+
+        assertEquals(HOT_LOG_STREAM, classifier.getLogStream(100, 20_000));
+        assertEquals(HOT_LOG_STREAM, classifier.getLogStream(100, 25_000));
+        assertEquals(COLD_LOG_STREAM, classifier.getLogStream(100, 30_000));
+
+        // a ledger deleted much later moves the average lifetime
+        classifier.getLogStream(200, 0);
+        classifier.ledgerDeleted(200, 170_000);
+        assertEquals(20_000, classifier.getAverageLifetimeMillis());
+        assertEquals(HOT_LOG_STREAM, classifier.getLogStream(100, 35_000));
+
+        // the ledgers not flushed since the bookie started are ignored
+        classifier.ledgerDeleted(300, 1_000_000);
+        assertEquals(20_000, classifier.getAverageLifetimeMillis());
+    }
+}
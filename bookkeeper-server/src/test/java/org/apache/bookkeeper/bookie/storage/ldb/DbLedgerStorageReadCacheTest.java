@@ -20,9 +20,11 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import static org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage.READ_AHEAD_ASYNC_THREADS;
 import static org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage.READ_AHEAD_CACHE_BATCH_BYTES_SIZE;
 import static org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage.READ_AHEAD_CACHE_BATCH_SIZE;
 import static org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage.READ_AHEAD_CACHE_MAX_SIZE_MB;
+import static org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage.READ_AHEAD_INDEX_LOOKUP_ENABLED;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -30,7 +32,9 @@ import static org.junit.Assert.assertTrue;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.apache.bookkeeper.bookie.BookieImpl;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger;
 import org.apache.bookkeeper.bookie.TestBookieImpl;
@@ -173,8 +177,78 @@ public class DbLedgerStorageReadCacheTest {
                 cacheBatchSizeResult.getCacheMissCount() + cacheBatchSizeResult.getCacheHitCount());
     }
 
+    @Test
+    public void asyncReadAheadTest() throws Exception {
+        TestDB testDB = new TestDB();
+        try {
+            setup(testDB, 16, 100, -1, Collections.singletonMap(READ_AHEAD_ASYNC_THREADS, 1));
+            DbLedgerStorage storage = testDB.getStorage();
+            addEntries(storage, 0, 1, 0, 100);
+            storage.flush();
+
+            DbLedgerStorageStats ledgerStats = storage.getLedgerStorageList().get(0).getDbLedgerStorageStats();
+
+            // The missing entry is returned without waiting for the read-ahead
+            ByteBuf entry = storage.getEntry(0, 0);
+            assertEquals(0, entry.getLong(8));
+            entry.release();
+
+            long startTime = System.currentTimeMillis();
+            while (ledgerStats.getReadCacheCountGauge().getSample() < 100) {
+                assertTrue("Read-ahead was not completed", System.currentTimeMillis() - startTime < 10_000);
+                Thread.sleep(10);
+            }
+
+            for (long eid = 1; eid < 100; eid++) {
+                entry = storage.getEntry(0, eid);
+                assertEquals(eid, entry.getLong(8));
+                entry.release();
+            }
+
+            assertEquals(1, ledgerStats.getReadCacheMissCounter().get().longValue());
+            assertEquals(99, ledgerStats.getReadCacheHitCounter().get().longValue());
+        } finally {
+            teardown(testDB.getStorage(), testDB.getTmpDir());
+        }
+    }
+
+    @Test
+    public void readAheadInterleavedEntriesTest() throws Exception {
+        for (boolean indexLookupEnabled : new boolean[] { false, true }) {
+            TestDB testDB = new TestDB();
+            try {
+                setup(testDB, 16, 100, -1,
+                        Collections.singletonMap(READ_AHEAD_INDEX_LOOKUP_ENABLED, indexLookupEnabled));
+                DbLedgerStorage storage = testDB.getStorage();
+                // The entries of ledger 0 are interleaved with the entries of ledger 1 in the entry log
+                addEntries(storage, 0, 2, 0, 10);
+                storage.flush();
+                addEntries(storage, 0, 1, 10, 20);
+                storage.flush();
+
+                DbLedgerStorageStats ledgerStats = storage.getLedgerStorageList().get(0).getDbLedgerStorageStats();
+                ByteBuf entry = storage.getEntry(0, 0);
+                assertEquals(0, entry.getLong(8));
+                entry.release();
+
+                // By default the read-ahead stops at the first entry of ledger 1
+                assertEquals(indexLookupEnabled ? 20L : 10L,
+                        ledgerStats.getReadCacheCountGauge().getSample().longValue());
+            } finally {
+                teardown(testDB.getStorage(), testDB.getTmpDir());
+            }
+        }
+    }
+
     public void setup(TestDB testDB, long readAheadCacheMaxSizeMb,
                       int readAheadCacheBatchSize, long readAheadCacheBatchBytesSize) throws Exception {
+        setup(testDB, readAheadCacheMaxSizeMb, readAheadCacheBatchSize, readAheadCacheBatchBytesSize,
+                Collections.emptyMap());
+    }
+
+    public void setup(TestDB testDB, long readAheadCacheMaxSizeMb,
+                      int readAheadCacheBatchSize, long readAheadCacheBatchBytesSize,
+                      Map<String, Object> extraProperties) throws Exception {
         File tmpDir = File.createTempFile("bkTest", ".dir");
         tmpDir.delete();
         tmpDir.mkdir();
@@ -195,6 +269,7 @@ public class DbLedgerStorageReadCacheTest {
         if (readAheadCacheBatchBytesSize > 0) {
             conf.setProperty(READ_AHEAD_CACHE_BATCH_BYTES_SIZE, readAheadCacheBatchBytesSize);
         }
+        extraProperties.forEach(conf::setProperty);
         TestStatsProvider.TestStatsLogger statsLogger = new TestStatsProvider().getStatsLogger("test");
         BookieImpl bookie = new TestBookieImpl(new TestBookieImpl.ResourceBuilder(conf).build(statsLogger),
                 statsLogger);
@@ -613,6 +613,93 @@ public class DbLedgerStorageTest {
         assertFalse(storage.entryExists(ledgerId, 1));
     }
 
+    @Test
+    public void testGetEntries() throws Exception {
+        storage.setMasterKey(1, "key".getBytes());
+        storage.setMasterKey(2, "key".getBytes());
+
+        // Interleave the entries of two ledgers in the entry log
+        for (long entryId = 0; entryId < 10; entryId++) {
+            for (long ledgerId = 1; ledgerId <= 2; ledgerId++) {
+                ByteBuf entry = Unpooled.buffer(128);
+                entry.writeLong(ledgerId);
+                entry.writeLong(entryId);
+                entry.writeBytes(("entry-" + ledgerId + "-" + entryId).getBytes());
+                storage.addEntry(entry);
+            }
+        }
+        storage.flush();
+
+        List<ByteBuf> entries = Lists.newArrayList();
+        storage.getEntries(1, 3, 20, Long.MAX_VALUE, entries::add);
+
+        // The read stops at the first missing entry
+        assertEquals(7, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ByteBuf entry = entries.get(i);
+            assertEquals(1, entry.getLong(0));
+            assertEquals(3 + i, entry.getLong(8));
+            entry.release();
+        }
+
+        // The read stops when the consumer does not accept more entries
+        entries.clear();
+        storage.getEntries(2, 0, 10, Long.MAX_VALUE, entry -> {
+            entries.add(entry);
+            return entries.size() < 4;
+        });
+        assertEquals(4, entries.size());
+        assertEquals(3, entries.get(3).getLong(8));
+        entries.forEach(ByteBuf::release);
+
+        try {
+            storage.getEntries(1, 10, 5, Long.MAX_VALUE, entries::add);
+            fail("Should have thrown exception");
+        } catch (NoEntryException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void testGetEntriesTruncatedBySize() throws Exception {
+        storage.setMasterKey(1, "key".getBytes());
+        for (long entryId = 0; entryId < 2000; entryId++) {
+            ByteBuf entry = Unpooled.buffer(1024);
+            entry.writeLong(1);
+            entry.writeLong(entryId);
+            entry.writeZero(1024 - 16);
+            storage.addEntry(entry);
+        }
+        storage.flush();
+
+        // The batch is cut by the size of the entries, well before the max count
+        long maxSize = 10 * 1024;
+        long[] size = { 0 };
+        List<ByteBuf> entries = Lists.newArrayList();
+        storage.getEntries(1, 500, 1000, maxSize, entry -> {
+            size[0] += entry.readableBytes();
+            if (size[0] > maxSize) {
+                entry.release();
+                return false;
+            }
+            entries.add(entry);
+            return true;
+        });
+        assertEquals(10, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(500 + i, entries.get(i).getLong(8));
+        }
+        entries.forEach(ByteBuf::release);
+
+        // The index lookups only cover the entries fitting in the rest of the size, plus the one that overflows
+        assertEquals(10, SingleDirectoryDbLedgerStorage.getLocationsLookupCount(999, 9 * 1024, 1024));
+        assertEquals(1, SingleDirectoryDbLedgerStorage.getLocationsLookupCount(999, 0, 1024));
+        assertEquals(1, SingleDirectoryDbLedgerStorage.getLocationsLookupCount(999, -100, 1024));
+        assertEquals(5, SingleDirectoryDbLedgerStorage.getLocationsLookupCount(5, 9 * 1024, 1024));
+        assertEquals(SingleDirectoryDbLedgerStorage.MAX_BATCHED_LOCATIONS_LOOKUP,
+                SingleDirectoryDbLedgerStorage.getLocationsLookupCount(Integer.MAX_VALUE, Long.MAX_VALUE, 1));
+    }
+
     @Test
     public void testStorageStateFlags() throws Exception {
         assertTrue(storage.getStorageStateFlags().isEmpty());
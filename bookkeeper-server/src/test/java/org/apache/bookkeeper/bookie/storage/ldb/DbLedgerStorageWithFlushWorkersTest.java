@@ -0,0 +1,97 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.DefaultEntryLogger;
+import org.apache.bookkeeper.bookie.TestBookieImpl;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link DbLedgerStorage} with the flush done by worker threads.
+ */
+public class DbLedgerStorageWithFlushWorkersTest extends DbLedgerStorageTest {
+
+    @Override
+    @Before
+    public void setup() throws Exception {
+        tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        File curDir = BookieImpl.getCurrentDirectory(tmpDir);
+        BookieImpl.checkDirectoryStructure(curDir);
+
+        int gcWaitTime = 1000;
+        conf = TestBKConfiguration.newServerConfiguration();
+        conf.setGcWaitTime(gcWaitTime);
+        conf.setLedgerStorageClass(DbLedgerStorage.class.getName());
+        conf.setLedgerDirNames(new String[] { tmpDir.toString() });
+        conf.setProperty(DbLedgerStorage.FLUSH_WORKER_THREADS, 3);
+        BookieImpl bookie = new TestBookieImpl(conf);
+
+        ledgerDirsManager = bookie.getLedgerDirsManager();
+        storage = (DbLedgerStorage) bookie.getLedgerStorage();
+
+        storage.getLedgerStorageList().forEach(singleDirectoryDbLedgerStorage -> {
+            assertTrue(singleDirectoryDbLedgerStorage.getEntryLogger() instanceof DefaultEntryLogger);
+        });
+    }
+
+    @Test
+    public void testFlushManyEntries() throws Exception {
+        int numLedgers = 10;
+        int entriesPerLedger = 3 * LocationsIndexPipeline.CHUNK_SIZE;
+        for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+            storage.setMasterKey(ledgerId, "key".getBytes());
+        }
+
+        for (long entryId = 0; entryId < entriesPerLedger; entryId++) {
+            for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                ByteBuf entry = Unpooled.buffer(64);
+                entry.writeLong(ledgerId);
+                entry.writeLong(entryId);
+                entry.writeBytes(("entry-" + entryId).getBytes());
+                storage.addEntry(entry);
+            }
+        }
+        storage.flush();
+
+        for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+            EntryLocationIndex locationIndex = storage.getLedgerStorageList().get(0).getEntryLocationIndex();
+            for (long entryId = 0; entryId < entriesPerLedger; entryId++) {
+                assertTrue(locationIndex.getLocation(ledgerId, entryId) != 0);
+
+                ByteBuf entry = storage.getEntry(ledgerId, entryId);
+                assertEquals(ledgerId, entry.getLong(0));
+                assertEquals(entryId, entry.getLong(8));
+                entry.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link EntryLocationCache}.
+ */
+public class EntryLocationCacheTest {
+
+    @Test
+    public void simple() {
+        EntryLocationCache cache = new EntryLocationCache(100);
+
+        assertEquals(0, cache.get(1, 0));
+        cache.put(1, 0, 10);
+        cache.put(1, 1, 11);
+        cache.put(2, 0, 20);
+        assertEquals(10, cache.get(1, 0));
+        assertEquals(11, cache.get(1, 1));
+        assertEquals(20, cache.get(2, 0));
+        assertEquals(0, cache.get(2, 1));
+        assertEquals(3, cache.count());
+
+        // Only the entries already in the cache are updated
+        cache.update(1, 1, 111);
+        cache.update(3, 0, 30);
+        assertEquals(111, cache.get(1, 1));
+        assertEquals(0, cache.get(3, 0));
+        assertEquals(3, cache.count());
+
+        cache.removeLedgers(ledgerId -> ledgerId == 1);
+        assertEquals(0, cache.get(1, 0));
+        assertEquals(0, cache.get(1, 1));
+        assertEquals(20, cache.get(2, 0));
+        assertEquals(1, cache.count());
+    }
+
+    @Test
+    public void testEviction() {
+        EntryLocationCache cache = new EntryLocationCache(10);
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(1, i, i + 1);
+        }
+
+        // First segment is full, all the entries are still there
+        assertEquals(5, cache.count());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1, cache.get(1, i));
+        }
+
+        for (int i = 5; i < 10; i++) {
+            cache.put(1, i, i + 1);
+        }
+        assertEquals(10, cache.count());
+
+        // Adding more entries evicts the oldest segment
+        cache.put(1, 10, 11);
+        assertEquals(6, cache.count());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, cache.get(1, i));
+        }
+        for (int i = 5; i < 11; i++) {
+            assertEquals(i + 1, cache.get(1, i));
+        }
+    }
+}
@@ -20,11 +20,14 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.IOException;
+import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.test.TestStatsProvider;
@@ -79,6 +82,36 @@ public class EntryLocationIndexTest {
         idx.close();
     }
 
+    @Test
+    public void getLocationsTest() throws Exception {
+        File tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        tmpDir.deleteOnExit();
+
+        EntryLocationIndex idx = new EntryLocationIndex(serverConfiguration, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+
+        idx.addLocation(1, 0, 10);
+        idx.addLocation(1, 1, 11);
+        idx.addLocation(1, 3, 13);
+        idx.addLocation(1, 4, 14);
+        idx.addLocation(2, 2, 22);
+        idx.addLocation(0, 2, 2);
+
+        assertArrayEquals(new long[] { 10, 11, 0, 13, 14 }, idx.getLocations(1, 0, 4));
+        assertArrayEquals(new long[] { 11, 0, 13 }, idx.getLocations(1, 1, 3));
+        assertArrayEquals(new long[] { 14, 0, 0 }, idx.getLocations(1, 4, 6));
+        assertArrayEquals(new long[] { 13 }, idx.getLocations(1, 3, 3));
+        assertArrayEquals(new long[] { 0, 0, 0 }, idx.getLocations(3, 0, 2));
+
+        for (long entryId = 0; entryId < 5; entryId++) {
+            assertEquals(idx.getLocation(1, entryId), idx.getLocations(1, 0, 4)[(int) entryId]);
+        }
+
+        idx.close();
+    }
+
     @Test
     public void deleteBatchLedgersTest() throws Exception {
         File tmpDir = File.createTempFile("bkTest", ".dir");
@@ -232,4 +265,131 @@ public class EntryLocationIndexTest {
         assertEquals(1, lookupEntryLocationOpStats.getFailureCount());
         assertEquals(1, lookupEntryLocationOpStats.getSuccessCount());
     }
+
+    @Test
+    public void testLocationCache() throws Exception {
+        File tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        tmpDir.deleteOnExit();
+
+        TestStatsProvider statsProvider = new TestStatsProvider();
+        EntryLocationIndex idx = new EntryLocationIndex(serverConfiguration, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), statsProvider.getStatsLogger("scope"), 100);
+
+        KeyValueStorage.Batch batch = idx.newBatch();
+        idx.addLocation(batch, 1, 0, 10);
+        idx.cacheLocation(1, 0, 10);
+        idx.addLocation(batch, 1, 1, 11);
+        idx.cacheLocation(1, 1, 11);
+        batch.flush();
+        batch.close();
+
+        // Only in the index
+        idx.addLocation(2, 0, 20);
+
+        assertEquals(10, idx.getLocation(1, 0));
+        assertEquals(11, idx.getLocation(1, 1));
+        assertEquals(20, idx.getLocation(2, 0));
+        assertEquals(0, idx.getLocation(3, 0));
+
+        assertEquals(2, statsProvider.getCounter("scope.location-cache-hits").get().longValue());
+        assertEquals(2, statsProvider.getCounter("scope.location-cache-misses").get().longValue());
+        assertEquals(2L, statsProvider.getGauge("scope.location-cache-count").getSample());
+
+        // Relocated entries are updated in the cache
+        idx.updateLocations(Lists.newArrayList(new EntryLocation(1, 1, 111), new EntryLocation(2, 0, 222)));
+        assertEquals(111, idx.getLocation(1, 1));
+        assertEquals(222, idx.getLocation(2, 0));
+        assertEquals(2L, statsProvider.getGauge("scope.location-cache-count").getSample());
+
+        // Deleted ledgers are removed from the cache
+        idx.delete(1);
+        idx.removeOffsetFromDeletedLedgers();
+        assertEquals(0, idx.getLocation(1, 0));
+        assertEquals(0, idx.getLocation(1, 1));
+        assertEquals(0L, statsProvider.getGauge("scope.location-cache-count").getSample());
+
+        idx.close();
+    }
+
+    private static long location(long entryLogId, long offset) {
+        return (entryLogId << 32L) | offset;
+    }
+
+    @Test
+    public void testRelocateLocations() throws Exception {
+        File tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        tmpDir.deleteOnExit();
+
+        TestStatsProvider statsProvider = new TestStatsProvider();
+        EntryLocationIndex idx = new EntryLocationIndex(serverConfiguration, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), statsProvider.getStatsLogger("scope"), 100, true);
+
+        idx.addLocation(1, 0, location(1, 1028));
+        idx.addLocation(1, 1, location(1, 1128));
+        idx.addLocation(1, 2, location(1, 1228));
+        idx.addLocation(2, 0, location(2, 1028));
+        // a newer copy of the entry, in another entry log
+        idx.addLocation(2, 1, location(2, 1128));
+        idx.addLocation(2, 2, location(1, 1428));
+
+        // entry log 1 is compacted into entry log 3
+        idx.relocateLocations(Lists.newArrayList(
+                new EntryLocation(1, 0, location(3, 2028), location(1, 1028)),
+                new EntryLocation(1, 1, location(3, 2128), location(1, 1128)),
+                new EntryLocation(1, 2, location(3, 2328), location(1, 1228)),
+                new EntryLocation(2, 1, location(3, 2428), location(1, 1328)),
+                new EntryLocation(2, 2, location(3, 2528), location(1, 1428))));
+        assertEquals(1L, statsProvider.getGauge("scope.relocated-entry-logs").getSample());
+
+        assertEquals(location(3, 2028), idx.getLocation(1, 0));
+        assertEquals(location(3, 2128), idx.getLocation(1, 1));
+        assertEquals(location(3, 2328), idx.getLocation(1, 2));
+        assertEquals(location(2, 1028), idx.getLocation(2, 0));
+        assertEquals(location(2, 1128), idx.getLocation(2, 1));
+        assertEquals(location(3, 2528), idx.getLocation(2, 2));
+
+        // entry log 3 is compacted into entry log 4 before the relocations are folded
+        idx.relocateLocations(Lists.newArrayList(
+                new EntryLocation(1, 0, location(4, 1028), location(3, 2028)),
+                new EntryLocation(1, 2, location(4, 1128), location(3, 2328))));
+        assertEquals(location(4, 1028), idx.getLocation(1, 0));
+        assertEquals(location(3, 2128), idx.getLocation(1, 1));
+        assertEquals(location(4, 1128), idx.getLocation(1, 2));
+        assertArrayEquals(new long[] { location(4, 1028), location(3, 2128), location(4, 1128), 0 },
+                idx.getLocations(1, 0, 3));
+
+        // not enough relocated entry logs
+        assertEquals(0, idx.foldRelocations(3));
+        idx.close();
+
+        // the relocations are loaded when reopening the index
+        idx = new EntryLocationIndex(serverConfiguration, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), statsProvider.getStatsLogger("scope"), 0, false);
+        assertEquals(2L, statsProvider.getGauge("scope.relocated-entry-logs").getSample());
+        assertEquals(location(4, 1028), idx.getLocation(1, 0));
+        assertEquals(location(3, 2128), idx.getLocation(1, 1));
+
+        // the locations of the deleted ledgers are not rewritten
+        idx.delete(2);
+        assertEquals(3, idx.foldRelocations(1));
+        assertEquals(0L, statsProvider.getGauge("scope.relocated-entry-logs").getSample());
+        assertArrayEquals(new long[] { location(4, 1028), location(3, 2128), location(4, 1128) },
+                idx.getLocations(1, 0, 2));
+        idx.removeOffsetFromDeletedLedgers();
+        idx.close();
+
+        // the folded locations are in the index
+        idx = new EntryLocationIndex(serverConfiguration, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+        assertEquals(location(4, 1028), idx.getLocation(1, 0));
+        assertEquals(location(3, 2128), idx.getLocation(1, 1));
+        assertEquals(location(4, 1128), idx.getLocation(1, 2));
+        assertEquals(0, idx.getLocation(2, 0));
+        assertEquals(0, idx.getLocation(2, 2));
+        idx.close();
+    }
 }
@@ -142,6 +142,19 @@ public class KeyValueStorageTest {
 
         assertEquals(Lists.newArrayList(3L), foundKeys);
 
+        // Scan entries with limits
+        List<Long> foundValues = Lists.newArrayList();
+        try (CloseableIterator<Entry<byte[], byte[]>> iter = db.iterator(toArray(3), toArray(6))) {
+            while (iter.hasNext()) {
+                Entry<byte[], byte[]> entry = iter.next();
+                foundKeys.add(fromArray(entry.getKey()));
+                foundValues.add(fromArray(entry.getValue()));
+            }
+        }
+
+        assertEquals(Lists.newArrayList(3L, 3L, 5L), foundKeys);
+        assertEquals(Lists.newArrayList(3L, 5L), foundValues);
+
         // Test deletion
         db.put(toArray(10), toArray(10));
         db.put(toArray(11), toArray(11));
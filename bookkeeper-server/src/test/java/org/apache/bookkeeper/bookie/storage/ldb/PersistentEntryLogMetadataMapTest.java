@@ -20,16 +20,21 @@
  */
 package org.apache.bookkeeper.bookie.storage.ldb;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.Lists;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.EntryLogMetadata;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -146,6 +151,53 @@ public class PersistentEntryLogMetadataMapTest {
         entryMetadataMap.close();
     }
 
+    /**
+     * Validates the entry logs of ledgers are found from the ledgers index.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void entryLogsOfLedgers() throws Exception {
+        File tmpDir = tempFolder.newFolder();
+        String path = tmpDir.getAbsolutePath();
+        PersistentEntryLogMetadataMap entryMetadataMap = new PersistentEntryLogMetadataMap(path, configuration);
+
+        // entry log i holds the ledgers 0 to i - 1
+        for (int i = 1; i <= 10; i++) {
+            entryMetadataMap.put(i, createEntryLogMetadata(i, i));
+        }
+        ConcurrentLongHashSet ledgerIds = ConcurrentLongHashSet.newBuilder().build();
+        ledgerIds.add(7L);
+        ledgerIds.add(8L);
+        assertThat(entryLogsOfLedgers(entryMetadataMap, ledgerIds), contains(8L, 9L, 10L));
+
+        // the ledgers removed from an entry log, and the removed entry logs, are removed from the index
+        entryMetadataMap.forKey(9L, (entryLogId, metadata) -> {
+            metadata.removeLedgerIf(ledgerId -> ledgerId >= 7L);
+            try {
+                entryMetadataMap.put(entryLogId, metadata);
+            } catch (BookieException.EntryLogMetadataMapException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        entryMetadataMap.remove(10L);
+        assertThat(entryLogsOfLedgers(entryMetadataMap, ledgerIds), contains(8L));
+
+        // the index of a metadata-map written before it is built when opening the map
+        entryMetadataMap.close();
+        FileUtils.deleteDirectory(new File(tmpDir, PersistentEntryLogMetadataMap.LEDGER_INDEX));
+        try (PersistentEntryLogMetadataMap reopened = new PersistentEntryLogMetadataMap(path, configuration)) {
+            assertThat(entryLogsOfLedgers(reopened, ledgerIds), contains(8L));
+        }
+    }
+
+    private static List<Long> entryLogsOfLedgers(PersistentEntryLogMetadataMap entryMetadataMap,
+                                                 ConcurrentLongHashSet ledgerIds) throws Exception {
+        List<Long> entryLogIds = new ArrayList<>();
+        entryMetadataMap.forEachEntryLogOfLedgers(ledgerIds, (entryLogId, metadata) -> entryLogIds.add(entryLogId));
+        return entryLogIds;
+    }
+
     private EntryLogMetadata createEntryLogMetadata(long logId, long totalLedgers) {
         EntryLogMetadata metadata = new EntryLogMetadata(logId);
         for (int i = 0; i < totalLedgers; i++) {
@@ -0,0 +1,140 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.ReadAheadController.AccessPattern;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ReadAheadController}.
+ */
+public class ReadAheadControllerTest {
+
+    @Test
+    public void testSequentialReadsGrowWindow() {
+        ReadAheadController controller = new ReadAheadController(10, 50, 1, TimeUnit.MINUTES);
+
+        // Unknown ledger gets the initial batch size
+        assertEquals(10, controller.getReadAheadBatchSize(1, 0));
+
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 0));
+        assertEquals(10, controller.getReadAheadBatchSize(1, 0));
+
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 1));
+        assertEquals(20, controller.getReadAheadBatchSize(1, 1));
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 2));
+        assertEquals(40, controller.getReadAheadBatchSize(1, 2));
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 3));
+        assertEquals(50, controller.getReadAheadBatchSize(1, 3));
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 4));
+        assertEquals(50, controller.getReadAheadBatchSize(1, 4));
+    }
+
+    @Test
+    public void testRandomReadsSkipReadAhead() {
+        ReadAheadController controller = new ReadAheadController(10, 80, 1, TimeUnit.MINUTES);
+
+        controller.recordAccess(1, 0);
+        controller.recordAccess(1, 1);
+        controller.getReadAheadBatchSize(1, 1);
+        controller.getReadAheadBatchSize(1, 1);
+        controller.getReadAheadBatchSize(1, 1);
+
+        // A read far from the cursor starts another one
+        assertEquals(AccessPattern.RANDOM, controller.recordAccess(1, 1000));
+        assertEquals(0, controller.getReadAheadBatchSize(1, 1000));
+        assertEquals(AccessPattern.RANDOM, controller.recordAccess(1, 17));
+        assertEquals(0, controller.getReadAheadBatchSize(1, 17));
+
+        // Window was shrunk while reading randomly
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 18));
+        assertEquals(40, controller.getReadAheadBatchSize(1, 18));
+
+        // Other ledgers are not affected
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(2, 500));
+        assertEquals(10, controller.getReadAheadBatchSize(2, 500));
+    }
+
+    @Test
+    public void testStridedReads() {
+        ReadAheadController controller = new ReadAheadController(10, 100, 1, TimeUnit.MINUTES);
+
+        controller.recordAccess(1, 0);
+        assertEquals(AccessPattern.RANDOM, controller.recordAccess(1, 4));
+        assertEquals(AccessPattern.STRIDED, controller.recordAccess(1, 8));
+        assertEquals(AccessPattern.STRIDED, controller.recordAccess(1, 12));
+        assertEquals(40, controller.getReadAheadBatchSize(1, 12));
+
+        // Strides that are too big are considered random
+        controller.recordAccess(2, 0);
+        controller.recordAccess(2, ReadAheadController.MAX_STRIDE + 1);
+        assertEquals(AccessPattern.RANDOM, controller.recordAccess(2, 2 * (ReadAheadController.MAX_STRIDE + 1)));
+        assertEquals(0, controller.getReadAheadBatchSize(2, 2 * (ReadAheadController.MAX_STRIDE + 1)));
+    }
+
+    @Test
+    public void testConcurrentSequentialReaders() {
+        ReadAheadController controller = new ReadAheadController(10, 100, 1, TimeUnit.MINUTES);
+
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 0));
+        assertEquals(10, controller.getReadAheadBatchSize(1, 0));
+        // The first read of the second reader cannot be told apart from a random read
+        assertEquals(AccessPattern.RANDOM, controller.recordAccess(1, 5000));
+        assertEquals(0, controller.getReadAheadBatchSize(1, 5000));
+
+        // The interleaved reads of both readers are sequential
+        for (long entryId = 1; entryId < 4; entryId++) {
+            assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, entryId));
+            assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 5000 + entryId));
+        }
+        assertEquals(20, controller.getReadAheadBatchSize(1, 3));
+        assertEquals(10, controller.getReadAheadBatchSize(1, 5003));
+        assertEquals(40, controller.getReadAheadBatchSize(1, 3));
+        assertEquals(20, controller.getReadAheadBatchSize(1, 5003));
+
+        // Random reads replace the least recently used cursor, the one of the first reader
+        for (int i = 1; i < ReadAheadController.MAX_CURSORS; i++) {
+            assertEquals(AccessPattern.RANDOM, controller.recordAccess(1, 10000 * (i + 1)));
+        }
+        assertEquals(AccessPattern.SEQUENTIAL, controller.recordAccess(1, 5004));
+        assertEquals(40, controller.getReadAheadBatchSize(1, 5004));
+        assertEquals(AccessPattern.RANDOM, controller.recordAccess(1, 4));
+    }
+
+    @Test
+    public void testRemoveLedgers() {
+        ReadAheadController controller = new ReadAheadController(10, 100, 0, TimeUnit.MILLISECONDS);
+
+        controller.recordAccess(1, 0);
+        controller.recordAccess(2, 0);
+        controller.recordAccess(3, 0);
+        assertEquals(3, controller.getTrackedLedgersCount());
+
+        controller.removeLedger(1);
+        assertEquals(2, controller.getTrackedLedgersCount());
+
+        controller.removeIdleLedgers();
+        assertEquals(0, controller.getTrackedLedgersCount());
+    }
+}
@@ -138,4 +138,99 @@ public class ReadCacheTest {
         assertFalse(cache.hasEntry(ledgerId, 10));
     }
 
+    @Test
+    public void testPromoteHotEntries() {
+        // 5 segments of 2Kb each, holding 4 entries each
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024, 2 * 1024, true);
+
+        for (int i = 0; i < 20; i++) {
+            ByteBuf entry = Unpooled.wrappedBuffer(new byte[512]);
+            entry.setInt(0, i);
+            cache.put(1, i, entry);
+        }
+
+        assertEquals(20, cache.count());
+
+        // Read some of the entries in the oldest segment
+        cache.get(1, 1).release();
+        cache.get(1, 3).release();
+
+        // Trigger the rollover of the oldest segment
+        cache.put(2, 0, Unpooled.wrappedBuffer(new byte[512]));
+
+        assertEquals(2, cache.promotedCount());
+        assertFalse(cache.hasEntry(1, 0));
+        assertFalse(cache.hasEntry(1, 2));
+        assertTrue(cache.hasEntry(2, 0));
+
+        ByteBuf res = cache.get(1, 1);
+        assertEquals(512, res.readableBytes());
+        assertEquals(1, res.getInt(0));
+        res.release();
+
+        res = cache.get(1, 3);
+        assertEquals(512, res.readableBytes());
+        assertEquals(3, res.getInt(0));
+        res.release();
+
+        // Entries that are not read again are discarded on the next rotation
+        for (int i = 1; i < 20; i++) {
+            cache.put(2, i, Unpooled.wrappedBuffer(new byte[512]));
+        }
+
+        assertEquals(4, cache.promotedCount());
+        for (int i = 1; i < 20; i++) {
+            cache.put(3, i, Unpooled.wrappedBuffer(new byte[512]));
+        }
+
+        assertEquals(4, cache.promotedCount());
+        assertFalse(cache.hasEntry(1, 1));
+        assertFalse(cache.hasEntry(1, 3));
+
+        cache.close();
+    }
+
+    @Test
+    public void testPromotionLeavesRoomForLargeEntry() {
+        // 5 segments of 2Kb each, holding 2 entries of 1000 bytes each, aligned to 1024 bytes
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024, 2 * 1024, true);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(1, i, Unpooled.wrappedBuffer(new byte[1000]));
+        }
+        cache.get(1, 0).release();
+
+        // Rolling over to the oldest segment with an entry just over half a segment leaves room for 1023 bytes of
+        // promoted entries, less than the aligned size of the hot entry
+        ByteBuf largeEntry = Unpooled.wrappedBuffer(new byte[1025]);
+        largeEntry.setInt(1021, 42);
+        cache.put(2, 0, largeEntry);
+
+        assertEquals(0, cache.promotedCount());
+        assertFalse(cache.hasEntry(1, 0));
+
+        ByteBuf res = cache.get(2, 0);
+        assertEquals(1025, res.readableBytes());
+        assertEquals(42, res.getInt(1021));
+        res.release();
+
+        cache.close();
+    }
+
+    @Test
+    public void testNoPromotionByDefault() {
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024, 2 * 1024);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put(1, i, Unpooled.wrappedBuffer(new byte[512]));
+        }
+
+        cache.get(1, 1).release();
+        cache.put(2, 0, Unpooled.wrappedBuffer(new byte[512]));
+
+        assertEquals(0, cache.promotedCount());
+        assertFalse(cache.hasEntry(1, 1));
+
+        cache.close();
+    }
 }
@@ -33,6 +33,8 @@ import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
@@ -221,6 +223,48 @@ public class WriteCacheTest {
         executor.shutdown();
     }
 
+    @Test
+    public void testParallelSort() throws Exception {
+        WriteCache cache = new WriteCache(allocator, 1024 * 1024, 16 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        int numLedgers = 50;
+        int entriesPerLedger = 20;
+        for (int entryId = entriesPerLedger - 1; entryId >= 0; entryId--) {
+            for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                ByteBuf entry = Unpooled.buffer(16);
+                entry.writeLong(ledgerId);
+                entry.writeLong(entryId);
+                assertTrue(cache.put(ledgerId, entryId, entry));
+            }
+        }
+        cache.deleteLedger(7);
+
+        // Each ledger is seen once, with all its entries in order
+        Set<Long> seenLedgers = new HashSet<>();
+        AtomicLong currentLedgerId = new AtomicLong(-1);
+        AtomicLong nextEntryId = new AtomicLong(0);
+        AtomicInteger count = new AtomicInteger();
+        cache.forEach((ledgerId, entryId, entry) -> {
+            if (ledgerId != currentLedgerId.get()) {
+                assertTrue(seenLedgers.add(ledgerId));
+                currentLedgerId.set(ledgerId);
+                nextEntryId.set(0);
+            }
+            assertEquals(nextEntryId.getAndIncrement(), entryId);
+            assertEquals(ledgerId, entry.getLong(entry.readerIndex()));
+            assertEquals(entryId, entry.getLong(entry.readerIndex() + 8));
+            count.incrementAndGet();
+        }, executor, 4);
+
+        assertEquals(numLedgers - 1, seenLedgers.size());
+        assertFalse(seenLedgers.contains(7L));
+        assertEquals((numLedgers - 1) * entriesPerLedger, count.get());
+
+        cache.close();
+        executor.shutdown();
+    }
+
     @Test
     public void testLedgerDeletion() throws IOException {
         WriteCache cache = new WriteCache(allocator, 1024 * 1024, 16 * 1024);
@@ -323,4 +367,108 @@ public class WriteCacheTest {
             }));
         }
     }
+
+    @Test
+    public void testAppendRegionsMultipleWriters() throws Exception {
+        // Each writer thread reserves 4Kb regions in a cache made of 16Kb segments
+        WriteCache cache = new WriteCache(allocator, 10 * 1024 * 1024, 16 * 1024, 4 * 1024);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        int numThreads = 10;
+        int entriesPerThread = 1000;
+
+        CyclicBarrier barrier = new CyclicBarrier(numThreads);
+        CountDownLatch latch = new CountDownLatch(numThreads);
+
+        for (int i = 0; i < numThreads; i++) {
+            int ledgerId = i;
+
+            executor.submit(() -> {
+                try {
+                    barrier.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ie);
+                } catch (BrokenBarrierException e) {
+                    throw new RuntimeException(e);
+                }
+
+                for (int entryId = 0; entryId < entriesPerThread; entryId++) {
+                    ByteBuf entry = Unpooled.buffer(1000);
+                    entry.writeLong(ledgerId);
+                    entry.writeLong(entryId);
+                    entry.writerIndex(entry.capacity());
+                    assertTrue(cache.put(ledgerId, entryId, entry));
+                }
+
+                latch.countDown();
+            });
+        }
+
+        latch.await();
+
+        assertEquals(numThreads * entriesPerThread, cache.count());
+        assertEquals(numThreads * entriesPerThread * 1000, cache.size());
+
+        ByteBuf e = cache.get(3, 42);
+        assertEquals(3, e.getLong(0));
+        assertEquals(42, e.getLong(8));
+        e.release();
+
+        // Verify that the sharded index is merged in order when iterating over the write cache
+        AtomicLong currentLedgerId = new AtomicLong(0);
+        AtomicLong currentEntryId = new AtomicLong(0);
+
+        cache.forEach((ledgerId, entryId, entry) -> {
+            assertEquals(currentLedgerId.get(), ledgerId);
+            assertEquals(currentEntryId.get(), entryId);
+            assertEquals(ledgerId, entry.getLong(entry.readerIndex()));
+            assertEquals(entryId, entry.getLong(entry.readerIndex() + 8));
+
+            if (currentEntryId.incrementAndGet() == entriesPerThread) {
+                currentLedgerId.incrementAndGet();
+                currentEntryId.set(0);
+            }
+        });
+
+        assertEquals(numThreads, currentLedgerId.get());
+
+        cache.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testAppendRegionsCacheFullAndClear() throws Exception {
+        WriteCache cache = new WriteCache(allocator, 64 * 1024, 16 * 1024, 4 * 1024);
+
+        ByteBuf entry = allocator.buffer(1024);
+        entry.writerIndex(entry.capacity());
+
+        // Region fits exactly 4 entries, so the whole cache can be filled from a single thread
+        for (int i = 0; i < 64; i++) {
+            assertTrue(cache.put(1, i, entry));
+        }
+        assertFalse(cache.put(1, 64, entry));
+        assertEquals(64, cache.count());
+
+        // Entries bigger than a region go through the shared offset
+        cache.clear();
+        assertTrue(cache.isEmpty());
+
+        ByteBuf bigEntry = allocator.buffer(8 * 1024);
+        bigEntry.writerIndex(bigEntry.capacity());
+        assertTrue(cache.put(2, 0, bigEntry));
+
+        // After clear, the region held by this thread must not be reused
+        assertTrue(cache.put(2, 1, entry));
+        assertEquals(bigEntry, cache.get(2, 0));
+        assertEquals(entry, cache.get(2, 1));
+        assertEquals(entry, cache.getLastEntry(2));
+        assertEquals(2, cache.count());
+
+        ReferenceCountUtil.release(entry);
+        ReferenceCountUtil.release(bigEntry);
+        cache.close();
+    }
 }
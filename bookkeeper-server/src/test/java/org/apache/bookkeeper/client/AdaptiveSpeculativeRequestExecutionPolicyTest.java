@@ -0,0 +1,110 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.Futures;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.client.AdaptiveSpeculativeRequestExecutionPolicy.LatencyHistogram;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.awaitility.Awaitility;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AdaptiveSpeculativeRequestExecutionPolicy}.
+ */
+public class AdaptiveSpeculativeRequestExecutionPolicyTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        int previousBucket = -1;
+        for (long micros = 0; micros < 1_000_000; micros++) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(bucket == previousBucket || bucket == previousBucket + 1);
+            assertTrue("latency " + micros + " above bucket " + bucket,
+                    micros < LatencyHistogram.upperBound(bucket));
+            previousBucket = bucket;
+        }
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testTimeoutFollowsPercentile() {
+        AdaptiveSpeculativeRequestExecutionPolicy policy =
+                new AdaptiveSpeculativeRequestExecutionPolicy(500, 2000, 2.0f, 95, 0.1);
+        assertEquals(500, policy.getSpeculativeRequestTimeout());
+
+        // 95% of the reads take 2ms, the others 300ms
+        for (int i = 0; i < 1000; i++) {
+            long latencyMillis = i % 20 == 0 ? 300 : 2;
+            policy.recordRequestLatency(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        }
+        policy.refreshSpeculativeRequestTimeout(
+                MathUtils.nowInNano() + AdaptiveSpeculativeRequestExecutionPolicy.TIMEOUT_REFRESH_NANOS);
+        int timeout = policy.getSpeculativeRequestTimeout();
+        assertTrue("timeout " + timeout, timeout >= 2 && timeout <= 4);
+
+        // The reads slow down beyond the max timeout
+        for (int i = 0; i < 100_000; i++) {
+            policy.recordRequestLatency(TimeUnit.SECONDS.toNanos(10));
+        }
+        policy.refreshSpeculativeRequestTimeout(
+                MathUtils.nowInNano() + 2 * AdaptiveSpeculativeRequestExecutionPolicy.TIMEOUT_REFRESH_NANOS);
+        assertEquals(2000, policy.getSpeculativeRequestTimeout());
+    }
+
+    @Test
+    public void testSpeculativeRequestsBudget() throws Exception {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        try {
+            AdaptiveSpeculativeRequestExecutionPolicy policy =
+                    new AdaptiveSpeculativeRequestExecutionPolicy(1, 1, 1.0f, 95, 0.01);
+            int numRequests = 1000;
+            AtomicInteger speculativeRequests = new AtomicInteger();
+            CountDownLatch initiated = new CountDownLatch(numRequests);
+            for (int i = 0; i < numRequests; i++) {
+                policy.initiateSpeculativeRequest(scheduler, () -> {
+                    speculativeRequests.incrementAndGet();
+                    initiated.countDown();
+                    // the request is still pending
+                    return Futures.immediateFuture(true);
+                });
+            }
+            // Only the initial budget and 1% of the requests are issued
+            Thread.sleep(500);
+            assertTrue("speculative requests " + speculativeRequests.get(),
+                    speculativeRequests.get() <= 100 + numRequests / 100);
+
+            // The requests over the budget stop issuing speculative requests, rather than waiting for more budget
+            Awaitility.await().untilAsserted(() -> assertEquals(0, scheduler.getQueue().size()));
+            int issued = speculativeRequests.get();
+            Thread.sleep(100);
+            assertEquals(issued, speculativeRequests.get());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.bookie.TestBookieImpl;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.test.BookKeeperClusterTestCase;
+import org.junit.Test;
+
+/**
+ * Tests the batching of the add requests sent to the bookies.
+ */
+public class AddEntryBatchingTest extends BookKeeperClusterTestCase {
+
+    private static final byte[] PASSWD = "add-batching".getBytes();
+
+    public AddEntryBatchingTest() {
+        super(3);
+        baseClientConf.setUseV2WireProtocol(true);
+        baseClientConf.setAddEntryBatchMaxDelayMicros(1000);
+        baseClientConf.setAddEntryBatchMaxSizeBytes(16 * 1024);
+    }
+
+    @Override
+    protected ServerTester startBookie(ServerConfiguration conf) throws Exception {
+        // the bookies advertise the batch add requests in their service info
+        return startBookie(conf, new TestBookieImpl(conf));
+    }
+
+    @Test
+    public void testBatchedAdds() throws Exception {
+        int numEntries = 500;
+        LedgerHandle lh1 = bkc.createLedger(3, 3, 2, DigestType.CRC32C, PASSWD);
+        LedgerHandle lh2 = bkc.createLedger(3, 2, 2, DigestType.CRC32C, PASSWD);
+
+        // Interleave the adds of 2 ledgers, with entries small enough to be batched and entries filling a batch
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        List<byte[]> entries = new ArrayList<>();
+        for (int i = 0; i < numEntries; i++) {
+            byte[] entry = new byte[i % 10 == 0 ? 20 * 1024 : 100];
+            entry[0] = (byte) i;
+            entries.add(entry);
+            futures.add(lh1.appendAsync(entry));
+            futures.add(lh2.appendAsync(entry));
+        }
+        FutureUtils.result(FutureUtils.collect(futures));
+        assertEquals(numEntries - 1, lh1.getLastAddConfirmed());
+        assertEquals(numEntries - 1, lh2.getLastAddConfirmed());
+        lh1.close();
+        lh2.close();
+
+        for (LedgerHandle lh : new LedgerHandle[] { lh1, lh2 }) {
+            try (LedgerHandle readLh = bkc.openLedger(lh.getId(), DigestType.CRC32C, PASSWD)) {
+                Enumeration<LedgerEntry> readEntries = readLh.readEntries(0, numEntries - 1);
+                for (int i = 0; i < numEntries; i++) {
+                    LedgerEntry entry = readEntries.nextElement();
+                    assertEquals(i, entry.getEntryId());
+                    assertArrayEquals(entries.get(i), entry.getEntry());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LatencyAwareReadReplicaSelector}.
+ */
+public class LatencyAwareReadReplicaSelectorTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final List<BookieId> ensemble = new ArrayList<>();
+    private final Map<BookieId, Long> latencies = new HashMap<>();
+    private final Map<BookieId, Long> pendingRequests = new HashMap<>();
+    private final Map<BookieId, Long> failures = new HashMap<>();
+
+    private final BookiesHealthInfo healthInfo = new BookiesHealthInfo() {
+        @Override
+        public long getBookieFailureHistory(BookieId bookie) {
+            return failures.getOrDefault(bookie, -1L);
+        }
+
+        @Override
+        public long getBookiePendingRequests(BookieId bookie) {
+            return pendingRequests.getOrDefault(bookie, 0L);
+        }
+
+        @Override
+        public long getBookieReadLatencyNanos(BookieId bookie) {
+            return latencies.getOrDefault(bookie, -1L);
+        }
+    };
+
+    public LatencyAwareReadReplicaSelectorTest() {
+        for (int i = 0; i < 3; i++) {
+            ensemble.add(BookieId.parse("bookie-" + i + ":3181"));
+        }
+    }
+
+    private int selectFirstReplica() {
+        DistributionSchedule schedule = new RoundRobinDistributionSchedule(3, 2, 3);
+        DistributionSchedule.WriteSet writeSet = schedule.getWriteSet(0);
+        LatencyAwareReadReplicaSelector.selectFirstReplica(ensemble, healthInfo, writeSet);
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = 0; i < writeSet.size(); i++) {
+            indexes.add(writeSet.get(i));
+        }
+        assertEquals("the read sequence must keep all the replicas", 3, indexes.size());
+        int first = writeSet.get(0);
+        writeSet.recycle();
+        return first;
+    }
+
+    @Test
+    public void testSlowBookieIsNotSelected() {
+        latencies.put(ensemble.get(0), 2 * MS);
+        latencies.put(ensemble.get(1), 200 * MS);
+        latencies.put(ensemble.get(2), 3 * MS);
+
+        Set<Integer> selected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int first = selectFirstReplica();
+            assertNotEquals(1, first);
+            selected.add(first);
+        }
+        // The load is still spread over the fast bookies
+        assertEquals(2, selected.size());
+    }
+
+    @Test
+    public void testPendingRequestsWeighTheLatency() {
+        latencies.put(ensemble.get(0), 2 * MS);
+        latencies.put(ensemble.get(1), 2 * MS);
+        latencies.put(ensemble.get(2), 2 * MS);
+        pendingRequests.put(ensemble.get(0), 100L);
+        pendingRequests.put(ensemble.get(2), 100L);
+
+        int selectedIdle = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (selectFirstReplica() == 1) {
+                selectedIdle++;
+            }
+        }
+        // The idle bookie wins whenever it is drawn, that is in 2 draws out of 3
+        assertTrue("idle bookie selected " + selectedIdle + " times", selectedIdle > 500);
+    }
+
+    @Test
+    public void testUnhealthyBookiesAreNotSelected() {
+        failures.put(ensemble.get(0), 10L);
+        pendingRequests.put(ensemble.get(1), 1L | BookieClient.PENDINGREQ_NOTWRITABLE_MASK);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(2, selectFirstReplica());
+        }
+
+        // With no healthy bookie, the read sequence is left as it is
+        failures.put(ensemble.get(2), 10L);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, selectFirstReplica());
+        }
+    }
+}
@@ -18,8 +18,15 @@
 package org.apache.bookkeeper.client;
 
 import com.google.common.collect.Lists;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -68,6 +75,93 @@ public class LedgerClose2Test {
         }
     }
 
+    @Test(timeout = 60000)
+    public void testConcurrentAddsWhileClosing() throws Exception {
+        MockClientContext clientCtx = MockClientContext.create();
+        Versioned<LedgerMetadata> md = ClientUtil.setupLedger(clientCtx, 10L,
+                LedgerMetadataBuilder.create().newEnsembleEntry(0L, Lists.newArrayList(b1, b2, b3)));
+        LedgerHandle lh = new LedgerHandle(clientCtx, 10L, md, BookKeeper.DigestType.CRC32C,
+                                           ClientUtil.PASSWD, WriteFlag.NONE);
+
+        int numThreads = 8;
+        int addsPerThread = 500;
+        byte[] entry = "entry".getBytes();
+        Set<Long> addedEntries = ConcurrentHashMap.newKeySet();
+        AtomicInteger failedAdds = new AtomicInteger();
+        CountDownLatch addsCompleted = new CountDownLatch(numThreads * addsPerThread);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int i = 0; i < numThreads; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < addsPerThread; j++) {
+                        lh.asyncAddEntry(entry, (rc, handle, entryId, ctx) -> {
+                            if (rc == BKException.Code.OK) {
+                                addedEntries.add(entryId);
+                            } else {
+                                failedAdds.incrementAndGet();
+                            }
+                            addsCompleted.countDown();
+                        }, null);
+                    }
+                });
+            }
+
+            // close while the adds are in progress
+            while (addedEntries.size() < 100) {
+                Thread.sleep(1);
+            }
+            lh.close();
+            addsCompleted.await();
+        } finally {
+            executor.shutdown();
+        }
+
+        // the successful adds are exactly the entries of the closed ledger, with their lengths
+        long lastEntryId = lh.getLedgerMetadata().getLastEntryId();
+        Assert.assertEquals(lastEntryId + 1, addedEntries.size());
+        for (long entryId = 0; entryId <= lastEntryId; entryId++) {
+            Assert.assertTrue(addedEntries.contains(entryId));
+        }
+        Assert.assertEquals((lastEntryId + 1) * entry.length, lh.getLedgerMetadata().getLength());
+        Assert.assertEquals(numThreads * addsPerThread, addedEntries.size() + failedAdds.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testAddFailingToEnqueue() throws Exception {
+        MockClientContext clientCtx = MockClientContext.create();
+        Versioned<LedgerMetadata> md = ClientUtil.setupLedger(clientCtx, 10L,
+                LedgerMetadataBuilder.create().newEnsembleEntry(0L, Lists.newArrayList(b1, b2, b3)));
+        AtomicBoolean failNextAdd = new AtomicBoolean();
+        LedgerHandle lh = new LedgerHandle(clientCtx, 10L, md, BookKeeper.DigestType.CRC32C,
+                                           ClientUtil.PASSWD, WriteFlag.NONE) {
+            @Override
+            long addToLength(long delta) {
+                // fail after the entryId is assigned, before the op is enqueued
+                if (delta > 0 && failNextAdd.getAndSet(false)) {
+                    throw new IllegalStateException("injected failure");
+                }
+                return super.addToLength(delta);
+            }
+        };
+
+        byte[] entry = "entry".getBytes();
+        Assert.assertEquals(0L, lh.append(entry));
+        failNextAdd.set(true);
+        try {
+            lh.append(entry);
+            Assert.fail("The add should have failed");
+        } catch (BKException.BKUnexpectedConditionException bke) {
+            // expected
+        }
+
+        // the failed add neither took an entryId nor blocked the next adds and the close
+        Assert.assertEquals(1L, lh.append(entry));
+        Assert.assertEquals(2L, lh.append(entry));
+        lh.close();
+        Assert.assertEquals(2L, lh.getLedgerMetadata().getLastEntryId());
+        Assert.assertEquals(3L * entry.length, lh.getLedgerMetadata().getLength());
+    }
+
     @Test
     public void testMetadataChangedDuringClose() throws Exception {
         MockClientContext clientCtx = MockClientContext.create();
@@ -20,10 +20,19 @@
  */
 package org.apache.bookkeeper.client;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
@@ -40,9 +49,12 @@ import org.apache.bookkeeper.client.BookKeeper.DigestType;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
 import org.apache.bookkeeper.proto.BookieProtocol;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.test.BookKeeperClusterTestCase;
+import org.apache.bookkeeper.test.TestStatsProvider;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -424,12 +436,27 @@ public class LedgerRecoveryTest extends BookKeeperClusterTestCase {
         batchRecovery(13);
     }
 
+    @Test
+    public void testBatchRecoveryWithOutstandingBatches() throws Exception {
+        batchRecovery(2, 4);
+    }
+
+    @Test
+    public void testBatchRecoveryWithOutstandingBatchesLargerThanLedger() throws Exception {
+        batchRecovery(3, 16);
+    }
+
     private void batchRecovery(int batchSize) throws Exception {
+        batchRecovery(batchSize, 1);
+    }
+
+    private void batchRecovery(int batchSize, int maxOutstandingBatches) throws Exception {
         ClientConfiguration newConf = new ClientConfiguration()
             .setReadEntryTimeout(60000)
             .setAddEntryTimeout(60000)
             .setEnableParallelRecoveryRead(false)
-            .setRecoveryReadBatchSize(batchSize);
+            .setRecoveryReadBatchSize(batchSize)
+            .setRecoveryReadMaxOutstandingBatches(maxOutstandingBatches);
 
         newConf.setMetadataServiceUri(zkUtil.getMetadataServiceUri());
         BookKeeper newBk = new BookKeeper(newConf);
@@ -489,4 +516,123 @@ public class LedgerRecoveryTest extends BookKeeperClusterTestCase {
 
         newBk.close();
     }
+
+    @Test
+    public void testBatchReadRecovery() throws Exception {
+        batchReadRecovery(5 * 1024 * 1024, true);
+    }
+
+    @Test
+    public void testBatchReadRecoveryWithShortResponses() throws Exception {
+        // a response only fits 2 entries, so the rest of each batch is read again
+        batchReadRecovery(3 * 1024, true);
+    }
+
+    @Test
+    public void testBatchReadRecoveryFromBookiesWithoutBatchRead() throws Exception {
+        batchReadRecovery(5 * 1024 * 1024, false);
+    }
+
+    private void batchReadRecovery(int maxFrameSize, boolean batchReadSupported) throws Exception {
+        int batchSize = 5;
+        ClientConfiguration newConf = new ClientConfiguration()
+            .setReadEntryTimeout(60000)
+            .setAddEntryTimeout(60000)
+            .setUseV2WireProtocol(true)
+            .setBatchReadEnabled(true)
+            .setRecoveryBatchReadEnabled(true)
+            .setRecoveryReadBatchSize(batchSize);
+
+        newConf.setMetadataServiceUri(zkUtil.getMetadataServiceUri());
+        BookKeeper newBk = new BookKeeper(newConf);
+
+        // batch reads are only used when each bookie stores all the entries
+        LedgerHandle lh = newBk.createLedger(numBookies, numBookies, 2, digestType, "".getBytes());
+
+        CountDownLatch latch1 = new CountDownLatch(1);
+        CountDownLatch latch2 = new CountDownLatch(1);
+        sleepBookie(lh.getCurrentEnsemble().get(0), latch1);
+        sleepBookie(lh.getCurrentEnsemble().get(1), latch2);
+
+        int numEntries = 2 * batchSize;
+        byte[] data = new byte[1024];
+        final AtomicInteger numPendingAdds = new AtomicInteger(numEntries);
+        final CountDownLatch addDone = new CountDownLatch(1);
+        for (int i = 0; i < numEntries; i++) {
+            lh.asyncAddEntry(data, new AddCallback() {
+                @Override
+                public void addComplete(int rc, LedgerHandle lh, long entryId, Object ctx) {
+                    if (BKException.Code.OK != rc) {
+                        addDone.countDown();
+                        return;
+                    }
+                    if (numPendingAdds.decrementAndGet() == 0) {
+                        addDone.countDown();
+                    }
+                }
+            }, null);
+        }
+        latch1.countDown();
+        latch2.countDown();
+        addDone.await(10, TimeUnit.SECONDS);
+        assertEquals(0, numPendingAdds.get());
+
+        LedgerHandle recoverLh = newBk.openLedgerNoRecovery(lh.getId(), digestType, "".getBytes());
+        assertEquals(BookieProtocol.INVALID_ENTRY_ID, recoverLh.getLastAddConfirmed());
+
+        TestStatsProvider statsProvider = new TestStatsProvider();
+        MockClientContext batchReadCtx = MockClientContext.copyOf(newBk.getClientCtx())
+            .setConf(ClientInternalConf.fromConfig(newConf.setNettyMaxFrameSizeBytes(maxFrameSize)))
+            .setClientStats(BookKeeperClientStats.newInstance(statsProvider.getStatsLogger("")));
+        BookieClient bookieClient = batchReadCtx.getBookieClient();
+        if (!batchReadSupported) {
+            // a bookie which does not know the batch read request closes the connection
+            doAnswer(invocation -> {
+                BatchedReadEntryCallback cb = invocation.getArgument(5);
+                cb.readEntriesComplete(BKException.Code.BookieHandleNotAvailableException,
+                        invocation.getArgument(1), invocation.getArgument(2), null, invocation.getArgument(6));
+                return null;
+            }).when(bookieClient).batchReadEntries(any(), anyLong(), anyLong(), anyInt(), anyLong(), any(), any(),
+                    anyInt(), any(), anyBoolean());
+        }
+
+        LedgerRecoveryOp recoveryOp = new LedgerRecoveryOp(recoverLh, batchReadCtx);
+        CompletableFuture<LedgerHandle> f = recoveryOp.initiate();
+        f.get(10, TimeUnit.SECONDS);
+
+        assertEquals(numEntries, recoveryOp.readCount.get());
+        assertEquals(numEntries, recoveryOp.writeCount.get());
+        assertEquals(numEntries - 1, recoverLh.getLastAddConfirmed());
+
+        if (batchReadSupported) {
+            assertFalse(recoverLh.notSupportBatch);
+            // the batches are read until the first batch past the end of the ledger
+            int minBatchReads = maxFrameSize < batchSize * data.length
+                    ? numEntries / 2 + 1 : numEntries / batchSize + 1;
+            verify(bookieClient, atLeast(minBatchReads)).batchReadEntries(any(), anyLong(), anyLong(), anyInt(),
+                    anyLong(), any(), any(), anyInt(), any(), anyBoolean());
+        } else {
+            assertTrue(recoverLh.notSupportBatch);
+            // only the first batch read is sent, to each bookie of the write set
+            verify(bookieClient, times(numBookies)).batchReadEntries(any(), anyLong(), anyLong(), anyInt(),
+                    anyLong(), any(), any(), anyInt(), any(), anyBoolean());
+        }
+
+        BookKeeperClientStats stats = batchReadCtx.getClientStats();
+        assertEquals(numEntries / batchSize + 1, stats.getRecoverReadBatchesCounter().get().longValue());
+        assertEquals(numEntries, stats.getRecoverRecoveredEntriesCounter().get().longValue());
+        assertEquals((long) numEntries * data.length, stats.getRecoverRecoveredBytesCounter().get().longValue());
+
+        Enumeration<LedgerEntry> enumeration = recoverLh.readEntries(0, numEntries - 1);
+        int numReads = 0;
+        while (enumeration.hasMoreElements()) {
+            LedgerEntry entry = enumeration.nextElement();
+            assertEquals((long) numReads, entry.getEntryId());
+            assertArrayEquals(data, entry.getEntry());
+            ++numReads;
+        }
+        assertEquals(numEntries, numReads);
+
+        newBk.close();
+    }
 }
@@ -42,6 +42,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -260,4 +261,75 @@ public class ReadLastConfirmedAndEntryOpTest {
         }
     }
 
+
+    /**
+     * Test case: the latency of a long poll read waiting for the entry to be added is not recorded by the
+     * speculative read policy, as it is the time the entry took to be added rather than the time of a read.
+     */
+    @Test
+    public void testLongPollLatencyNotRecorded() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration();
+        conf.setFirstSpeculativeReadLACTimeout(100);
+        conf.setMaxSpeculativeReadLACTimeout(200);
+        conf.setSpeculativeReadTimeoutPercentile(95);
+        ClientInternalConf adaptiveConf = ClientInternalConf.fromConfig(conf);
+        when(mockClientCtx.getConf()).thenReturn(adaptiveConf);
+        AdaptiveSpeculativeRequestExecutionPolicy policy =
+                (AdaptiveSpeculativeRequestExecutionPolicy) adaptiveConf.readLACSpeculativeRequestPolicy.get();
+
+        final long entryId = 2L;
+        ByteBuf data = Unpooled.copiedBuffer("test-long-poll-latency", UTF_8);
+        ByteBufList dataWithDigest = (ByteBufList) digestManager.computeDigestAndPackageForSending(
+            entryId, 1L, data.readableBytes(), data, new byte[20], 0);
+        byte[] bytesWithDigest = new byte[dataWithDigest.readableBytes()];
+        assertEquals(bytesWithDigest.length, dataWithDigest.getBytes(bytesWithDigest));
+
+        final LinkedBlockingQueue<ReadLastConfirmedAndEntryHolder> requests = new LinkedBlockingQueue<>();
+        doAnswer(invocationOnMock -> {
+            requests.add(new ReadLastConfirmedAndEntryHolder(invocationOnMock.getArgument(0),
+                    invocationOnMock.getArgument(6), invocationOnMock.getArgument(7)));
+            return null;
+        }).when(mockBookieClient).readEntryWaitForLACUpdate(any(BookieId.class),
+            anyLong(),
+            anyLong(),
+            anyLong(),
+            anyLong(),
+            anyBoolean(),
+            any(ReadEntryCallback.class),
+            any()
+        );
+
+        // The entry is past the known LAC: the bookie holds the request until the entry is added
+        when(mockLh.getLastAddConfirmed()).thenReturn(1L);
+        readEntry(requests, entryId, bytesWithDigest);
+        assertEquals(0, policy.getNumRecordedLatencies());
+
+        // The entry is known to be added already: the bookie responds right away
+        when(mockLh.getLastAddConfirmed()).thenReturn(entryId);
+        readEntry(requests, entryId, bytesWithDigest);
+        assertEquals(1, policy.getNumRecordedLatencies());
+    }
+
+    private void readEntry(LinkedBlockingQueue<ReadLastConfirmedAndEntryHolder> requests, long entryId,
+                           byte[] bytesWithDigest) throws Exception {
+        CompletableFuture<LastConfirmedAndEntry> resultFuture = new CompletableFuture<>();
+        ReadLastConfirmedAndEntryOp op = new ReadLastConfirmedAndEntryOp(
+                mockLh, mockClientCtx, mockLh.getCurrentEnsemble(), (rc, lastAddConfirmed, entry) -> {
+                    if (Code.OK != rc) {
+                        FutureUtils.completeExceptionally(resultFuture, BKException.create(rc));
+                    } else {
+                        FutureUtils.complete(resultFuture, LastConfirmedAndEntryImpl.create(lastAddConfirmed, entry));
+                    }
+                }, entryId - 1, 10000);
+        op.initiate();
+
+        ReadLastConfirmedAndEntryHolder holder = requests.take();
+        holder.context.setLastAddConfirmed(entryId);
+        holder.getCallback().readEntryComplete(
+            Code.OK, LEDGERID, entryId, Unpooled.wrappedBuffer(bytesWithDigest), holder.context);
+        try (LastConfirmedAndEntry lacAndEntry = FutureUtils.result(resultFuture)) {
+            assertEquals(entryId, lacAndEntry.getEntry().getEntryId());
+        }
+        requests.clear();
+    }
 }
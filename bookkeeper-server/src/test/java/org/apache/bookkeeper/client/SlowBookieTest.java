@@ -36,6 +36,7 @@ import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookieClientImpl;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
+import org.apache.bookkeeper.proto.PerChannelBookieClientPool;
 import org.apache.bookkeeper.test.BookKeeperClusterTestCase;
 import org.awaitility.Awaitility;
 import org.junit.Test;
@@ -223,6 +224,57 @@ public class SlowBookieTest extends BookKeeperClusterTestCase {
         }
     }
 
+    @Test
+    public void testCongestionWindowLimitsInflightAdds() throws Exception {
+        final ClientConfiguration conf = new ClientConfiguration();
+        conf.setAddEntryTimeout(30)
+                .setNumChannelsPerBookie(1)
+                .setMetadataServiceUri(zkUtil.getMetadataServiceUri())
+                .setBookieCongestionControlEnabled(true)
+                .setBookieCongestionMinWindow(2)
+                .setBookieCongestionMaxWindow(2)
+                .setWaitTimeoutOnBackpressureMillis(30000);
+
+        try (BookKeeper bkc = new BookKeeper(conf);
+             LedgerHandle lh = bkc.createLedger(1, 1, 1, BookKeeper.DigestType.CRC32, new byte[] {})) {
+            lh.addEntry(entry);
+            BookieId bookie = lh.getCurrentEnsemble().get(0);
+            PerChannelBookieClientPool pool = ((BookieClientImpl) bkc.getBookieClient()).lookupClient(bookie);
+
+            final int numAdds = 10;
+            final AtomicInteger submitted = new AtomicInteger();
+            final CountDownLatch completed = new CountDownLatch(numAdds);
+            final AtomicInteger failures = new AtomicInteger();
+            final CountDownLatch sleepLatch = new CountDownLatch(1);
+            sleepBookie(bookie, sleepLatch);
+
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < numAdds; i++) {
+                    lh.asyncAddEntry(entry, (rc, lh1, entryId, ctx) -> {
+                        if (rc != BKException.Code.OK) {
+                            failures.incrementAndGet();
+                        }
+                        completed.countDown();
+                    }, null);
+                    submitted.incrementAndGet();
+                }
+            });
+            t.start();
+
+            // The adds past the window wait for the bookie instead of being sent
+            Awaitility.await().untilAsserted(() -> assertEquals(2, pool.getNumPendingCompletionRequests()));
+            Thread.sleep(500);
+            assertEquals(2, pool.getNumPendingCompletionRequests());
+            assertEquals(2, submitted.get());
+
+            sleepLatch.countDown();
+            t.join();
+            assertTrue(completed.await(30, TimeUnit.SECONDS));
+            assertEquals(0, failures.get());
+            assertEquals(numAdds, lh.getLastAddConfirmed());
+        }
+    }
+
     private LedgerHandle doBackPressureTest(byte[] entry, ClientConfiguration conf,
                                             boolean expectWriteError, boolean expectFailedTest,
                                             long sleepInMillis) throws Exception {
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.client.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link PrefetchingLedgerEntryStream}.
+ */
+public class PrefetchingLedgerEntryStreamTest {
+
+    private static final long LEDGER_ID = 1234L;
+
+    /**
+     * A batch read issued by the stream, completed by the test.
+     */
+    private static class BatchRead {
+        final long startEntry;
+        final int maxCount;
+        final CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+
+        BatchRead(long startEntry, int maxCount) {
+            this.startEntry = startEntry;
+            this.maxCount = maxCount;
+        }
+
+        void complete(int count) {
+            List<LedgerEntry> entries = new ArrayList<>();
+            for (long entryId = startEntry; entryId < startEntry + count; entryId++) {
+                ByteBuf buf = Unpooled.wrappedBuffer(("entry-" + entryId).getBytes(UTF_8));
+                entries.add(LedgerEntryImpl.create(LEDGER_ID, entryId, buf.readableBytes(), buf));
+            }
+            future.complete(LedgerEntriesImpl.create(entries));
+        }
+    }
+
+    private final List<BatchRead> reads = new ArrayList<>();
+
+    private ReadHandle mockHandle(long lastAddConfirmed) {
+        ReadHandle handle = mock(ReadHandle.class);
+        when(handle.getLastAddConfirmed()).thenReturn(lastAddConfirmed);
+        when(handle.batchReadAsync(anyLong(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            BatchRead read = new BatchRead(invocation.getArgument(0), invocation.getArgument(1));
+            reads.add(read);
+            return read.future;
+        });
+        return handle;
+    }
+
+    private static void assertEntry(long entryId, CompletableFuture<LedgerEntry> future) throws Exception {
+        assertTrue(future.isDone());
+        try (LedgerEntry entry = future.get()) {
+            assertEquals(entryId, entry.getEntryId());
+            assertEquals("entry-" + entryId, new String(entry.getEntryBytes(), UTF_8));
+        }
+    }
+
+    @Test
+    public void testEntriesReturnedInOrderWithBoundedPrefetch() throws Exception {
+        LedgerEntryStream stream = new PrefetchingLedgerEntryStream(mockHandle(99L), 0L, 9L, 4);
+        // two batches of half the window are read ahead
+        assertEquals(2, reads.size());
+        CompletableFuture<LedgerEntry> first = stream.nextAsync();
+        assertEquals(2, reads.size());
+        assertEquals(0L, reads.get(0).startEntry);
+        assertEquals(2, reads.get(0).maxCount);
+        assertEquals(2L, reads.get(1).startEntry);
+
+        // the second batch is not returned before the first one
+        reads.get(1).complete(2);
+        CompletableFuture<LedgerEntry> second = stream.nextAsync();
+        assertFalse(first.isDone());
+        reads.get(0).complete(2);
+        assertEntry(0L, first);
+        assertEntry(1L, second);
+        // the consumed entries leave room for one more batch
+        assertEquals(3, reads.size());
+        assertEquals(4L, reads.get(2).startEntry);
+
+        assertEntry(2L, stream.nextAsync());
+        assertEquals(3, reads.size());
+        assertEntry(3L, stream.nextAsync());
+        assertEquals(4, reads.size());
+        stream.close();
+    }
+
+    @Test
+    public void testShortBatchIsReadAgain() throws Exception {
+        LedgerEntryStream stream = new PrefetchingLedgerEntryStream(mockHandle(99L), 0L, 3L, 8);
+        assertEquals(1, reads.size());
+        assertEquals(4, reads.get(0).maxCount);
+
+        // the response was cut by the max frame size
+        reads.get(0).complete(1);
+        assertEquals(2, reads.size());
+        assertEquals(1L, reads.get(1).startEntry);
+        assertEquals(3, reads.get(1).maxCount);
+        reads.get(1).complete(3);
+
+        for (long entryId = 0; entryId <= 3; entryId++) {
+            assertEntry(entryId, stream.nextAsync());
+        }
+        assertNull(stream.nextAsync().get());
+        stream.close();
+    }
+
+    @Test
+    public void testFailureAfterPreviousEntries() throws Exception {
+        LedgerEntryStream stream = new PrefetchingLedgerEntryStream(mockHandle(99L), 0L, 5L, 4);
+        reads.get(1).future.completeExceptionally(new BKException.BKBookieHandleNotAvailableException());
+        reads.get(0).complete(2);
+
+        assertEntry(0L, stream.nextAsync());
+        assertEntry(1L, stream.nextAsync());
+        CompletableFuture<LedgerEntry> failed = stream.nextAsync();
+        try {
+            failed.get();
+        } catch (ExecutionException ee) {
+            assertTrue(ee.getCause() instanceof BKException.BKBookieHandleNotAvailableException);
+        }
+        assertTrue(failed.isCompletedExceptionally());
+        stream.close();
+    }
+
+    @Test
+    public void testFallbackToReadsWithoutBatchReads() throws Exception {
+        ReadHandle handle = mock(ReadHandle.class);
+        when(handle.getLastAddConfirmed()).thenReturn(99L);
+        when(handle.batchReadAsync(anyLong(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+            future.completeExceptionally(new UnsupportedOperationException());
+            return future;
+        });
+        when(handle.readAsync(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long first = invocation.getArgument(0);
+            long last = invocation.getArgument(1);
+            BatchRead read = new BatchRead(first, (int) (last - first + 1));
+            read.complete(read.maxCount);
+            return read.future;
+        });
+
+        LedgerEntryStream stream = new PrefetchingLedgerEntryStream(handle, 0L, 2L, 2);
+        for (long entryId = 0; entryId <= 2; entryId++) {
+            assertEntry(entryId, stream.nextAsync());
+        }
+        assertNull(stream.nextAsync().get());
+        stream.close();
+    }
+
+    @Test
+    public void testReadPastLastAddConfirmed() {
+        LedgerEntryStream stream = new PrefetchingLedgerEntryStream(mockHandle(3L), 0L, 4L, 4);
+        assertTrue(stream.nextAsync().isCompletedExceptionally());
+        assertTrue(reads.isEmpty());
+        stream.close();
+    }
+}
@@ -21,8 +21,10 @@ package org.apache.bookkeeper.proto;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -89,6 +91,7 @@ public class BatchedReadEntryProcessorTest {
 
         when(bookie.readEntry(anyLong(), anyLong())).thenReturn(buffer0).thenReturn(buffer1).thenReturn(buffer2)
                 .thenReturn(buffer3).thenReturn(buffer4);
+        doCallRealMethod().when(bookie).readEntries(anyLong(), anyLong(), anyInt(), anyLong(), any());
     }
 
     @Test
@@ -0,0 +1,161 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.net.BookieSocketAddress;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BookieCongestionWindow}.
+ */
+public class BookieCongestionWindowTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testWindowStartsOpen() {
+        BookieCongestionWindow window = new BookieCongestionWindow(4, 64, 3.0, 0);
+        assertEquals(64, window.getWindow());
+
+        // Responses at a steady latency leave the window open
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            now += MS;
+            window.onResponse(5 * MS, now);
+        }
+        assertEquals(64, window.getWindow());
+    }
+
+    @Test
+    public void testCongestionHalvesWindowOncePerLatency() {
+        BookieCongestionWindow window = new BookieCongestionWindow(4, 64, 3.0, 0);
+        window.onResponse(10 * MS, MS);
+
+        window.onCongestion(20 * MS);
+        assertEquals(32, window.getWindow());
+        // Timeouts of the requests sent before the decrease do not decrease the window again
+        window.onCongestion(25 * MS);
+        assertEquals(32, window.getWindow());
+        window.onCongestion(31 * MS);
+        assertEquals(16, window.getWindow());
+
+        // The window never drops under its minimum
+        long now = 31 * MS;
+        for (int i = 0; i < 10; i++) {
+            now += 100 * MS;
+            window.onCongestion(now);
+        }
+        assertEquals(4, window.getWindow());
+    }
+
+    @Test
+    public void testLatencyIncreaseShrinksAndRecoveryGrowsWindow() {
+        BookieCongestionWindow window = new BookieCongestionWindow(4, 64, 3.0, 0);
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            now += MS;
+            window.onResponse(2 * MS, now);
+        }
+        assertEquals(64, window.getWindow());
+
+        // The bookie slows down well past the latency threshold
+        for (int i = 0; i < 1000; i++) {
+            now += MS;
+            window.onResponse(50 * MS, now);
+        }
+        assertEquals(4, window.getWindow());
+
+        // Once the bookie recovers, the window grows by about one request per window of responses
+        for (int i = 0; i < 1000; i++) {
+            now += MS;
+            window.onResponse(2 * MS, now);
+        }
+        int grownWindow = window.getWindow();
+        assertTrue("window should have grown: " + grownWindow, grownWindow > 4 && grownWindow < 64);
+        for (int i = 0; i < 100000; i++) {
+            now += MS;
+            window.onResponse(2 * MS, now);
+        }
+        assertEquals(64, window.getWindow());
+    }
+
+    @Test
+    public void testLowLatenciesAreNotCongestion() {
+        BookieCongestionWindow window = new BookieCongestionWindow(4, 64, 3.0, 0);
+        long now = 0;
+        for (int i = 0; i < 100; i++) {
+            now += MS;
+            window.onResponse(TimeUnit.MICROSECONDS.toNanos(50), now);
+        }
+        for (int i = 0; i < 100; i++) {
+            now += MS;
+            window.onResponse(TimeUnit.MICROSECONDS.toNanos(500), now);
+        }
+        assertEquals(64, window.getWindow());
+    }
+
+    @Test
+    public void testPoolNotWritableWhenWindowFull() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration()
+                .setBookieCongestionControlEnabled(true)
+                .setBookieCongestionMinWindow(1)
+                .setBookieCongestionMaxWindow(1)
+                .setWaitTimeoutOnBackpressureMillis(1000);
+        PerChannelBookieClientFactory factory = (address, pcbcPool, shFactory, forceUseV3) ->
+                new PerChannelBookieClient(null, null, address, BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER) {
+                    @Override
+                    protected long getNumPendingCompletionRequests() {
+                        return 1;
+                    }
+
+                    @Override
+                    public boolean isWritable() {
+                        return true;
+                    }
+                };
+        DefaultPerChannelBookieClientPool pool =
+                new DefaultPerChannelBookieClientPool(conf, factory, BookieId.parse("127.0.0.1:3181"), 1);
+        assertFalse(pool.isWritable(0L));
+        // Errors other than timeouts and rejections do not affect the window
+        pool.recordResponse(BKException.Code.NoSuchEntryException, 0L);
+        assertEquals(1, pool.congestionWindow.getWindow());
+
+        DefaultPerChannelBookieClientPool uncontrolledPool = new DefaultPerChannelBookieClientPool(
+                new ClientConfiguration(), factory, BookieId.parse("127.0.0.1:3181"), 1);
+        assertTrue(uncontrolledPool.isWritable(0L));
+
+        // Without waiting on backpressure, nothing would hold the adds back once the window is full
+        DefaultPerChannelBookieClientPool noBackpressurePool = new DefaultPerChannelBookieClientPool(
+                new ClientConfiguration(conf).setWaitTimeoutOnBackpressureMillis(-1), factory,
+                BookieId.parse("127.0.0.1:3181"), 1);
+        assertNull(noBackpressurePool.congestionWindow);
+        assertTrue(noBackpressurePool.isWritable(0L));
+    }
+}
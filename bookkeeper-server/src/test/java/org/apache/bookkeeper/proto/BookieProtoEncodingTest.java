@@ -20,7 +20,9 @@ package org.apache.bookkeeper.proto;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.bookkeeper.proto.BookieProtocol.FLAG_NONE;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -33,6 +35,8 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Arrays;
 import java.util.List;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.RequestEnDeCoderPreV3;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.RequestEnDecoderV3;
@@ -40,6 +44,7 @@ import org.apache.bookkeeper.proto.BookieProtoEncoding.ResponseDecoder;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.ResponseEnDeCoderPreV3;
 import org.apache.bookkeeper.proto.BookieProtoEncoding.ResponseEnDecoderV3;
 import org.apache.bookkeeper.proto.BookieProtocol.AddResponse;
+import org.apache.bookkeeper.proto.BookieProtocol.PacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.AddRequest.Flag;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
@@ -165,4 +170,180 @@ public class BookieProtoEncodingTest {
         assertEquals(res.getData().readableBytes(), resDecoded.getData().readableBytes());
     }
 
+    @Test
+    public void testV2BatchAddRequestInvalidNumEntries() throws Exception {
+        RequestEnDeCoderPreV3 v2ReqEncoder = new RequestEnDeCoderPreV3(registry);
+        for (int numEntries : new int[] { -1, 0, Integer.MAX_VALUE }) {
+            ByteBuf buf = newV2BatchAddRequestHeader(numEntries);
+            buf.writeInt(100).writeZero(100);
+            try {
+                v2ReqEncoder.decode(buf);
+                fail("Should fail to decode a batch of " + numEntries + " entries");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testV2BatchAddRequestTruncated() throws Exception {
+        RequestEnDeCoderPreV3 v2ReqEncoder = new RequestEnDeCoderPreV3(registry);
+        ByteBuf buf = newV2BatchAddRequestHeader(3);
+        // the third entry is cut
+        for (int i = 0; i < 3; i++) {
+            buf.writeInt(100).writeZero(i < 2 ? 100 : 50);
+        }
+        try {
+            v2ReqEncoder.decode(buf);
+            fail("Should fail to decode a truncated batch");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // the add requests of the entries already decoded are released
+        assertEquals(1, buf.refCnt());
+        buf.release();
+    }
+
+    private static ByteBuf newV2BatchAddRequestHeader(int numEntries) {
+        ByteBuf buf = UnpooledByteBufAllocator.DEFAULT.buffer();
+        buf.writeInt(PacketHeader.toInt(BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.BATCH_ADD_ENTRY,
+                FLAG_NONE));
+        buf.writeZero(BookieProtocol.MASTER_KEY_LENGTH);
+        buf.writeInt(numEntries);
+        return buf;
+    }
+
+    @Test
+    public void testV2BatchAddRequest() throws Exception {
+        int entrySize = 100;
+        byte[] masterKey = "masterKey".getBytes(UTF_8);
+        // Batch of 3 adds, sent as soon as the third is written
+        int maxBatchSize = 3 * (Integer.BYTES + entrySize);
+        EmbeddedChannel channel = new EmbeddedChannel(new AddBatchingHandler(Long.MAX_VALUE, maxBatchSize));
+
+        channel.write(newV2AddRequest(1L, 0L, masterKey, entrySize));
+        channel.write(ByteBufList.get(newV2AddRequest(1L, 1L, masterKey, entrySize)));
+        assertNull(channel.readOutbound());
+        channel.write(newV2AddRequest(1L, 2L, masterKey, entrySize));
+        channel.flush();
+
+        ByteBuf buf = ByteBufList.coalesce(channel.readOutbound());
+        assertEquals(buf.readableBytes() - 4, buf.readInt());
+        RequestEnDeCoderPreV3 v2ReqEncoder = new RequestEnDeCoderPreV3(registry);
+        BookieProtocol.BatchedAddRequest reqDecoded = (BookieProtocol.BatchedAddRequest) v2ReqEncoder.decode(buf);
+        assertEquals(BookieProtocol.BATCH_ADD_ENTRY, reqDecoded.getOpCode());
+        assertEquals(3, reqDecoded.getAddRequests().size());
+        for (int i = 0; i < 3; i++) {
+            BookieProtocol.ParsedAddRequest addRequest = reqDecoded.getAddRequests().get(i);
+            assertEquals(1L, addRequest.getLedgerId());
+            assertEquals(i, addRequest.getEntryId());
+            assertArrayEquals(Arrays.copyOf(masterKey, BookieProtocol.MASTER_KEY_LENGTH), addRequest.getMasterKey());
+            assertEquals(entrySize, addRequest.getData().readableBytes());
+            assertEquals(i, addRequest.getData().getLong(8));
+        }
+        reqDecoded.release();
+        buf.release();
+
+        // Adds of different ledgers are batched separately, and a single add is sent unchanged
+        channel.write(newV2AddRequest(1L, 3L, masterKey, entrySize));
+        channel.write(newV2AddRequest(2L, 0L, masterKey, entrySize));
+        channel.flush();
+        assertNull(channel.readOutbound());
+        // Any other request sends the pending adds first
+        ByteBuf readRequest = UnpooledByteBufAllocator.DEFAULT.buffer().writeInt(0);
+        channel.writeAndFlush(readRequest);
+        for (long ledgerId = 1L; ledgerId <= 2L; ledgerId++) {
+            buf = channel.readOutbound();
+            assertEquals(BookieProtocol.ADDENTRY, PacketHeader.getOpCode(buf.getInt(4)));
+            assertEquals(ledgerId, buf.getLong(AddBatchingHandler.ADD_REQUEST_HEADER_SIZE));
+            buf.release();
+        }
+        assertEquals(readRequest, channel.readOutbound());
+        readRequest.release();
+        assertNull(channel.readOutbound());
+        channel.close();
+    }
+
+    @Test
+    public void testV3AddRequestWithLargeBody() throws Exception {
+        ByteBuf entry = UnpooledByteBufAllocator.DEFAULT.directBuffer();
+        entry.writeZero(BookieProtoEncoding.SMALL_ENTRY_SIZE_THRESHOLD);
+        entry.setLong(0, 42L);
+        BookkeeperProtocol.Request request = BookkeeperProtocol.Request.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.ADD_ENTRY)
+                        .setTxnId(1L))
+                .setAddRequest(BookkeeperProtocol.AddRequest.newBuilder()
+                        .setLedgerId(1L)
+                        .setEntryId(2L)
+                        .setMasterKey(ByteString.copyFrom("masterKey".getBytes(UTF_8)))
+                        .setBody(ByteStringUtil.byteBufToByteString(entry))
+                        .setFlag(Flag.RECOVERY_ADD)
+                        .setWriteFlags(1))
+                .addRequestContext(BookkeeperProtocol.ContextPair.newBuilder().setKey("key").setValue("value"))
+                .build();
+
+        RequestEnDecoderV3 v3ReqEncoder = new RequestEnDecoderV3(registry);
+        ByteBufList frame = (ByteBufList) v3ReqEncoder.encode(request, UnpooledByteBufAllocator.DEFAULT);
+        // the body is not copied into the frame
+        ByteBuf headers = frame.getBuffer(0);
+        assertEquals(frame.readableBytes() - entry.readableBytes(), headers.readableBytes());
+        assertEquals(frame.readableBytes() - 4, headers.getInt(0));
+        entry.setLong(8, 43L);
+
+        ByteBuf buf = ByteBufList.coalesce(frame);
+        buf.readInt(); // Skip the frame size.
+        BookkeeperProtocol.Request decoded = (BookkeeperProtocol.Request) v3ReqEncoder.decode(buf);
+        assertEquals(request, decoded);
+        assertEquals(43L, decoded.getAddRequest().getBody().asReadOnlyByteBuffer().getLong(8));
+        frame.release();
+        buf.release();
+        entry.release();
+    }
+
+    @Test
+    public void testV3ReadResponseWithLargeBody() throws Exception {
+        ByteBuf first = UnpooledByteBufAllocator.DEFAULT.heapBuffer().writeLong(42L);
+        ByteBuf second = UnpooledByteBufAllocator.DEFAULT.directBuffer();
+        second.writeZero(BookieProtoEncoding.SMALL_ENTRY_SIZE_THRESHOLD);
+        ByteBufList entry = ByteBufList.get(first, second);
+        BookkeeperProtocol.Response response = BookkeeperProtocol.Response.newBuilder()
+                .setHeader(BKPacketHeader.newBuilder()
+                        .setVersion(ProtocolVersion.VERSION_THREE)
+                        .setOperation(OperationType.READ_ENTRY)
+                        .setTxnId(1L))
+                .setStatus(StatusCode.EOK)
+                .setReadResponse(BookkeeperProtocol.ReadResponse.newBuilder()
+                        .setStatus(StatusCode.EOK)
+                        .setLedgerId(1L)
+                        .setEntryId(2L)
+                        .setBody(ByteStringUtil.byteBufListToByteString(entry))
+                        .setMaxLAC(1L))
+                .build();
+
+        ResponseEnDecoderV3 v3RespEncoder = new ResponseEnDecoderV3(registry);
+        ByteBufList frame = (ByteBufList) v3RespEncoder.encode(response, UnpooledByteBufAllocator.DEFAULT);
+        assertEquals(frame.readableBytes() - entry.readableBytes(), frame.getBuffer(0).readableBytes());
+
+        ByteBuf buf = ByteBufList.coalesce(frame);
+        buf.readInt(); // Skip the frame size.
+        assertEquals(response, v3RespEncoder.decode(buf));
+        frame.release();
+        buf.release();
+        entry.release();
+    }
+
+    private static ByteBuf newV2AddRequest(long ledgerId, long entryId, byte[] masterKey, int entrySize) {
+        ByteBuf buf = UnpooledByteBufAllocator.DEFAULT.buffer();
+        buf.writeInt(4 + BookieProtocol.MASTER_KEY_LENGTH + entrySize);
+        buf.writeInt(PacketHeader.toInt(BookieProtocol.CURRENT_PROTOCOL_VERSION, BookieProtocol.ADDENTRY, FLAG_NONE));
+        buf.writeBytes(Arrays.copyOf(masterKey, BookieProtocol.MASTER_KEY_LENGTH));
+        buf.writeLong(ledgerId);
+        buf.writeLong(entryId);
+        buf.writeZero(entrySize - 2 * Long.BYTES);
+        return buf;
+    }
+
 }
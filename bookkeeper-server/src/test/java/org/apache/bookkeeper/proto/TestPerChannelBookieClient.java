@@ -22,6 +22,8 @@ package org.apache.bookkeeper.proto;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import com.google.protobuf.ExtensionRegistry;
@@ -33,6 +35,8 @@ import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -42,16 +46,23 @@ import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.BookieException;
 import org.apache.bookkeeper.bookie.TestBookieImpl;
 import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.DefaultBookieAddressResolver;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.conf.ClientConfiguration;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.discover.BookieServiceInfo;
+import org.apache.bookkeeper.discover.RegistrationClient;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.net.BookieSocketAddress;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GenericCallback;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
 import org.apache.bookkeeper.proto.PerChannelBookieClient.ConnectionState;
+import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.test.BookKeeperClusterTestCase;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.awaitility.Awaitility;
 import org.junit.Assume;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -332,4 +343,88 @@ public class TestPerChannelBookieClient extends BookKeeperClusterTestCase {
         eventLoopGroup.shutdownGracefully();
         executor.shutdown();
     }
+
+    /**
+     * Test that the adds are only batched to the bookies advertising the batch add requests.
+     */
+    @Test
+    public void testAddBatchingOnlyToAdvertisingBookies() throws Exception {
+        EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+        OrderedExecutor executor = getOrderedSafeExecutor();
+        ClientConfiguration conf = new ClientConfiguration()
+                .setUseV2WireProtocol(true)
+                .setAddEntryBatchMaxDelayMicros(1000);
+        BookieId addr = getBookie(0);
+        BookieSocketAddress socketAddress = BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER.resolve(addr);
+
+        for (boolean advertised : new boolean[] { false, true }) {
+            BookieServiceInfo.Endpoint endpoint = new BookieServiceInfo.Endpoint(addr.toString(),
+                    socketAddress.getPort(), socketAddress.getHostName(), "bookie-rpc", Collections.emptyList(),
+                    advertised ? Collections.singletonList(BookieProtocol.BATCH_ADD_ENTRY_EXTENSION)
+                            : Collections.emptyList());
+            RegistrationClient registrationClient = Mockito.mock(RegistrationClient.class);
+            Mockito.when(registrationClient.getBookieServiceInfo(addr)).thenReturn(
+                    CompletableFuture.completedFuture(new Versioned<>(
+                            new BookieServiceInfo(Collections.emptyMap(), Collections.singletonList(endpoint)),
+                            new LongVersion(0))));
+
+            PerChannelBookieClient client = new PerChannelBookieClient(conf, executor, eventLoopGroup,
+                    addr, NullStatsLogger.INSTANCE, authProvider, extRegistry,
+                    Mockito.mock(PerChannelBookieClientPool.class),
+                    new DefaultBookieAddressResolver(registrationClient));
+            Channel channel = client.connect().sync().channel();
+            assertEquals(advertised,
+                    channel.pipeline().get(PerChannelBookieClient.ADD_BATCHER_HANDLER_NAME) != null);
+            client.close();
+        }
+        eventLoopGroup.shutdownGracefully();
+        executor.shutdown();
+    }
+
+    /**
+     * Test that connecting does not wait for the service info of the bookie, and that the adds are batched once
+     * the bookie is known to accept the batch add requests.
+     */
+    @Test
+    public void testAddBatchingOnceServiceInfoKnown() throws Exception {
+        EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+        OrderedExecutor executor = getOrderedSafeExecutor();
+        ClientConfiguration conf = new ClientConfiguration()
+                .setUseV2WireProtocol(true)
+                .setAddEntryBatchMaxDelayMicros(1000);
+        BookieId addr = getBookie(0);
+        BookieSocketAddress socketAddress = BookieSocketAddress.LEGACY_BOOKIEID_RESOLVER.resolve(addr);
+
+        BookieServiceInfo.Endpoint endpoint = new BookieServiceInfo.Endpoint(addr.toString(),
+                socketAddress.getPort(), socketAddress.getHostName(), "bookie-rpc", Collections.emptyList(),
+                Collections.singletonList(BookieProtocol.BATCH_ADD_ENTRY_EXTENSION));
+        CompletableFuture<Versioned<BookieServiceInfo>> serviceInfo = new CompletableFuture<>();
+        RegistrationClient registrationClient = Mockito.mock(RegistrationClient.class);
+        Mockito.when(registrationClient.getBookieServiceInfo(addr)).thenReturn(serviceInfo);
+
+        PerChannelBookieClient client = new PerChannelBookieClient(conf, executor, eventLoopGroup,
+                addr, NullStatsLogger.INSTANCE, authProvider, extRegistry,
+                Mockito.mock(PerChannelBookieClientPool.class),
+                new DefaultBookieAddressResolver(registrationClient) {
+                    @Override
+                    public BookieSocketAddress resolve(BookieId bookieId) {
+                        return socketAddress;
+                    }
+                });
+        CompletableFuture<Integer> connected = new CompletableFuture<>();
+        client.connectIfNeededAndDoOp((rc, pcbc) -> connected.complete(rc));
+        assertEquals(BKException.Code.OK, connected.get(10, TimeUnit.SECONDS).intValue());
+        Channel channel = client.channel;
+        assertNull(channel.pipeline().get(PerChannelBookieClient.ADD_BATCHER_HANDLER_NAME));
+
+        serviceInfo.complete(new Versioned<>(
+                new BookieServiceInfo(Collections.emptyMap(), Collections.singletonList(endpoint)),
+                new LongVersion(0)));
+        Awaitility.await().untilAsserted(() ->
+                assertNotNull(channel.pipeline().get(PerChannelBookieClient.ADD_BATCHER_HANDLER_NAME)));
+
+        client.close();
+        eventLoopGroup.shutdownGracefully();
+        executor.shutdown();
+    }
 }
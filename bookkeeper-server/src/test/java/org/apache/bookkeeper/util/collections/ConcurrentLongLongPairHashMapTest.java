@@ -125,6 +125,30 @@ public class ConcurrentLongLongPairHashMapTest {
         assertTrue(map.isEmpty());
     }
 
+    @Test
+    public void testRemoveIf() {
+        ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+
+        map.put(1, 1, 11, 11);
+        map.put(1, 2, 12, 12);
+        map.put(2, 1, 21, 21);
+        map.put(2, 2, 22, 22);
+
+        assertEquals(2, map.removeIf((key1, key2, value1, value2) -> key1 == 1));
+        assertFalse(map.containsKey(1, 1));
+        assertFalse(map.containsKey(1, 2));
+        assertTrue(map.containsKey(2, 1));
+        assertTrue(map.containsKey(2, 2));
+        assertEquals(2, map.size());
+
+        assertEquals(1, map.removeIf((key1, key2, value1, value2) -> value2 == 22));
+        assertTrue(map.containsKey(2, 1));
+        assertEquals(1, map.size());
+    }
+
     @Test
     public void testClear() {
         ConcurrentLongLongPairHashMap map = ConcurrentLongLongPairHashMap.newBuilder()
@@ -0,0 +1,234 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.util.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Test the ConcurrentLongPairHashMultiMap class.
+ */
+public class ConcurrentLongPairHashMultiMapTest {
+
+    @Test
+    public void testConstructor() {
+        try {
+            ConcurrentLongPairHashMultiMap.<String>newBuilder()
+                    .expectedItems(0)
+                    .build();
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+
+        try {
+            ConcurrentLongPairHashMultiMap.<String>newBuilder()
+                    .expectedItems(4)
+                    .concurrencyLevel(8)
+                    .build();
+            fail("should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void simpleInsertions() {
+        ConcurrentLongPairHashMultiMap<String> map = ConcurrentLongPairHashMultiMap.<String>newBuilder()
+                .expectedItems(16)
+                .build();
+
+        assertTrue(map.isEmpty());
+        map.put(1, 1, "one");
+        assertFalse(map.isEmpty());
+        map.put(1, 2, "two");
+        map.put(2, 1, "three");
+        assertEquals(3, map.size());
+
+        assertEquals("one", map.get(1, 1));
+        assertEquals("two", map.get(1, 2));
+        assertEquals("three", map.get(2, 1));
+        assertNull(map.get(2, 2));
+        assertTrue(map.containsKey(1, 1));
+        assertFalse(map.containsKey(2, 2));
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        ConcurrentLongPairHashMultiMap<String> map = ConcurrentLongPairHashMultiMap.<String>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+
+        map.put(1, 1, "a");
+        map.put(1, 1, "b");
+        map.put(1, 1, "c");
+        map.put(1, 2, "d");
+        assertEquals(4, map.size());
+
+        assertFalse(map.remove(1, 1, "d"));
+        assertTrue(map.remove(1, 1, "b"));
+        assertFalse(map.remove(1, 1, "b"));
+
+        Set<String> removed = new HashSet<>();
+        removed.add(map.removeAny(1, 1));
+        removed.add(map.removeAny(1, 1));
+        assertEquals(Set.of("a", "c"), removed);
+        assertNull(map.removeAny(1, 1));
+        assertNull(map.get(1, 1));
+        assertEquals("d", map.get(1, 2));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        ConcurrentLongPairHashMultiMap<String> map = ConcurrentLongPairHashMultiMap.<String>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .build();
+        map.put(1L, 1L, "one");
+        map.put(1L, 1L, "one-bis");
+        map.put(2L, 2L, "two");
+        map.put(3L, 3L, "three");
+
+        int removedCount = map.removeIf((key1, key2, value) -> key1 == 1L || value.equals("three"));
+        assertEquals(3, removedCount);
+        assertEquals(1, map.size());
+        assertEquals("two", map.get(2L, 2L));
+    }
+
+    @Test
+    public void testRehashing() {
+        int n = 16;
+        ConcurrentLongPairHashMultiMap<Integer> map = ConcurrentLongPairHashMultiMap.<Integer>newBuilder()
+                .expectedItems(n / 2)
+                .concurrencyLevel(1)
+                .build();
+        assertEquals(map.capacity(), n);
+        assertEquals(map.size(), 0);
+
+        for (int i = 0; i < n; i++) {
+            map.put(i, i, i);
+            map.put(i, i, -i);
+        }
+
+        assertEquals(map.capacity(), 4 * n);
+        assertEquals(map.size(), 2 * n);
+        for (int i = 0; i < n; i++) {
+            assertTrue(map.remove(i, i, -i));
+            assertEquals(i, (int) map.get(i, i));
+        }
+    }
+
+    @Test
+    public void testExpandAndShrink() {
+        ConcurrentLongPairHashMultiMap<String> map = ConcurrentLongPairHashMultiMap.<String>newBuilder()
+                .expectedItems(2)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .mapIdleFactor(0.25f)
+                .build();
+        assertEquals(4, map.capacity());
+
+        map.put(1, 1, "v1");
+        map.put(2, 2, "v2");
+        map.put(3, 3, "v3");
+
+        // expand hashmap
+        assertEquals(8, map.capacity());
+
+        assertTrue(map.remove(1, 1, "v1"));
+        // not shrink
+        assertEquals(8, map.capacity());
+        assertTrue(map.remove(2, 2, "v2"));
+        // shrink hashmap
+        assertEquals(4, map.capacity());
+
+        assertEquals("v3", map.get(3, 3));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testIteration() {
+        ConcurrentLongPairHashMultiMap<String> map = ConcurrentLongPairHashMultiMap.<String>newBuilder().build();
+        map.put(0, 0, "zero");
+        map.put(0, 0, "zero-bis");
+        map.put(1, 2, "one");
+
+        List<String> values = new ArrayList<>();
+        map.forEach((key1, key2, value) -> values.add(key1 + ":" + key2 + ":" + value));
+        values.sort(null);
+        assertEquals(List.of("0:0:zero", "0:0:zero-bis", "1:2:one"), values);
+    }
+
+    @Test
+    public void concurrentInsertionsAndRemovals() throws Throwable {
+        ConcurrentLongPairHashMultiMap<Long> map = ConcurrentLongPairHashMultiMap.<Long>newBuilder()
+                .expectedItems(16)
+                .concurrencyLevel(1)
+                .autoShrink(true)
+                .build();
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        final int nThreads = 8;
+        final int n = 10_000;
+        CyclicBarrier barrier = new CyclicBarrier(nThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final long threadIdx = i;
+            futures.add(executor.submit(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                // All the threads use the same keys, with their own values
+                for (long j = 0; j < n; j++) {
+                    map.put(j % 100, j % 7, threadIdx * n + j);
+                    if (!map.remove(j % 100, j % 7, threadIdx * n + j)) {
+                        throw new IllegalStateException("Value not found " + j);
+                    }
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertTrue(map.isEmpty());
+        executor.shutdown();
+    }
+}
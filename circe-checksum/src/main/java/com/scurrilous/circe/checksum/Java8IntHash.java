@@ -22,6 +22,7 @@ import static com.scurrilous.circe.params.CrcParameters.CRC32C;
 import com.scurrilous.circe.IncrementalIntHash;
 import com.scurrilous.circe.crc.StandardCrcProvider;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 
 public class Java8IntHash implements IntHash {
 
@@ -48,7 +49,11 @@ public class Java8IntHash implements IntHash {
             return hash.resume(current, buffer.array(), buffer.arrayOffset() + offset,
                     len);
         } else {
-            return hash.resume(current, buffer.slice(offset, len).nioBuffer());
+            // Composite buffers: resume with each component in place, rather than merging them in a copy
+            for (ByteBuffer nioBuffer : buffer.nioBuffers(offset, len)) {
+                current = hash.resume(current, nioBuffer);
+            }
+            return current;
         }
     }
 
@@ -20,15 +20,19 @@ package com.scurrilous.circe.checksum;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.util.concurrent.FastThreadLocal;
-import java.lang.reflect.InvocationTargetException;
+import io.netty.util.internal.PlatformDependent;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class Java9IntHash implements IntHash {
     static final boolean HAS_JAVA9_CRC32C;
-    private static final Method UPDATE_BYTES;
-    private static final Method UPDATE_DIRECT_BYTEBUFFER;
+    // Method handles, unlike reflective calls, do not box the arguments and can be inlined
+    private static final MethodHandle UPDATE_BYTES;
+    private static final MethodHandle UPDATE_DIRECT_BYTEBUFFER;
 
     private static final String CRC32C_CLASS_NAME = "java.util.zip.CRC32C";
 
@@ -41,16 +45,19 @@ public class Java9IntHash implements IntHash {
 
     static {
         boolean hasJava9CRC32C = false;
-        Method updateBytes = null;
-        Method updateDirectByteBuffer = null;
+        MethodHandle updateBytes = null;
+        MethodHandle updateDirectByteBuffer = null;
 
         try {
             Class<?> c = Class.forName(CRC32C_CLASS_NAME);
-            updateBytes = c.getDeclaredMethod("updateBytes", int.class, byte[].class, int.class, int.class);
-            updateBytes.setAccessible(true);
-            updateDirectByteBuffer =
+            Method updateBytesMethod =
+                    c.getDeclaredMethod("updateBytes", int.class, byte[].class, int.class, int.class);
+            updateBytesMethod.setAccessible(true);
+            updateBytes = MethodHandles.lookup().unreflect(updateBytesMethod);
+            Method updateDirectByteBufferMethod =
                     c.getDeclaredMethod("updateDirectByteBuffer", int.class, long.class, int.class, int.class);
-            updateDirectByteBuffer.setAccessible(true);
+            updateDirectByteBufferMethod.setAccessible(true);
+            updateDirectByteBuffer = MethodHandles.lookup().unreflect(updateDirectByteBufferMethod);
 
             hasJava9CRC32C = true;
         } catch (Exception e) {
@@ -76,11 +83,11 @@ public class Java9IntHash implements IntHash {
         return resume(0, buffer, offset, len);
     }
 
-    private int updateDirectByteBuffer(int current, long address, int offset, int length) {
+    private static int updateDirectByteBuffer(int current, long address, int offset, int length) {
         try {
-            return (int) UPDATE_DIRECT_BYTEBUFFER.invoke(null, current, address, offset, offset + length);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+            return (int) UPDATE_DIRECT_BYTEBUFFER.invokeExact(current, address, offset, offset + length);
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
         }
     }
 
@@ -99,9 +106,28 @@ public class Java9IntHash implements IntHash {
 
     private static int updateBytes(int current, byte[] array, int offset, int length) {
         try {
-            return (int) UPDATE_BYTES.invoke(null, current, array, offset, offset + length);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+            return (int) UPDATE_BYTES.invokeExact(current, array, offset, offset + length);
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private static int updateNioBuffer(int current, ByteBuffer nioBuffer) {
+        if (nioBuffer.isDirect() && PlatformDependent.hasUnsafe()) {
+            return updateDirectByteBuffer(current, PlatformDependent.directBufferAddress(nioBuffer),
+                    nioBuffer.position(), nioBuffer.remaining());
+        } else if (nioBuffer.hasArray()) {
+            return updateBytes(current, nioBuffer.array(), nioBuffer.arrayOffset() + nioBuffer.position(),
+                    nioBuffer.remaining());
+        } else {
+            byte[] b = TL_BUFFER.get();
+            ByteBuffer input = nioBuffer.duplicate();
+            while (input.hasRemaining()) {
+                int length = Math.min(input.remaining(), b.length);
+                input.get(b, 0, length);
+                current = updateBytes(current, b, 0, length);
+            }
+            return current;
         }
     }
 
@@ -127,6 +153,11 @@ public class Java9IntHash implements IntHash {
         } else if (buffer.hasArray()) {
             int arrayOffset = buffer.arrayOffset() + offset;
             current = updateBytes(current, buffer.array(), arrayOffset, len);
+        } else if (buffer.nioBufferCount() > 0) {
+            // Composite buffers: update with each component in place, rather than copying them
+            for (ByteBuffer nioBuffer : buffer.nioBuffers(offset, len)) {
+                current = updateNioBuffer(current, nioBuffer);
+            }
         } else {
             byte[] b = TL_BUFFER.get();
             int toRead = len;
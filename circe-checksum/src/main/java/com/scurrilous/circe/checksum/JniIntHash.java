@@ -21,6 +21,7 @@ package com.scurrilous.circe.checksum;
 import static com.scurrilous.circe.params.CrcParameters.CRC32C;
 import com.scurrilous.circe.IncrementalIntHash;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 
 public class JniIntHash implements IntHash {
 
@@ -48,7 +49,11 @@ public class JniIntHash implements IntHash {
         } else if (buffer.hasArray()) {
             return hash.resume(current, buffer.array(), buffer.arrayOffset() + offset, len);
         } else {
-            return hash.resume(current, buffer.slice(offset, len).nioBuffer());
+            // Composite buffers: resume with each component in place, rather than merging them in a copy
+            for (ByteBuffer nioBuffer : buffer.nioBuffers(offset, len)) {
+                current = hash.resume(current, nioBuffer);
+            }
+            return current;
         }
     }
 
@@ -102,6 +102,41 @@ public class Java9IntHashTest {
         b2.release();
     }
 
+    @Test
+    public void calculateCheckSumUsingCompositeOfDirectAndHeapByteBufs() {
+        byte[] data = new byte[4096 * 3 + 11];
+        new Random().nextBytes(data);
+        ByteBuf flat = ByteBufAllocator.DEFAULT.heapBuffer(data.length);
+        flat.writeBytes(data);
+
+        CompositeByteBuf composite = ByteBufAllocator.DEFAULT.compositeBuffer();
+        int offset = 0;
+        for (int length : new int[]{ 5, 4096, 3, 8192 + 3 }) {
+            ByteBuf component = composite.numComponents() % 2 == 0
+                    ? ByteBufAllocator.DEFAULT.directBuffer(length) : ByteBufAllocator.DEFAULT.heapBuffer(length);
+            component.writeBytes(data, offset, length);
+            composite.addComponent(true, component);
+            offset += length;
+        }
+
+        int checksum = Crc32cIntChecksum.computeChecksum(flat);
+        int sliceChecksum = Crc32cIntChecksum.computeChecksum(flat, 3, 8192);
+        Assert.assertEquals(checksum, Crc32cIntChecksum.computeChecksum(composite));
+        Assert.assertEquals(sliceChecksum, Crc32cIntChecksum.computeChecksum(composite, 3, 8192));
+        ByteBuf noArrayNoMemoryAddr = new NoArrayNoMemoryAddrByteBuff(composite);
+        Assert.assertEquals(checksum, Crc32cIntChecksum.computeChecksum(noArrayNoMemoryAddr));
+
+        if (Java9IntHash.HAS_JAVA9_CRC32C) {
+            IntHash java9IntHash = new Java9IntHash();
+            Assert.assertEquals(checksum, java9IntHash.calculate(composite));
+            Assert.assertEquals(sliceChecksum, java9IntHash.calculate(composite, 3, 8192));
+            Assert.assertEquals(checksum, java9IntHash.calculate(noArrayNoMemoryAddr));
+        }
+
+        flat.release();
+        composite.release();
+    }
+
     public static class NoArrayNoMemoryAddrByteBuff extends DuplicatedByteBuf {
 
         public NoArrayNoMemoryAddrByteBuff(ByteBuf buffer) {
@@ -0,0 +1,115 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryLocationIndex;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the lookups in the {@link EntryLocationIndex}, with and without the cache of the recently
+ * added locations.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class EntryLocationIndexBenchmark {
+
+    private static final int NUM_LEDGERS = 1000;
+    private static final int ENTRIES_PER_LEDGER = 1000;
+    private static final int RANGE_SIZE = 100;
+
+    /**
+     * State shared by all the threads.
+     */
+    @State(Scope.Benchmark)
+    public static class IndexState {
+        // 0 disables the location cache, otherwise all the locations fit in it
+        @Param({ "0", "2000000" })
+        private long locationCacheMaxEntries;
+
+        private File indexDir;
+        private EntryLocationIndex index;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            indexDir = Files.createTempDirectory("location-index").toFile();
+            index = new EntryLocationIndex(new ServerConfiguration(),
+                    (basePath, subPath, dbConfigType, conf) ->
+                            new KeyValueStorageRocksDB(basePath, subPath, dbConfigType, conf),
+                    indexDir.getAbsolutePath(), NullStatsLogger.INSTANCE, locationCacheMaxEntries);
+
+            long location = 1;
+            try (KeyValueStorage.Batch batch = index.newBatch()) {
+                for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                    for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+                        index.addLocation(batch, ledgerId, entryId, location);
+                        index.cacheLocation(ledgerId, entryId, location);
+                        location++;
+                    }
+                }
+                batch.flush();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            index.close();
+            FileUtils.deleteDirectory(indexDir);
+        }
+    }
+
+    @Benchmark
+    public long getLocation(IndexState state) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return state.index.getLocation(random.nextInt(NUM_LEDGERS), random.nextInt(ENTRIES_PER_LEDGER));
+    }
+
+    @Benchmark
+    public void getLocationsRange(IndexState state, Blackhole bh) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long firstEntryId = random.nextInt(ENTRIES_PER_LEDGER - RANGE_SIZE);
+        bh.consume(state.index.getLocations(random.nextInt(NUM_LEDGERS), firstEntryId,
+                firstEntryId + RANGE_SIZE - 1));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.storage.EntryLogger;
+import org.apache.bookkeeper.bookie.storage.directentrylogger.DirectEntryLogger;
+import org.apache.bookkeeper.bookie.storage.directentrylogger.EntryLogIdsImpl;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.slogger.Slogger;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks comparing the appends and the reads of the {@link DefaultEntryLogger} and of the
+ * {@link DirectEntryLogger}.
+ *
+ * <p>The entry logs are created in a temporary directory, which can be changed with {@code -Djava.io.tmpdir} to
+ * benchmark a specific device.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-XX:MaxDirectMemorySize=2g" })
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class EntryLoggerBenchmark {
+
+    private static final long MB = 1024 * 1024;
+    // Amount of data written before the benchmark, to be read back
+    private static final long READ_DATA_SIZE = 256 * MB;
+    private static final int NUM_LEDGERS = 100;
+
+    /**
+     * State shared by all the threads.
+     */
+    @State(Scope.Benchmark)
+    public static class EntryLoggerState {
+        @Param({ "default", "direct" })
+        private String entryLoggerType;
+
+        @Param({ "100", "1024", "8192" })
+        private int entrySize;
+
+        private File ledgerDir;
+        private EntryLogger entryLogger;
+        private ExecutorService writeExecutor;
+        private ExecutorService flushExecutor;
+        private final AtomicLong ledgerIdGenerator = new AtomicLong(NUM_LEDGERS);
+
+        private long entriesPerLedger;
+        private long[][] locations;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            ledgerDir = Files.createTempDirectory("entry-logger").toFile();
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+            if ("direct".equals(entryLoggerType)) {
+                writeExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("EntryLoggerWrite"));
+                flushExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("EntryLoggerFlush"));
+                entryLogger = new DirectEntryLogger(ledgerDirsManager.getAllLedgerDirs().get(0),
+                        new EntryLogIdsImpl(ledgerDirsManager, Slogger.NULL), new NativeIOImpl(),
+                        PooledByteBufAllocator.DEFAULT, writeExecutor, flushExecutor,
+                        conf.getEntryLogSizeLimit(), conf.getNettyMaxFrameSizeBytes() - 500,
+                        64 * MB, 64 * MB, (int) (8 * MB), 8, 300, Slogger.NULL, NullStatsLogger.INSTANCE);
+            } else {
+                entryLogger = new DefaultEntryLogger(conf, ledgerDirsManager);
+            }
+
+            // Write the entries to be read
+            entriesPerLedger = READ_DATA_SIZE / entrySize / NUM_LEDGERS;
+            locations = new long[NUM_LEDGERS][(int) entriesPerLedger];
+            ByteBuf entry = newEntry(entrySize);
+            for (int entryId = 0; entryId < entriesPerLedger; entryId++) {
+                for (int ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+                    setEntryId(entry, ledgerId, entryId);
+                    locations[ledgerId][entryId] = entryLogger.addEntry(ledgerId, entry);
+                }
+            }
+            entry.release();
+            entryLogger.flush();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            entryLogger.close();
+            if (writeExecutor != null) {
+                writeExecutor.shutdown();
+                flushExecutor.shutdown();
+            }
+            FileUtils.deleteDirectory(ledgerDir);
+        }
+    }
+
+    /**
+     * Each writer thread appends entries to its own ledger.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(EntryLoggerState state) {
+            ledgerId = state.ledgerIdGenerator.incrementAndGet();
+            entry = newEntry(state.entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    private static ByteBuf newEntry(int entrySize) {
+        ByteBuf entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+        entry.writerIndex(entrySize);
+        return entry;
+    }
+
+    private static void setEntryId(ByteBuf entry, long ledgerId, long entryId) {
+        // The direct entry logger consumes the readable bytes of the entry
+        entry.readerIndex(0);
+        entry.setLong(0, ledgerId);
+        entry.setLong(Long.BYTES, entryId);
+    }
+
+    @Benchmark
+    public long addEntry(EntryLoggerState state, WriterState writerState) throws IOException {
+        setEntryId(writerState.entry, writerState.ledgerId, writerState.entryId++);
+        return state.entryLogger.addEntry(writerState.ledgerId, writerState.entry);
+    }
+
+    @Benchmark
+    public void readEntry(EntryLoggerState state, Blackhole bh) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int ledgerId = random.nextInt(NUM_LEDGERS);
+        int entryId = random.nextInt((int) state.entriesPerLedger);
+        ByteBuf entry = state.entryLogger.readEntry(ledgerId, entryId, state.locations[ledgerId][entryId]);
+        bh.consume(entry);
+        entry.release();
+    }
+}
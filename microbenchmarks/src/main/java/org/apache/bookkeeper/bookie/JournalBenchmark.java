@@ -0,0 +1,171 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark for the journal write path, from {@link Journal#logAddEntry} to the acknowledgement of the entry
+ * once it is synced.
+ *
+ * <p>The fsync of the journal files is replaced with a fixed delay, so that the grouping of the entries can be
+ * compared for different device latencies regardless of the device the benchmark runs on. Run with an increasing
+ * number of threads (eg: {@code -t 1}, {@code -t 16}) to simulate an increasing number of concurrent writers.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class JournalBenchmark {
+
+    @SuppressWarnings("unchecked")
+    private static final WriteCallback COMPLETE_FUTURE =
+            (rc, ledgerId, entryId, addr, ctx) -> ((CompletableFuture<Integer>) ctx).complete(rc);
+
+    /**
+     * State shared by all the threads.
+     */
+    @State(Scope.Benchmark)
+    public static class JournalState {
+        @Param({ "100", "1024", "8192" })
+        private int entrySize;
+
+        // Simulated latency of the fsync, 0 to skip the fsync entirely
+        @Param({ "0", "100", "1000" })
+        private long fsyncLatencyMicros;
+
+        @Param({ "false", "true" })
+        private boolean adaptiveGroupCommit;
+
+        private File journalDir;
+        private File ledgerDir;
+        private Journal journal;
+        private final AtomicLong ledgerIdGenerator = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            journalDir = Files.createTempDirectory("journal").toFile();
+            ledgerDir = Files.createTempDirectory("ledgers").toFile();
+            BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setJournalDirName(journalDir.getAbsolutePath());
+            conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+            conf.setJournalAdaptiveGroupCommit(adaptiveGroupCommit);
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+            long fsyncLatencyNanos = TimeUnit.MICROSECONDS.toNanos(fsyncLatencyMicros);
+            journal = new Journal(0, journalDir, conf, ledgerDirsManager) {
+                @Override
+                public BufferedChannelBuilder getBufferedChannelBuilder() {
+                    return (FileChannel fc, int capacity) -> new FakeSyncBufferedChannel(fc, capacity,
+                            fsyncLatencyNanos);
+                }
+            };
+            journal.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            journal.shutdown();
+            FileUtils.deleteDirectory(journalDir);
+            FileUtils.deleteDirectory(ledgerDir);
+        }
+    }
+
+    /**
+     * Each writer thread adds entries to its own ledger.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(JournalState state) {
+            ledgerId = state.ledgerIdGenerator.incrementAndGet();
+            entry = Unpooled.directBuffer(state.entrySize, state.entrySize);
+            entry.writerIndex(state.entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    /**
+     * A buffered channel whose fsync only waits for the simulated latency.
+     */
+    private static class FakeSyncBufferedChannel extends BufferedChannel {
+        private final long fsyncLatencyNanos;
+
+        FakeSyncBufferedChannel(FileChannel fc, int capacity, long fsyncLatencyNanos) throws IOException {
+            super(UnpooledByteBufAllocator.DEFAULT, fc, capacity);
+            this.fsyncLatencyNanos = fsyncLatencyNanos;
+        }
+
+        @Override
+        public long forceWrite(boolean forceMetadata) {
+            long position = getFileChannelPosition();
+            if (fsyncLatencyNanos > 0) {
+                LockSupport.parkNanos(fsyncLatencyNanos);
+            }
+            return position;
+        }
+    }
+
+    @Benchmark
+    public int logAddEntry(JournalState state, WriterState writerState) throws Exception {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        state.journal.logAddEntry(writerState.ledgerId, writerState.entryId++, writerState.entry.duplicate(),
+                false, COMPLETE_FUTURE, future);
+        return future.get();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.storage.ldb.ReadCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the {@link ReadCache}.
+ *
+ * <p>The cache is sized to hold only half of the entries of the ledgers, so that gets are a mix of hits and misses
+ * and puts keep rotating the segments. Run with an increasing number of threads (eg: {@code -t 1}, {@code -t 8})
+ * to compare the contention on the cache lock.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-XX:MaxDirectMemorySize=2g" })
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class ReadCacheBenchmark {
+
+    private static final long CACHE_SIZE = 256 * 1024 * 1024;
+    private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int NUM_LEDGERS = 100;
+
+    /**
+     * State shared by all the threads.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        @Param({ "100", "1024", "8192" })
+        private int entrySize;
+
+        @Param({ "false", "true" })
+        private boolean promoteHotEntries;
+
+        private ReadCache cache;
+        private long entriesPerLedger;
+        private final AtomicLong nextEntryId = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cache = new ReadCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE, SEGMENT_SIZE, promoteHotEntries);
+            entriesPerLedger = 2 * CACHE_SIZE / entrySize / NUM_LEDGERS;
+
+            ByteBuf entry = Unpooled.directBuffer(entrySize, entrySize);
+            entry.writerIndex(entrySize);
+            for (long entryId = 0; entryId < entriesPerLedger; entryId++) {
+                for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+                    cache.put(ledgerId, entryId, entry);
+                }
+            }
+            nextEntryId.set(entriesPerLedger);
+            entry.release();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+        }
+    }
+
+    /**
+     * The entry added by each thread.
+     */
+    @State(Scope.Thread)
+    public static class EntryState {
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(CacheState cacheState) {
+            entry = Unpooled.directBuffer(cacheState.entrySize, cacheState.entrySize);
+            entry.writerIndex(cacheState.entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public void get(CacheState state, Blackhole bh) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ByteBuf entry = state.cache.get(random.nextInt(NUM_LEDGERS), random.nextLong(state.entriesPerLedger));
+        if (entry != null) {
+            bh.consume(entry);
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public void put(CacheState state, EntryState entryState) {
+        long entryId = state.nextEntryId.getAndIncrement();
+        state.cache.put(entryId % NUM_LEDGERS, entryId / NUM_LEDGERS, entryState.entry);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for concurrent adds into the {@link WriteCache}.
+ *
+ * <p>Run with an increasing number of threads (eg: {@code -t 1}, {@code -t 8}, {@code -t 32}) to compare how the
+ * add throughput scales with the shared offset and with the per-thread append regions.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-XX:MaxDirectMemorySize=2g" })
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class WriteCacheBenchmark {
+
+    private static final long CACHE_SIZE = 512 * 1024 * 1024;
+
+    /**
+     * State shared by all the writer threads.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        @Param({ "0", "64", "1024" })
+        private int appendRegionSizeKb;
+
+        @Param({ "100", "1024", "8192" })
+        private int entrySize;
+
+        private WriteCache cache;
+        private final AtomicLong ledgerIdGenerator = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cache = new WriteCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE, 256 * 1024 * 1024,
+                    appendRegionSizeKb * 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+        }
+
+        void put(long ledgerId, long entryId, ByteBuf entry) {
+            if (!cache.put(ledgerId, entryId, entry)) {
+                synchronized (this) {
+                    // Emulate the flush that would rotate the cache once it's full
+                    if (!cache.put(ledgerId, entryId, entry)) {
+                        cache.clear();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Each writer thread adds entries to its own ledger.
+     */
+    @State(Scope.Thread)
+    public static class WriterState {
+        private long ledgerId;
+        private long entryId;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(CacheState cacheState) {
+            ledgerId = cacheState.ledgerIdGenerator.incrementAndGet();
+            entry = Unpooled.directBuffer(cacheState.entrySize, cacheState.entrySize);
+            entry.writerIndex(cacheState.entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public void put(CacheState cacheState, WriterState writerState) {
+        cacheState.put(writerState.ledgerId, writerState.entryId++, writerState.entry);
+    }
+}
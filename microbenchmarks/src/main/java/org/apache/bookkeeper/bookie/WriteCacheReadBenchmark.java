@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the lookups and the flush iteration of a filled {@link WriteCache}.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-XX:MaxDirectMemorySize=2g" })
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class WriteCacheReadBenchmark {
+
+    private static final long CACHE_SIZE = 512 * 1024 * 1024;
+    private static final int NUM_LEDGERS = 1000;
+
+    /**
+     * A write cache filled with entries of many ledgers, added in interleaved order as they would be by
+     * concurrent writers.
+     */
+    @State(Scope.Benchmark)
+    public static class FilledCacheState {
+        @Param({ "100", "1024", "8192" })
+        private int entrySize;
+
+        private WriteCache cache;
+        private long entriesPerLedger;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cache = new WriteCache(PooledByteBufAllocator.DEFAULT, CACHE_SIZE);
+
+            ByteBuf entry = Unpooled.directBuffer(entrySize, entrySize);
+            entry.writerIndex(entrySize);
+            long numEntries = CACHE_SIZE / 2 / entrySize;
+            entriesPerLedger = numEntries / NUM_LEDGERS;
+            for (long entryId = 0; entryId < entriesPerLedger; entryId++) {
+                for (long ledgerId = 0; ledgerId < NUM_LEDGERS; ledgerId++) {
+                    cache.put(ledgerId, entryId, entry);
+                }
+            }
+            entry.release();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            cache.close();
+        }
+    }
+
+    /**
+     * The executor sorting the entries of the cache in parallel during the iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class SortState {
+        // 0 for the sequential iteration
+        @Param({ "0", "4" })
+        private int sortParallelism;
+
+        private ExecutorService sortExecutor;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sortExecutor = Executors.newCachedThreadPool(new DefaultThreadFactory("write-cache-sort"));
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            sortExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void get(FilledCacheState state, Blackhole bh) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ByteBuf entry = state.cache.get(random.nextInt(NUM_LEDGERS), random.nextLong(state.entriesPerLedger));
+        bh.consume(entry);
+        entry.release();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void forEach(FilledCacheState state, SortState sortState, Blackhole bh) throws IOException {
+        WriteCache.EntryConsumer consumer = (ledgerId, entryId, entry) -> bh.consume(entry);
+        if (sortState.sortParallelism > 0) {
+            state.cache.forEach(consumer, sortState.sortExecutor, sortState.sortParallelism);
+        } else {
+            state.cache.forEach(consumer);
+        }
+    }
+}
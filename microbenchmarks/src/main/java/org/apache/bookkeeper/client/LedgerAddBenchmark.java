@@ -0,0 +1,301 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCounted;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteFlag;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.common.util.OrderedScheduler;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.BatchedReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ForceLedgerCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.GetBookieInfoCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadEntryCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.ReadLacCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteLacCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.apache.bookkeeper.versioning.LongVersion;
+import org.apache.bookkeeper.versioning.Versioned;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark for the throughput of the adds to a single ledger from many producer threads.
+ *
+ * <p>The bookies are replaced by a {@link BookieClient} acknowledging the adds right away, so that the benchmark
+ * measures the client add path: the entryId assignment, the queueing of the pending adds and their completion.
+ * Run with an increasing number of threads (eg: {@code -t 1}, {@code -t 16}) to compare the contention on the
+ * ledger handle.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class LedgerAddBenchmark {
+
+    private static final long LEDGER_ID = 1L;
+    // Max number of adds in flight for each producer thread
+    private static final int MAX_PENDING_ADDS = 1000;
+
+    /**
+     * The ledger shared by all the producer threads.
+     */
+    @State(Scope.Benchmark)
+    public static class LedgerState {
+        @Param({ "100", "1024" })
+        private int entrySize;
+
+        private OrderedScheduler scheduler;
+        private LedgerHandle ledger;
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            scheduler = OrderedScheduler.newSchedulerBuilder().name("ledger-add").numThreads(1).build();
+
+            List<BookieId> ensemble = List.of(BookieId.parse("bookie-0:3181"), BookieId.parse("bookie-1:3181"),
+                    BookieId.parse("bookie-2:3181"));
+            LedgerMetadata metadata = LedgerMetadataBuilder.create()
+                    .withId(LEDGER_ID)
+                    .withEnsembleSize(3).withWriteQuorumSize(3).withAckQuorumSize(2)
+                    .withPassword(new byte[0]).withDigestType(DigestType.CRC32C)
+                    .newEnsembleEntry(0L, ensemble)
+                    .build();
+            ledger = new LedgerHandle(new AckingClientContext(scheduler), LEDGER_ID,
+                    new Versioned<>(metadata, new LongVersion(0)), BookKeeper.DigestType.CRC32C, new byte[0],
+                    EnumSet.noneOf(WriteFlag.class));
+
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+            entry.writerIndex(entrySize);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Bounds the adds in flight of each producer thread.
+     */
+    @State(Scope.Thread)
+    public static class ProducerState {
+        private final Semaphore pendingAdds = new Semaphore(MAX_PENDING_ADDS);
+        private final AsyncCallback.AddCallback callback = (rc, lh, entryId, ctx) -> pendingAdds.release();
+
+        @TearDown(Level.Iteration)
+        public void teardown() throws InterruptedException {
+            pendingAdds.acquire(MAX_PENDING_ADDS);
+            pendingAdds.release(MAX_PENDING_ADDS);
+        }
+    }
+
+    @Benchmark
+    public void asyncAddEntry(LedgerState state, ProducerState producerState) throws InterruptedException {
+        producerState.pendingAdds.acquire();
+        state.ledger.asyncAddEntry(state.entry.retainedDuplicate(), producerState.callback, null);
+    }
+
+    /**
+     * Client context for a single ledger handle, whose adds are acknowledged by {@link AckingBookieClient}.
+     */
+    private static class AckingClientContext implements ClientContext {
+        // Without the default rate limit of the adds
+        private final ClientInternalConf conf = ClientInternalConf.fromConfig(
+                new ClientConfiguration().setThrottleValue(0));
+        private final BookKeeperClientStats clientStats = BookKeeperClientStats.newInstance(NullStatsLogger.INSTANCE);
+        private final OrderedScheduler scheduler;
+        private final BookieClient bookieClient;
+
+        AckingClientContext(OrderedScheduler scheduler) {
+            this.scheduler = scheduler;
+            this.bookieClient = new AckingBookieClient(scheduler);
+        }
+
+        @Override
+        public ClientInternalConf getConf() {
+            return conf;
+        }
+
+        @Override
+        public LedgerManager getLedgerManager() {
+            return null;
+        }
+
+        @Override
+        public BookieWatcher getBookieWatcher() {
+            return null;
+        }
+
+        @Override
+        public EnsemblePlacementPolicy getPlacementPolicy() {
+            return null;
+        }
+
+        @Override
+        public BookieClient getBookieClient() {
+            return bookieClient;
+        }
+
+        @Override
+        public ByteBufAllocator getByteBufAllocator() {
+            return PooledByteBufAllocator.DEFAULT;
+        }
+
+        @Override
+        public OrderedExecutor getMainWorkerPool() {
+            return scheduler;
+        }
+
+        @Override
+        public OrderedScheduler getScheduler() {
+            return scheduler;
+        }
+
+        @Override
+        public BookKeeperClientStats getClientStats() {
+            return clientStats;
+        }
+
+        @Override
+        public boolean isClientClosed() {
+            return false;
+        }
+    }
+
+    /**
+     * Bookie client acknowledging the adds on the ordered executor of the ledger, as the responses of the bookies
+     * would be.
+     */
+    private static class AckingBookieClient implements BookieClient {
+        private final OrderedExecutor executor;
+
+        AckingBookieClient(OrderedExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void addEntry(BookieId address, long ledgerId, byte[] masterKey, long entryId, ReferenceCounted toSend,
+                             WriteCallback cb, Object ctx, int options, boolean allowFastFail,
+                             EnumSet<WriteFlag> writeFlags) {
+            executor.executeOrdered(ledgerId,
+                    () -> cb.writeComplete(BKException.Code.OK, ledgerId, entryId, address, ctx));
+        }
+
+        @Override
+        public List<BookieId> getFaultyBookies() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isWritable(BookieId address, long ledgerId) {
+            return true;
+        }
+
+        @Override
+        public long getNumPendingRequests(BookieId address, long ledgerId) {
+            return 0;
+        }
+
+        @Override
+        public void forceLedger(BookieId address, long ledgerId, ForceLedgerCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readLac(BookieId address, long ledgerId, ReadLacCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeLac(BookieId address, long ledgerId, byte[] masterKey, long lac, ByteBufList toSend,
+                             WriteLacCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readEntry(BookieId address, long ledgerId, long entryId, ReadEntryCallback cb, Object ctx,
+                              int flags, byte[] masterKey, boolean allowFastFail) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void batchReadEntries(BookieId address, long ledgerId, long startEntryId, int maxCount, long maxSize,
+                                     BatchedReadEntryCallback cb, Object ctx, int flags, byte[] masterKey,
+                                     boolean allowFastFail) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void readEntryWaitForLACUpdate(BookieId address, long ledgerId, long entryId, long previousLAC,
+                                              long timeOutInMillis, boolean piggyBackEntry, ReadEntryCallback cb,
+                                              Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void getBookieInfo(BookieId address, long requested, GetBookieInfoCallback cb, Object ctx) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<AvailabilityOfEntriesOfLedger> getListOfEntriesOfLedger(BookieId address,
+                                                                                         long ledgerId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.bookkeeper.proto;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
@@ -34,8 +35,11 @@ import org.apache.bookkeeper.proto.BookkeeperProtocol.BKPacketHeader;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.OperationType;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.ProtocolVersion;
 import org.apache.bookkeeper.proto.BookkeeperProtocol.Request;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Param;
@@ -46,13 +50,16 @@ import org.slf4j.MDC;
 
 /**
  * Benchmarking serialization and deserialization.
+ *
+ * <p>The {@link CopyCounters} report the bytes copied by the add benchmarks: {@code bytesCopied / ops} is the
+ * number of bytes copied per add, to be compared with the entry size.
  */
 @BenchmarkMode({Mode.Throughput})
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @State(Scope.Thread)
 public class ProtocolBenchmark {
 
-    @Param({"10", "100", "1000", "10000"})
+    @Param({"10", "100", "1000", "10000", "100000"})
     int size;
 
     byte[] masterKey;
@@ -78,8 +85,35 @@ public class ProtocolBenchmark {
         this.reqEnDeV3 = new RequestEnDecoderV3(null);
     }
 
+    /**
+     * Counts the bytes copied while building and encoding the add requests.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class CopyCounters {
+        public long bytesCopied;
+        public long ops;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesCopied = 0;
+            ops = 0;
+        }
+
+        void record(long copiedBeforeEncoding, Object encoded) {
+            bytesCopied += copiedBeforeEncoding;
+            if (encoded instanceof ByteBufList) {
+                // only the first buffer is written by the encoder, the other ones wrap the entry
+                bytesCopied += ((ByteBufList) encoded).getBuffer(0).readableBytes();
+            } else {
+                bytesCopied += ((ByteBuf) encoded).readableBytes();
+            }
+            ops++;
+        }
+    }
+
     @Benchmark
-    public void testAddEntryV3() throws Exception {
+    public void testAddEntryV3(CopyCounters counters) throws Exception {
         // Build the request and calculate the total size to be included in the packet.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                 .setVersion(ProtocolVersion.VERSION_THREE)
@@ -102,6 +136,33 @@ public class ProtocolBenchmark {
                 .build();
 
         Object res = this.reqEnDeV3.encode(request, ByteBufAllocator.DEFAULT);
+        // the entry is copied to an array, then to the body
+        counters.record(2L * size, res);
+        ReferenceCountUtil.release(res);
+    }
+
+    @Benchmark
+    public void testAddEntryV3ZeroCopy(CopyCounters counters) throws Exception {
+        // Build the request as the client does, wrapping the entry in the body
+        BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
+                .setVersion(ProtocolVersion.VERSION_THREE)
+                .setOperation(OperationType.ADD_ENTRY)
+                .setTxnId(0L);
+
+        AddRequest.Builder addBuilder = AddRequest.newBuilder()
+                .setLedgerId(ledgerId)
+                .setEntryId(entryId)
+                .setMasterKey(UnsafeByteOperations.unsafeWrap(masterKey))
+                .setBody(ByteStringUtil.byteBufToByteString(entry))
+                .setFlag(AddRequest.Flag.RECOVERY_ADD);
+
+        Request request = Request.newBuilder()
+                .setHeader(headerBuilder)
+                .setAddRequest(addBuilder)
+                .build();
+
+        Object res = this.reqEnDeV3.encode(request, ByteBufAllocator.DEFAULT);
+        counters.record(0L, res);
         ReferenceCountUtil.release(res);
     }
 
@@ -21,7 +21,9 @@ package org.apache.bookkeeper.proto.checksum;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCounted;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -37,6 +39,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
@@ -71,6 +74,9 @@ public class DigestManagerBenchmark {
 
         public ByteBuf digestBuf;
 
+        // an entry made of several buffers, as appended by applications batching their messages
+        public CompositeByteBuf compositeData;
+
         @Setup(Level.Trial)
         public void doSetup() throws Exception {
             final byte[] password = "password".getBytes(StandardCharsets.UTF_8);
@@ -85,6 +91,20 @@ public class DigestManagerBenchmark {
             digestBuf.writeBytes((ByteBuf)
                     dm.computeDigestAndPackageForSending(1234, 1234, entrySize, data,
                             new byte[0], 0));
+
+            compositeData = ByteBufAllocator.DEFAULT.compositeDirectBuffer();
+            int partSize = Math.max(entrySize / 4, 1);
+            for (int written = 0; written < entrySize; written += partSize) {
+                int size = Math.min(partSize, entrySize - written);
+                compositeData.addComponent(true, ByteBufAllocator.DEFAULT.directBuffer(size, size)
+                        .writeBytes(randomBytes(size)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void doTearDown() {
+            digestBuf.release();
+            compositeData.release();
         }
     }
 
@@ -99,4 +119,17 @@ public class DigestManagerBenchmark {
         state.digestBuf.readerIndex(0);
         state.dm.verifyDigestAndReturnData(1234, state.digestBuf);
     }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+    @Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+    @Threads(2)
+    @Fork(1)
+    public void computeDigestOfCompositeEntry(MyState state) {
+        ReferenceCounted toSend = state.dm.computeDigestAndPackageForSending(1234, 1234, state.entrySize,
+                state.compositeData.retainedDuplicate(), new byte[0], 0);
+        toSend.release();
+    }
 }
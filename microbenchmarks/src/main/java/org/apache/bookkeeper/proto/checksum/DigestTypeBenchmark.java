@@ -61,7 +61,8 @@ public class DigestTypeBenchmark {
     public enum BufferType {
         ARRAY_BACKED,
         NOT_ARRAY_BACKED,
-        BYTE_BUF_DEFAULT_ALLOC
+        BYTE_BUF_DEFAULT_ALLOC,
+        DIRECT_COMPOSITE
     }
 
     /**
@@ -99,6 +100,7 @@ public class DigestTypeBenchmark {
         private ByteBuf arrayBackedBuffer;
         private CompositeByteBuf notArrayBackedBuffer;
         private ByteBuf byteBufDefaultAlloc;
+        private CompositeByteBuf directCompositeBuffer;
 
         public ByteBuf digestBuf;
 
@@ -120,19 +122,30 @@ public class DigestTypeBenchmark {
 
             final int headerSize = 32 + getDigestManager(digest).getMacCodeLength();
             notArrayBackedBuffer = new CompositeByteBuf(ByteBufAllocator.DEFAULT, true, 2);
-            notArrayBackedBuffer.addComponent(Unpooled.wrappedBuffer(randomBytes(headerSize)));
-            notArrayBackedBuffer.addComponent(Unpooled.wrappedBuffer((randomBytes(entrySize - headerSize))));
+            notArrayBackedBuffer.addComponent(true, Unpooled.wrappedBuffer(randomBytes(headerSize)));
+            notArrayBackedBuffer.addComponent(true, Unpooled.wrappedBuffer((randomBytes(entrySize - headerSize))));
 
             byteBufDefaultAlloc = ByteBufAllocator.DEFAULT.buffer(entrySize, entrySize);
             byteBufDefaultAlloc.writeBytes(randomBytes(entrySize));
 
-            if (!arrayBackedBuffer.hasArray() || notArrayBackedBuffer.hasArray()) {
+            // the headers and the payload of an entry, as sent by the client
+            directCompositeBuffer = new CompositeByteBuf(ByteBufAllocator.DEFAULT, true, 2);
+            directCompositeBuffer.addComponent(true,
+                    ByteBufAllocator.DEFAULT.directBuffer(headerSize).writeBytes(randomBytes(headerSize)));
+            directCompositeBuffer.addComponent(true, ByteBufAllocator.DEFAULT.directBuffer(entrySize - headerSize)
+                    .writeBytes(randomBytes(entrySize - headerSize)));
+
+            if (!arrayBackedBuffer.hasArray() || notArrayBackedBuffer.hasArray()
+                    || notArrayBackedBuffer.readableBytes() != entrySize
+                    || directCompositeBuffer.hasMemoryAddress()) {
                 throw new IllegalStateException("buffers in invalid state");
             }
         }
 
         @TearDown(Level.Trial)
         public void doTearDown() {
+            byteBufDefaultAlloc.release();
+            directCompositeBuffer.release();
         }
 
         public ByteBuf getByteBuff(BufferType bType) {
@@ -143,6 +156,8 @@ public class DigestTypeBenchmark {
                     return notArrayBackedBuffer;
                 case BYTE_BUF_DEFAULT_ALLOC:
                     return byteBufDefaultAlloc;
+                case DIRECT_COMPOSITE:
+                    return directCompositeBuffer;
                 default:
                     throw new IllegalArgumentException("unknown buffer type " + bType);
             }